@@ -24,6 +24,7 @@ XBee xbee = XBee();
 #define CMD_SESSION_RESET 20
 #define CMD_TOGGLE_ALARMS 21
 #define CMD_TAKE_SEND_PIC 29
+#define CMD_RESEND_PIC_CHUNKS 30 // resend a range of chunks from the last pic (start MSB, start LSB, count MSB, count LSB)
 #define CMD_CHG_KEYS 37
 #define CMD_TOOGLE_SERVO 58
 #define CMD_TOOGLE_GATE 59
@@ -66,6 +67,11 @@ byte camResSelect = CAM_VGA;
 byte camVGA[] = {0x55,0x41,0x52,0x54,0xCA,0x00,0x00,0x00,0x00,0x00,0x00};
 byte camQVGA[] = {0x55,0x41,0x52,0x54,0xCA,0x00,0x00,0x00,0xFF,0x00,0x00};
 byte camData[] = {0x55,0x41,0x52,0x54,0xC7,0x00,0x00,0x00,0x00,0x00,0x00};
+// flag set in the status byte (payload[1]) of every pic chunk to tell the host that the chunk
+// sequence is in payload[5] (MSB) and payload[6] (LSB) and that CMD_RESEND_PIC_CHUNKS is supported
+#define CAM_CHUNK_SEQUENCED 0x80
+unsigned long camPicTotalLen; // size of the last pic buffered in the cam (used to resend chunks)
+unsigned int camResendStart, camResendCount; // range of chunks requested by CMD_RESEND_PIC_CHUNKS
 //======= Sonar (XL-MaxSonar EZ3 MB1230 [~25ft Range]) =======
 #define SONAR_TX_PIN 3
 #define SONAR_RX_PIN 4
@@ -83,6 +83,9 @@ void execBufferCmds() {
       } else if (cmd == CMD_TAKE_SEND_PIC) {
         // take/send picture in the predefined resolution and sends the data over xbee (along with sensor readings)
         camTakeSendPic(cmd);
+      } else if (cmd == CMD_RESEND_PIC_CHUNKS) {
+        // resend the chunks of the last picture that the host did not receive
+        camResendPicChunks(CMD_TAKE_SEND_PIC, camResendStart, camResendCount);
       } else if (cmd == CMD_TOGGLE_ALARMS) {
         // TODO : turn alarms on/off
       } else if (cmd == CMD_TOOGLE_SERVO) {
@@ -182,6 +185,11 @@ int xbeeRead() {
             int sendSetCmd = CMD_SENSOR_SETTINGS_SEND;
             pressBuffer((int*) cmdBuffer, NUMOFELEM(cmdBuffer), &sendSetCmd); 
           }
+      } else if (cmd == CMD_RESEND_PIC_CHUNKS) {
+        // capture the requested chunk range before buffering the command
+        camResendStart = (rx16.getData(2) << 8) | rx16.getData(3);
+        camResendCount = (rx16.getData(4) << 8) | rx16.getData(5);
+        pressBuffer((int*) cmdBuffer, NUMOFELEM(cmdBuffer), &cmd);
       } else {
         // all other commands can be buffered
         pressBuffer((int*) cmdBuffer, NUMOFELEM(cmdBuffer), &cmd);
@@ -224,6 +232,7 @@ boolean camTakeSendPic(int cmd) {
   boolean hasFailures = false;
   // take picture (buffered in cam)
   unsigned long picTotalLen = camTakePic(cmd);
+  camPicTotalLen = picTotalLen;
   // read pic data from camera and write to file in SD card
   // how many times we have to read data, with reading CAM_BUF_LEN length every time 
   unsigned long count = picTotalLen >> CAM_SHIFT_BIT;
@@ -252,6 +261,29 @@ boolean camTakeSendPic(int cmd) {
   irInterrupt(true);
   mwInterrupt(true);
 }
+// resends a range of chunks from the last picture buffered in the cam
+// (each chunk is read again from the cam at the chunk's address)
+boolean camResendPicChunks(int cmd, unsigned int start, unsigned int count) {
+  irInterrupt(false);
+  mwInterrupt(false);
+  boolean hasFailures = false;
+  unsigned long addr;
+  for (unsigned int seq = start; seq < start + count; seq++) {
+    addr = (unsigned long) seq << CAM_SHIFT_BIT;
+    if (addr >= camPicTotalLen) {
+      break;
+    }
+    camData[5] = addr >> 16;
+    camData[6] = addr >> 8;
+    camData[7] = addr;
+    camData[10] = min(CAM_BUF_LEN, camPicTotalLen - addr);
+    CAMSENDCMD(camData);
+    hasFailures = camReadXBeeSend(cmd, hasFailures, seq, camData[10]);
+  }
+  irInterrupt(true);
+  mwInterrupt(true);
+  return hasFailures;
+}
 // Takes a pic by sending either the QVGA or VGA command to the cam
 // and returning the size of the pic buffered in the cam
 unsigned long camTakePic(int cmd) {
@@ -272,19 +304,19 @@ unsigned long camTakePic(int cmd) {
   return picTotalLen;
 }
 // read the sepecific length of pic data from serial camera
-// and send the read bytes over xbee
+// and send the read bytes over xbee (index is the chunk sequence)
 boolean camReadXBeeSend(int cmd, boolean hasFailures, int index, int toBeReadLen) {
   int readLen = 0;
   Tx16Request tx;
   short infoSegCnt = 7;
   byte payload[toBeReadLen + infoSegCnt];
   payload[0] = cmd;
-  payload[1] = (unsigned char) hasFailures;
+  payload[1] = ((unsigned char) hasFailures) | CAM_CHUNK_SEQUENCED;
   payload[2] = (int) sonarReadInches / 12; // feet
   payload[3] = (int) sonarReadInches % 12; // inches
   payload[4] = (int) irReadInches / 12; // feet
-  payload[5] = (int) irReadInches % 12; // inches
-  payload[6] = mwCycleCnt;
+  payload[5] = index >> 8; // chunk sequence MSB
+  payload[6] = index; // chunk sequence LSB
   if (toBeReadLen > 0) {
     while (readLen < toBeReadLen) {
       if (Serial1.available() > 0) {
@@ -1,14 +1,13 @@
 package org.ugate;
 
-import java.lang.reflect.Field;
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.EventObject;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.ugate.resources.RS;
+import org.ugate.resources.RS.KEY;
 import org.ugate.service.entity.Command;
 import org.ugate.service.entity.IModelType;
 import org.ugate.service.entity.jpa.Host;
@@ -17,7 +16,10 @@ import org.ugate.wireless.data.RxData;
 import org.ugate.wireless.data.RxRawData;
 
 /**
- * Gate keeper event
+ * Gate keeper event. Messages can be added as {@linkplain KEY}s with format
+ * arguments that are only rendered when a consumer requests the message text
+ * (format arguments should be immutable or snapshots of the values they
+ * represent).
  * 
  * @param <S>
  *            the source type
@@ -33,7 +35,8 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	private final V oldValue;
 	private final V newValue;
 	private boolean fromRemote;
-	private List<String> messages;
+	private Message messages;
+	private transient volatile String messageString;
 	private AtomicBoolean consumed = new AtomicBoolean();
 	
 	/**
@@ -96,8 +99,42 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	 */
 	public UGateEvent(final S source, final Type type, final boolean fromRemote, 
 			final IModelType<?> key, final Command command, final V oldValue, final V newValue, final String... messages) {
-		this(source, type, fromRemote, key, command, oldValue, newValue, 
-				messages != null && messages.length > 0 ? new ArrayList<String>(Arrays.asList(messages)) : null);
+		this(source, type, fromRemote, key, command, oldValue, newValue, (List<String>) null);
+		if (messages != null) {
+			for (final String message : messages) {
+				addMessage(message);
+			}
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source
+	 *            the source of the event
+	 * @param type
+	 *            the {@linkplain Type} type
+	 * @param fromRemote
+	 *            true when the event originated from a {@linkplain RemoteNode}
+	 * @param key
+	 *            the {@linkplain IModelType} (null when event is for ALL nodes)
+	 * @param command
+	 *            the executing {@linkplain Command} (null when not applicable)
+	 * @param oldValue
+	 *            the old value (null when event is for ALL nodes)
+	 * @param newValue
+	 *            the new value (null when event is for ALL nodes)
+	 * @param messageKey
+	 *            the {@linkplain KEY} of the message
+	 * @param messageArgs
+	 *            the message format arguments (rendered when the message is
+	 *            requested)
+	 */
+	public UGateEvent(final S source, final Type type, final boolean fromRemote, 
+			final IModelType<?> key, final Command command, final V oldValue, final V newValue, 
+			final KEY messageKey, final Object... messageArgs) {
+		this(source, type, fromRemote, key, command, oldValue, newValue, (List<String>) null);
+		addMessage(messageKey, messageArgs);
 	}
 
 	/**
@@ -129,7 +166,7 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 		this.oldValue = oldValue;
 		this.newValue = newValue;
 		this.fromRemote = fromRemote;
-		this.messages = messages;
+		setMessages(messages);
 	}
 	
 	/**
@@ -139,22 +176,66 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	 * @param messages any messages to add
 	 * @return the event clone
 	 */
-	@SuppressWarnings("unchecked")
 	public UGateEvent<S, V> clone(final Type type, final int nodeIndex, final String... messages) {
-		UGateEvent<S, V> event = null;
+		final UGateEvent<S, V> event = clone(type);
+		if (event != null && messages != null) {
+			for (final String message : messages) {
+				event.addMessage(message);
+			}
+		}
+		return event;
+	}
+
+	/**
+	 * Clones the event changing the type and adding a message that will be
+	 * rendered when requested
+	 * 
+	 * @param type the type of the event
+	 * @param nodeIndex the node index
+	 * @param messageKey the {@linkplain KEY} of the message to add
+	 * @param messageArgs the message format arguments
+	 * @return the event clone
+	 */
+	public UGateEvent<S, V> clone(final Type type, final int nodeIndex, 
+			final KEY messageKey, final Object... messageArgs) {
+		final UGateEvent<S, V> event = clone(type);
+		if (event != null) {
+			event.addMessage(messageKey, messageArgs);
+		}
+		return event;
+	}
+
+	/**
+	 * Copies the event with its own {@linkplain #isConsumed()} state so that it
+	 * can be delivered to a separate group of listeners. The messages of this
+	 * event are shared with the copy.
+	 * 
+	 * @return the event copy
+	 */
+	UGateEvent<S, V> copy() {
+		return clone(type);
+	}
+
+	/**
+	 * Clones the event changing the type. The messages of this event are
+	 * shared with the clone (messages added to the clone are not added to
+	 * this event).
+	 * 
+	 * @param type the type of the event
+	 * @return the event clone
+	 */
+	@SuppressWarnings("unchecked")
+	private UGateEvent<S, V> clone(final Type type) {
 		try {
-			event = (UGateEvent<S, V>) super.clone();
+			final UGateEvent<S, V> event = (UGateEvent<S, V>) super.clone();
 			event.type = type;
-			if (messages != null) {
-				for (final String error : messages) {
-					event.addMessage(error);
-				}
-			}
+			event.consumed = new AtomicBoolean();
+			return event;
 		} catch (final CloneNotSupportedException e) {
 			// should never happen
 			e.printStackTrace();
+			return null;
 		}
-		return event;
 	}
 
 	/**
@@ -171,48 +252,11 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	 */
 	@Override
 	public String toString() {
-		final Field[] fields = getClass().getDeclaredFields();
-		final StringBuilder sb = new StringBuilder();
-		sb.append(super.toString());
-		sb.append(" [");
-		Map<?, ?> map;
-		Collection<?> col;
-		for (final Field field : fields) {
-			try {
-				sb.append(field.getName());
-				sb.append('=');
-				if (field.getDeclaringClass().isAssignableFrom(Map.class)) {
-					map = (Map<?, ?>) field.get(this);
-					sb.append('{');
-					if (map != null) {
-						for (final Map.Entry<?, ?> me : map.entrySet()) {
-							sb.append(" key: ");
-							sb.append(me.getKey());
-							sb.append(" value: ");
-							sb.append(me.getValue());
-						}
-					}
-					sb.append('}');
-				} else if (field.getDeclaringClass().isAssignableFrom(Collection.class)) {
-					col = (Collection<?>) field.get(this);
-					sb.append('{');
-					if (col != null) {
-						for (final Object c : col) {
-							sb.append(c);
-							sb.append(' ');
-						}
-					}
-					sb.append('}');
-				} else {
-					sb.append(field.get(this));
-				}
-				sb.append(", ");
-			} catch (final Throwable t) {
-				t.printStackTrace();
-			}
-		}
-		sb.append(']');
-		return sb.toString();
+		return getClass().getSimpleName() + " [type=" + type + ", source="
+				+ getSource() + ", key=" + key + ", command=" + command
+				+ ", fromRemote=" + fromRemote + ", oldValue=" + oldValue
+				+ ", newValue=" + newValue + ", consumed=" + isConsumed()
+				+ ", messages={" + getMessageString() + "}]";
 	}
 
 	/**
@@ -258,20 +302,25 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	}
 
 	/**
-	 * @param messages the messages to set
+	 * @param messages the messages to set (replaces any existing messages)
 	 */
 	public void setMessages(final List<String> messages) {
-		this.messages = messages;
+		this.messages = null;
+		messageString = null;
+		if (messages != null) {
+			for (final String message : messages) {
+				addMessage(message);
+			}
+		}
 	}
 	
 	/**
-	 * @return the messages
+	 * @return a rendered copy of the messages
 	 */
 	public List<String> getMessages() {
-		if (messages == null) {
-			messages = new ArrayList<String>();
-		}
-		return messages;
+		final List<String> msgs = new ArrayList<String>();
+		Message.render(messages, msgs);
+		return msgs;
 	}
 	
 	/**
@@ -280,24 +329,45 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 	 * @param message the message to add
 	 */
 	public void addMessage(final String message) {
-		final List<String> msgs = getMessages();
-		msgs.add(message);
+		messages = new Message(messages, message, null, null);
+		messageString = null;
+	}
+
+	/**
+	 * Adds a message that will be rendered when requested
+	 * 
+	 * @param messageKey the {@linkplain KEY} of the message to add
+	 * @param messageArgs the message format arguments
+	 */
+	public void addMessage(final KEY messageKey, final Object... messageArgs) {
+		if (messageKey == null) {
+			return;
+		}
+		messages = new Message(messages, null, messageKey, messageArgs);
+		messageString = null;
 	}
 	
 	/**
-	 * @return a next-line delimited message string
+	 * @return a next-line delimited message string (rendered once)
 	 */
 	public String getMessageString() {
-		final List<String> messageArray = getMessages();
-		if (messageArray.isEmpty()) {
-			return "";
+		String ms = messageString;
+		if (ms == null) {
+			if (messages == null) {
+				ms = "";
+			} else {
+				final List<String> msgs = new ArrayList<String>();
+				Message.render(messages, msgs);
+				final StringBuilder sb = new StringBuilder();
+				for (final String msg : msgs) {
+					sb.append(msg);
+					sb.append('\n');
+				}
+				ms = sb.toString();
+			}
+			messageString = ms;
 		}
-	    final StringBuilder msgs = new StringBuilder();
-	    for (final String msg : messageArray) {
-	    	msgs.append(msg);
-	    	msgs.append('\n');
-	    }
-	    return msgs.toString();
+		return ms;
 	}
 
 	/**
@@ -317,6 +387,42 @@ public class UGateEvent<S, V> extends EventObject implements Cloneable {
 		this.consumed.set(consumed);
 	}
 
+	/**
+	 * Immutable message that is linked to the message added before it so
+	 * that cloned events can share the messages of the original event
+	 */
+	private static final class Message implements Serializable {
+
+		private static final long serialVersionUID = -2936025393626640522L;
+		private final Message previous;
+		private final String text;
+		private final KEY key;
+		private final Object[] args;
+
+		Message(final Message previous, final String text, final KEY key,
+				final Object[] args) {
+			this.previous = previous;
+			this.text = text;
+			this.key = key;
+			this.args = args;
+		}
+
+		/**
+		 * Renders the message chain in the order the messages were added
+		 * 
+		 * @param message the last {@linkplain Message} in the chain
+		 * @param msgs the list to add the rendered messages to
+		 */
+		static void render(final Message message, final List<String> msgs) {
+			if (message == null) {
+				return;
+			}
+			render(message.previous, msgs);
+			msgs.add(message.key != null ? RS.rbLabel(message.key, message.args)
+					: message.text);
+		}
+	}
+
 	/**
 	 * The {@linkplain UGateEvent} types
 	 */
@@ -1,61 +1,234 @@
 package org.ugate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
-import javafx.application.Platform;
+import java.util.Map;
 
 import org.slf4j.Logger;
+import org.ugate.gui.FxPulseCoalescer;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RxEventDispatcher;
+import org.ugate.wireless.data.RxTxRemoteNodeReadingDTO;
 
 /**
- * Central gate keeper hub
+ * Central gate keeper hub. {@linkplain UGateEvent}s are delivered to
+ * {@linkplain UGateListener}s on worker threads unless the listener was added
+ * using {@linkplain Delivery#FX_THREAD} (i.e. GUI listeners). Listeners that
+ * use the same {@linkplain Delivery} are notified in the order they were
+ * added and {@linkplain UGateEvent#setConsumed(boolean)} will prevent any of
+ * the remaining listeners that use the same {@linkplain Delivery} from being
+ * notified (each {@linkplain Delivery} is notified with its own copy of the
+ * event). Events from the same source are delivered in the order they were
+ * fired. Firing an event never blocks the caller (worker lanes that are full
+ * queue beyond their capacity and log a warning). Listeners can subscribe to
+ * a subset of {@linkplain UGateEvent.Type}s (optionally narrowed by source
+ * class and/or remote node address) so that they are only notified of the
+ * events they handle.
+ * {@linkplain Delivery#FX_THREAD} notifications are ran once per JavaFX pulse
+ * and high-rate events (i.e. image chunks, transmission acknowledgments,
+ * readings) from the same remote node are coalesced so that only the latest
+ * one of each type is delivered on a pulse.
  */
 public enum UGateKeeper {
-	
+
 	DEFAULT;
-	
+
 	private final Logger log = UGateUtil.getLogger(UGateKeeper.class);
-	private final List<UGateListener> listeners = new CopyOnWriteArrayList<UGateListener>();
-	//private final int numOfProcessors;
-	//private final ForkJoinPool pool;
-	
+	/**
+	 * {@linkplain UGateEvent.Type}s that only need the latest event per
+	 * remote node delivered to {@linkplain Delivery#FX_THREAD} listeners
+	 */
+	private static final EnumSet<UGateEvent.Type> FX_COALESCED_TYPES = EnumSet
+			.of(UGateEvent.Type.WIRELESS_DATA_RX_MULTIPART,
+					UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING,
+					UGateEvent.Type.WIRELESS_DATA_TX,
+					UGateEvent.Type.WIRELESS_DATA_TX_ACK,
+					UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_SUCCESS);
+	/**
+	 * Created on the first {@linkplain Delivery#FX_THREAD} notification so
+	 * that {@linkplain Delivery#WORKER} only use does not require the JavaFX
+	 * toolkit
+	 */
+	private volatile FxPulseCoalescer fxPulse;
+	private final List<Registration> listeners = new ArrayList<>();
+	/**
+	 * Registrations indexed by {@linkplain UGateEvent.Type} and then by
+	 * {@linkplain Delivery#ordinal()} (rebuilt whenever a listener is
+	 * added/removed)
+	 */
+	private volatile Map<UGateEvent.Type, Registration[][]> index = new EnumMap<>(
+			UGateEvent.Type.class);
+	/**
+	 * Catch-all registrations by {@linkplain Delivery#ordinal()} for events
+	 * without a {@linkplain UGateEvent.Type}
+	 */
+	private volatile Registration[][] untyped = Registration.NONE;
+	private final RxEventDispatcher dispatcher = new RxEventDispatcher(
+			UGateKeeper.class.getSimpleName() + "-event",
+			RxEventDispatcher.DEFAULT_WORKER_COUNT,
+			RxEventDispatcher.DEFAULT_LANE_CAPACITY,
+			RxEventDispatcher.OverflowPolicy.OVERFLOW);
+
 	/**
 	 * Constructor
 	 */
 	private UGateKeeper() {
-		//numOfProcessors = Runtime.getRuntime().availableProcessors();
-		//pool = new ForkJoinPool(numOfProcessors);
 	}
-	
+
 	/* ======= Listeners ======= */
-	
+
 	/**
 	 * Removes a {@linkplain UGateListener}
-	 * 
+	 *
 	 * @param listener the listener to remove
 	 */
-	public void removeListener(final UGateListener listener) {
-		if (listener != null && listeners.contains(listener)) {
-			listeners.remove(listener);
+	public synchronized void removeListener(final UGateListener listener) {
+		if (listener == null) {
+			return;
 		}
+		for (int i = listeners.size() - 1; i >= 0; i--) {
+			if (listeners.get(i).listener == listener) {
+				listeners.remove(i);
+			}
+		}
+		reindex();
 	}
-	
+
 	/**
-	 * Adds a {@linkplain UGateListener} that will be notified of preference/settings 
-	 * and connection interactions.
-	 * 
+	 * Adds a {@linkplain UGateListener} that will be notified of all preference/settings
+	 * and connection interactions on a worker thread.
+	 *
 	 * @param listener the listener to add
 	 */
 	public void addListener(final UGateListener listener) {
-		if (listener != null && !listeners.contains(listener)) {
-			listeners.add(listener);
+		addListener(listener, Delivery.WORKER);
+	}
+
+	/**
+	 * Adds a {@linkplain UGateListener} that will be notified of all
+	 * preference/settings and connection interactions.
+	 *
+	 * @param listener
+	 *            the listener to add
+	 * @param delivery
+	 *            the {@linkplain Delivery} that determines what thread the
+	 *            listener will be notified on
+	 */
+	public void addListener(final UGateListener listener,
+			final Delivery delivery) {
+		addListener(listener, delivery, null, null, new UGateEvent.Type[0]);
+	}
+
+	/**
+	 * Adds a {@linkplain UGateListener} that will only be notified of
+	 * {@linkplain UGateEvent}s with one of the specified
+	 * {@linkplain UGateEvent.Type}s
+	 *
+	 * @param listener
+	 *            the listener to add
+	 * @param delivery
+	 *            the {@linkplain Delivery} that determines what thread the
+	 *            listener will be notified on
+	 * @param types
+	 *            the {@linkplain UGateEvent.Type}s to subscribe to (none for
+	 *            all)
+	 */
+	public void addListener(final UGateListener listener,
+			final Delivery delivery, final UGateEvent.Type... types) {
+		addListener(listener, delivery, null, null, types);
+	}
+
+	/**
+	 * Adds a {@linkplain UGateListener} that will only be notified of
+	 * {@linkplain UGateEvent}s with one of the specified
+	 * {@linkplain UGateEvent.Type}s from a matching source
+	 *
+	 * @param listener
+	 *            the listener to add
+	 * @param delivery
+	 *            the {@linkplain Delivery} that determines what thread the
+	 *            listener will be notified on
+	 * @param sourceType
+	 *            the class that the {@linkplain UGateEvent#getSource()} must
+	 *            be an instance of (null for any source)
+	 * @param nodeAddress
+	 *            the {@linkplain RemoteNode#getAddress()} that the
+	 *            {@linkplain UGateEvent#getSource()} must have (null for any
+	 *            source)
+	 * @param types
+	 *            the {@linkplain UGateEvent.Type}s to subscribe to (none for
+	 *            all)
+	 */
+	public synchronized void addListener(final UGateListener listener,
+			final Delivery delivery, final Class<?> sourceType,
+			final String nodeAddress, final UGateEvent.Type... types) {
+		if (listener == null) {
+			return;
+		}
+		for (final Registration reg : listeners) {
+			if (reg.listener == listener) {
+				return;
+			}
+		}
+		listeners.add(new Registration(listener,
+				delivery == null ? Delivery.WORKER : delivery,
+				types == null || types.length == 0 ? null : EnumSet
+						.copyOf(Arrays.asList(types)), sourceType, nodeAddress));
+		reindex();
+	}
+
+	/**
+	 * Rebuilds the {@linkplain UGateEvent.Type} index from the current
+	 * registrations (preserving the order the listeners were added in)
+	 */
+	private void reindex() {
+		final Map<UGateEvent.Type, Registration[][]> idx = new EnumMap<>(
+				UGateEvent.Type.class);
+		for (final UGateEvent.Type type : UGateEvent.Type.values()) {
+			final Registration[][] regs = group(type);
+			if (regs != Registration.NONE) {
+				idx.put(type, regs);
+			}
+		}
+		untyped = group(null);
+		index = idx;
+	}
+
+	/**
+	 * Groups the registrations subscribed to a {@linkplain UGateEvent.Type}
+	 * by {@linkplain Delivery}
+	 *
+	 * @param type
+	 *            the {@linkplain UGateEvent.Type} (null to group only the
+	 *            catch-all registrations)
+	 * @return the registrations by {@linkplain Delivery#ordinal()} or
+	 *         {@linkplain Registration#NONE} when there are no subscribers
+	 */
+	private Registration[][] group(final UGateEvent.Type type) {
+		final Delivery[] deliveries = Delivery.values();
+		final Registration[][] regs = new Registration[deliveries.length][];
+		boolean any = false;
+		for (final Delivery delivery : deliveries) {
+			final List<Registration> matched = new ArrayList<>();
+			for (final Registration reg : listeners) {
+				if (reg.delivery == delivery
+						&& (reg.types == null || (type != null && reg.types.contains(type)))) {
+					matched.add(reg);
+				}
+			}
+			any |= !matched.isEmpty();
+			regs[delivery.ordinal()] = matched.toArray(new Registration[matched.size()]);
 		}
+		return any ? regs : Registration.NONE;
 	}
-	
+
 	/**
 	 * Notifies the listeners of preference/settings and connection
 	 * interactions.
-	 * 
+	 *
 	 * @param <S>
 	 *            the source of the event
 	 * @param <V>
@@ -64,43 +237,188 @@ public enum UGateKeeper {
 	 *            the event(s)
 	 */
 	public <S, V> void notifyListeners(final UGateEvent<S, V> event) {
-//		if (Platform.isFxApplicationThread()) {
-//			notifyListenersExec(event);
-//		} else {
-			Platform.runLater(new Runnable() {
+		final Registration[][] regs = event.getType() == null ? untyped : index
+				.get(event.getType());
+		if (regs == null) {
+			return;
+		}
+		final Registration[] worker = regs[Delivery.WORKER.ordinal()];
+		final Registration[] fx = regs[Delivery.FX_THREAD.ordinal()];
+		if (worker.length > 0 && !dispatcher.dispatch(laneKey(event), new Runnable() {
+			@Override
+			public void run() {
+				notifyListenersExec(event, worker);
+			}
+		})) {
+			log.warn(String.format("Unable to deliver %1$s to worker listeners (%2$s)",
+					event.getType(), dispatcher));
+		}
+		if (fx.length > 0) {
+			// consuming the event on one delivery must not affect the other delivery
+			final UGateEvent<S, V> fxEvent = worker.length > 0 ? event.copy() : event;
+			fxPulse().submit(fxCoalesceKey(event), new Runnable() {
 				@Override
 				public void run() {
-					notifyListenersExec(event);
+					notifyListenersExec(fxEvent, fx);
 				}
 			});
-//		}
+		}
+	}
+
+	/**
+	 * @return the {@linkplain FxPulseCoalescer} used to notify
+	 *         {@linkplain Delivery#FX_THREAD} listeners (created when needed)
+	 */
+	private FxPulseCoalescer fxPulse() {
+		FxPulseCoalescer fxp = fxPulse;
+		if (fxp == null) {
+			synchronized (this) {
+				fxp = fxPulse;
+				if (fxp == null) {
+					fxPulse = fxp = new FxPulseCoalescer();
+				}
+			}
+		}
+		return fxp;
+	}
+
+	/**
+	 * Gets the key used to coalesce {@linkplain Delivery#FX_THREAD}
+	 * notifications within a single JavaFX pulse
+	 *
+	 * @param event
+	 *            the {@linkplain UGateEvent}
+	 * @return the key (null when the event should never be coalesced)
+	 */
+	private static Object fxCoalesceKey(final UGateEvent<?, ?> event) {
+		if (!(event.getSource() instanceof RemoteNode)
+				|| event.getType() == null
+				|| !(FX_COALESCED_TYPES.contains(event.getType()) || (event
+						.getType() == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS && event
+						.getNewValue() instanceof RxTxRemoteNodeReadingDTO))) {
+			return null;
+		}
+		final String address = ((RemoteNode) event.getSource()).getAddress();
+		return Arrays.asList(event.getType(),
+				address == null ? null : address.toLowerCase(),
+				event.getNewValue() == null ? null : event.getNewValue().getClass(),
+				event.getCommand());
 	}
 
 	/**
 	 * Notifies the listeners of preference/settings and connection
-	 * interactions. TODO : remove reference to GUI implementation
-	 * 
+	 * interactions.
+	 *
 	 * @param <S>
 	 *            the source of the event
 	 * @param <V>
 	 *            the type of event value
 	 * @param events
 	 *            the event(s)
+	 * @param regs
+	 *            the registrations subscribed to the event type
 	 */
-	private <S, V> void notifyListenersExec(final UGateEvent<S, V> event) {
+	private <S, V> void notifyListenersExec(final UGateEvent<S, V> event,
+			final Registration[] regs) {
 		try {
-			for (final UGateListener pl : listeners) {
+			for (final Registration reg : regs) {
+				if (!reg.accepts(event)) {
+					continue;
+				}
 				try {
 					if (event.isConsumed()) {
 						return;
 					}
-					pl.handle(event);
+					reg.listener.handle(event);
 				} catch (final Throwable t) {
-					log.warn("Unable to handle listener: " + pl, t);
+					log.warn("Unable to handle listener: " + reg.listener, t);
 				}
 			}
 		} catch (final Throwable t) {
 			log.warn("Unable to cycle listeners: ", t);
 		}
 	}
+
+	/**
+	 * Gets the worker lane for an event so that events from the same source
+	 * are delivered in order while events from different sources can be
+	 * delivered in parallel
+	 *
+	 * @param event
+	 *            the {@linkplain UGateEvent}
+	 * @return the lane key
+	 */
+	private static String laneKey(final UGateEvent<?, ?> event) {
+		final int hash = event.getSource() == null ? 0 : System
+				.identityHashCode(event.getSource()) & Integer.MAX_VALUE;
+		return String.valueOf(hash % RxEventDispatcher.DEFAULT_WORKER_COUNT);
+	}
+
+	/**
+	 * @return the {@linkplain RxEventDispatcher} used to notify
+	 *         {@linkplain Delivery#WORKER} listeners (exposes queue depth and
+	 *         dispatch latency counters)
+	 */
+	public RxEventDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * @return the {@linkplain FxPulseCoalescer} used to notify
+	 *         {@linkplain Delivery#FX_THREAD} listeners (exposes coalescing
+	 *         counters) or null when no {@linkplain Delivery#FX_THREAD}
+	 *         listeners have been notified
+	 */
+	public FxPulseCoalescer getFxPulseCoalescer() {
+		return fxPulse;
+	}
+
+	/**
+	 * Thread that a {@linkplain UGateListener} is notified on
+	 */
+	public enum Delivery {
+		/** Notified on a worker thread (does not require a GUI toolkit) */
+		WORKER,
+		/** Notified on the JavaFX application thread (once per pulse) */
+		FX_THREAD;
+	}
+
+	/**
+	 * {@linkplain UGateListener} registration
+	 */
+	private static class Registration {
+		static final Registration[][] NONE = new Registration[Delivery.values().length][0];
+		final UGateListener listener;
+		final Delivery delivery;
+		final EnumSet<UGateEvent.Type> types;
+		final Class<?> sourceType;
+		final String nodeAddress;
+
+		Registration(final UGateListener listener, final Delivery delivery,
+				final EnumSet<UGateEvent.Type> types, final Class<?> sourceType,
+				final String nodeAddress) {
+			this.listener = listener;
+			this.delivery = delivery;
+			this.types = types;
+			this.sourceType = sourceType;
+			this.nodeAddress = nodeAddress;
+		}
+
+		/**
+		 * @param event
+		 *            the {@linkplain UGateEvent}
+		 * @return true when the source of the event matches the source
+		 *         filters of the registration (the type is matched by the
+		 *         index)
+		 */
+		boolean accepts(final UGateEvent<?, ?> event) {
+			if (sourceType != null && !sourceType.isInstance(event.getSource())) {
+				return false;
+			}
+			return nodeAddress == null
+					|| (event.getSource() instanceof RemoteNode && nodeAddress
+							.equalsIgnoreCase(((RemoteNode) event.getSource())
+									.getAddress()));
+		}
+	}
 }
@@ -253,10 +253,8 @@ public class ControlBar extends ToolBar {
 					}
 				} else if (event.getType() == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS) {
 					final RemoteNode rn = (RemoteNode) event.getSource();
-					if (event.getNewValue() instanceof RxTxRemoteNodeReadingDTO) {
-						final RxTxRemoteNodeReadingDTO sr = (RxTxRemoteNodeReadingDTO) event.getNewValue();
-						ServiceProvider.IMPL.getRemoteNodeService().saveReading(sr.getRemoteNodeReading());
-					} else if (event.getNewValue() instanceof RxTxRemoteNodeDTO) {
+					// readings are persisted by the ServiceProvider (off the FX thread)
+					if (event.getNewValue() instanceof RxTxRemoteNodeDTO) {
 						final RxTxRemoteNodeDTO ndto = (RxTxRemoteNodeDTO) event.getNewValue();
 						if (!RemoteNodeType.remoteEquivalent(rn, ndto.getRemoteNode())) {
 							// remote device values do not match the local device values
@@ -300,7 +298,7 @@ public class ControlBar extends ToolBar {
 				handleConnections(event);
 				handleSound(event);
 			}
-		});
+		}, UGateKeeper.Delivery.FX_THREAD);
 	}
 
 	/**
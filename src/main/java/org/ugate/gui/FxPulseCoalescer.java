@@ -0,0 +1,131 @@
+package org.ugate.gui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects tasks that need to run on the JavaFX application thread and runs
+ * them at most once per JavaFX pulse. Tasks submitted with the same key
+ * before the next pulse replace each other so that only the latest task for
+ * the key is ran (in the position of the first task submitted for the key).
+ * Tasks submitted without a key are never replaced. The pulse timer is only
+ * running while there are pending tasks (and is not created until the first
+ * task is submitted).
+ */
+public class FxPulseCoalescer {
+
+	private static final Logger log = LoggerFactory.getLogger(FxPulseCoalescer.class);
+	private final Object lock = new Object();
+	private Map<Object, Runnable> pending = new LinkedHashMap<>();
+	private boolean scheduled;
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong pulses = new AtomicLong();
+	/**
+	 * The pulse timer (only accessed on the JavaFX application thread)
+	 */
+	private AnimationTimer timer;
+	private final Runnable start = new Runnable() {
+		@Override
+		public void run() {
+			if (timer == null) {
+				timer = new AnimationTimer() {
+					@Override
+					public void handle(final long now) {
+						pulse();
+					}
+				};
+			}
+			timer.start();
+		}
+	};
+
+	/**
+	 * Submits a task to be ran on the next JavaFX pulse
+	 *
+	 * @param key
+	 *            the key used to replace any pending task that was submitted
+	 *            using an equal key (null to always run the task)
+	 * @param task
+	 *            the task to run
+	 */
+	public void submit(final Object key, final Runnable task) {
+		submitted.incrementAndGet();
+		boolean needsStart = false;
+		synchronized (lock) {
+			if (pending.put(key == null ? new Object() : key, task) != null) {
+				coalesced.incrementAndGet();
+			}
+			if (!scheduled) {
+				scheduled = needsStart = true;
+			}
+		}
+		if (needsStart) {
+			Platform.runLater(start);
+		}
+	}
+
+	/**
+	 * Runs the tasks that have been submitted since the last pulse (stops the
+	 * pulse timer when there are no pending tasks)
+	 */
+	private void pulse() {
+		final Map<Object, Runnable> tasks;
+		synchronized (lock) {
+			if (pending.isEmpty()) {
+				timer.stop();
+				scheduled = false;
+				return;
+			}
+			tasks = pending;
+			pending = new LinkedHashMap<>();
+		}
+		pulses.incrementAndGet();
+		for (final Runnable task : tasks.values()) {
+			try {
+				task.run();
+			} catch (final Throwable t) {
+				log.warn("Unable to run pulse task: " + task, t);
+			}
+		}
+	}
+
+	/**
+	 * @return the total number of submitted tasks
+	 */
+	public long getSubmittedCount() {
+		return submitted.get();
+	}
+
+	/**
+	 * @return the number of submitted tasks that were replaced by a later
+	 *         task before they were ran
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return the number of pulses that ran at least one task
+	 */
+	public long getPulseCount() {
+		return pulses.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("%1$s [submitted: %2$s, coalesced: %3$s, pulses: %4$s]",
+				getClass().getSimpleName(), getSubmittedCount(),
+				getCoalescedCount(), getPulseCount());
+	}
+}
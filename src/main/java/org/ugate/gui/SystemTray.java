@@ -160,7 +160,7 @@ public class SystemTray extends Service<Void> {
 								}
 							}
 						}
-					});
+					}, UGateKeeper.Delivery.FX_THREAD);
 					final String imageName = java.awt.SystemTray
 							.getSystemTray().getTrayIconSize().width > 16 ? java.awt.SystemTray
 							.getSystemTray().getTrayIconSize().width > 48 ? RS.IMG_LOGO_128
@@ -228,7 +228,14 @@ public class EmailHostConnection extends VBox {
 					});
 				}
 			}
-		});
+		}, UGateKeeper.Delivery.FX_THREAD,
+				UGateEvent.Type.EMAIL_CONNECTING,
+				UGateEvent.Type.EMAIL_CONNECTED,
+				UGateEvent.Type.EMAIL_CONNECT_FAILED,
+				UGateEvent.Type.EMAIL_DISCONNECTING,
+				UGateEvent.Type.EMAIL_DISCONNECTED,
+				UGateEvent.Type.EMAIL_CLOSED,
+				UGateEvent.Type.EMAIL_AUTH_FAILED);
 	}
 
 	/**
@@ -183,7 +183,19 @@ public class HostConnection extends VBox {
 					webIcon.setStatusFill(GuiUtil.COLOR_OFF);
 				}
 			}
-		});
+		}, UGateKeeper.Delivery.FX_THREAD,
+				UGateEvent.Type.WIRELESS_HOST_CONNECTING,
+				UGateEvent.Type.WIRELESS_HOST_CONNECTED,
+				UGateEvent.Type.WIRELESS_HOST_CONNECT_FAILED,
+				UGateEvent.Type.WIRELESS_HOST_DISCONNECTING,
+				UGateEvent.Type.WIRELESS_HOST_DISCONNECTED,
+				UGateEvent.Type.WEB_INITIALIZE,
+				UGateEvent.Type.WEB_CONNECTING,
+				UGateEvent.Type.WEB_CONNECTED,
+				UGateEvent.Type.WEB_CONNECT_FAILED,
+				UGateEvent.Type.WEB_INITIALIZE_FAILED,
+				UGateEvent.Type.WEB_DISCONNECTING,
+				UGateEvent.Type.WEB_DISCONNECTED);
 	}
 
 	/**
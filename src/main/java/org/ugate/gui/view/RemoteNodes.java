@@ -114,7 +114,9 @@ public class RemoteNodes extends ToolBar {
 					}
 				}
 			}
-		});
+		}, UGateKeeper.Delivery.FX_THREAD,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED,
+				UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS);
 	}
 
 	/**
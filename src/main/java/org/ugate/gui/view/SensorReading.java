@@ -102,7 +102,10 @@ public class SensorReading extends Parent {
 					remoteNodeReadingShow(true);
 				}
 			}
-		});
+		}, UGateKeeper.Delivery.FX_THREAD,
+				UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS,
+				UGateEvent.Type.APP_DATA_LOADED,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_CHANGED);
 		getChildren().add(readingsGroup);
 	}
 
@@ -116,7 +119,7 @@ public class SensorReading extends Parent {
 	public void remoteNodeReadingShow(final boolean isReset) {
 		try {
 			final RemoteNodeReading rnr = ServiceProvider.IMPL
-					.getRemoteNodeService().findReadingLatest(cb.getRemoteNode());
+					.getRemoteNodeLatestReadings().get(cb.getRemoteNode());
 			if (rnr != null) {
 				remoteNodeReadingShow(rnr);
 			} else if (isReset) {
@@ -1,5 +1,8 @@
 package org.ugate.gui.view;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -11,6 +14,9 @@ import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -18,12 +24,14 @@ import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.StackedBarChart;
 import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.effect.Light;
 import javafx.scene.effect.Lighting;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
+import javafx.stage.FileChooser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,8 +41,11 @@ import org.ugate.gui.GuiUtil;
 import org.ugate.gui.components.SimpleCalendar;
 import org.ugate.resources.RS;
 import org.ugate.resources.RS.KEY;
+import org.ugate.service.RemoteNodeReadingExporter;
 import org.ugate.service.ServiceProvider;
+import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
 
 /**
  * {@linkplain RemoteNodeReading} history
@@ -67,9 +78,8 @@ public class SensorReadingHistory extends StackPane {
 		xAxis.setCategories(FXCollections.<String> observableArrayList());
 		yAxis.setLabel(RS.rbLabel(KEY.LABEL_GRAPH_AXIS_Y));
 		yAxis.setMinorTickVisible(false);
-		yAxis.setAutoRanging(false);
-		yAxis.setUpperBound(16d);
-		yAxis.setTickUnit(1d);
+		// trip counts per bucket
+		yAxis.setAutoRanging(true);
 		sonarSeries = new XYChart.Series<>();
 		pirSeries = new XYChart.Series<>();
 		microwaveSeries = new XYChart.Series<>();
@@ -96,9 +106,18 @@ public class SensorReadingHistory extends StackPane {
 			}
 		});
 
-		final HBox dateBox = new HBox();
+		final Button exportBtn = new Button(RS.rbLabel(KEY.LABEL_GRAPH_EXPORT));
+		cb.addHelpTextTrigger(exportBtn, RS.rbLabel(KEY.LABEL_GRAPH_EXPORT_DESC));
+		exportBtn.setOnAction(new EventHandler<ActionEvent>() {
+			@Override
+			public void handle(final ActionEvent event) {
+				export();
+			}
+		});
+
+		final HBox dateBox = new HBox(5d);
 		dateBox.setAlignment(Pos.BOTTOM_RIGHT);
-		dateBox.getChildren().addAll(dateField, simpleCalender);
+		dateBox.getChildren().addAll(exportBtn, dateField, simpleCalender);
 
 		setPadding(new Insets(10d));
 		setAlignment(Pos.BOTTOM_RIGHT);
@@ -118,114 +137,103 @@ public class SensorReadingHistory extends StackPane {
 	}
 
 	/**
-	 * Updates the {@linkplain XYChart.Series} using
-	 * {@linkplain RemoteNodeReading}(s) for a given {@linkplain Calendar}
+	 * Prompts for a file and exports the entire {@linkplain RemoteNodeReading}
+	 * history of the current {@linkplain RemoteNode} to it (the
+	 * {@linkplain RemoteNodeReadingExporter.Format} is determined by the file
+	 * extension)
+	 */
+	protected void export() {
+		final RemoteNode rn = cb.getRemoteNode();
+		final FileChooser fc = new FileChooser();
+		fc.setTitle(RS.rbLabel(KEY.LABEL_GRAPH_EXPORT_DESC));
+		for (final RemoteNodeReadingExporter.Format f : RemoteNodeReadingExporter.Format
+				.values()) {
+			fc.getExtensionFilters().add(
+					new FileChooser.ExtensionFilter(f.name(), "*."
+							+ f.getExtension()));
+		}
+		fc.setInitialFileName(String.format("readings-%1$s.%2$s",
+				rn.getAddress(),
+				RemoteNodeReadingExporter.Format.CSV.getExtension()));
+		final File file = fc.showSaveDialog(cb.getStage());
+		if (file == null) {
+			return;
+		}
+		final int dot = file.getName().lastIndexOf('.');
+		final RemoteNodeReadingExporter.Format f = dot < 0 ? null
+				: RemoteNodeReadingExporter.Format.find(file.getName()
+						.substring(dot + 1));
+		final RemoteNodeReadingExporter.Format format = f != null ? f
+				: RemoteNodeReadingExporter.Format.CSV;
+		GuiUtil.alertProgress(cb.getStage(), new Task<Long>() {
+			@Override
+			protected Long call() throws Exception {
+				try {
+					final OutputStream out = new FileOutputStream(file);
+					try {
+						final long cnt = new RemoteNodeReadingExporter(
+								ServiceProvider.IMPL.getRemoteNodeService())
+								.export(rn, null, null, format, out);
+						cb.setHelpText(RS.rbLabel(KEY.LABEL_GRAPH_EXPORT_DONE,
+								cnt, file.getAbsolutePath()));
+						return cnt;
+					} finally {
+						out.close();
+					}
+				} catch (final Throwable t) {
+					log.error(String.format("Unable to export %1$s(s) to %2$s",
+							RemoteNodeReading.class.getSimpleName(), file), t);
+					cb.setHelpText(RS.rbLabel(KEY.LABEL_GRAPH_EXPORT_FAILED,
+							file.getAbsolutePath()));
+					return -1L;
+				}
+			}
+		}).start();
+	}
+
+	/**
+	 * Updates the {@linkplain XYChart.Series} using the
+	 * {@linkplain RemoteNodeReadingRollup}(s) for a given {@linkplain Calendar}
 	 * 
 	 * @param cal
 	 *            the {@linkplain Calendar} to get the
-	 *            {@linkplain RemoteNodeReading}(s) for (will not use time)
+	 *            {@linkplain RemoteNodeReadingRollup}(s) for (will not use
+	 *            time)
 	 * @return the number of {@linkplain RemoteNodeReading}s
 	 */
 	protected int populateData(final XYChart<String, Number> chart,
 			final Calendar cal) {
-		final List<RemoteNodeReading> rnrs = ServiceProvider.IMPL
-				.getRemoteNodeService().findReadingsByDate(cb.getRemoteNode(),
-						cal, true);
-		// add zero plot for 24hr period for each series
+		final Calendar sc = Calendar.getInstance();
+		sc.setTime(RemoteNodeReadingRollup.Resolution.DAY.bucketStart(cal.getTime()));
+		final Calendar ec = Calendar.getInstance();
+		ec.setTime(RemoteNodeReadingRollup.Resolution.DAY.nextBucketStart(cal.getTime()));
+		final List<RemoteNodeReadingRollup> rus = ServiceProvider.IMPL
+				.getRemoteNodeService().findReadingRollups(cb.getRemoteNode(),
+						sc, ec);
 		xAxis.getCategories().clear();
 		sonarSeries.getData().clear();
 		pirSeries.getData().clear();
 		microwaveSeries.getData().clear();
 		laserSeries.getData().clear();
 		readTripsSeries.getData().clear();
-		if (rnrs.size() > 0) {
+		int count = 0;
+		if (rus.size() > 0) {
 			String time;
-			final int d = 0;// Double.MIN_NORMAL;
-			Number l = d, m = d, p = d, s = d, r = d;
-			for (final RemoteNodeReading rnr : rnrs) {
-				l = m = p = s = r = d;
-				time = UGateUtil.dateFormatTime(rnr.getReadDate());
+			for (final RemoteNodeReadingRollup ru : rus) {
+				count += ru.getReadingCount();
+				time = UGateUtil.dateFormatTime(ru.getBucketStart());
 				xAxis.getCategories().add(time);
-				switch (rnr.getFromMultiState()) {
-				case 1:
-					l = 1;
-					break;
-				case 2:
-					m = 1;
-					break;
-				case 3:
-					l = 2;
-					m = 2;
-					break;
-				case 4:
-					p = 1;
-					break;
-				case 5:
-					l = 2;
-					p = 2;
-					break;
-				case 6:
-					m = 2;
-					p = 2;
-					break;
-				case 7:
-					l = 3;
-					m = 3;
-					p = 3;
-					break;
-				case 8:
-					s = 1;
-					break;
-				case 9:
-					l = 2;
-					s = 2;
-					break;
-				case 10:
-					m = 2;
-					s = 2;
-					break;
-				case 11:
-					l = 3;
-					m = 3;
-					s = 3;
-					break;
-				case 12:
-					p = 2;
-					s = 2;
-					break;
-				case 13:
-					l = 3;
-					p = 3;
-					s = 3;
-					break;
-				case 14:
-					m = 3;
-					p = 3;
-					s = 3;
-					break;
-				case 15:
-					l = 4;
-					m = 4;
-					p = 4;
-					s = 4;
-					break;
-				case 16:
-					r = 1;
-					break;
-				default:
-					log.warn(String.format(
-							"%1$s for ID %2$s invalid for multi-state %3$s",
-							RemoteNodeReading.class.getName(), rnr.getId(),
-							rnr.getFromMultiState()));
-				}
 				int i = -1;
-				addData(chart, sonarSeries, new XYChart.Data<>(time, s), ++i);
-				addData(chart, pirSeries, new XYChart.Data<>(time, p), ++i);
-				addData(chart, microwaveSeries, new XYChart.Data<>(time, m),
-						++i);
-				addData(chart, laserSeries, new XYChart.Data<>(time, l), ++i);
-				addData(chart, readTripsSeries, new XYChart.Data<>(time, r),
-						++i);
+				addData(chart, sonarSeries, new XYChart.Data<String, Number>(time, 
+						ru.getSonarTripCount()), ++i);
+				addData(chart, pirSeries, new XYChart.Data<String, Number>(time, 
+						ru.getPirTripCount()), ++i);
+				addData(chart, microwaveSeries, new XYChart.Data<String, Number>(time, 
+						ru.getMicrowaveTripCount()), ++i);
+				addData(chart, laserSeries, new XYChart.Data<String, Number>(time, 
+						ru.getLaserTripCount()), ++i);
+				addData(chart, readTripsSeries, new XYChart.Data<String, Number>(time, 
+						ru.getReadCount()), ++i);
 			}
 			if (chart.getData().isEmpty()) {
 				chart.setData(FXCollections.observableArrayList(Arrays.asList(
@@ -252,7 +260,11 @@ public class SensorReadingHistory extends StackPane {
 			}
 			chart.setLegendVisible(false);
 		}
-		return rnrs.size();
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Plotted %1$s %2$s(s) from %3$s rollup(s)",
+					count, RemoteNodeReading.class.getSimpleName(), rus.size()));
+		}
+		return count;
 	}
 
 	/**
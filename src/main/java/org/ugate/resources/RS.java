@@ -120,6 +120,7 @@ public class RS {
 	public static final String IMG_LOCK = "pad-lock.png";
 	public static final String IMG_UNLOCK = "pad-unlock.png";
 	private static final String RB_GUI = "LabelsBundle";
+	private static volatile Labels labels;
 	public static final AudioClip mediaPlayerConfirm = RS.audioClip("x_confirm.wav");
 	public static final AudioClip mediaPlayerDoorBell = RS.audioClip("x_doorbell.wav");
 	public static final AudioClip mediaPlayerCam = RS.audioClip("x_cam.wav");
@@ -804,7 +805,7 @@ public class RS {
 	 * @return the resource bundle value
 	 */
 	public static String rbLabel(final KEY key, final Object... formatArguments) {
-		return rbLabel(Locale.getAvailableLocales()[0], key, formatArguments);
+		return labels().format(key, formatArguments);
 	}
 
 	/**
@@ -820,7 +821,7 @@ public class RS {
 	 */
 	public static URI rbURI(final KEY key, final Object... formatArguments) {
 		try {
-			return new URI(rbLabel(Locale.getAvailableLocales()[0], key, formatArguments));
+			return new URI(rbLabel(key, formatArguments));
 		} catch (URISyntaxException e) {
 			throw new IllegalArgumentException(e);
 		}
@@ -839,8 +840,59 @@ public class RS {
 	 * @return the resource bundle value
 	 */
 	public static String rbLabel(final Locale locale, final KEY key, final Object... formatArguments) {
+		final Labels lbls = labels();
+		if (lbls.locale.equals(locale)) {
+			return lbls.format(key, formatArguments);
+		}
 		return rbValue(RB_GUI, locale, key, formatArguments);
 	}
+
+	/**
+	 * @return the {@linkplain Locale} used by {@linkplain #rbLabel(KEY, Object...)}
+	 *         (defaults to the first available locale)
+	 */
+	public static Locale getLocale() {
+		return labels().locale;
+	}
+
+	/**
+	 * Sets the {@linkplain Locale} used by {@linkplain #rbLabel(KEY, Object...)}.
+	 * The label resource bundle is reloaded so that subsequent labels will
+	 * reflect the new {@linkplain Locale}.
+	 * 
+	 * @param locale
+	 *            the {@linkplain Locale} (null to use the first available
+	 *            locale)
+	 */
+	public static void setLocale(final Locale locale) {
+		ResourceBundle.clearCache();
+		labels = new Labels(locale != null ? locale : Locale.getAvailableLocales()[0]);
+		log.info(String.format("Labels loaded for locale %1$s", labels.locale));
+	}
+
+	/**
+	 * Reloads the label resource bundle using the current
+	 * {@linkplain #getLocale()}
+	 */
+	public static void reloadLabels() {
+		setLocale(getLocale());
+	}
+
+	/**
+	 * @return the current {@linkplain Labels} (loaded on first use)
+	 */
+	private static Labels labels() {
+		Labels lbls = labels;
+		if (lbls == null) {
+			synchronized (RS.class) {
+				lbls = labels;
+				if (lbls == null) {
+					labels = lbls = new Labels(Locale.getAvailableLocales()[0]);
+				}
+			}
+		}
+		return lbls;
+	}
 	
 	/**
 	 * Gets the a resource bundles value for the specified key
@@ -861,6 +913,76 @@ public class RS {
 		return formatArguments != null && formatArguments.length > 0 ? String.format(locale, rbStr, formatArguments) : rbStr;
 	}
 
+	/**
+	 * Label resource bundle for a single {@linkplain Locale} that caches the
+	 * resolved bundle value of each {@linkplain KEY} so that the bundle only
+	 * needs to be looked up once per {@linkplain KEY}. Values without any
+	 * format specifiers are returned without being formatted.
+	 */
+	private static final class Labels {
+
+		private final Locale locale;
+		private final ResourceBundle bundle;
+		private final Label[] labels = new Label[KEY.values().length];
+
+		/**
+		 * Constructor
+		 * 
+		 * @param locale
+		 *            the {@linkplain Locale} of the labels
+		 */
+		Labels(final Locale locale) {
+			this.locale = locale;
+			this.bundle = ResourceBundle.getBundle(RB_GUI, locale);
+		}
+
+		/**
+		 * Gets a label
+		 * 
+		 * @param key
+		 *            the {@linkplain KEY} of the label
+		 * @param formatArguments
+		 *            the {@linkplain String#format(Locale, String, Object...)}
+		 *            arguments
+		 * @return the label
+		 */
+		String format(final KEY key, final Object... formatArguments) {
+			final int i = key.ordinal();
+			Label label = labels[i];
+			if (label == null) {
+				// racy initialization is fine since the label is immutable
+				// (final fields are visible to any thread that sees the label)
+				label = new Label(bundle.getString(key.getKey()));
+				labels[i] = label;
+			}
+			return label.formatted && formatArguments != null && formatArguments.length > 0 ? 
+					String.format(locale, label.value, formatArguments) : label.value;
+		}
+	}
+
+	/**
+	 * Immutable label value
+	 */
+	private static final class Label {
+
+		final String value;
+		/**
+		 * True when the value contains format specifiers
+		 */
+		final boolean formatted;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param value
+		 *            the label value
+		 */
+		Label(final String value) {
+			this.value = value;
+			this.formatted = value.indexOf('%') > -1;
+		}
+	}
+
 	/**
 	 * {@linkplain RS} bundle keys
 	 */
@@ -1018,6 +1140,10 @@ public class RS {
 		SERVICE_RX_IMAGE_LOST_PACKETS_RETRY(
 				"service.rx.image.lostpackets.retry", 3),
 		SERVICE_RX_IMAGE_TIMEOUT("service.rx.image.timeout", 2),
+		SERVICE_RX_IMAGE_MISSING_CHUNKS_RETRY(
+				"service.rx.image.missingchunks.retry", 5),
+		SERVICE_RX_IMAGE_EXPIRED("service.rx.image.expired", 2),
+		SERVICE_RX_IMAGE_EVICTED("service.rx.image.evicted", 3),
 		SERVICE_CMD_SOUNDS(RemoteNodeType.DEVICE_SOUNDS_ON.getKey()),
 		SERVICE_CMD_SOUNDS_TOGGLE(RemoteNodeType.DEVICE_SOUNDS_ON.getKey()
 				+ ".desc"),
@@ -1042,6 +1168,10 @@ public class RS {
 		LABEL_GRAPH_SERIES_ALARM_MICROWAVE("graph.series.alarm.microwave"),
 		LABEL_GRAPH_SERIES_ALARM_PIR("graph.series.alarm.pir"),
 		LABEL_GRAPH_SERIES_ACTIVITY_READS("graph.series.activity.reads"),
+		LABEL_GRAPH_EXPORT("graph.export"),
+		LABEL_GRAPH_EXPORT_DESC("graph.export.desc"),
+		LABEL_GRAPH_EXPORT_DONE("graph.export.done", 2),
+		LABEL_GRAPH_EXPORT_FAILED("graph.export.failed", 1),
 		MAIL_CONNECT_FAILED("mail.connect.failed", 1),
 		MAIL_CONNECT("mail.connect"),
 		MAIL_CONNECT_DESC("mail.connect.desc"),
@@ -1195,6 +1325,14 @@ public class RS {
 		MAIL_ALARM_NOTIFY_EMAILS_REMOVE_FAILED(
 				"mail.alarm.notify.emails.remove.failed");
 
+		private static final Map<String, KEY> KEYS = new HashMap<>();
+		static {
+			for (final KEY ke : values()) {
+				if (!KEYS.containsKey(ke.getKey())) {
+					KEYS.put(ke.getKey(), ke);
+				}
+			}
+		}
 		private final String key;
 		private final int numberOfArguments;
 
@@ -1231,14 +1369,7 @@ public class RS {
 		 * @return the {@link KEY}
 		 */
 		public static KEY keyValueOf(final String key) {
-			if (key != null && !key.isEmpty()) {
-				for (final KEY ke : values()) {
-					if (key.equals(ke.getKey())) {
-						return ke;
-					}
-				}
-			}
-			return null;
+			return key != null ? KEYS.get(key) : null;
 		}
 
 		/**
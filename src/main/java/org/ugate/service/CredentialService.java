@@ -8,17 +8,21 @@ import java.util.List;
 import javax.annotation.Resource;
 import javax.persistence.NoResultException;
 
+import org.apache.openjpa.datacache.CacheStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.ugate.service.dao.CredentialDao;
+import org.ugate.service.dao.SchemaMigrator;
 import org.ugate.service.entity.RemoteNodeType;
 import org.ugate.service.entity.jpa.Actor;
 import org.ugate.service.entity.jpa.AppInfo;
 import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.MailRecipient;
 import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.Role;
 
 /**
  * Credential service
@@ -53,6 +57,7 @@ public class CredentialService {
 			appInfo = new AppInfo();
 			appInfo.setVersion(version);
 			appInfo.setCreatedDate(new Date());
+			appInfo.setSchemaVersion(SchemaMigrator.VERSION);
 			credentialDao.persistEntity(appInfo);
 			return appInfo;
 		}
@@ -217,6 +222,7 @@ public class CredentialService {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void mergeActor(final Actor actor) {
 		credentialDao.mergeEntity(actor);
+		evict(actor);
 	}
 
 	/**
@@ -229,6 +235,9 @@ public class CredentialService {
 	public void mergeHost(final Host host) {
 		// credentialDao.deleteEntitiesById("email", mailRecipients);
 		credentialDao.mergeEntity(host);
+		evict(host);
+		ServiceProvider.IMPL.getRemoteNodeIndex().loadAfterCommit(
+				host.getRemoteNodes(), null);
 	}
 
 	/**
@@ -244,6 +253,64 @@ public class CredentialService {
 		credentialDao.mergeEntity(host);
 		credentialDao.deleteEntitiesById(
 				RemoteNodeType.WIRELESS_ADDRESS.getKey(), remoteNodes);
+		evict(host);
+		if (remoteNodes != null) {
+			credentialDao.evict(RemoteNode.class, remoteNodes.getId());
+		}
+		// bulk deletes do not trigger entity callbacks so the index is reloaded
+		ServiceProvider.IMPL.getRemoteNodeIndex().loadAfterCommit(
+				host.getRemoteNodes(), remoteNodes);
+		ServiceProvider.IMPL.getRemoteNodeLatestReadings().remove(remoteNodes);
+	}
+
+	/**
+	 * Evicts an {@linkplain Actor} along with its {@linkplain Role}(s) and
+	 * {@linkplain Host} from the second-level cache
+	 * 
+	 * @param actor
+	 *            the {@linkplain Actor} to evict
+	 */
+	private void evict(final Actor actor) {
+		credentialDao.evict(Actor.class, actor.getId());
+		if (actor.getRoles() != null) {
+			for (final Role role : actor.getRoles()) {
+				credentialDao.evict(Role.class, role.getId());
+			}
+		}
+		if (actor.getHost() != null) {
+			evict(actor.getHost());
+		}
+	}
+
+	/**
+	 * Evicts a {@linkplain Host} along with its {@linkplain RemoteNode}(s) and
+	 * {@linkplain MailRecipient}(s) from the second-level cache
+	 * 
+	 * @param host
+	 *            the {@linkplain Host} to evict
+	 */
+	private void evict(final Host host) {
+		credentialDao.evict(Host.class, host.getId());
+		if (host.getRemoteNodes() != null) {
+			for (final RemoteNode rn : host.getRemoteNodes()) {
+				credentialDao.evict(RemoteNode.class, rn.getId());
+			}
+		}
+		if (host.getMailRecipients() != null) {
+			for (final MailRecipient mr : host.getMailRecipients()) {
+				credentialDao.evict(MailRecipient.class, mr.getId());
+			}
+		}
+	}
+
+	/**
+	 * @return the {@linkplain CacheStatistics} of the second-level cache used
+	 *         for {@linkplain Host}s, {@linkplain Actor}s, {@linkplain Role}s,
+	 *         {@linkplain MailRecipient}s and {@linkplain RemoteNode}s (null
+	 *         when the cache is disabled)
+	 */
+	public CacheStatistics getCacheStatistics() {
+		return credentialDao.getCacheStatistics();
 	}
 
 	/**
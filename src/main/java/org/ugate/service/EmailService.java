@@ -81,7 +81,7 @@ public class EmailService extends ExtractorService<Actor> {
 							// send command to all the nodes defined in the email
 							for (final String toAddress : event.toAddresses) {
 								commandMsgs.clear();
-								rn = ServiceProvider.IMPL.getRemoteNodeService().findByAddress(toAddress);
+								rn = ServiceProvider.IMPL.getRemoteNodeIndex().findByAddress(toAddress);
 								for (final Command command : event.commands) {
 									try {
 										if (rn == null) {
@@ -0,0 +1,264 @@
+package org.ugate.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ugate.UGateEvent;
+import org.ugate.UGateListener;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * In-memory index of {@linkplain RemoteNode}s by
+ * {@linkplain RemoteNode#getAddress()} and {@linkplain RemoteNode#getId()}.
+ * The index is loaded for a {@linkplain Host} and kept current using
+ * {@linkplain UGateEvent.Type#WIRELESS_REMOTE_NODE_COMMITTED} and
+ * {@linkplain UGateEvent.Type#WIRELESS_REMOTE_NODE_CHANGED} so that frequent
+ * lookups (i.e. every received wireless packet) do not need to query the
+ * database. Lookups that miss the index fall back to the
+ * {@linkplain RemoteNodeService} and addresses that are not found are
+ * retained (until the next topology change) so that packets from unknown
+ * remote nodes do not query the database either.
+ */
+public class RemoteNodeIndex implements UGateListener {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeIndex.class);
+	private final ConcurrentMap<String, RemoteNode> byAddress = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, RemoteNode> byId = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, String> addressById = new ConcurrentHashMap<>();
+	/**
+	 * The maximum number of unknown addresses that will be retained
+	 */
+	private static final int MAX_UNKNOWN_ADDRESSES = 1024;
+	private final Set<String> unknownAddresses = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Replaces the contents of the index with the {@linkplain RemoteNode}s
+	 * of a {@linkplain Host}
+	 *
+	 * @param hostId
+	 *            the {@linkplain Host#getId()}
+	 * @return the number of indexed {@linkplain RemoteNode}s
+	 */
+	public int load(final int hostId) {
+		final int cnt = load(ServiceProvider.IMPL.getRemoteNodeService()
+				.findForHost(hostId));
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Indexed %1$s %2$s(s) for %3$s ID %4$s",
+					cnt, RemoteNode.class.getSimpleName(),
+					Host.class.getSimpleName(), hostId));
+		}
+		return cnt;
+	}
+
+	/**
+	 * Replaces the contents of the index with the supplied
+	 * {@linkplain RemoteNode}s
+	 *
+	 * @param remoteNodes
+	 *            the {@linkplain RemoteNode}s to index
+	 * @return the number of indexed {@linkplain RemoteNode}s
+	 */
+	public int load(final Collection<RemoteNode> remoteNodes) {
+		clear();
+		if (remoteNodes != null) {
+			for (final RemoteNode rn : remoteNodes) {
+				put(rn);
+			}
+		}
+		return byAddress.size();
+	}
+
+	/**
+	 * Adds/Updates a {@linkplain RemoteNode} in the index
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to add/update
+	 */
+	public void put(final RemoteNode remoteNode) {
+		if (remoteNode == null || remoteNode.getAddress() == null
+				|| remoteNode.getAddress().isEmpty()) {
+			return;
+		}
+		final String address = remoteNode.getAddress();
+		if (remoteNode.getId() > 0) {
+			byId.put(remoteNode.getId(), remoteNode);
+			final String prevAddress = addressById.put(remoteNode.getId(), address);
+			if (prevAddress != null && !prevAddress.equals(address)) {
+				byAddress.remove(prevAddress);
+			}
+		}
+		byAddress.put(address, remoteNode);
+		unknownAddresses.remove(address);
+	}
+
+	/**
+	 * Removes a {@linkplain RemoteNode} from the index
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to remove
+	 */
+	public void remove(final RemoteNode remoteNode) {
+		if (remoteNode == null) {
+			return;
+		}
+		if (remoteNode.getId() > 0) {
+			byId.remove(remoteNode.getId());
+			final String prevAddress = addressById.remove(remoteNode.getId());
+			if (prevAddress != null) {
+				byAddress.remove(prevAddress);
+			}
+		}
+		if (remoteNode.getAddress() != null) {
+			byAddress.remove(remoteNode.getAddress());
+		}
+		unknownAddresses.clear();
+	}
+
+	/**
+	 * Removes all {@linkplain RemoteNode}s from the index
+	 */
+	public void clear() {
+		byAddress.clear();
+		byId.clear();
+		addressById.clear();
+		unknownAddresses.clear();
+	}
+
+	/**
+	 * Gets a {@linkplain RemoteNode} by {@linkplain RemoteNode#getAddress()}.
+	 * When the {@linkplain RemoteNode} is not indexed the
+	 * {@linkplain RemoteNodeService} will be used and the result will be
+	 * indexed (when not found the address will not be looked up again until
+	 * the topology changes).
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the {@linkplain RemoteNode} (null when not found)
+	 */
+	public RemoteNode findByAddress(final String address) {
+		if (address == null || address.isEmpty()) {
+			return null;
+		}
+		final RemoteNode rn = byAddress.get(address);
+		// the address of an indexed node may have been changed in place
+		if (rn != null && address.equals(rn.getAddress())) {
+			return rn;
+		}
+		if (unknownAddresses.contains(address)) {
+			return null;
+		}
+		RemoteNode frn = null;
+		try {
+			frn = ServiceProvider.IMPL.getRemoteNodeService().findByAddress(
+					address);
+		} catch (final Exception e) {
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Unable to find %1$s with address %2$s",
+						RemoteNode.class.getSimpleName(), address), e);
+			}
+		}
+		if (frn != null) {
+			put(frn);
+		} else {
+			if (unknownAddresses.size() >= MAX_UNKNOWN_ADDRESSES) {
+				unknownAddresses.clear();
+			}
+			unknownAddresses.add(address);
+		}
+		return frn;
+	}
+
+	/**
+	 * Replaces the contents of the index with the supplied
+	 * {@linkplain RemoteNode}s and removes the specified
+	 * {@linkplain RemoteNode} once the current transaction has been committed
+	 * (immediately when there is no transaction). When the transaction is
+	 * rolled back the index is cleared instead so that it will not retain
+	 * any uncommitted changes ({@linkplain RemoteNode}s will be indexed again
+	 * as they are looked up).
+	 *
+	 * @param remoteNodes
+	 *            the {@linkplain RemoteNode}s to index
+	 * @param removed
+	 *            the {@linkplain RemoteNode} to remove (null when none)
+	 */
+	public void loadAfterCommit(final Collection<RemoteNode> remoteNodes,
+			final RemoteNode removed) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			load(remoteNodes);
+			remove(removed);
+			return;
+		}
+		TransactionSynchronizationManager
+				.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void afterCompletion(final int status) {
+						if (status == STATUS_COMMITTED) {
+							load(remoteNodes);
+							remove(removed);
+						} else {
+							clear();
+						}
+					}
+				});
+	}
+
+	/**
+	 * Gets a {@linkplain RemoteNode} by {@linkplain RemoteNode#getId()}. When
+	 * the {@linkplain RemoteNode} is not indexed the
+	 * {@linkplain RemoteNodeService} will be used and the result will be
+	 * indexed.
+	 *
+	 * @param id
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @return the {@linkplain RemoteNode} (null when not found)
+	 */
+	public RemoteNode findById(final int id) {
+		final RemoteNode rn = byId.get(id);
+		if (rn != null) {
+			return rn;
+		}
+		final RemoteNode frn = ServiceProvider.IMPL.getRemoteNodeService()
+				.findById(id);
+		put(frn);
+		return frn;
+	}
+
+	/**
+	 * @return the number of indexed {@linkplain RemoteNode}s
+	 */
+	public int size() {
+		return byAddress.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void handle(final UGateEvent<?, ?> event) {
+		if (event.getType() == UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED
+				|| event.getType() == UGateEvent.Type.WIRELESS_REMOTE_NODE_CHANGED) {
+			// the topology has changed so previously unknown addresses may now be valid
+			unknownAddresses.clear();
+		}
+		if (event.getType() == UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED) {
+			if (event.getNewValue() == null && event.getOldValue() instanceof RemoteNode) {
+				remove((RemoteNode) event.getOldValue());
+			} else if (event.getNewValue() instanceof RemoteNode) {
+				put((RemoteNode) event.getNewValue());
+			}
+		} else if (event.getType() == UGateEvent.Type.WIRELESS_REMOTE_NODE_CHANGED
+				&& event.getSource() instanceof RemoteNode) {
+			put((RemoteNode) event.getSource());
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package org.ugate.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * In-memory last known {@linkplain RemoteNodeReading} of each
+ * {@linkplain RemoteNode} by {@linkplain RemoteNode#getId()}. Readings are
+ * {@linkplain #put(RemoteNodeReading)} as they are received so that frequent
+ * lookups (i.e. web page renders and GUI refreshes) do not need to query the
+ * database. The first lookup for a {@linkplain RemoteNode} that has not
+ * received a reading falls back to
+ * {@linkplain RemoteNodeService#findReadingLatest(RemoteNode)} and the
+ * result (including the absence of a reading) is retained.
+ */
+public class RemoteNodeLatestReadings {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeLatestReadings.class);
+	/**
+	 * Placeholder for {@linkplain RemoteNode}s that do not have any readings
+	 */
+	private static final RemoteNodeReading NONE = new RemoteNodeReading();
+	private final ConcurrentMap<Integer, RemoteNodeReading> byId = new ConcurrentHashMap<>();
+
+	/**
+	 * Sets the latest {@linkplain RemoteNodeReading} of its
+	 * {@linkplain RemoteNode} unless a more recent
+	 * {@linkplain RemoteNodeReading#getReadDate()} has already been set
+	 *
+	 * @param remoteNodeReading
+	 *            the {@linkplain RemoteNodeReading}
+	 * @return true when the {@linkplain RemoteNodeReading} became the latest
+	 */
+	public boolean put(final RemoteNodeReading remoteNodeReading) {
+		if (remoteNodeReading == null || remoteNodeReading.getRemoteNode() == null
+				|| remoteNodeReading.getRemoteNode().getId() <= 0) {
+			return false;
+		}
+		final Integer id = remoteNodeReading.getRemoteNode().getId();
+		for (;;) {
+			final RemoteNodeReading cur = byId.get(id);
+			if (cur == null) {
+				if (byId.putIfAbsent(id, remoteNodeReading) == null) {
+					return true;
+				}
+			} else if (cur != NONE && cur.getReadDate() != null
+					&& remoteNodeReading.getReadDate() != null
+					&& remoteNodeReading.getReadDate().before(cur.getReadDate())) {
+				return false;
+			} else if (byId.replace(id, cur, remoteNodeReading)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gets the latest {@linkplain RemoteNodeReading} of a
+	 * {@linkplain RemoteNode}. When no {@linkplain RemoteNodeReading} has been
+	 * {@linkplain #put(RemoteNodeReading)} the {@linkplain RemoteNodeService}
+	 * will be used and the result will be retained.
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @return the latest {@linkplain RemoteNodeReading} (null when none exist)
+	 */
+	public RemoteNodeReading get(final RemoteNode remoteNode) {
+		if (remoteNode == null) {
+			return null;
+		}
+		final RemoteNodeReading rnr = byId.get(remoteNode.getId());
+		if (rnr != null) {
+			return rnr == NONE ? null : rnr;
+		}
+		final RemoteNodeReading frnr = ServiceProvider.IMPL
+				.getRemoteNodeService().findReadingLatest(remoteNode);
+		if (remoteNode.getId() <= 0) {
+			return frnr;
+		}
+		// a reading received while querying is always more recent
+		final RemoteNodeReading prnr = byId.putIfAbsent(remoteNode.getId(),
+				frnr == null ? NONE : frnr);
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Loaded latest %1$s for %2$s ID %3$s: %4$s",
+					RemoteNodeReading.class.getSimpleName(),
+					RemoteNode.class.getSimpleName(), remoteNode.getId(), frnr));
+		}
+		return prnr == null ? frnr : prnr == NONE ? null : prnr;
+	}
+
+	/**
+	 * Removes the latest {@linkplain RemoteNodeReading} of a
+	 * {@linkplain RemoteNode} (the next {@linkplain #get(RemoteNode)} will use
+	 * the {@linkplain RemoteNodeService})
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 */
+	public void remove(final RemoteNode remoteNode) {
+		if (remoteNode != null) {
+			byId.remove(remoteNode.getId());
+		}
+	}
+
+	/**
+	 * Removes all of the retained {@linkplain RemoteNodeReading}s
+	 */
+	public void clear() {
+		byId.clear();
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNode}s with a retained lookup
+	 */
+	public int size() {
+		return byId.size();
+	}
+}
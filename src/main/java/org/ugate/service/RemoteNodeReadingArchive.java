@@ -0,0 +1,615 @@
+package org.ugate.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
+
+/**
+ * Compact columnar archive of cold {@linkplain RemoteNodeReading}s. The
+ * {@linkplain RemoteNodeReading}s of each {@linkplain RemoteNode} are stored
+ * in one immutable segment file per day (see {@linkplain #write(int, Date, RemoteNodeReadingColumns)})
+ * that is read back (into a heap buffer so that no file mapping outlives
+ * the read and blocks a later replace/delete of the segment) into a
+ * {@linkplain RemoteNodeReadingColumns} batch so that archived days can be
+ * merged transparently with the {@linkplain RemoteNodeReading}s that are
+ * still in the database (see {@linkplain RemoteNodeService}).
+ * <p>
+ * Each segment starts with a header of {@linkplain #MAGIC},
+ * {@linkplain #VERSION}, the number of columns, the
+ * {@linkplain RemoteNode#getId()}, the start of the day (milliseconds since
+ * the epoch) and the number of {@linkplain RemoteNodeReading}s followed by
+ * each column: the {@linkplain RemoteNodeReading#getId()}, the
+ * {@linkplain RemoteNodeReading#getReadDate()} and each of the
+ * {@linkplain RemoteNodeReadingColumns} <code>int</code> columns. Rows are
+ * ordered by read date and ID. Read dates are stored as the difference from
+ * the previous read date (the first from the start of the day). Each column
+ * is stored as <code>long base, byte bits, long[] packed</code> where
+ * <code>base</code> is the minimum value of the column and every value is
+ * packed as the difference from <code>base</code> using <code>bits</code>
+ * bits (zero bits when every value is the same).
+ * </p>
+ */
+public class RemoteNodeReadingArchive {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeReadingArchive.class);
+	/**
+	 * System property of the directory the segments are written to
+	 */
+	public static final String PROPERTY_DIRECTORY = "ugate.reading.archive";
+	/**
+	 * System property of the number of days that
+	 * {@linkplain RemoteNodeReading}s are kept in the database before they are
+	 * archived (zero disables archiving)
+	 */
+	public static final String PROPERTY_DAYS = "ugate.reading.archive.days";
+	/**
+	 * Default number of days that {@linkplain RemoteNodeReading}s are kept in
+	 * the database before they are archived
+	 */
+	public static final int DEFAULT_DAYS = 30;
+	/**
+	 * Magic number at the start of each segment ("UGRA")
+	 */
+	public static final int MAGIC = 0x55475241;
+	/**
+	 * The format version of the segments
+	 */
+	public static final short VERSION = 1;
+	/**
+	 * Size of the segment header (magic, version, column count, remote node
+	 * ID, day start, reading count)
+	 */
+	public static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 8 + 4;
+	/**
+	 * The number of columns in each segment (ID, read date and each
+	 * <code>int</code> column)
+	 */
+	public static final int COLUMNS = 2 + RemoteNodeReadingColumns.INT_COLUMNS;
+	/**
+	 * The prefix of segment file names
+	 */
+	public static final String FILE_PREFIX = "readings-";
+	/**
+	 * The extension of segment file names
+	 */
+	public static final String FILE_EXT = ".ura";
+	private static final String FILE_DATE_FORMAT = "yyyyMMdd";
+	private final Path directory;
+	private final AtomicLong segmentsWritten = new AtomicLong();
+	private final AtomicLong segmentsRead = new AtomicLong();
+	private final AtomicLong segmentsDeleted = new AtomicLong();
+	private final AtomicLong readingsWritten = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            the directory the segments will be written to (each
+	 *            {@linkplain RemoteNode} has its own sub-directory)
+	 * @throws IOException
+	 *             when the directory cannot be created
+	 */
+	public RemoteNodeReadingArchive(final Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * @return the directory of the {@linkplain #PROPERTY_DIRECTORY} system
+	 *         property (defaults to <code>ugate/archive</code> in the user
+	 *         home directory)
+	 */
+	public static Path defaultDirectory() {
+		final String dir = System.getProperty(PROPERTY_DIRECTORY);
+		return dir != null && !dir.isEmpty() ? Paths.get(dir) : Paths.get(
+				System.getProperty("user.home"), "ugate", "archive");
+	}
+
+	/**
+	 * @return the number of days of the {@linkplain #PROPERTY_DAYS} system
+	 *         property (defaults to {@linkplain #DEFAULT_DAYS})
+	 */
+	public static int defaultDays() {
+		return Math.max(0, Integer.getInteger(PROPERTY_DAYS, DEFAULT_DAYS));
+	}
+
+	/**
+	 * Writes the {@linkplain RemoteNodeReading}s of a {@linkplain RemoteNode}
+	 * for a single day. When the day has already been archived the existing
+	 * {@linkplain RemoteNodeReading}s are merged with the new ones (duplicate
+	 * IDs are only stored once). The segment is written to a temporary file
+	 * that replaces the existing segment so readers never see a partially
+	 * written segment.
+	 *
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param day
+	 *            any time within the day being archived
+	 * @param columns
+	 *            the {@linkplain RemoteNodeReadingColumns} of the day (values
+	 *            outside of the day are ignored)
+	 * @return the number of {@linkplain RemoteNodeReading}s in the segment
+	 * @throws IOException
+	 *             when the segment cannot be read/written
+	 */
+	public synchronized int write(final int remoteNodeId, final Date day,
+			final RemoteNodeReadingColumns columns) throws IOException {
+		final long ds = RemoteNodeReadingRollup.Resolution.DAY.bucketStart(day).getTime();
+		final long de = RemoteNodeReadingRollup.Resolution.DAY.nextBucketStart(day).getTime();
+		final Path segment = segment(remoteNodeId, ds);
+		final RemoteNodeReadingColumns existing = Files.exists(segment) ? read(segment,
+				remoteNodeId) : null;
+		final RemoteNodeReadingColumns all = merge(existing, columns, ds, de);
+		final int count = all.size();
+		final Packed[] cols = new Packed[COLUMNS];
+		final long[] values = new long[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = all.getId(i);
+		}
+		cols[0] = pack(values, count);
+		long prev = ds;
+		for (int i = 0; i < count; i++) {
+			values[i] = all.getReadDate(i) - prev;
+			prev = all.getReadDate(i);
+		}
+		cols[1] = pack(values, count);
+		for (int c = 0; c < RemoteNodeReadingColumns.INT_COLUMNS; c++) {
+			for (int i = 0; i < count; i++) {
+				values[i] = all.getInt(c, i);
+			}
+			cols[c + 2] = pack(values, count);
+		}
+		int size = HEADER_SIZE;
+		for (final Packed p : cols) {
+			size += 8 + 1 + p.words.length * 8;
+		}
+		final ByteBuffer bb = ByteBuffer.allocate(size);
+		bb.putInt(MAGIC);
+		bb.putShort(VERSION);
+		bb.putShort((short) COLUMNS);
+		bb.putInt(remoteNodeId);
+		bb.putLong(ds);
+		bb.putInt(count);
+		for (final Packed p : cols) {
+			bb.putLong(p.base);
+			bb.put((byte) p.bits);
+			for (final long w : p.words) {
+				bb.putLong(w);
+			}
+		}
+		bb.flip();
+		Files.createDirectories(segment.getParent());
+		final Path tmp = segment.resolveSibling(segment.getFileName() + ".tmp");
+		final FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			while (bb.hasRemaining()) {
+				fc.write(bb);
+			}
+			fc.force(true);
+		} finally {
+			fc.close();
+		}
+		Files.move(tmp, segment, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		segmentsWritten.incrementAndGet();
+		readingsWritten.addAndGet(count - (existing != null ? existing.size() : 0));
+		bytesWritten.addAndGet(size);
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Archived %1$s %2$s(s) for %3$s ID %4$s to %5$s (%6$s bytes)",
+					count, RemoteNodeReading.class.getSimpleName(),
+					RemoteNode.class.getSimpleName(), remoteNodeId, segment, size));
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the archived {@linkplain RemoteNodeReading}s of a
+	 * {@linkplain RemoteNode} for a time range (which may span any number of
+	 * days) ordered by {@linkplain RemoteNodeReading#getReadDate()} and
+	 * {@linkplain RemoteNodeReading#getId()}
+	 *
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @param into
+	 *            the {@linkplain RemoteNodeReadingColumns} that the
+	 *            {@linkplain RemoteNodeReading}s will be added to
+	 * @return the number of {@linkplain RemoteNodeReading}s added
+	 * @throws IOException
+	 *             when a segment cannot be read
+	 */
+	public int read(final int remoteNodeId, final Date startInclusive,
+			final Date endExclusive, final RemoteNodeReadingColumns into)
+			throws IOException {
+		final long sd = startInclusive.getTime();
+		final long ed = endExclusive.getTime();
+		int added = 0;
+		for (final Date day : days(remoteNodeId, startInclusive, endExclusive)) {
+			final RemoteNodeReadingColumns cols = read(remoteNodeId, day);
+			for (int i = 0; cols != null && i < cols.size(); i++) {
+				if (cols.getReadDate(i) >= sd && cols.getReadDate(i) < ed) {
+					into.add(cols, i);
+					added++;
+				}
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Reads the archived {@linkplain RemoteNodeReading}s of a
+	 * {@linkplain RemoteNode} for a single day
+	 *
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param day
+	 *            any time within the day
+	 * @return the {@linkplain RemoteNodeReadingColumns} (null when the day has
+	 *         not been archived)
+	 * @throws IOException
+	 *             when the segment cannot be read
+	 */
+	public RemoteNodeReadingColumns read(final int remoteNodeId, final Date day)
+			throws IOException {
+		final Path segment = segment(remoteNodeId,
+				RemoteNodeReadingRollup.Resolution.DAY.bucketStart(day).getTime());
+		return Files.exists(segment) ? read(segment, remoteNodeId) : null;
+	}
+
+	/**
+	 * Reads a segment
+	 *
+	 * @param segment
+	 *            the segment
+	 * @param remoteNodeId
+	 *            the expected {@linkplain RemoteNode#getId()}
+	 * @return the {@linkplain RemoteNodeReadingColumns}
+	 * @throws IOException
+	 *             when the segment cannot be read or is invalid
+	 */
+	private RemoteNodeReadingColumns read(final Path segment,
+			final int remoteNodeId) throws IOException {
+		final ByteBuffer bb;
+		final FileChannel fc = FileChannel.open(segment, StandardOpenOption.READ);
+		try {
+			final long size = fc.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(String.format("Invalid segment %1$s", segment));
+			}
+			bb = ByteBuffer.allocate((int) size);
+			while (bb.hasRemaining()) {
+				if (fc.read(bb) < 0) {
+					throw new IOException(String.format("Truncated segment %1$s", segment));
+				}
+			}
+			bb.flip();
+		} finally {
+			fc.close();
+		}
+		if (bb.remaining() < HEADER_SIZE || bb.getInt() != MAGIC
+				|| bb.getShort() != VERSION || bb.getShort() != COLUMNS
+				|| bb.getInt() != remoteNodeId) {
+			throw new IOException(String.format("Invalid segment %1$s", segment));
+		}
+		final long ds = bb.getLong();
+		final int count = bb.getInt();
+		final long[] ids = unpack(bb, count);
+		final long[] rds = unpack(bb, count);
+		final long[][] ints = new long[RemoteNodeReadingColumns.INT_COLUMNS][];
+		for (int c = 0; c < ints.length; c++) {
+			ints[c] = unpack(bb, count);
+		}
+		final RemoteNodeReadingColumns cols = new RemoteNodeReadingColumns(count);
+		final int[] row = new int[ints.length];
+		long rd = ds;
+		for (int i = 0; i < count; i++) {
+			rd += rds[i];
+			for (int c = 0; c < ints.length; c++) {
+				row[c] = (int) ints[c][i];
+			}
+			cols.add((int) ids[i], rd, row);
+		}
+		segmentsRead.incrementAndGet();
+		return cols;
+	}
+
+	/**
+	 * Gets the archived days of a {@linkplain RemoteNode} within a time range
+	 *
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param startInclusive
+	 *            the start of the time range (inclusive, null for the first
+	 *            archived day)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive, null for the last
+	 *            archived day)
+	 * @return the start of each archived day in ascending order
+	 * @throws IOException
+	 *             when the directory cannot be read
+	 */
+	public List<Date> days(final int remoteNodeId, final Date startInclusive,
+			final Date endExclusive) throws IOException {
+		final List<Date> days = new ArrayList<>();
+		final Path dir = directory.resolve(String.valueOf(remoteNodeId));
+		if (!Files.isDirectory(dir)) {
+			return days;
+		}
+		final long sd = startInclusive != null ? RemoteNodeReadingRollup.Resolution.DAY
+				.bucketStart(startInclusive).getTime() : Long.MIN_VALUE;
+		final long ed = endExclusive != null ? endExclusive.getTime() : Long.MAX_VALUE;
+		final SimpleDateFormat sdf = new SimpleDateFormat(FILE_DATE_FORMAT);
+		final DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+				FILE_PREFIX + "*" + FILE_EXT);
+		try {
+			for (final Path segment : ds) {
+				final String name = segment.getFileName().toString();
+				try {
+					final Date day = sdf.parse(name.substring(FILE_PREFIX.length(),
+							name.length() - FILE_EXT.length()));
+					if (day.getTime() >= sd && day.getTime() < ed) {
+						days.add(day);
+					}
+				} catch (final ParseException e) {
+					log.warn(String.format("Ignoring segment %1$s", segment));
+				}
+			}
+		} finally {
+			ds.close();
+		}
+		Collections.sort(days);
+		return days;
+	}
+
+	/**
+	 * Deletes the archived days of a {@linkplain RemoteNode} that start before
+	 * a given {@linkplain Date}
+	 *
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param endExclusive
+	 *            the {@linkplain Date} to delete days before
+	 * @return the number of days deleted
+	 * @throws IOException
+	 *             when a segment cannot be deleted
+	 */
+	public synchronized int delete(final int remoteNodeId, final Date endExclusive)
+			throws IOException {
+		int deleted = 0;
+		for (final Date day : days(remoteNodeId, null, endExclusive)) {
+			if (Files.deleteIfExists(segment(remoteNodeId, day.getTime()))) {
+				deleted++;
+			}
+		}
+		segmentsDeleted.addAndGet(deleted);
+		return deleted;
+	}
+
+	/**
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param dayStart
+	 *            the start of the day
+	 * @return the segment of the day
+	 */
+	private Path segment(final int remoteNodeId, final long dayStart) {
+		return directory.resolve(String.valueOf(remoteNodeId)).resolve(
+				FILE_PREFIX
+						+ new SimpleDateFormat(FILE_DATE_FORMAT).format(new Date(
+								dayStart)) + FILE_EXT);
+	}
+
+	/**
+	 * Merges {@linkplain RemoteNodeReadingColumns} ordered by read date and ID
+	 * (duplicate IDs are only added once)
+	 *
+	 * @param existing
+	 *            the archived {@linkplain RemoteNodeReadingColumns} (null when
+	 *            none)
+	 * @param columns
+	 *            the new {@linkplain RemoteNodeReadingColumns}
+	 * @param startInclusive
+	 *            the start of the day (inclusive)
+	 * @param endExclusive
+	 *            the end of the day (exclusive)
+	 * @return the merged {@linkplain RemoteNodeReadingColumns}
+	 */
+	private static RemoteNodeReadingColumns merge(
+			final RemoteNodeReadingColumns existing,
+			final RemoteNodeReadingColumns columns, final long startInclusive,
+			final long endExclusive) {
+		final RemoteNodeReadingColumns src = new RemoteNodeReadingColumns(
+				columns.size() + (existing != null ? existing.size() : 0));
+		for (int i = 0; existing != null && i < existing.size(); i++) {
+			src.add(existing, i);
+		}
+		for (int i = 0; i < columns.size(); i++) {
+			if (columns.getReadDate(i) >= startInclusive
+					&& columns.getReadDate(i) < endExclusive) {
+				src.add(columns, i);
+			}
+		}
+		final Integer[] order = new Integer[src.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer i1, final Integer i2) {
+				final long d1 = src.getReadDate(i1), d2 = src.getReadDate(i2);
+				if (d1 != d2) {
+					return d1 < d2 ? -1 : 1;
+				}
+				final int id1 = src.getId(i1), id2 = src.getId(i2);
+				return id1 < id2 ? -1 : id1 == id2 ? 0 : 1;
+			}
+		});
+		final RemoteNodeReadingColumns all = new RemoteNodeReadingColumns(order.length);
+		for (int i = 0; i < order.length; i++) {
+			if (i == 0 || src.getId(order[i]) != src.getId(order[i - 1])) {
+				all.add(src, order[i]);
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Packs the values of a column as the difference from the minimum value
+	 * using the fewest bits that can hold the largest difference
+	 *
+	 * @param values
+	 *            the values
+	 * @param count
+	 *            the number of values
+	 * @return the {@linkplain Packed} column
+	 */
+	private static Packed pack(final long[] values, final int count) {
+		long min = count > 0 ? Long.MAX_VALUE : 0, max = count > 0 ? Long.MIN_VALUE : 0;
+		for (int i = 0; i < count; i++) {
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		final int bits = 64 - Long.numberOfLeadingZeros(max - min);
+		final long[] words = new long[(int) (((long) count * bits + 63) >>> 6)];
+		for (int i = 0; bits > 0 && i < count; i++) {
+			final long v = values[i] - min;
+			final long pos = (long) i * bits;
+			final int w = (int) (pos >>> 6), off = (int) (pos & 63);
+			words[w] |= v << off;
+			if (off + bits > 64) {
+				words[w + 1] |= v >>> (64 - off);
+			}
+		}
+		return new Packed(min, bits, words);
+	}
+
+	/**
+	 * Unpacks the next column of a segment
+	 *
+	 * @param bb
+	 *            the {@linkplain ByteBuffer} positioned at the column
+	 * @param count
+	 *            the number of values
+	 * @return the values
+	 */
+	private static long[] unpack(final ByteBuffer bb, final int count) {
+		final long base = bb.getLong();
+		final int bits = bb.get() & 0xFF;
+		final long[] words = new long[(int) (((long) count * bits + 63) >>> 6)];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = bb.getLong();
+		}
+		final long mask = bits == 64 ? -1L : (1L << bits) - 1;
+		final long[] values = new long[count];
+		for (int i = 0; i < count; i++) {
+			if (bits == 0) {
+				values[i] = base;
+				continue;
+			}
+			final long pos = (long) i * bits;
+			final int w = (int) (pos >>> 6), off = (int) (pos & 63);
+			long v = words[w] >>> off;
+			if (off + bits > 64) {
+				v |= words[w + 1] << (64 - off);
+			}
+			values[i] = base + (v & mask);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the directory the segments are written to
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the number of segments written
+	 */
+	public long getSegmentsWrittenCount() {
+		return segmentsWritten.get();
+	}
+
+	/**
+	 * @return the number of segments read
+	 */
+	public long getSegmentsReadCount() {
+		return segmentsRead.get();
+	}
+
+	/**
+	 * @return the number of segments deleted
+	 */
+	public long getSegmentsDeletedCount() {
+		return segmentsDeleted.get();
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReading}s archived
+	 */
+	public long getReadingsWrittenCount() {
+		return readingsWritten.get();
+	}
+
+	/**
+	 * @return the number of bytes written (including rewritten segments)
+	 */
+	public long getBytesWrittenCount() {
+		return bytesWritten.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"%1$s [directory: %2$s, written: %3$s, read: %4$s, deleted: %5$s, readings: %6$s, bytes: %7$s]",
+				getClass().getSimpleName(), directory, getSegmentsWrittenCount(),
+				getSegmentsReadCount(), getSegmentsDeletedCount(),
+				getReadingsWrittenCount(), getBytesWrittenCount());
+	}
+
+	/**
+	 * Bit packed column
+	 */
+	private static class Packed {
+
+		final long base;
+		final int bits;
+		final long[] words;
+
+		Packed(final long base, final int bits, final long[] words) {
+			this.base = base;
+			this.bits = bits;
+			this.words = words;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.ugate.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeReadingType;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Writes the {@linkplain RemoteNodeReading}s of a {@linkplain RemoteNode}
+ * directly to an {@linkplain OutputStream} as they are streamed from the
+ * {@linkplain RemoteNodeService} (see
+ * {@linkplain RemoteNodeService#streamReadings(RemoteNode, Date, Date, int)})
+ * so that memory use is constant regardless of the size of the history. Each
+ * {@linkplain RemoteNodeReading} is written as a CSV row or an NDJSON line
+ * containing the {@linkplain RemoteNodeReading#getId()} followed by each of
+ * the {@linkplain RemoteNodeReadingType} values.
+ */
+public class RemoteNodeReadingExporter {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeReadingExporter.class);
+	/**
+	 * Default number of {@linkplain RemoteNodeReading}s queried at a time
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 500;
+	private static final String ID_KEY = "id";
+	private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+	private final RemoteNodeService remoteNodeService;
+	private final int pageSize;
+
+	/**
+	 * Export formats
+	 */
+	public static enum Format {
+		/**
+		 * Comma separated values with a header row
+		 */
+		CSV("text/csv", "csv"),
+		/**
+		 * Newline delimited JSON objects
+		 */
+		NDJSON("application/x-ndjson", "ndjson");
+
+		private final String contentType;
+		private final String extension;
+
+		/**
+		 * Constructor
+		 *
+		 * @param contentType
+		 *            the {@linkplain #getContentType()}
+		 * @param extension
+		 *            the {@linkplain #getExtension()}
+		 */
+		private Format(final String contentType, final String extension) {
+			this.contentType = contentType;
+			this.extension = extension;
+		}
+
+		/**
+		 * Gets a {@linkplain Format} by name or {@linkplain #getExtension()}
+		 * (case insensitive)
+		 *
+		 * @param value
+		 *            the name or {@linkplain #getExtension()}
+		 * @return the {@linkplain Format} (null when not found)
+		 */
+		public static Format find(final String value) {
+			if (value != null) {
+				for (final Format f : values()) {
+					if (f.name().equalsIgnoreCase(value)
+							|| f.extension.equalsIgnoreCase(value)) {
+						return f;
+					}
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return the MIME content type
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * @return the file extension (without the leading dot)
+		 */
+		public String getExtension() {
+			return extension;
+		}
+	}
+
+	/**
+	 * Constructor using {@linkplain #DEFAULT_PAGE_SIZE}
+	 *
+	 * @param remoteNodeService
+	 *            the {@linkplain RemoteNodeService} used to stream the
+	 *            {@linkplain RemoteNodeReading}s
+	 */
+	public RemoteNodeReadingExporter(final RemoteNodeService remoteNodeService) {
+		this(remoteNodeService, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param remoteNodeService
+	 *            the {@linkplain RemoteNodeService} used to stream the
+	 *            {@linkplain RemoteNodeReading}s
+	 * @param pageSize
+	 *            the number of {@linkplain RemoteNodeReading}s queried at a
+	 *            time
+	 */
+	public RemoteNodeReadingExporter(final RemoteNodeService remoteNodeService,
+			final int pageSize) {
+		this.remoteNodeService = remoteNodeService;
+		this.pageSize = Math.max(1, pageSize);
+	}
+
+	/**
+	 * Writes the {@linkplain RemoteNodeReading}s of a {@linkplain RemoteNode}
+	 * for a time range (the {@linkplain OutputStream} is flushed, but not
+	 * closed)
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to export
+	 *            {@linkplain RemoteNodeReading}s for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive, null for the
+	 *            earliest {@linkplain RemoteNodeReading})
+	 * @param endExclusive
+	 *            the end of the time range (exclusive, null for the latest
+	 *            {@linkplain RemoteNodeReading})
+	 * @param format
+	 *            the {@linkplain Format} to write
+	 * @param out
+	 *            the {@linkplain OutputStream} to write to
+	 * @return the number of {@linkplain RemoteNodeReading}s written
+	 * @throws IOException
+	 *             when writing fails
+	 */
+	public long export(final RemoteNode remoteNode, final Date startInclusive,
+			final Date endExclusive, final Format format, final OutputStream out)
+			throws IOException {
+		final long start = System.currentTimeMillis();
+		final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+		final RemoteNodeReadingType[] types = RemoteNodeReadingType.values();
+		final Writer w = new BufferedWriter(new OutputStreamWriter(out,
+				StandardCharsets.UTF_8));
+		long count = 0;
+		if (format == Format.CSV) {
+			w.write(ID_KEY);
+			for (final RemoteNodeReadingType rnrt : types) {
+				w.write(',');
+				w.write(rnrt.getKey());
+			}
+			w.write('\n');
+		}
+		for (final RemoteNodeReading rnr : remoteNodeService.streamReadings(
+				remoteNode, startInclusive, endExclusive, pageSize)) {
+			if (format == Format.CSV) {
+				w.write(String.valueOf(rnr.getId()));
+				for (final RemoteNodeReadingType rnrt : types) {
+					w.write(',');
+					w.write(valueOf(rnr, rnrt, sdf, false));
+				}
+			} else {
+				w.write("{\"");
+				w.write(ID_KEY);
+				w.write("\":");
+				w.write(String.valueOf(rnr.getId()));
+				for (final RemoteNodeReadingType rnrt : types) {
+					w.write(",\"");
+					w.write(rnrt.getKey());
+					w.write("\":");
+					w.write(valueOf(rnr, rnrt, sdf, true));
+				}
+				w.write('}');
+			}
+			w.write('\n');
+			count++;
+		}
+		w.flush();
+		if (log.isInfoEnabled()) {
+			log.info(String.format(
+					"Exported %1$s %2$s(s) as %3$s for %4$s at address %5$s in %6$s ms",
+					count, RemoteNodeReading.class.getSimpleName(), format,
+					RemoteNode.class.getSimpleName(), remoteNode.getAddress(),
+					System.currentTimeMillis() - start));
+		}
+		return count;
+	}
+
+	/**
+	 * Gets a formatted {@linkplain RemoteNodeReadingType} value
+	 *
+	 * @param rnr
+	 *            the {@linkplain RemoteNodeReading}
+	 * @param rnrt
+	 *            the {@linkplain RemoteNodeReadingType}
+	 * @param sdf
+	 *            the {@linkplain SimpleDateFormat} for {@linkplain Date}
+	 *            values
+	 * @param isJson
+	 *            true to quote {@linkplain Date} values and use
+	 *            <code>null</code> for missing values
+	 * @return the formatted value
+	 */
+	private static String valueOf(final RemoteNodeReading rnr,
+			final RemoteNodeReadingType rnrt, final SimpleDateFormat sdf,
+			final boolean isJson) {
+		final Object v;
+		try {
+			v = rnrt.getValue(rnr);
+		} catch (final Throwable t) {
+			throw new IllegalStateException(String.format(
+					"Unable to get %1$s from %2$s", rnrt.getKey(), rnr), t);
+		}
+		if (v == null) {
+			return isJson ? "null" : "";
+		} else if (v instanceof Date) {
+			return isJson ? '"' + sdf.format((Date) v) + '"' : sdf.format((Date) v);
+		}
+		return v.toString();
+	}
+}
@@ -0,0 +1,354 @@
+package org.ugate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Queues {@linkplain RemoteNodeReading}s and persists them in batches using a
+ * single transaction per batch. A batch is written when it reaches the batch
+ * size or when the oldest queued {@linkplain RemoteNodeReading} has waited
+ * for the maximum delay. The queue is bounded so that callers of
+ * {@linkplain #submit(RemoteNodeReading)} will block when the database cannot
+ * keep up. Any queued {@linkplain RemoteNodeReading}s are written when the
+ * writer is {@linkplain #close()}d (also performed on JVM shutdown) and any
+ * {@linkplain RemoteNodeReading}s that could not be written are reported.
+ */
+public class RemoteNodeReadingWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeReadingWriter.class);
+	/**
+	 * Default maximum number of {@linkplain RemoteNodeReading}s written in a
+	 * single transaction
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	/**
+	 * Default maximum number of milliseconds a {@linkplain RemoteNodeReading}
+	 * will wait in the queue before it is written
+	 */
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+	/**
+	 * Default maximum number of queued {@linkplain RemoteNodeReading}s
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+	private static final long CLOSE_TIMEOUT_MILLIS = 30000;
+	private final RemoteNodeService remoteNodeService;
+	private final int batchSize;
+	private final long maxDelayMillis;
+	private final BlockingQueue<RemoteNodeReading> queue;
+	private final Thread writer;
+	private final Thread shutdownHook;
+	private volatile boolean closed;
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong blocked = new AtomicLong();
+	/**
+	 * The number of {@linkplain RemoteNodeReading}s in the batch that the
+	 * writer thread is currently writing
+	 */
+	private final AtomicInteger writing = new AtomicInteger();
+	/**
+	 * The number of {@linkplain RemoteNodeReading}s that have been queued and
+	 * have not finished being written (includes those being batched/written
+	 * after they have been taken from the queue)
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile long lastSubmitMillis;
+
+	/**
+	 * Constructor using {@linkplain #DEFAULT_BATCH_SIZE},
+	 * {@linkplain #DEFAULT_MAX_DELAY_MILLIS} and
+	 * {@linkplain #DEFAULT_CAPACITY}
+	 *
+	 * @param remoteNodeService
+	 *            the {@linkplain RemoteNodeService} used to write the
+	 *            {@linkplain RemoteNodeReading}s
+	 */
+	public RemoteNodeReadingWriter(final RemoteNodeService remoteNodeService) {
+		this(remoteNodeService, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS,
+				DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param remoteNodeService
+	 *            the {@linkplain RemoteNodeService} used to write the
+	 *            {@linkplain RemoteNodeReading}s
+	 * @param batchSize
+	 *            the maximum number of {@linkplain RemoteNodeReading}s
+	 *            written in a single transaction
+	 * @param maxDelayMillis
+	 *            the maximum number of milliseconds a
+	 *            {@linkplain RemoteNodeReading} will wait in the queue before
+	 *            it is written
+	 * @param capacity
+	 *            the maximum number of queued {@linkplain RemoteNodeReading}s
+	 *            before {@linkplain #submit(RemoteNodeReading)} blocks
+	 */
+	public RemoteNodeReadingWriter(final RemoteNodeService remoteNodeService,
+			final int batchSize, final long maxDelayMillis, final int capacity) {
+		this.remoteNodeService = remoteNodeService;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxDelayMillis = Math.max(0, maxDelayMillis);
+		this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, capacity));
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, RemoteNodeReadingWriter.class.getSimpleName());
+		this.writer.setDaemon(true);
+		this.writer.start();
+		this.shutdownHook = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				close();
+			}
+		}, RemoteNodeReadingWriter.class.getSimpleName() + "-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Queues a {@linkplain RemoteNodeReading} to be written (blocks while the
+	 * queue is full)
+	 *
+	 * @param remoteNodeReading
+	 *            the {@linkplain RemoteNodeReading} to write
+	 * @return true when the {@linkplain RemoteNodeReading} has been queued
+	 */
+	public boolean submit(final RemoteNodeReading remoteNodeReading) {
+		lastSubmitMillis = System.currentTimeMillis();
+		if (closed) {
+			log.warn(String.format("%1$s is closed, writing %2$s directly",
+					RemoteNodeReadingWriter.class.getSimpleName(), remoteNodeReading));
+			remoteNodeService.saveReading(remoteNodeReading);
+			return true;
+		}
+		pending.incrementAndGet();
+		try {
+			if (!queue.offer(remoteNodeReading)) {
+				blocked.incrementAndGet();
+				queue.put(remoteNodeReading);
+			}
+			return true;
+		} catch (final InterruptedException e) {
+			pending.decrementAndGet();
+			Thread.currentThread().interrupt();
+			log.warn(String.format("Interrupted while queuing %1$s", remoteNodeReading));
+			return false;
+		}
+	}
+
+	/**
+	 * Writes queued {@linkplain RemoteNodeReading}s in batches until closed
+	 * and the queue has been drained
+	 */
+	private void write() {
+		final List<RemoteNodeReading> batch = new ArrayList<>(batchSize);
+		while (!closed || !queue.isEmpty()) {
+			try {
+				final RemoteNodeReading first = queue.poll(maxDelayMillis, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				final long deadline = System.nanoTime()
+						+ TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+					final long wait = deadline - System.nanoTime();
+					if (batch.size() >= batchSize || wait <= 0 || closed) {
+						break;
+					}
+					final RemoteNodeReading next = queue.poll(wait, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (final InterruptedException e) {
+				// closing- drain whatever remains
+				queue.drainTo(batch, batchSize - batch.size());
+			}
+			if (!batch.isEmpty()) {
+				writing.set(batch.size());
+				try {
+					flush(batch);
+				} finally {
+					writing.set(0);
+					pending.addAndGet(-batch.size());
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes a batch of {@linkplain RemoteNodeReading}s in a single
+	 * transaction (when the transaction fails each
+	 * {@linkplain RemoteNodeReading} is written individually so that a single
+	 * invalid {@linkplain RemoteNodeReading} does not cause the entire batch to
+	 * be lost)
+	 *
+	 * @param batch
+	 *            the {@linkplain RemoteNodeReading}s to write
+	 * @return the number of {@linkplain RemoteNodeReading}s that could not be
+	 *         written
+	 */
+	private int flush(final List<RemoteNodeReading> batch) {
+		try {
+			remoteNodeService.saveReadings(batch);
+			written.addAndGet(batch.size());
+			batches.incrementAndGet();
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Wrote %1$s %2$s(s) (%3$s)", batch.size(),
+						RemoteNodeReading.class.getSimpleName(), this));
+			}
+			return 0;
+		} catch (final Throwable t) {
+			log.warn(String.format("Unable to write batch of %1$s %2$s(s), writing individually",
+					batch.size(), RemoteNodeReading.class.getSimpleName()), t);
+		}
+		int cnt = 0;
+		for (final RemoteNodeReading rnr : batch) {
+			try {
+				remoteNodeService.saveReading(rnr);
+				written.incrementAndGet();
+			} catch (final Throwable t) {
+				failed.incrementAndGet();
+				cnt++;
+				log.error(String.format("Unable to write %1$s", rnr), t);
+			}
+		}
+		return cnt;
+	}
+
+	/**
+	 * Stops accepting {@linkplain RemoteNodeReading}s and waits for all of the
+	 * queued {@linkplain RemoteNodeReading}s to be written. The writer thread
+	 * is the only thread that writes queued {@linkplain RemoteNodeReading}s
+	 * (concurrent batches could update the same rollup buckets), so the wait
+	 * continues for as long as the writer is making progress. Any
+	 * {@linkplain RemoteNodeReading}s that could not be written are reported.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			long progress = -1;
+			while (writer.isAlive()) {
+				final long current = written.get() + failed.get();
+				if (current == progress) {
+					// nothing written within an entire timeout
+					break;
+				}
+				progress = current;
+				writer.join(CLOSE_TIMEOUT_MILLIS);
+				if (writer.isAlive()) {
+					log.warn(String.format("Waiting for %1$s to write %2$s queued reading(s)",
+							RemoteNodeReadingWriter.class.getSimpleName(),
+							queue.size() + writing.get()));
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		int lost;
+		if (writer.isAlive()) {
+			// the writer is stuck- writing here would race with its batch
+			lost = queue.size() + writing.get();
+		} else {
+			// readings queued while the writer was exiting
+			final List<RemoteNodeReading> remaining = new ArrayList<>();
+			queue.drainTo(remaining);
+			lost = remaining.isEmpty() ? 0 : flush(remaining);
+			pending.addAndGet(-remaining.size());
+		}
+		if (lost > 0) {
+			log.error(String.format("%1$s lost %2$s %3$s(s) while closing (%4$s)",
+					RemoteNodeReadingWriter.class.getSimpleName(), lost,
+					RemoteNodeReading.class.getSimpleName(), this));
+		}
+		if (Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (final IllegalStateException e) {
+				// already shutting down
+			}
+		}
+		log.info(String.format("Closed %1$s", this));
+	}
+
+	/**
+	 * @return the number of queued {@linkplain RemoteNodeReading}s
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @param idleMillis
+	 *            the number of milliseconds without any submitted
+	 *            {@linkplain RemoteNodeReading}s that is considered idle
+	 * @return true when the queue is empty, the writer is not writing a batch
+	 *         and no {@linkplain RemoteNodeReading}s have been submitted
+	 *         within the idle time
+	 */
+	public boolean isIdle(final long idleMillis) {
+		return pending.get() == 0 && queue.isEmpty()
+				&& System.currentTimeMillis() - lastSubmitMillis >= idleMillis;
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReading}s written
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReading}s that could not be
+	 *         written
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the number of batches written
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the number of times {@linkplain #submit(RemoteNodeReading)} had
+	 *         to wait for the queue to have room
+	 */
+	public long getBlockedCount() {
+		return blocked.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"%1$s [queued: %2$s, written: %3$s, batches: %4$s, failed: %5$s, blocked: %6$s]",
+				getClass().getSimpleName(), getQueueSize(), getWrittenCount(),
+				getBatchCount(), getFailedCount(), getBlockedCount());
+	}
+}
@@ -0,0 +1,415 @@
+package org.ugate.service;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
+
+/**
+ * Periodically removes {@linkplain RemoteNodeReading}s and
+ * {@linkplain RemoteNodeReadingRollup}s that are older than the retention
+ * policy of their {@linkplain RemoteNode} (see
+ * {@linkplain RemoteNode#getReadingRetentionDays()} and
+ * {@linkplain RemoteNode#getRollupRetentionDays()}). Rows are removed oldest
+ * first in small batches, each in its own transaction, so that locks are
+ * held briefly and concurrent inserts are not stalled. Batches are only
+ * removed while the {@linkplain RemoteNodeReadingWriter} is idle and the
+ * writer pauses between batches in proportion to the time each batch took.
+ * When a {@linkplain RemoteNodeReadingArchive} is used, whole days of
+ * {@linkplain RemoteNodeReading}s that are older than the archive days are
+ * moved from the database to the {@linkplain RemoteNodeReadingArchive}
+ * (oldest day first) and archived days are removed with the same retention
+ * policy as the {@linkplain RemoteNodeReading}s.
+ */
+public class RemoteNodeRetention {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeRetention.class);
+	/**
+	 * Default maximum number of rows removed in a single transaction
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	/**
+	 * Default number of milliseconds between retention passes
+	 */
+	public static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+	/**
+	 * Default number of milliseconds without submitted
+	 * {@linkplain RemoteNodeReading}s before batches are removed
+	 */
+	public static final long DEFAULT_IDLE_MILLIS = 5000;
+	/**
+	 * Default ratio of the time paused after a batch to the time the batch
+	 * took
+	 */
+	public static final int DEFAULT_THROTTLE_RATIO = 4;
+	private static final long INITIAL_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final long MIN_PAUSE_MILLIS = 50;
+	private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+	private final RemoteNodeService remoteNodeService;
+	private final RemoteNodeReadingWriter readingWriter;
+	private final RemoteNodeReadingArchive archive;
+	private final int archiveDays;
+	private final int batchSize;
+	private final long intervalMillis;
+	private final long idleMillis;
+	private final int throttleRatio;
+	private final Thread purger;
+	private volatile boolean closed;
+	private final AtomicLong readingsRemoved = new AtomicLong();
+	private final AtomicLong rollupsRemoved = new AtomicLong();
+	private final AtomicLong readingsArchived = new AtomicLong();
+	private final AtomicLong daysArchived = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong passes = new AtomicLong();
+	private final AtomicLong workNanos = new AtomicLong();
+
+	/**
+	 * Constructor using {@linkplain #DEFAULT_BATCH_SIZE},
+	 * {@linkplain #DEFAULT_INTERVAL_MILLIS}, {@linkplain #DEFAULT_IDLE_MILLIS}
+	 * and {@linkplain #DEFAULT_THROTTLE_RATIO}
+	 *
+	 * @param remoteNodeService
+	 *            the {@linkplain RemoteNodeService} used to remove the
+	 *            expired rows
+	 * @param readingWriter
+	 *            the {@linkplain RemoteNodeReadingWriter} used to determine
+	 *            when reading ingestion is idle (null to always consider it
+	 *            idle)
+	 * @param archive
+	 *            the {@linkplain RemoteNodeReadingArchive} that cold
+	 *            {@linkplain RemoteNodeReading}s are moved to (null to keep
+	 *            them in the database)
+	 */
+	public RemoteNodeRetention(final RemoteNodeService remoteNodeService,
+			final RemoteNodeReadingWriter readingWriter,
+			final RemoteNodeReadingArchive archive) {
+		this(remoteNodeService, readingWriter, archive,
+				RemoteNodeReadingArchive.defaultDays(), DEFAULT_BATCH_SIZE,
+				DEFAULT_INTERVAL_MILLIS, DEFAULT_IDLE_MILLIS,
+				DEFAULT_THROTTLE_RATIO);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param remoteNodeService
+	 *            the {@linkplain RemoteNodeService} used to remove the
+	 *            expired rows
+	 * @param readingWriter
+	 *            the {@linkplain RemoteNodeReadingWriter} used to determine
+	 *            when reading ingestion is idle (null to always consider it
+	 *            idle)
+	 * @param archive
+	 *            the {@linkplain RemoteNodeReadingArchive} that cold
+	 *            {@linkplain RemoteNodeReading}s are moved to (null to keep
+	 *            them in the database)
+	 * @param archiveDays
+	 *            the number of days that {@linkplain RemoteNodeReading}s are
+	 *            kept in the database before they are archived (zero to keep
+	 *            them in the database)
+	 * @param batchSize
+	 *            the maximum number of rows removed in a single transaction
+	 * @param intervalMillis
+	 *            the number of milliseconds between retention passes
+	 * @param idleMillis
+	 *            the number of milliseconds without submitted
+	 *            {@linkplain RemoteNodeReading}s before batches are removed
+	 * @param throttleRatio
+	 *            the ratio of the time paused after a batch to the time the
+	 *            batch took
+	 */
+	public RemoteNodeRetention(final RemoteNodeService remoteNodeService,
+			final RemoteNodeReadingWriter readingWriter,
+			final RemoteNodeReadingArchive archive, final int archiveDays,
+			final int batchSize, final long intervalMillis,
+			final long idleMillis, final int throttleRatio) {
+		this.remoteNodeService = remoteNodeService;
+		this.readingWriter = readingWriter;
+		this.archive = archive;
+		this.archiveDays = Math.max(0, archiveDays);
+		this.batchSize = Math.max(1, batchSize);
+		this.intervalMillis = Math.max(1000, intervalMillis);
+		this.idleMillis = Math.max(0, idleMillis);
+		this.throttleRatio = Math.max(0, throttleRatio);
+		this.purger = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				schedule();
+			}
+		}, RemoteNodeRetention.class.getSimpleName());
+		this.purger.setDaemon(true);
+		this.purger.setPriority(Thread.MIN_PRIORITY);
+		this.purger.start();
+	}
+
+	/**
+	 * Runs a retention pass every interval until closed
+	 */
+	private void schedule() {
+		try {
+			Thread.sleep(INITIAL_DELAY_MILLIS);
+			while (!closed) {
+				try {
+					purge();
+				} catch (final InterruptedException e) {
+					throw e;
+				} catch (final Throwable t) {
+					log.error("Unable to apply retention policies", t);
+				}
+				Thread.sleep(intervalMillis);
+			}
+		} catch (final InterruptedException e) {
+			// closing
+		}
+	}
+
+	/**
+	 * Removes the expired {@linkplain RemoteNodeReading}s and
+	 * {@linkplain RemoteNodeReadingRollup}s of every {@linkplain RemoteNode}
+	 * and archives the cold {@linkplain RemoteNodeReading}s on the calling
+	 * thread (waits for idle periods and throttles between batches)
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted while waiting
+	 */
+	public void purge() throws InterruptedException {
+		final long start = System.nanoTime();
+		final long work = workNanos.get();
+		long rdgs = 0, rus = 0, ards = 0;
+		final List<RemoteNode> rns = remoteNodeService.findAll();
+		for (final RemoteNode rn : rns) {
+			if (rn.getReadingRetentionDays() > 0) {
+				final Date cutoff = cutoff(rn.getReadingRetentionDays());
+				rdgs += purge(rn, cutoff, false);
+				if (archive != null) {
+					try {
+						archive.delete(rn.getId(), cutoff);
+					} catch (final IOException e) {
+						log.error(String.format("Unable to remove archived days for %1$s ID %2$s",
+								RemoteNode.class.getSimpleName(), rn.getId()), e);
+					}
+				}
+			}
+			if (rn.getRollupRetentionDays() > 0) {
+				rus += purge(rn, cutoff(rn.getRollupRetentionDays()), true);
+			}
+			if (archive != null && archiveDays > 0) {
+				ards += archive(rn, cutoff(archiveDays));
+			}
+		}
+		passes.incrementAndGet();
+		if (rdgs > 0 || rus > 0 || ards > 0 || log.isDebugEnabled()) {
+			log.info(String.format(
+					"Removed %1$s %2$s(s) and %3$s %4$s(s) and archived %5$s %2$s(s) for %6$s %7$s(s) in %8$s ms (%9$s ms elapsed)",
+					rdgs, RemoteNodeReading.class.getSimpleName(), rus,
+					RemoteNodeReadingRollup.class.getSimpleName(), ards, rns.size(),
+					RemoteNode.class.getSimpleName(),
+					TimeUnit.NANOSECONDS.toMillis(workNanos.get() - work),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		}
+	}
+
+	/**
+	 * Moves the {@linkplain RemoteNodeReading}s of a single
+	 * {@linkplain RemoteNode} to the {@linkplain RemoteNodeReadingArchive} one
+	 * day at a time (oldest first). Each day is written to the
+	 * {@linkplain RemoteNodeReadingArchive} before it is removed from the
+	 * database (in batches) so readers see the day in at least one of them.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param endExclusive
+	 *            the start of the day to archive
+	 *            {@linkplain RemoteNodeReading}s before
+	 * @return the number of {@linkplain RemoteNodeReading}s archived
+	 * @throws InterruptedException
+	 *             when interrupted while waiting
+	 */
+	private long archive(final RemoteNode remoteNode, final Date endExclusive)
+			throws InterruptedException {
+		long total = 0;
+		Date oldest;
+		while (!closed
+				&& (oldest = remoteNodeService.findReadingDateOldest(remoteNode,
+						endExclusive)) != null) {
+			awaitIdle();
+			final Date day = RemoteNodeReadingRollup.Resolution.DAY.bucketStart(oldest);
+			final Date next = RemoteNodeReadingRollup.Resolution.DAY.nextBucketStart(oldest);
+			final long bs = System.nanoTime();
+			final RemoteNodeReadingColumns cols = remoteNodeService
+					.findReadingColumns(remoteNode, day, next, false);
+			try {
+				archive.write(remoteNode.getId(), day, cols);
+			} catch (final IOException e) {
+				log.error(String.format("Unable to archive %1$s(s) for %2$s ID %3$s on %4$s",
+						RemoteNodeReading.class.getSimpleName(),
+						RemoteNode.class.getSimpleName(), remoteNode.getId(), day), e);
+				break;
+			}
+			workNanos.addAndGet(System.nanoTime() - bs);
+			// older readings have already been archived
+			purge(remoteNode, next, false);
+			total += cols.size();
+			daysArchived.incrementAndGet();
+			readingsArchived.addAndGet(cols.size());
+		}
+		return total;
+	}
+
+	/**
+	 * Removes the expired rows of a single {@linkplain RemoteNode} in batches
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param endExclusive
+	 *            the {@linkplain Date} to remove rows before
+	 * @param rollups
+	 *            true to remove {@linkplain RemoteNodeReadingRollup}s, false
+	 *            to remove {@linkplain RemoteNodeReading}s
+	 * @return the number of rows removed
+	 * @throws InterruptedException
+	 *             when interrupted while waiting
+	 */
+	private long purge(final RemoteNode remoteNode, final Date endExclusive,
+			final boolean rollups) throws InterruptedException {
+		long total = 0;
+		int removed;
+		do {
+			awaitIdle();
+			final long bs = System.nanoTime();
+			removed = rollups ? remoteNodeService.removeRollupsBefore(
+					remoteNode, endExclusive, batchSize) : remoteNodeService
+					.removeReadingsBefore(remoteNode, endExclusive, batchSize);
+			final long took = System.nanoTime() - bs;
+			workNanos.addAndGet(took);
+			if (removed <= 0) {
+				break;
+			}
+			total += removed;
+			batches.incrementAndGet();
+			(rollups ? rollupsRemoved : readingsRemoved).addAndGet(removed);
+			Thread.sleep(Math.max(MIN_PAUSE_MILLIS,
+					TimeUnit.NANOSECONDS.toMillis(took) * throttleRatio));
+		} while (removed >= batchSize);
+		return total;
+	}
+
+	/**
+	 * Waits until the {@linkplain RemoteNodeReadingWriter} is idle
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted or closed while waiting
+	 */
+	private void awaitIdle() throws InterruptedException {
+		while (readingWriter != null && !readingWriter.isIdle(idleMillis)) {
+			if (closed) {
+				throw new InterruptedException();
+			}
+			Thread.sleep(Math.max(MIN_PAUSE_MILLIS, idleMillis / 2));
+		}
+	}
+
+	/**
+	 * @param days
+	 *            the number of days to retain
+	 * @return the start of the day that is the given number of days ago
+	 */
+	private static Date cutoff(final int days) {
+		final Calendar cal = Calendar.getInstance();
+		cal.add(Calendar.DAY_OF_MONTH, -days);
+		return RemoteNodeReadingRollup.Resolution.DAY.bucketStart(cal.getTime());
+	}
+
+	/**
+	 * Stops applying retention policies (any batch that is in progress will
+	 * complete)
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		purger.interrupt();
+		try {
+			purger.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		log.info(String.format("Closed %1$s", this));
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReading}s removed
+	 */
+	public long getReadingsRemovedCount() {
+		return readingsRemoved.get();
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReadingRollup}s removed
+	 */
+	public long getRollupsRemovedCount() {
+		return rollupsRemoved.get();
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReading}s moved to the
+	 *         {@linkplain RemoteNodeReadingArchive}
+	 */
+	public long getReadingsArchivedCount() {
+		return readingsArchived.get();
+	}
+
+	/**
+	 * @return the number of days moved to the
+	 *         {@linkplain RemoteNodeReadingArchive}
+	 */
+	public long getDaysArchivedCount() {
+		return daysArchived.get();
+	}
+
+	/**
+	 * @return the number of batches removed
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the number of completed retention passes
+	 */
+	public long getPassCount() {
+		return passes.get();
+	}
+
+	/**
+	 * @param unit
+	 *            the {@linkplain TimeUnit} of the returned value
+	 * @return the time spent removing rows (excludes time spent waiting for
+	 *         idle periods and throttling)
+	 */
+	public long getWorkTime(final TimeUnit unit) {
+		return unit.convert(workNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"%1$s [passes: %2$s, batches: %3$s, readings: %4$s, rollups: %5$s, archived: %6$s, work: %7$s ms]",
+				getClass().getSimpleName(), getPassCount(), getBatchCount(),
+				getReadingsRemovedCount(), getRollupsRemovedCount(),
+				getReadingsArchivedCount(), getWorkTime(TimeUnit.MILLISECONDS));
+	}
+}
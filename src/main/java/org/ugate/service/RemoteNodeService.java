@@ -1,9 +1,17 @@
 package org.ugate.service;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 import javax.annotation.Resource;
 
@@ -11,9 +19,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.ugate.service.dao.RemoteNodeDao;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
 import org.ugate.service.entity.jpa.Host;
 import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
 
 /**
  * {@linkplain RemoteNode} service
@@ -22,6 +32,8 @@ import org.ugate.service.entity.jpa.RemoteNodeReading;
 @Transactional(readOnly = true, propagation = Propagation.NOT_SUPPORTED)
 public class RemoteNodeService {
 
+	private static final int COLUMNS_PAGE_SIZE = 1000;
+
 	@Resource
 	private RemoteNodeDao remoteNodeDao;
 
@@ -33,6 +45,7 @@ public class RemoteNodeService {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void merge(final RemoteNode remoteNode) {
 		remoteNodeDao.mergeEntity(remoteNode);
+		remoteNodeDao.evict(RemoteNode.class, remoteNode.getId());
 	}
 
 	/**
@@ -111,6 +124,109 @@ public class RemoteNodeService {
 		return null;
 	}
 
+	/**
+	 * Streams the {@linkplain RemoteNodeReading}(s) of a
+	 * {@linkplain RemoteNode} for a time range (which may span any number of
+	 * days) ordered by {@linkplain RemoteNodeReading#getReadDate()} and
+	 * {@linkplain RemoteNodeReading#getId()}. Pages are queried lazily as the
+	 * returned {@linkplain Iterable} is iterated, each page starting after the
+	 * read date and ID of the last {@linkplain RemoteNodeReading} of the
+	 * previous page, so each page costs the same regardless of how far into
+	 * the history it is and only one page is held in memory at a time.
+	 * {@linkplain RemoteNodeReading}(s) that have been moved to the
+	 * {@linkplain RemoteNodeReadingArchive} are streamed first (one archived
+	 * day at a time).
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive, null for the
+	 *            earliest {@linkplain RemoteNodeReading})
+	 * @param endExclusive
+	 *            the end of the time range (exclusive, null for the latest
+	 *            {@linkplain RemoteNodeReading})
+	 * @param pageSize
+	 *            the number of {@linkplain RemoteNodeReading}(s) queried at a
+	 *            time
+	 * @return the {@linkplain RemoteNodeReading}(s)
+	 */
+	public Iterable<RemoteNodeReading> streamReadings(
+			final RemoteNode remoteNode, final Date startInclusive,
+			final Date endExclusive, final int pageSize) {
+		final Date sd = startInclusive != null ? startInclusive : new Date(0);
+		final Date ed = endExclusive != null ? endExclusive
+				: RemoteNodeReadingRollup.Resolution.DAY.nextBucketStart(new Date());
+		final int max = Math.max(1, pageSize);
+		return new Iterable<RemoteNodeReading>() {
+			@Override
+			public Iterator<RemoteNodeReading> iterator() {
+				return new Iterator<RemoteNodeReading>() {
+					private Date afterDate = sd;
+					private int afterId = Integer.MIN_VALUE;
+					private final Iterator<Date> days = findArchivedDays(
+							remoteNode, sd, ed).iterator();
+					private RemoteNodeReadingColumns archived;
+					private int archivedIndex;
+					private Iterator<RemoteNodeReading> page;
+					private boolean last;
+
+					@Override
+					public boolean hasNext() {
+						while ((archived == null || archivedIndex >= archived.size())
+								&& days.hasNext()) {
+							final Date day = days.next();
+							final Date nd = RemoteNodeReadingRollup.Resolution.DAY
+									.nextBucketStart(day);
+							archived = findArchivedReadingColumns(remoteNode,
+									day.before(sd) ? sd : day, nd.after(ed) ? ed : nd);
+							archivedIndex = 0;
+						}
+						if (archived != null && archivedIndex < archived.size()) {
+							return true;
+						}
+						while (page == null || !page.hasNext()) {
+							if (last) {
+								return false;
+							}
+							final List<RemoteNodeReading> rnrs = remoteNodeDao
+									.findReadingsAfter(remoteNode.getId(),
+											afterDate, afterId, ed, max);
+							last = rnrs.size() < max;
+							if (!rnrs.isEmpty()) {
+								final RemoteNodeReading lrnr = rnrs.get(rnrs.size() - 1);
+								afterDate = lrnr.getReadDate();
+								afterId = lrnr.getId();
+							}
+							page = rnrs.iterator();
+						}
+						return true;
+					}
+
+					@Override
+					public RemoteNodeReading next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						if (archived != null && archivedIndex < archived.size()) {
+							// database pages start after the last archived reading
+							final int i = archivedIndex++;
+							afterDate = new Date(archived.getReadDate(i));
+							afterId = archived.getId(i);
+							return archived.newRemoteNodeReading(i, remoteNode);
+						}
+						return page.next();
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
 	/**
 	 * Gets the {@linkplain RemoteNodeReading}(s) for a given
 	 * {@linkplain RemoteNode#getId()} and {@linkplain Date}
@@ -138,7 +254,68 @@ public class RemoteNodeService {
 		ec.setTime(sc.getTime());
 		ec.add(Calendar.DAY_OF_MONTH, 1);
 		//UGateUtil.PLAIN_LOGGER.info("Start : " + UGateUtil.calFormat(sc) + " End: " + UGateUtil.calFormat(ec));
-		return remoteNodeDao.findReadingsByIdAndDate(remoteNode, sc, ec, asc);
+		if (findArchivedDays(remoteNode, sc.getTime(), ec.getTime()).isEmpty()) {
+			return remoteNodeDao.findReadingsByIdAndDate(remoteNode, sc, ec, asc);
+		}
+		final RemoteNodeReadingColumns cols = findReadingColumns(remoteNode,
+				sc.getTime(), ec.getTime());
+		final List<RemoteNodeReading> rnrs = new ArrayList<>(cols.size());
+		for (int i = 0; i < cols.size(); i++) {
+			rnrs.add(cols.newRemoteNodeReading(i, remoteNode));
+		}
+		if (!asc) {
+			Collections.reverse(rnrs);
+		}
+		return rnrs;
+	}
+
+	/**
+	 * Gets the {@linkplain RemoteNodeReadingRollup}(s) for a given
+	 * {@linkplain RemoteNode} and time range using the finest
+	 * {@linkplain RemoteNodeReadingRollup.Resolution} that will not exceed
+	 * {@linkplain RemoteNodeReadingRollup.Resolution#MAX_BUCKETS}
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReadingRollup}(s) for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @return the {@linkplain RemoteNodeReadingRollup}(s) in ascending order
+	 */
+	public List<RemoteNodeReadingRollup> findReadingRollups(
+			final RemoteNode remoteNode, final Calendar startInclusive,
+			final Calendar endExclusive) {
+		return findReadingRollups(remoteNode,
+				RemoteNodeReadingRollup.Resolution.forRange(
+						startInclusive.getTime(), endExclusive.getTime()),
+				startInclusive, endExclusive);
+	}
+
+	/**
+	 * Gets the {@linkplain RemoteNodeReadingRollup}(s) for a given
+	 * {@linkplain RemoteNode}, {@linkplain RemoteNodeReadingRollup.Resolution}
+	 * and time range
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReadingRollup}(s) for
+	 * @param resolution
+	 *            the {@linkplain RemoteNodeReadingRollup.Resolution}
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @return the {@linkplain RemoteNodeReadingRollup}(s) in ascending order
+	 */
+	public List<RemoteNodeReadingRollup> findReadingRollups(
+			final RemoteNode remoteNode,
+			final RemoteNodeReadingRollup.Resolution resolution,
+			final Calendar startInclusive, final Calendar endExclusive) {
+		return remoteNodeDao.findRollups(remoteNode, resolution,
+				resolution.bucketStart(startInclusive.getTime()),
+				endExclusive.getTime());
 	}
 
 	/**
@@ -150,6 +327,356 @@ public class RemoteNodeService {
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public void saveReading(final RemoteNodeReading remoteNodeReading) {
 		remoteNodeDao.persistEntity(remoteNodeReading);
+		rollup(Collections.singletonList(remoteNodeReading), false);
+	}
+
+	/**
+	 * Saves new {@linkplain RemoteNodeReading}s in a single transaction
+	 * 
+	 * @param remoteNodeReadings
+	 *            the {@linkplain RemoteNodeReading}s to save
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public void saveReadings(final Collection<RemoteNodeReading> remoteNodeReadings) {
+		remoteNodeDao.persistEntities(remoteNodeReadings);
+		rollup(remoteNodeReadings, false);
+	}
+
+	/**
+	 * Rebuilds the {@linkplain RemoteNodeReadingRollup}(s) of a
+	 * {@linkplain RemoteNode} from the stored {@linkplain RemoteNodeReading}
+	 * (s) for each whole day within a time range (i.e. for
+	 * {@linkplain RemoteNodeReading}s saved before rollups existed)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to rebuild the
+	 *            {@linkplain RemoteNodeReadingRollup}(s) for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @return the number of {@linkplain RemoteNodeReading}s rolled up
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int rebuildReadingRollups(final RemoteNode remoteNode,
+			final Calendar startInclusive, final Calendar endExclusive) {
+		final RemoteNodeReadingRollup.Resolution day = RemoteNodeReadingRollup.Resolution.DAY;
+		final Calendar sc = Calendar.getInstance();
+		sc.setTime(day.bucketStart(startInclusive.getTime()));
+		final Calendar ec = Calendar.getInstance();
+		ec.setTime(endExclusive.getTime().equals(day.bucketStart(endExclusive.getTime())) ? 
+				endExclusive.getTime() : day.nextBucketStart(endExclusive.getTime()));
+		remoteNodeDao.deleteRollups(remoteNode, sc.getTime(), ec.getTime());
+		final RemoteNodeReadingColumns cols = findReadingColumns(remoteNode,
+				sc.getTime(), ec.getTime());
+		final RemoteNode rn = remoteNodeDao.findEntityById(RemoteNode.class,
+				remoteNode.getId());
+		final Map<List<Object>, RemoteNodeReadingRollup> buckets = new LinkedHashMap<>();
+		for (int i = 0; i < cols.size(); i++) {
+			final Date rd = new Date(cols.getReadDate(i));
+			for (final RemoteNodeReadingRollup.Resolution res : RemoteNodeReadingRollup.Resolution
+					.values()) {
+				bucket(buckets, rn, res, rd).add(cols, i);
+			}
+		}
+		store(buckets.values(), true);
+		return cols.size();
+	}
+
+	/**
+	 * Gets the values of the {@linkplain RemoteNodeReading}(s) of a
+	 * {@linkplain RemoteNode} for a time range as a
+	 * {@linkplain RemoteNodeReadingColumns} batch ordered by
+	 * {@linkplain RemoteNodeReading#getReadDate()} and
+	 * {@linkplain RemoteNodeReading#getId()}. Only the reading columns are
+	 * selected (in pages) so no {@linkplain RemoteNodeReading} or
+	 * {@linkplain RemoteNode} entities are created. Includes any
+	 * {@linkplain RemoteNodeReading}(s) in the
+	 * {@linkplain RemoteNodeReadingArchive}.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @return the {@linkplain RemoteNodeReadingColumns}
+	 */
+	public RemoteNodeReadingColumns findReadingColumns(
+			final RemoteNode remoteNode, final Date startInclusive,
+			final Date endExclusive) {
+		return findReadingColumns(remoteNode, startInclusive, endExclusive, true);
+	}
+
+	/**
+	 * Gets the values of the {@linkplain RemoteNodeReading}(s) of a
+	 * {@linkplain RemoteNode} for a time range as a
+	 * {@linkplain RemoteNodeReadingColumns} batch ordered by
+	 * {@linkplain RemoteNodeReading#getReadDate()} and
+	 * {@linkplain RemoteNodeReading#getId()}
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @param includeArchived
+	 *            true to include {@linkplain RemoteNodeReading}(s) in the
+	 *            {@linkplain RemoteNodeReadingArchive}, false for only those
+	 *            in the database
+	 * @return the {@linkplain RemoteNodeReadingColumns}
+	 */
+	public RemoteNodeReadingColumns findReadingColumns(
+			final RemoteNode remoteNode, final Date startInclusive,
+			final Date endExclusive, final boolean includeArchived) {
+		final RemoteNodeReadingColumns cols = includeArchived ? findArchivedReadingColumns(
+				remoteNode, startInclusive, endExclusive)
+				: new RemoteNodeReadingColumns(COLUMNS_PAGE_SIZE);
+		Date afterDate = startInclusive;
+		int afterId = Integer.MIN_VALUE;
+		if (cols.size() > 0) {
+			// readings that are in both (while a day is being archived) are skipped
+			afterDate = new Date(cols.getReadDate(cols.size() - 1));
+			afterId = cols.getId(cols.size() - 1);
+		}
+		List<Object[]> rows;
+		do {
+			rows = remoteNodeDao.findReadingColumnsAfter(remoteNode.getId(),
+					afterDate, afterId, endExclusive, COLUMNS_PAGE_SIZE);
+			for (final Object[] row : rows) {
+				cols.add(row);
+			}
+			if (cols.size() > 0) {
+				afterDate = new Date(cols.getReadDate(cols.size() - 1));
+				afterId = cols.getId(cols.size() - 1);
+			}
+		} while (rows.size() >= COLUMNS_PAGE_SIZE);
+		return cols;
+	}
+
+	/**
+	 * Gets the {@linkplain RemoteNodeReading#getReadDate()} of the oldest
+	 * {@linkplain RemoteNodeReading} of a {@linkplain RemoteNode} in the
+	 * database (excludes the {@linkplain RemoteNodeReadingArchive})
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading} for
+	 * @param endExclusive
+	 *            the {@linkplain Date} the {@linkplain RemoteNodeReading}
+	 *            must be read before (exclusive)
+	 * @return the {@linkplain Date} (null when there are no
+	 *         {@linkplain RemoteNodeReading}(s) before the end date)
+	 */
+	public Date findReadingDateOldest(final RemoteNode remoteNode,
+			final Date endExclusive) {
+		final List<Object[]> rows = remoteNodeDao.findReadingColumnsAfter(
+				remoteNode.getId(), new Date(0), Integer.MIN_VALUE, endExclusive, 1);
+		return rows.isEmpty() ? null : (Date) rows.get(0)[1];
+	}
+
+	/**
+	 * Gets the {@linkplain RemoteNodeReading}(s) of a {@linkplain RemoteNode}
+	 * from the {@linkplain RemoteNodeReadingArchive} for a time range
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @return the {@linkplain RemoteNodeReadingColumns} (empty when there is
+	 *         no {@linkplain RemoteNodeReadingArchive})
+	 */
+	private RemoteNodeReadingColumns findArchivedReadingColumns(
+			final RemoteNode remoteNode, final Date startInclusive,
+			final Date endExclusive) {
+		final RemoteNodeReadingColumns cols = new RemoteNodeReadingColumns(
+				COLUMNS_PAGE_SIZE);
+		final RemoteNodeReadingArchive rna = ServiceProvider.IMPL
+				.getRemoteNodeReadingArchive();
+		if (rna != null) {
+			try {
+				rna.read(remoteNode.getId(), startInclusive, endExclusive, cols);
+			} catch (final IOException e) {
+				throw new IllegalStateException(String.format(
+						"Unable to read archived %1$s(s) for %2$s ID %3$s",
+						RemoteNodeReading.class.getSimpleName(),
+						RemoteNode.class.getSimpleName(), remoteNode.getId()), e);
+			}
+		}
+		return cols;
+	}
+
+	/**
+	 * Gets the days that have been archived in the
+	 * {@linkplain RemoteNodeReadingArchive} for a {@linkplain RemoteNode}
+	 * within a time range
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to get the days for
+	 * @param startInclusive
+	 *            the start of the time range (inclusive)
+	 * @param endExclusive
+	 *            the end of the time range (exclusive)
+	 * @return the start of each archived day in ascending order (empty when
+	 *         there is no {@linkplain RemoteNodeReadingArchive})
+	 */
+	private List<Date> findArchivedDays(final RemoteNode remoteNode,
+			final Date startInclusive, final Date endExclusive) {
+		final RemoteNodeReadingArchive rna = ServiceProvider.IMPL
+				.getRemoteNodeReadingArchive();
+		if (rna == null) {
+			return Collections.emptyList();
+		}
+		try {
+			return rna.days(remoteNode.getId(), startInclusive, endExclusive);
+		} catch (final IOException e) {
+			throw new IllegalStateException(String.format(
+					"Unable to list archived days for %1$s ID %2$s",
+					RemoteNode.class.getSimpleName(), remoteNode.getId()), e);
+		}
+	}
+
+	/**
+	 * Adds {@linkplain RemoteNodeReading}s to the
+	 * {@linkplain RemoteNodeReadingRollup} buckets of each
+	 * {@linkplain RemoteNodeReadingRollup.Resolution} (buckets are aggregated
+	 * in memory first so that each bucket is only read/written once)
+	 * 
+	 * @param remoteNodeReadings
+	 *            the {@linkplain RemoteNodeReading}s
+	 * @param isNew
+	 *            true when the buckets are known not to exist
+	 */
+	private void rollup(final Collection<RemoteNodeReading> remoteNodeReadings,
+			final boolean isNew) {
+		final Map<List<Object>, RemoteNodeReadingRollup> buckets = new LinkedHashMap<>();
+		for (final RemoteNodeReading rnr : remoteNodeReadings) {
+			if (rnr.getRemoteNode() == null || rnr.getReadDate() == null) {
+				continue;
+			}
+			for (final RemoteNodeReadingRollup.Resolution res : RemoteNodeReadingRollup.Resolution
+					.values()) {
+				bucket(buckets, rnr.getRemoteNode(), res, rnr.getReadDate())
+						.add(rnr);
+			}
+		}
+		store(buckets.values(), isNew);
+	}
+
+	/**
+	 * Gets (or creates) the in-memory {@linkplain RemoteNodeReadingRollup}
+	 * bucket that a read date belongs to
+	 * 
+	 * @param buckets
+	 *            the in-memory buckets
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} of the bucket
+	 * @param res
+	 *            the {@linkplain RemoteNodeReadingRollup.Resolution} of the
+	 *            bucket
+	 * @param readDate
+	 *            the read date
+	 * @return the {@linkplain RemoteNodeReadingRollup} bucket
+	 */
+	private static RemoteNodeReadingRollup bucket(
+			final Map<List<Object>, RemoteNodeReadingRollup> buckets,
+			final RemoteNode remoteNode,
+			final RemoteNodeReadingRollup.Resolution res, final Date readDate) {
+		final Date bs = res.bucketStart(readDate);
+		final List<Object> key = Arrays.<Object> asList(remoteNode.getId(),
+				res, bs.getTime());
+		RemoteNodeReadingRollup ru = buckets.get(key);
+		if (ru == null) {
+			ru = new RemoteNodeReadingRollup(remoteNode, res, bs);
+			buckets.put(key, ru);
+		}
+		return ru;
+	}
+
+	/**
+	 * Persists new {@linkplain RemoteNodeReadingRollup} buckets or adds them to
+	 * the existing buckets for the same time period
+	 * 
+	 * @param buckets
+	 *            the in-memory buckets
+	 * @param isNew
+	 *            true when the buckets are known not to exist
+	 */
+	private void store(final Collection<RemoteNodeReadingRollup> buckets,
+			final boolean isNew) {
+		for (final RemoteNodeReadingRollup ru : buckets) {
+			final RemoteNodeReadingRollup existing = isNew ? null : remoteNodeDao
+					.findRollup(ru.getRemoteNode().getId(), ru.getResolution(),
+							ru.getBucketStart());
+			if (existing == null) {
+				remoteNodeDao.persistEntity(ru);
+			} else {
+				existing.add(ru);
+			}
+		}
+	}
+
+	/**
+	 * @return all of the {@linkplain RemoteNode}s
+	 */
+	public List<RemoteNode> findAll() {
+		return remoteNodeDao.findAll();
+	}
+
+	/**
+	 * Removes the oldest {@linkplain RemoteNodeReading}(s) of a
+	 * {@linkplain RemoteNode} that were read before a given {@linkplain Date}
+	 * (ordered by read date and ID so that each call only locks a small
+	 * number of rows)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to remove
+	 *            {@linkplain RemoteNodeReading}(s) for
+	 * @param endExclusive
+	 *            the {@linkplain Date} to remove
+	 *            {@linkplain RemoteNodeReading}(s) before (exclusive)
+	 * @param maxResults
+	 *            the maximum number of {@linkplain RemoteNodeReading}(s) to
+	 *            remove
+	 * @return the number of {@linkplain RemoteNodeReading}(s) removed
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int removeReadingsBefore(final RemoteNode remoteNode,
+			final Date endExclusive, final int maxResults) {
+		return remoteNodeDao.deleteReadingsById(remoteNodeDao
+				.findReadingIdsBefore(remoteNode.getId(), endExclusive,
+						maxResults));
+	}
+
+	/**
+	 * Removes the oldest {@linkplain RemoteNodeReadingRollup}(s) of a
+	 * {@linkplain RemoteNode} with buckets that start before a given
+	 * {@linkplain Date} (ordered by bucket start and ID so that each call only
+	 * locks a small number of rows)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to remove
+	 *            {@linkplain RemoteNodeReadingRollup}(s) for
+	 * @param endExclusive
+	 *            the {@linkplain Date} to remove
+	 *            {@linkplain RemoteNodeReadingRollup}(s) before (exclusive)
+	 * @param maxResults
+	 *            the maximum number of {@linkplain RemoteNodeReadingRollup}(s)
+	 *            to remove
+	 * @return the number of {@linkplain RemoteNodeReadingRollup}(s) removed
+	 */
+	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
+	public int removeRollupsBefore(final RemoteNode remoteNode,
+			final Date endExclusive, final int maxResults) {
+		return remoteNodeDao.deleteRollupsById(remoteNodeDao
+				.findRollupIdsBefore(remoteNode.getId(), endExclusive,
+						maxResults));
 	}
 
 	/**
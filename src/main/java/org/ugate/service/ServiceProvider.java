@@ -1,14 +1,23 @@
 package org.ugate.service;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 
+import org.apache.openjpa.datacache.CacheStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.ugate.UGateEvent;
+import org.ugate.UGateKeeper;
+import org.ugate.UGateListener;
 import org.ugate.resources.RS;
 import org.ugate.service.entity.EntityExtractor;
 import org.ugate.service.entity.jpa.Actor;
 import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.wireless.data.RxTxRemoteNodeReadingDTO;
 
 /**
  * Renders application services
@@ -17,12 +26,41 @@ public enum ServiceProvider {
 
 	IMPL;
 
+	/**
+	 * Spring profile that uses XA transactions through a JTA transaction
+	 * manager (default)
+	 */
+	public static final String TX_PROFILE_JTA = "jta";
+	/**
+	 * Spring profile that uses resource local transactions on a pooled
+	 * connection (for deployments with a single database). Activated using
+	 * the <code>spring.profiles.active</code> system property.
+	 */
+	public static final String TX_PROFILE_LOCAL = "local";
 	private final Logger log = LoggerFactory.getLogger(ServiceProvider.class);
 	private ClassPathXmlApplicationContext appContext;
 	private EntityExtractor<Actor> actorExtractor;
 	private WirelessService wirelessService;
 	private EmailService emailService;
 	private WebService webService;
+	private final RemoteNodeIndex remoteNodeIndex = new RemoteNodeIndex();
+	private final RemoteNodeLatestReadings latestReadings = new RemoteNodeLatestReadings();
+	private RemoteNodeReadingWriter readingWriter;
+	private RemoteNodeReadingArchive readingArchive;
+	private RemoteNodeRetention retention;
+	private final UGateListener readingPersister = new UGateListener() {
+		@Override
+		public void handle(final UGateEvent<?, ?> event) {
+			if (event.getType() == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS
+					&& event.getNewValue() instanceof RxTxRemoteNodeReadingDTO) {
+				// readings are queued and persisted in batches
+				final RxTxRemoteNodeReadingDTO sr = (RxTxRemoteNodeReadingDTO) event
+						.getNewValue();
+				latestReadings.put(sr.getRemoteNodeReading());
+				readingWriter.submit(sr.getRemoteNodeReading());
+			}
+		}
+	};
 
 	/**
 	 * Creates/Initializes a new {@linkplain ServiceProvider}
@@ -48,9 +86,34 @@ public enum ServiceProvider {
 		webService = new WebService(this.actorExtractor);
 		if (appContext == null) {
 			appContext = new ClassPathXmlApplicationContext(
-					new String[] { "spring-all.xml" });
+					new String[] { "spring-all.xml" }, false);
+			appContext.getEnvironment().setDefaultProfiles(TX_PROFILE_JTA);
+			appContext.refresh();
 			appContext.start();
+			final String[] profiles = appContext.getEnvironment()
+					.getActiveProfiles().length > 0 ? appContext.getEnvironment()
+					.getActiveProfiles() : appContext.getEnvironment()
+					.getDefaultProfiles();
+			log.info(String.format("Using transaction profile(s): %1$s",
+					Arrays.toString(profiles)));
+		}
+		readingWriter = new RemoteNodeReadingWriter(getRemoteNodeService());
+		try {
+			readingArchive = new RemoteNodeReadingArchive(
+					RemoteNodeReadingArchive.defaultDirectory());
+		} catch (final IOException e) {
+			log.error(String.format("Unable to open %1$s (readings will not be archived)",
+					RemoteNodeReadingArchive.class.getSimpleName()), e);
 		}
+		retention = new RemoteNodeRetention(getRemoteNodeService(),
+				readingWriter, readingArchive);
+		UGateKeeper.DEFAULT.addListener(remoteNodeIndex,
+				UGateKeeper.Delivery.WORKER,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_CHANGED);
+		UGateKeeper.DEFAULT.addListener(readingPersister,
+				UGateKeeper.Delivery.WORKER, RemoteNode.class, null,
+				UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS);
 		return getWirelessService().init();
 	}
 
@@ -79,12 +142,41 @@ public enum ServiceProvider {
 			if (getWirelessService() != null) {
 				getWirelessService().disconnect();
 				hasDisconnected = true;
+				if (getWirelessService().getFrameRecorder() != null) {
+					getWirelessService().getFrameRecorder().close();
+				}
 			}
 		} catch (final Exception e) {
 			log.error("Unable to disconnect wireless connection", e);
 		}
+		UGateKeeper.DEFAULT.removeListener(remoteNodeIndex);
+		UGateKeeper.DEFAULT.removeListener(readingPersister);
+		remoteNodeIndex.clear();
+		latestReadings.clear();
+		if (retention != null) {
+			retention.close();
+			retention = null;
+		}
+		if (readingArchive != null) {
+			log.info(String.format("Closed %1$s", readingArchive));
+			readingArchive = null;
+		}
+		if (readingWriter != null) {
+			// write any queued readings before the application context closes
+			readingWriter.close();
+			readingWriter = null;
+		}
 		try {
 			if (appContext != null) {
+				final CacheStatistics cs = getCredentialService()
+						.getCacheStatistics();
+				if (cs != null) {
+					log.info(String.format(
+							"Entity cache reads: %1$s, hits: %2$s, misses: %3$s, writes: %4$s",
+							cs.getReadCount(), cs.getHitCount(),
+							cs.getReadCount() - cs.getHitCount(),
+							cs.getWriteCount()));
+				}
 				appContext.close();
 				hasDisconnected = true;
 			}
@@ -167,6 +259,48 @@ public enum ServiceProvider {
 				.getSimpleName());
 	}
 
+	/**
+	 * @return the {@linkplain RemoteNodeIndex} used to lookup
+	 *         {@linkplain RemoteNode}s without querying the database
+	 */
+	public RemoteNodeIndex getRemoteNodeIndex() {
+		return remoteNodeIndex;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeLatestReadings} used to lookup the
+	 *         latest {@linkplain RemoteNodeReading} without querying the
+	 *         database
+	 */
+	public RemoteNodeLatestReadings getRemoteNodeLatestReadings() {
+		return latestReadings;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeReadingWriter} used to persist
+	 *         {@linkplain RemoteNodeReading}s in batches
+	 */
+	public RemoteNodeReadingWriter getRemoteNodeReadingWriter() {
+		return readingWriter;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeRetention} used to remove expired
+	 *         {@linkplain RemoteNodeReading}s and rollups
+	 */
+	public RemoteNodeRetention getRemoteNodeRetention() {
+		return retention;
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeReadingArchive} that cold
+	 *         {@linkplain RemoteNodeReading}s are moved to (null when
+	 *         unavailable)
+	 */
+	public RemoteNodeReadingArchive getRemoteNodeReadingArchive() {
+		return readingArchive;
+	}
+
 	/**
 	 * @return the {@linkplain CredentialService}
 	 */
@@ -1,6 +1,16 @@
 package org.ugate.service;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.ugate.ByteUtils;
@@ -16,10 +26,13 @@ import org.ugate.service.entity.jpa.Actor;
 import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.wireless.data.RxData;
 import org.ugate.wireless.data.RxTxRemoteNodeDTO;
+import org.ugate.wireless.FrameRecorder;
+import org.ugate.wireless.LoopbackXBee;
 import org.ugate.wireless.data.UGateXBeePacketListener;
 
 import com.rapplogic.xbee.api.AtCommand;
 import com.rapplogic.xbee.api.AtCommandResponse;
+import com.rapplogic.xbee.api.IXBee;
 import com.rapplogic.xbee.api.RemoteAtRequest;
 import com.rapplogic.xbee.api.RemoteAtResponse;
 import com.rapplogic.xbee.api.XBee;
@@ -46,13 +59,20 @@ public class WirelessService extends ExtractorService<Actor> {
 
 	private final Logger log = UGateUtil.getLogger(WirelessService.class);
 	public static final int DEFAULT_WAIT_MILISECONDS = 12000;
-	private XBee xbee;
+	private IXBee xbee;
 	private UGateXBeePacketListener packetListener;
+	private WirelessTxQueue txQueue;
+	private FrameRecorder frameRecorder;
 	private boolean requiresRestart;
 	private boolean isListening;
 
 	/**
-	 * Connects to the local wireless device
+	 * Connects to the local wireless device. When the
+	 * {@linkplain LoopbackXBee#PROPERTY_PREFIX} system property is
+	 * <code>true</code> a {@linkplain LoopbackXBee} will be used instead of the
+	 * serial {@linkplain XBee}. When the
+	 * {@linkplain FrameRecorder#PROPERTY_DIRECTORY} system property is set all
+	 * frames will be recorded to that directory.
 	 * 
 	 * @return true if the connection has been established
 	 */
@@ -60,23 +80,84 @@ public class WirelessService extends ExtractorService<Actor> {
 		if (xbee != null) {
 			return true;
 		}
-		log.debug("Initializing local XBee");
-		// ensure that the needed RXTX is installed/loaded (if not install/load it)
-		requiresRestart = RS.initComm();
-		if (requiresRestart) {
-			return false;
+		final boolean loopback = Boolean.getBoolean(LoopbackXBee.PROPERTY_PREFIX);
+		IXBee transport;
+		if (loopback) {
+			log.debug("Initializing loopback XBee");
+			transport = new LoopbackXBee().configure(System.getProperties());
+		} else {
+			log.debug("Initializing local XBee");
+			// ensure that the needed RXTX is installed/loaded (if not install/load it)
+			requiresRestart = RS.initComm();
+			if (requiresRestart) {
+				return false;
+			}
+			transport = new XBee();
 		}
-		xbee = new XBee();
-		packetListener = new UGateXBeePacketListener() {
-			@Override
-			protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
-				UGateKeeper.DEFAULT.notifyListeners(event);
+		final String recordDir = System.getProperty(FrameRecorder.PROPERTY_DIRECTORY);
+		if (recordDir != null && !recordDir.isEmpty()) {
+			try {
+				frameRecorder = new FrameRecorder(Paths.get(recordDir));
+				transport = frameRecorder.wrap(transport);
+				log.info(String.format("Recording wireless frames to %1$s", recordDir));
+			} catch (final IOException | RuntimeException e) {
+				log.error(String.format("Unable to record wireless frames to %1$s", recordDir), e);
 			}
-		};
-		// test the serial ports
-		getSerialPorts();
+		}
+		setTransport(transport);
+		if (!loopback) {
+			// test the serial ports
+			getSerialPorts();
+		}
 		return true;
 	}
+
+	/**
+	 * Sets the transport used to communicate with the wireless network (i.e.
+	 * a serial {@linkplain XBee} or a simulated {@linkplain LoopbackXBee}).
+	 * Any existing connection will be closed.
+	 * 
+	 * @param transport
+	 *            the {@linkplain IXBee} transport
+	 */
+	public void setTransport(final IXBee transport) {
+		if (transport == null) {
+			throw new NullPointerException(IXBee.class.getName() + " cannot be null");
+		}
+		if (isConnected()) {
+			disconnect();
+		}
+		if (txQueue != null) {
+			txQueue.shutdown(new XBeeException("Wireless transport replaced"));
+		}
+		xbee = transport;
+		txQueue = new WirelessTxQueue(xbee);
+		isListening = false;
+		if (packetListener == null) {
+			packetListener = new UGateXBeePacketListener() {
+				@Override
+				protected <V extends RxData> void handleEvent(final UGateEvent<RemoteNode, V> event) {
+					UGateKeeper.DEFAULT.notifyListeners(event);
+				}
+			};
+		}
+	}
+
+	/**
+	 * @return the transport used to communicate with the wireless network
+	 *         (null when not initialized)
+	 */
+	public IXBee getTransport() {
+		return xbee;
+	}
+
+	/**
+	 * @return the {@linkplain FrameRecorder} used to record all wireless
+	 *         frames (null when not recording)
+	 */
+	public FrameRecorder getFrameRecorder() {
+		return frameRecorder;
+	}
 	
 	/**
 	 * Connects to the wireless network using the 
@@ -102,10 +183,16 @@ public class WirelessService extends ExtractorService<Actor> {
 		try {
 			xbee.open(extract().getHost().getComPort(), extract().getHost()
 					.getComBaud());
-			if (!isListening()) {
-				xbee.addPacketListener(packetListener);
-				isListening = true;
-			}
+			// index the host's nodes so received packets do not query the database
+			ServiceProvider.IMPL.getRemoteNodeIndex().load(
+					extract().getHost().getId());
+			// each connection of a serial XBee starts without any listeners
+			// (removed first for transports that retain their listeners)
+			xbee.removePacketListener(packetListener);
+			xbee.addPacketListener(packetListener);
+			xbee.removePacketListener(txQueue);
+			xbee.addPacketListener(txQueue);
+			isListening = true;
 			log.info(String
 					.format("Connected to local XBee using address %1$s and baud rate %2$s",
 							extract().getHost().getComAddress(),
@@ -150,6 +237,7 @@ public class WirelessService extends ExtractorService<Actor> {
 	 * @param notify true to notify listeners
 	 */
 	private void wirelessDisconnectInternal(final boolean notify) {
+		isListening = false;
 		if (isConnected()) {
 			String msg = "Disconnecting from XBee";
 			log.info(msg);
@@ -157,6 +245,7 @@ public class WirelessService extends ExtractorService<Actor> {
 				UGateKeeper.DEFAULT.notifyListeners(new UGateEvent<WirelessService, Void>(
 						WirelessService.this, UGateEvent.Type.WIRELESS_HOST_DISCONNECTING, false, msg));	
 			}
+			txQueue.failAll(new XBeeException("Disconnected from XBee"));
 			try {
 				xbee.close();
 				msg = "Disconnected from XBee";
@@ -263,6 +352,126 @@ public class WirelessService extends ExtractorService<Actor> {
 				UGateEvent.Type.INITIALIZE, false, null, command, null, data),
 				timeout, throwRuntimeException);
 	}
+
+	/**
+	 * Sends the data array to the {@linkplain RemoteNode#getAddress()} without
+	 * waiting for the transmit status. Multiple requests can be outstanding
+	 * at the same time.
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to send the data to
+	 * @param command
+	 *            the executing {@linkplain Command}
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            transmit status once sent before timing out
+	 * @param callback
+	 *            an optional {@linkplain WirelessTxQueue.TxCallback} that will
+	 *            be called when the transmit status is received or the request
+	 *            fails
+	 * @param data
+	 *            the data to send
+	 * @return the {@linkplain WirelessTxQueue.TxFuture} of the request
+	 * @throws IllegalStateException
+	 *             when not {@linkplain #isConnected()}
+	 * @throws NullPointerException
+	 *             when the {@linkplain RemoteNode} is null
+	 */
+	public WirelessTxQueue.TxFuture sendDataAsync(final RemoteNode remoteNode,
+			final Command command, final int timeout,
+			final WirelessTxQueue.TxCallback callback, final int... data)
+			throws IllegalStateException, NullPointerException {
+		return sendDataAsync(new UGateEvent<RemoteNode, int[]>(remoteNode,
+				UGateEvent.Type.INITIALIZE, false, null, command, null, data),
+				timeout, callback);
+	}
+
+	/**
+	 * Sends the data array to the {@linkplain RemoteNode#getAddress()} without
+	 * waiting for the transmit status
+	 * 
+	 * @param event
+	 *            the event that contains the <code>int</code> array of data to
+	 *            send {@linkplain UGateEvent#getNewValue()}, the
+	 *            {@linkplain UGateEvent#getCommand()}, and
+	 *            {@linkplain UGateEvent#getSource()} to send the data to
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            transmit status once sent before timing out
+	 * @param callback
+	 *            an optional {@linkplain WirelessTxQueue.TxCallback}
+	 * @return the {@linkplain WirelessTxQueue.TxFuture} of the request
+	 */
+	private WirelessTxQueue.TxFuture sendDataAsync(
+			final UGateEvent<RemoteNode, int[]> event, final int timeout,
+			final WirelessTxQueue.TxCallback callback) {
+		if (!isConnected()) {
+			throw new IllegalStateException(
+					RS.rbLabel(KEY.SERVICE_WIRELESS_CONNECTION_REQUIRED));
+		}
+		if (event.getSource() == null) {
+			throw new NullPointerException(
+					RS.rbLabel(KEY.SERVICE_WIRELESS_SEND_ADDY_UNDEFINED));
+		}
+		final int i = 0;
+		// bytes header command and status/failure code
+		final int[] bytesHeader = new int[] { event.getCommand().getKey(), RxData.Status.NORMAL.ordinal() };
+		final int[] bytes = event.getNewValue() != null && event.getNewValue().length > 0 ? 
+				UGateUtil.arrayConcatInt(bytesHeader, event.getNewValue()) : bytesHeader;
+		final XBeeAddress16 xbeeAddress = getXbeeAddress(event.getSource().getAddress());
+		// create a unicast packet to be delivered to the supplied address, with the pay load
+		final TxRequest16 request = new TxRequest16(xbeeAddress, bytes);
+		final UGateEvent<RemoteNode, int[]> txEvent = event.clone(UGateEvent.Type.WIRELESS_DATA_TX, i, 
+				KEY.SERVICE_WIRELESS_SENDING, bytes, event.getSource().getAddress());
+		if (log.isInfoEnabled()) {
+			log.info(txEvent.getMessageString());
+		}
+		UGateKeeper.DEFAULT.notifyListeners(txEvent);
+		final WirelessTxQueue.TxFuture txf = txQueue.submit(event.getSource(), request, 
+				timeout <= 0 ? DEFAULT_WAIT_MILISECONDS : timeout, new WirelessTxQueue.TxCallback() {
+			@Override
+			public void completed(final WirelessTxQueue.TxFuture future) {
+				if (future.isSuccess()) {
+					// packet was delivered successfully
+					final UGateEvent<RemoteNode, int[]> ackEvent = event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK, i, 
+							KEY.SERVICE_WIRELESS_ACK_SUCCESS, bytes, event.getSource().getAddress(), 
+							future.getResponse().getStatus());
+					if (log.isInfoEnabled()) {
+						log.info(ackEvent.getMessageString());
+					}
+					UGateKeeper.DEFAULT.notifyListeners(ackEvent);
+				} else if (future.getResponse() != null) {
+					// packet was not delivered
+					final String message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_FAILED, bytes, event.getSource().getAddress(), 
+							future.getResponse().getStatus());
+					log.error(message);
+					UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK_FAILED, i, message));
+				} else {
+					final String message = txFailureMessage(future);
+					log.error(message, future.getError());
+					UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, i, message));
+				}
+			}
+		});
+		if (callback != null) {
+			txf.addCallback(callback);
+		}
+		return txf;
+	}
+
+	/**
+	 * Gets the failure message for a {@linkplain WirelessTxQueue.TxFuture} that
+	 * completed with an error
+	 * 
+	 * @param future
+	 *            the {@linkplain WirelessTxQueue.TxFuture}
+	 * @return the message
+	 */
+	private static String txFailureMessage(final WirelessTxQueue.TxFuture future) {
+		return future.getError() instanceof XBeeTimeoutException ? 
+				RS.rbLabel(KEY.SERVICE_WIRELESS_TX_TIMEOUT, future.getRemoteNode().getAddress()) : 
+					RS.rbLabel(KEY.SERVICE_WIRELESS_TX_FAILED, future.getRemoteNode().getAddress());
+	}
 	
 	/**
 	 * Sends the data array to the {@linkplain RemoteNode#getAddress()}
@@ -301,58 +510,42 @@ public class WirelessService extends ExtractorService<Actor> {
 				return false;
 			}
 		}
-		int i = 0;
-		int failureCount = 0;
+		WirelessTxQueue.TxFuture txf = null;
 		try {
-			// bytes header command and status/failure code
-			final int[] bytesHeader = new int[] { event.getCommand().getKey(), RxData.Status.NORMAL.ordinal() };
-			final int[] bytes = event.getNewValue() != null && event.getNewValue().length > 0 ? 
-					UGateUtil.arrayConcatInt(bytesHeader, event.getNewValue()) : bytesHeader;
-			final XBeeAddress16 xbeeAddress = getXbeeAddress(event.getSource().getAddress());
-			// create a unicast packet to be delivered to the supplied address, with the pay load
-			final TxRequest16 request = new TxRequest16(xbeeAddress, bytes);
-			message = RS.rbLabel(KEY.SERVICE_WIRELESS_SENDING, bytes, event.getSource().getAddress());
-			log.info(message);
-			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX, i, message));
 			// send the packet and wait up to 12 seconds for the transmit status reply
-			final TxStatusResponse response = (TxStatusResponse) xbee.sendSynchronous(request, 
-					timeout <= 0 ? DEFAULT_WAIT_MILISECONDS : timeout);
-			if (response.isSuccess()) {
-				// packet was delivered successfully
-				message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_SUCCESS, bytes, event.getSource().getAddress(), response.getStatus());
-				log.info(message);
-				UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK, i, message));
-			} else {
-				// packet was not delivered
-				failureCount++;
-				message = RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_FAILED, bytes, event.getSource().getAddress(), response.getStatus());
-				if (throwRuntimeException) {
-					throw new RuntimeException(message);
-				} else {
-					log.error(message);
-				}
-				UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_ACK_FAILED, i, message));
+			txf = sendDataAsync(event, timeout, null);
+			final TxStatusResponse response = txf.get();
+			if (!response.isSuccess() && throwRuntimeException) {
+				throw new RuntimeException(RS.rbLabel(KEY.SERVICE_WIRELESS_ACK_FAILED, 
+						txf.getRequest().getPayload(), event.getSource().getAddress(), response.getStatus()));
 			}
-		} catch (XBeeTimeoutException e) {
-			failureCount++;
-			message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_TIMEOUT, event.getSource().getAddress());
+			return response.isSuccess();
+		} catch (final ExecutionException e) {
+			// failure has already been logged/notified
+			if (throwRuntimeException) {
+				throw new RuntimeException(txFailureMessage(txf), e.getCause());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_FAILED, event.getSource().getAddress());
 			if (throwRuntimeException) {
 				throw new RuntimeException(message, e);
 			} else {
 				log.error(message, e);
 			}
-			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, i, message));
-		} catch (final Throwable t) {
-			failureCount++;
+		} catch (final RuntimeException e) {
+			if (txf != null) {
+				throw e;
+			}
 			message = RS.rbLabel(KEY.SERVICE_WIRELESS_TX_FAILED, event.getSource().getAddress());
 			if (throwRuntimeException) {
-				throw new RuntimeException(message, t);
+				throw new RuntimeException(message, e);
 			} else {
-				log.error(message, t);
+				log.error(message, e);
 			}
-			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, i, message));
+			UGateKeeper.DEFAULT.notifyListeners(event.clone(UGateEvent.Type.WIRELESS_DATA_TX_FAILED, 0, message));
 		}
-		return failureCount == 0;
+		return false;
 	}
 
 	/**
@@ -386,7 +579,9 @@ public class WirelessService extends ExtractorService<Actor> {
 				response = remoteResponse;
 			} else {
 				response = (AtCommandResponse) xbee
-						.sendSynchronous(new AtCommand("MY"));
+						.sendSynchronous(new AtCommand("MY"),
+								timeout <= 0 ? DEFAULT_WAIT_MILISECONDS
+										: timeout);
 			}
 			if (response.isOk()) {
 				responseValue = response.getValue();
@@ -434,7 +629,10 @@ public class WirelessService extends ExtractorService<Actor> {
 	
 	/**
 	 * Synchronizes the locally hosted settings with the remote wireless node(s)
+	 * using up to {@linkplain WirelessTxQueue#DEFAULT_MAX_OUTSTANDING}
+	 * concurrent transmissions
 	 * 
+	 * @see #syncSettings(int, int, int, RemoteNode...)
 	 * @param timeout
 	 *            the number of milliseconds that will be used to wait for a
 	 *            response before timing out
@@ -447,24 +645,23 @@ public class WirelessService extends ExtractorService<Actor> {
 	 */
 	public boolean sendSettings(final int timeout,
 			final boolean throwRuntimeException, final RemoteNode... remoteNode) {
-		boolean allSuccess = false;
 		if (!isConnected()) {
-			return allSuccess;
+			return false;
 		}
 		try {
-			for (final RemoteNode rn : remoteNode) {
-				final RxTxRemoteNodeDTO sd = new RxTxRemoteNodeDTO(rn);
-				final int[] sendData = sd.getData();
-				log.info(String.format("Attempting to send: %s", sd));
-				final UGateEvent<RemoteNode, int[]> event = new UGateEvent<>(
-						rn, UGateEvent.Type.INITIALIZE, false, null,
-						Command.SENSOR_SEND_SETTINGS, null, sendData);
-				if (sendData(event, timeout, throwRuntimeException)) {
-					log.info(String.format("Settings sent to %1$s",
-							rn.getAddress()));
-					allSuccess = true;
+			final Map<RemoteNode, Boolean> results = syncSettings(timeout,
+					WirelessTxQueue.DEFAULT_MAX_OUTSTANDING, 0, remoteNode);
+			final List<String> failed = new ArrayList<>();
+			for (final Map.Entry<RemoteNode, Boolean> result : results.entrySet()) {
+				if (!result.getValue()) {
+					failed.add(result.getKey().getAddress());
 				}
 			}
+			if (!failed.isEmpty() && throwRuntimeException) {
+				throw new RuntimeException(String.format(
+						"Unable to send settings to %1$s", failed));
+			}
+			return failed.isEmpty();
 		} catch (final Throwable t) {
 			if (throwRuntimeException && t instanceof RuntimeException) {
 				throw (RuntimeException) t;
@@ -474,7 +671,92 @@ public class WirelessService extends ExtractorService<Actor> {
 				log.error("Error while sending settings", t);
 			}
 		}
-		return allSuccess;
+		return false;
+	}
+
+	/**
+	 * Synchronizes the locally hosted settings with the remote wireless node(s)
+	 * by sending settings to multiple {@linkplain RemoteNode}s concurrently.
+	 * Only the {@linkplain RemoteNode}s that fail will be retried and each
+	 * {@linkplain RemoteNode#setDeviceSynchronized(boolean)} will be set
+	 * according to its individual result.
+	 * 
+	 * @param timeout
+	 *            the number of milliseconds that will be used to wait for a
+	 *            response before timing out
+	 * @param maxConcurrent
+	 *            the maximum number of {@linkplain RemoteNode}s that will be
+	 *            sent settings at the same time
+	 * @param retries
+	 *            the number of times the {@linkplain RemoteNode}s that failed
+	 *            will be retried
+	 * @param remoteNodes
+	 *            the {@linkplain RemoteNode}(s) to send the settings to
+	 * @return the result of each {@linkplain RemoteNode} (true when the
+	 *         settings were sent successfully)
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for results
+	 */
+	public Map<RemoteNode, Boolean> syncSettings(final int timeout,
+			final int maxConcurrent, final int retries,
+			final RemoteNode... remoteNodes) throws InterruptedException {
+		final Map<RemoteNode, Boolean> results = new LinkedHashMap<>();
+		if (remoteNodes == null || remoteNodes.length == 0) {
+			return results;
+		}
+		final Semaphore permits = new Semaphore(Math.max(maxConcurrent, 1));
+		List<RemoteNode> pending = new ArrayList<>(remoteNodes.length);
+		for (final RemoteNode rn : remoteNodes) {
+			if (rn != null && !pending.contains(rn)) {
+				pending.add(rn);
+			}
+		}
+		for (int attempt = 0; attempt <= retries && !pending.isEmpty(); attempt++) {
+			if (attempt > 0) {
+				log.info(String.format("Retrying settings for %1$s node(s) (attempt %2$s of %3$s)", 
+						pending.size(), attempt, retries));
+			}
+			final ConcurrentMap<RemoteNode, Boolean> attemptResults = new ConcurrentHashMap<>();
+			final CountDownLatch remaining = new CountDownLatch(pending.size());
+			for (final RemoteNode rn : pending) {
+				permits.acquire();
+				final WirelessTxQueue.TxCallback callback = new WirelessTxQueue.TxCallback() {
+					@Override
+					public void completed(final WirelessTxQueue.TxFuture future) {
+						attemptResults.put(rn, future.isSuccess());
+						permits.release();
+						remaining.countDown();
+					}
+				};
+				try {
+					final RxTxRemoteNodeDTO sd = new RxTxRemoteNodeDTO(rn);
+					log.info(String.format("Attempting to send: %s", sd));
+					sendDataAsync(new UGateEvent<RemoteNode, int[]>(rn, UGateEvent.Type.INITIALIZE, 
+							false, null, Command.SENSOR_SEND_SETTINGS, null, sd.getData()), 
+							timeout, callback);
+				} catch (final RuntimeException e) {
+					log.error(String.format("Unable to send settings to %1$s", 
+							rn.getAddress()), e);
+					attemptResults.put(rn, false);
+					permits.release();
+					remaining.countDown();
+				}
+			}
+			remaining.await();
+			final List<RemoteNode> failed = new ArrayList<>();
+			for (final RemoteNode rn : pending) {
+				final boolean success = attemptResults.get(rn);
+				results.put(rn, success);
+				rn.setDeviceSynchronized(success);
+				if (success) {
+					log.info(String.format("Settings sent to %1$s", rn.getAddress()));
+				} else {
+					failed.add(rn);
+				}
+			}
+			pending = failed;
+		}
+		return results;
 	}
 
 	/**
@@ -0,0 +1,451 @@
+package org.ugate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+import com.rapplogic.xbee.api.IXBee;
+import com.rapplogic.xbee.api.PacketListener;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.XBeeTimeoutException;
+import com.rapplogic.xbee.api.wpan.TxRequest16;
+import com.rapplogic.xbee.api.wpan.TxStatusResponse;
+
+/**
+ * Pipelined transmit queue that assigns XBee frame IDs to outgoing
+ * {@linkplain TxRequest16}s so that multiple requests can be outstanding at the
+ * same time. Each received {@linkplain TxStatusResponse} is correlated back to
+ * the request with the same frame ID and completes the {@linkplain TxFuture}
+ * that was returned when the request was submitted. When the maximum number of
+ * outstanding requests has been reached, subsequent requests are queued and
+ * sent as earlier requests complete.
+ */
+public class WirelessTxQueue implements PacketListener {
+
+	private static final Logger log = LoggerFactory.getLogger(WirelessTxQueue.class);
+	/**
+	 * The default maximum number of requests awaiting a
+	 * {@linkplain TxStatusResponse}
+	 */
+	public static final int DEFAULT_MAX_OUTSTANDING = 8;
+	/**
+	 * The maximum XBee frame ID (zero is reserved for requests that do not
+	 * want a {@linkplain TxStatusResponse})
+	 */
+	private static final int MAX_FRAME_ID = 0xFF;
+	private final IXBee xbee;
+	private final int maxOutstanding;
+	private final ConcurrentMap<Integer, TxFuture> outstanding = new ConcurrentHashMap<>();
+	private final Queue<TxFuture> waiting = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger frameIdSeq = new AtomicInteger();
+	private final ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * Constructor using {@link #DEFAULT_MAX_OUTSTANDING}
+	 *
+	 * @param xbee
+	 *            the {@linkplain IXBee} to send requests with
+	 */
+	public WirelessTxQueue(final IXBee xbee) {
+		this(xbee, DEFAULT_MAX_OUTSTANDING);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param xbee
+	 *            the {@linkplain IXBee} to send requests with
+	 * @param maxOutstanding
+	 *            the maximum number of requests awaiting a
+	 *            {@linkplain TxStatusResponse}
+	 */
+	public WirelessTxQueue(final IXBee xbee, final int maxOutstanding) {
+		if (maxOutstanding <= 0 || maxOutstanding >= MAX_FRAME_ID) {
+			throw new IllegalArgumentException(String.format(
+					"Maximum outstanding requests must be between 1 and %1$s",
+					MAX_FRAME_ID - 1));
+		}
+		this.xbee = xbee;
+		this.maxOutstanding = maxOutstanding;
+		this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, WirelessTxQueue.class.getSimpleName() + "-timeout");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Submits a request for transmission. The request will be sent
+	 * immediately when the number of outstanding requests permits or queued
+	 * until an outstanding request completes.
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} the request is for
+	 * @param request
+	 *            the {@linkplain TxRequest16} to send (the frame ID will be
+	 *            assigned)
+	 * @param timeout
+	 *            the number of milliseconds to wait for the
+	 *            {@linkplain TxStatusResponse} once the request has been sent
+	 * @param callback
+	 *            an optional {@linkplain TxCallback} that will be called when
+	 *            the request completes
+	 * @return the {@linkplain TxFuture} for the request
+	 */
+	public TxFuture submit(final RemoteNode remoteNode,
+			final TxRequest16 request, final int timeout,
+			final TxCallback callback) {
+		final TxFuture txf = new TxFuture(remoteNode, request, timeout, callback);
+		waiting.add(txf);
+		sendWaiting();
+		return txf;
+	}
+
+	/**
+	 * Fails all outstanding and waiting requests (i.e. when the connection has
+	 * been closed)
+	 *
+	 * @param cause
+	 *            the cause of the failure
+	 */
+	public void failAll(final Throwable cause) {
+		TxFuture txf;
+		while ((txf = waiting.poll()) != null) {
+			txf.complete(null, cause);
+		}
+		for (final TxFuture otxf : new ArrayList<>(outstanding.values())) {
+			if (outstanding.remove(otxf.frameId, otxf)) {
+				otxf.complete(null, cause);
+			}
+		}
+	}
+
+	/**
+	 * Fails all outstanding and waiting requests and releases the timeout
+	 * thread (the queue cannot be used afterwards)
+	 *
+	 * @param cause
+	 *            the cause of the failure
+	 */
+	public void shutdown(final Throwable cause) {
+		failAll(cause);
+		timer.shutdownNow();
+	}
+
+	/**
+	 * @return the number of requests awaiting a {@linkplain TxStatusResponse}
+	 */
+	public int getOutstandingCount() {
+		return outstanding.size();
+	}
+
+	/**
+	 * @return the number of requests waiting to be sent
+	 */
+	public int getWaitingCount() {
+		return waiting.size();
+	}
+
+	/**
+	 * Correlates {@linkplain TxStatusResponse}s to outstanding requests
+	 *
+	 * @param response
+	 *            the {@linkplain XBeeResponse}
+	 */
+	@Override
+	public void processResponse(final XBeeResponse response) {
+		if (!(response instanceof TxStatusResponse)) {
+			return;
+		}
+		final TxStatusResponse txResponse = (TxStatusResponse) response;
+		final TxFuture txf = outstanding.remove(txResponse.getFrameId());
+		if (txf == null) {
+			if (log.isDebugEnabled()) {
+				log.debug(String.format("Received %1$s for frame ID %2$s with no outstanding request",
+						TxStatusResponse.class.getSimpleName(), txResponse.getFrameId()));
+			}
+			return;
+		}
+		txf.complete(txResponse, null);
+		sendWaiting();
+	}
+
+	/**
+	 * Sends waiting requests while the number of outstanding requests is below
+	 * the maximum
+	 */
+	private synchronized void sendWaiting() {
+		TxFuture txf;
+		while (outstanding.size() < maxOutstanding && (txf = waiting.poll()) != null) {
+			final int frameId = nextFrameId(txf);
+			if (frameId <= 0) {
+				// all frame IDs are in use
+				waiting.add(txf);
+				return;
+			}
+			txf.request.setFrameId(frameId);
+			try {
+				txf.timeoutTask = timer.schedule(new Timeout(txf), txf.timeout,
+						TimeUnit.MILLISECONDS);
+				xbee.sendAsynchronous(txf.request);
+			} catch (final Throwable t) {
+				if (outstanding.remove(frameId, txf)) {
+					txf.complete(null, t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reserves the next available frame ID for a {@linkplain TxFuture}
+	 *
+	 * @param txf
+	 *            the {@linkplain TxFuture} to reserve the frame ID for
+	 * @return the frame ID (or zero when none are available)
+	 */
+	private int nextFrameId(final TxFuture txf) {
+		for (int i = 0; i < MAX_FRAME_ID; i++) {
+			final int frameId = (frameIdSeq.getAndIncrement() & 0x7FFFFFFF) % MAX_FRAME_ID + 1;
+			if (outstanding.putIfAbsent(frameId, txf) == null) {
+				txf.frameId = frameId;
+				return frameId;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Times out an outstanding {@linkplain TxFuture}
+	 */
+	private class Timeout implements Runnable {
+		private final TxFuture txf;
+
+		Timeout(final TxFuture txf) {
+			this.txf = txf;
+		}
+
+		@Override
+		public void run() {
+			if (outstanding.remove(txf.frameId, txf)) {
+				txf.complete(null, new XBeeTimeoutException());
+				sendWaiting();
+			}
+		}
+	}
+
+	/**
+	 * Callback for completed {@linkplain TxFuture}s
+	 */
+	public static interface TxCallback {
+
+		/**
+		 * Called when a {@linkplain TxFuture} completes
+		 *
+		 * @param future
+		 *            the completed {@linkplain TxFuture}
+		 */
+		void completed(final TxFuture future);
+	}
+
+	/**
+	 * {@linkplain Future} of a submitted {@linkplain TxRequest16}
+	 */
+	public static class TxFuture implements Future<TxStatusResponse> {
+		private final RemoteNode remoteNode;
+		private final TxRequest16 request;
+		private final int timeout;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private final List<TxCallback> callbacks = new ArrayList<>(1);
+		private volatile int frameId;
+		private volatile ScheduledFuture<?> timeoutTask;
+		private volatile TxStatusResponse response;
+		private volatile Throwable error;
+
+		TxFuture(final RemoteNode remoteNode, final TxRequest16 request,
+				final int timeout, final TxCallback callback) {
+			this.remoteNode = remoteNode;
+			this.request = request;
+			this.timeout = timeout;
+			if (callback != null) {
+				callbacks.add(callback);
+			}
+		}
+
+		/**
+		 * Completes the {@linkplain TxFuture} and calls the
+		 * {@linkplain TxCallback}s
+		 *
+		 * @param response
+		 *            the {@linkplain TxStatusResponse} (null when an error
+		 *            occurred)
+		 * @param error
+		 *            the error (null when a {@linkplain TxStatusResponse} was
+		 *            received)
+		 */
+		void complete(final TxStatusResponse response, final Throwable error) {
+			final List<TxCallback> cbs;
+			synchronized (callbacks) {
+				if (isDone()) {
+					return;
+				}
+				this.response = response;
+				this.error = error;
+				if (timeoutTask != null) {
+					timeoutTask.cancel(false);
+				}
+				done.countDown();
+				cbs = new ArrayList<>(callbacks);
+				callbacks.clear();
+			}
+			for (final TxCallback cb : cbs) {
+				notifyCallback(cb);
+			}
+		}
+
+		/**
+		 * Adds a {@linkplain TxCallback} that will be called when the
+		 * {@linkplain TxFuture} completes (called immediately when it has
+		 * already completed)
+		 *
+		 * @param callback
+		 *            the {@linkplain TxCallback}
+		 */
+		public void addCallback(final TxCallback callback) {
+			synchronized (callbacks) {
+				if (!isDone()) {
+					callbacks.add(callback);
+					return;
+				}
+			}
+			notifyCallback(callback);
+		}
+
+		private void notifyCallback(final TxCallback callback) {
+			try {
+				callback.completed(this);
+			} catch (final Throwable t) {
+				log.error(String.format("Unable to notify %1$s of completed frame ID %2$s",
+						callback, frameId), t);
+			}
+		}
+
+		/**
+		 * @return true when a successful {@linkplain TxStatusResponse} has
+		 *         been received
+		 */
+		public boolean isSuccess() {
+			return response != null && response.isSuccess();
+		}
+
+		/**
+		 * @return the {@linkplain RemoteNode} the request was sent to
+		 */
+		public RemoteNode getRemoteNode() {
+			return remoteNode;
+		}
+
+		/**
+		 * @return the {@linkplain TxRequest16}
+		 */
+		public TxRequest16 getRequest() {
+			return request;
+		}
+
+		/**
+		 * @return the assigned frame ID (zero until sent)
+		 */
+		public int getFrameId() {
+			return frameId;
+		}
+
+		/**
+		 * @return the {@linkplain TxStatusResponse} (null when not completed
+		 *         or when an error occurred)
+		 */
+		public TxStatusResponse getResponse() {
+			return response;
+		}
+
+		/**
+		 * @return the error that occurred (null when not completed or when a
+		 *         {@linkplain TxStatusResponse} was received)
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public TxStatusResponse get() throws InterruptedException,
+				ExecutionException {
+			done.await();
+			return result();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public TxStatusResponse get(final long timeout, final TimeUnit unit)
+				throws InterruptedException, ExecutionException,
+				TimeoutException {
+			if (!done.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return result();
+		}
+
+		private TxStatusResponse result() throws ExecutionException {
+			if (error != null) {
+				throw new ExecutionException(error);
+			}
+			return response;
+		}
+	}
+}
@@ -4,12 +4,16 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import javax.persistence.Cache;
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
 import javax.validation.ConstraintViolationException;
 
+import org.apache.openjpa.datacache.CacheStatistics;
+import org.apache.openjpa.persistence.StoreCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.ugate.service.entity.Model;
@@ -42,6 +46,20 @@ public abstract class Dao {
 		getEntityManager().persist(entity);
 	}
 	
+	/**
+	 * Persists a batch of {@linkplain Entity}(s) using the same
+	 * {@linkplain EntityManager}
+	 * 
+	 * @param entities
+	 *            the entities to persist
+	 */
+	public void persistEntities(final Collection<? extends Model> entities) {
+		final EntityManager em = getEntityManager();
+		for (final Model entity : entities) {
+			em.persist(entity);
+		}
+	}
+	
 	/**
 	 * Merges an {@linkplain Entity}
 	 * 
@@ -65,6 +83,43 @@ public abstract class Dao {
 		return getEntityManager().find(modelClass, entityId);
 	}
 
+	/**
+	 * Evicts {@linkplain Model}(s) from the second-level cache so that the
+	 * next access reads them from the database
+	 * 
+	 * @param modelClass
+	 *            the {@linkplain Model} class
+	 * @param entityIds
+	 *            the {@linkplain Model} IDs (none to evict every
+	 *            {@linkplain Model} of the class)
+	 */
+	public void evict(final Class<? extends Model> modelClass,
+			final Object... entityIds) {
+		final Cache cache = getEntityManager().getEntityManagerFactory()
+				.getCache();
+		if (cache == null) {
+			return;
+		}
+		if (entityIds == null || entityIds.length == 0) {
+			cache.evict(modelClass);
+			return;
+		}
+		for (final Object id : entityIds) {
+			cache.evict(modelClass, id);
+		}
+	}
+
+	/**
+	 * @return the {@linkplain CacheStatistics} of the second-level cache (null
+	 *         when the cache is disabled)
+	 */
+	public CacheStatistics getCacheStatistics() {
+		final Cache cache = getEntityManager().getEntityManagerFactory()
+				.getCache();
+		return cache instanceof StoreCache ? ((StoreCache) cache)
+				.getStatistics() : null;
+	}
+
 	/**
 	 * Deletes {@linkplain Model}(s) based upon a field name within it
 	 * 
@@ -1,6 +1,8 @@
 package org.ugate.service.dao;
 
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -9,8 +11,10 @@ import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
 
 import org.springframework.stereotype.Repository;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
 import org.ugate.service.entity.jpa.RemoteNode;
 import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
 
 /**
  * {@linkplain RemoteNode} DAO
@@ -29,6 +33,11 @@ public class RemoteNodeDao extends Dao {
 		return q.getSingleResult();
 	}
 
+	public List<RemoteNode> findAll() {
+		return em.createQuery("select rn from RemoteNode rn order by rn.id",
+				RemoteNode.class).getResultList();
+	}
+
 	public List<RemoteNode> findByHostId(final int hostId) {
 		final TypedQuery<RemoteNode> q = em.createQuery(
 				"select rn from RemoteNode rn where rn.host.id = :hostId",
@@ -64,6 +73,34 @@ public class RemoteNodeDao extends Dao {
 		return q.getResultList();
 	}
 
+	public List<RemoteNodeReading> findReadingsAfter(final int remoteNodeId,
+			final Date afterDate, final int afterId, final Date endExclusive,
+			final int maxResults) {
+		return em
+				.createQuery(
+						"select rnr from RemoteNodeReading rnr where rnr.remoteNode.id = :id and rnr.readDate >= :ad and (rnr.readDate > :ad or rnr.id > :aid) and rnr.readDate < :ed order by rnr.remoteNode.id asc, rnr.readDate asc, rnr.id asc",
+						RemoteNodeReading.class).setParameter("id", remoteNodeId)
+				.setParameter("ad", afterDate, TemporalType.TIMESTAMP)
+				.setParameter("aid", afterId)
+				.setParameter("ed", endExclusive, TemporalType.TIMESTAMP)
+				.setMaxResults(maxResults).getResultList();
+	}
+
+	public List<Object[]> findReadingColumnsAfter(final int remoteNodeId,
+			final Date afterDate, final int afterId, final Date endExclusive,
+			final int maxResults) {
+		return em
+				.createQuery(
+						"select "
+								+ RemoteNodeReadingColumns.SELECT
+								+ " from RemoteNodeReading rnr where rnr.remoteNode.id = :id and rnr.readDate >= :ad and (rnr.readDate > :ad or rnr.id > :aid) and rnr.readDate < :ed order by rnr.remoteNode.id asc, rnr.readDate asc, rnr.id asc",
+						Object[].class).setParameter("id", remoteNodeId)
+				.setParameter("ad", afterDate, TemporalType.TIMESTAMP)
+				.setParameter("aid", afterId)
+				.setParameter("ed", endExclusive, TemporalType.TIMESTAMP)
+				.setMaxResults(maxResults).getResultList();
+	}
+
 	public void deleteReadingsByIdAndDate(final RemoteNode remoteNode,
 			final Calendar startInclusive, final Calendar endExclusive) {
 		final TypedQuery<RemoteNodeReading> q = em
@@ -76,6 +113,86 @@ public class RemoteNodeDao extends Dao {
 		q.executeUpdate();
 	}
 
+	public List<Integer> findReadingIdsBefore(final int remoteNodeId,
+			final Date endExclusive, final int maxResults) {
+		return em
+				.createQuery(
+						"select rnr.id from RemoteNodeReading rnr where rnr.remoteNode.id = :id and rnr.readDate < :ed order by rnr.remoteNode.id asc, rnr.readDate asc, rnr.id asc",
+						Integer.class).setParameter("id", remoteNodeId)
+				.setParameter("ed", endExclusive, TemporalType.TIMESTAMP)
+				.setMaxResults(maxResults).getResultList();
+	}
+
+	public int deleteReadingsById(final Collection<Integer> ids) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		return em
+				.createQuery(
+						"delete from RemoteNodeReading rnr where rnr.id in :ids")
+				.setParameter("ids", ids).executeUpdate();
+	}
+
+	public RemoteNodeReadingRollup findRollup(final int remoteNodeId,
+			final RemoteNodeReadingRollup.Resolution resolution,
+			final Date bucketStart) {
+		final List<RemoteNodeReadingRollup> rus = em
+				.createQuery(
+						"select ru from RemoteNodeReadingRollup ru where ru.remoteNode.id = :id and ru.resolution = :res and ru.bucketStart = :bs",
+						RemoteNodeReadingRollup.class)
+				.setParameter("id", remoteNodeId)
+				.setParameter("res", resolution)
+				.setParameter("bs", bucketStart, TemporalType.TIMESTAMP)
+				.getResultList();
+		return rus.isEmpty() ? null : rus.get(0);
+	}
+
+	public List<RemoteNodeReadingRollup> findRollups(
+			final RemoteNode remoteNode,
+			final RemoteNodeReadingRollup.Resolution resolution,
+			final Date startInclusive, final Date endExclusive) {
+		final TypedQuery<RemoteNodeReadingRollup> q = em
+				.createQuery(
+						"select ru from RemoteNodeReadingRollup ru where ru.remoteNode.id = :id and ru.resolution = :res and ru.bucketStart >= :sd and ru.bucketStart < :ed order by ru.bucketStart asc",
+						RemoteNodeReadingRollup.class);
+		q.setParameter("id", remoteNode.getId());
+		q.setParameter("res", resolution);
+		q.setParameter("sd", startInclusive, TemporalType.TIMESTAMP);
+		q.setParameter("ed", endExclusive, TemporalType.TIMESTAMP);
+		return q.getResultList();
+	}
+
+	public int deleteRollups(final RemoteNode remoteNode,
+			final Date startInclusive, final Date endExclusive) {
+		return em
+				.createQuery(
+						"delete from RemoteNodeReadingRollup ru where ru.remoteNode.id = :id and ru.bucketStart >= :sd and ru.bucketStart < :ed")
+				.setParameter("id", remoteNode.getId())
+				.setParameter("sd", startInclusive, TemporalType.TIMESTAMP)
+				.setParameter("ed", endExclusive, TemporalType.TIMESTAMP)
+				.executeUpdate();
+	}
+
+	public List<Integer> findRollupIdsBefore(final int remoteNodeId,
+			final Date endExclusive, final int maxResults) {
+		return em
+				.createQuery(
+						"select ru.id from RemoteNodeReadingRollup ru where ru.remoteNode.id = :id and ru.bucketStart < :ed order by ru.bucketStart asc, ru.id asc",
+						Integer.class).setParameter("id", remoteNodeId)
+				.setParameter("ed", endExclusive, TemporalType.TIMESTAMP)
+				.setMaxResults(maxResults).getResultList();
+	}
+
+	public int deleteRollupsById(final Collection<Integer> ids) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		return em
+				.createQuery(
+						"delete from RemoteNodeReadingRollup ru where ru.id in :ids")
+				.setParameter("ids", ids).executeUpdate();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
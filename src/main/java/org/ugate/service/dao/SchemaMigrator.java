@@ -0,0 +1,667 @@
+package org.ugate.service.dao;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+import org.ugate.service.entity.jpa.AppInfo;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup;
+
+/**
+ * Applies versioned schema {@linkplain Migration}s to the database before the
+ * JPA persistence unit is created (replaces synchronizing the entity mappings
+ * with the schema on every startup). The current schema version is recorded
+ * in the {@linkplain AppInfo#getSchemaVersion()} of every {@linkplain AppInfo}
+ * so that startup only needs to check the version when the schema is current
+ * (until the first {@linkplain AppInfo} is added the {@linkplain Migration}s
+ * are checked on each startup).
+ * Each {@linkplain Migration} is applied once, in version order, using plain
+ * JDBC and creates/alters only what is missing so that databases that were
+ * previously created from the entity mappings are upgraded in place.
+ * <p>
+ * Changes to the entity mappings require a new {@linkplain Migration} with
+ * the next version to be added to {@linkplain #MIGRATIONS}.
+ * </p>
+ */
+public class SchemaMigrator {
+
+	private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+	private static final String VERSION_TABLE = "APP_INFO";
+	private static final String VERSION_COLUMN = "SCHEMA_VERSION";
+	/**
+	 * The {@linkplain Migration}s in version order
+	 */
+	private static final Migration[] MIGRATIONS = {
+		new Migration(1, "Baseline schema") {
+			@Override
+			protected void apply(final Connection con) throws SQLException {
+				createSequence(con, "HOST_ID", 1);
+				createSequence(con, "ACTOR_ID", 1);
+				createSequence(con, "ROLE_ID", 1);
+				createSequence(con, "MAIL_RECIPIENT_ID", 1);
+				createSequence(con, "SQ_REMOTE_NODE_ID", 1);
+				createSequence(con, "SQ_REMOTE_NODE_RD_ID", 50);
+				createSequence(con, "SQ_REMOTE_NODE_RU_ID", 50);
+				ensureTable(con, "HOST", new String[] {
+						"ID INTEGER NOT NULL",
+						"COM_ON_AT_APP_STARTUP INTEGER NOT NULL",
+						"COM_ADDRESS VARCHAR(100)", "COM_BAUD INTEGER",
+						"COM_PORT VARCHAR(50)",
+						"MAIL_ON_AT_COM_STARTUP INTEGER NOT NULL",
+						"MAIL_IMAP_HOST VARCHAR(100)", "MAIL_IMAP_PORT INTEGER",
+						"MAIL_INBOX_NAME VARCHAR(100)",
+						"MAIL_PASSWORD VARCHAR(1024)",
+						"MAIL_SMTP_HOST VARCHAR(100)", "MAIL_SMTP_PORT INTEGER",
+						"MAIL_USER_NAME VARCHAR(100)", "MAIL_USE_SSL INTEGER",
+						"MAIL_USE_TLS INTEGER", "USE_METRIC BOOLEAN NOT NULL",
+						"WEB_ON_AT_COM_STARTUP INTEGER NOT NULL",
+						"WEB_HOST VARCHAR(255)", "WEB_PORT INTEGER",
+						"WEB_HOST_LOCAL VARCHAR(255)", "WEB_PORT_LOCAL INTEGER",
+						"WEB_KEY_STORE BLOB" }, "PRIMARY KEY (ID)");
+				ensureTable(con, "ACTOR", new String[] {
+						"ID INTEGER NOT NULL", "USERNAME VARCHAR(100) NOT NULL",
+						"PASSWORD VARCHAR(64) NOT NULL",
+						"PASSPHRASE VARCHAR(1024) NOT NULL",
+						"HOST_ID INTEGER NOT NULL" }, "PRIMARY KEY (ID)",
+						"UNIQUE (USERNAME)",
+						"FOREIGN KEY (HOST_ID) REFERENCES HOST (ID)");
+				ensureTable(con, "ROLE", new String[] { "ID INTEGER NOT NULL",
+						"ROLE VARCHAR(100) NOT NULL" }, "PRIMARY KEY (ID)");
+				ensureTable(con, "ACTOR_ROLE", new String[] {
+						"ACTOR_ID INTEGER NOT NULL", "ROLE_ID INTEGER NOT NULL" },
+						"FOREIGN KEY (ACTOR_ID) REFERENCES ACTOR (ID)",
+						"FOREIGN KEY (ROLE_ID) REFERENCES ROLE (ID)");
+				ensureTable(con, "MAIL_RECIPIENT", new String[] {
+						"ID INTEGER NOT NULL", "EMAIL VARCHAR(100) NOT NULL",
+						"FIRST_NAME VARCHAR(100)", "LAST_NAME VARCHAR(100)" },
+						"PRIMARY KEY (ID)", "UNIQUE (EMAIL)");
+				ensureTable(con, "HOST_MAIL_RECIPIENT", new String[] {
+						"HOST_ID INTEGER NOT NULL",
+						"MAIL_RECIPIENT_ID INTEGER NOT NULL" },
+						"FOREIGN KEY (HOST_ID) REFERENCES HOST (ID)",
+						"FOREIGN KEY (MAIL_RECIPIENT_ID) REFERENCES MAIL_RECIPIENT (ID)");
+				ensureTable(con, VERSION_TABLE, new String[] {
+						"VERSION VARCHAR(20) NOT NULL",
+						"CREATED_DATE TIMESTAMP NOT NULL",
+						"DEFAULT_ACTOR_ID INTEGER",
+						VERSION_COLUMN + " INTEGER DEFAULT 0 NOT NULL" },
+						"PRIMARY KEY (VERSION)", "UNIQUE (CREATED_DATE, VERSION)",
+						"FOREIGN KEY (DEFAULT_ACTOR_ID) REFERENCES ACTOR (ID)");
+				ensureTable(con, "REMOTE_NODE", new String[] {
+						"ID INTEGER NOT NULL", "CREATED_DATE TIMESTAMP NOT NULL",
+						"ADDRESS VARCHAR(100) NOT NULL",
+						"CAM_ANGLE_PAN INTEGER NOT NULL",
+						"CAM_ANGLE_TILT INTEGER NOT NULL",
+						"CAM_LASER_TRIP_ANGLE_PAN INTEGER NOT NULL",
+						"CAM_LASER_TRIP_ANGLE_PRIORITY INTEGER NOT NULL",
+						"CAM_LASER_TRIP_ANGLE_TILT INTEGER NOT NULL",
+						"CAM_MW_TRIP_ANGLE_PAN INTEGER NOT NULL",
+						"CAM_MW_TRIP_ANGLE_PRIORITY INTEGER NOT NULL",
+						"CAM_MW_TRIP_ANGLE_TILT INTEGER NOT NULL",
+						"CAM_PIR_TRIP_ANGLE_PAN INTEGER NOT NULL",
+						"CAM_PIR_TRIP_ANGLE_PRIORITY INTEGER NOT NULL",
+						"CAM_PIR_TRIP_ANGLE_TILT INTEGER NOT NULL",
+						"CAM_RESOLUTION INTEGER NOT NULL",
+						"CAM_SONAR_TRIP_ANGLE_PAN INTEGER NOT NULL",
+						"CAM_SONAR_TRIP_ANGLE_PRIORITY INTEGER NOT NULL",
+						"CAM_SONAR_TRIP_ANGLE_TILT INTEGER NOT NULL",
+						"CAM_IMG_CAPTURE_RETRY_CNT INTEGER NOT NULL",
+						"CAM_IMG_CAPTURE_TIMEOUT INTEGER",
+						"DEVICE_SOUNDS_ON INTEGER NOT NULL",
+						"GATE_ACCESS_ON INTEGER NOT NULL",
+						"LASER_ANGLE_PAN INTEGER NOT NULL",
+						"LASER_ANGLE_TILT INTEGER NOT NULL",
+						"LASER_DELAY_BTWN_TRIPS INTEGER NOT NULL",
+						"LASER_DISTANCE_THRES_FEET INTEGER NOT NULL",
+						"LASER_DISTANCE_THRES_INCHES INTEGER NOT NULL",
+						"MAIL_ALERT_ON INTEGER NOT NULL",
+						"MULTI_ALARM_TRIP_STATE INTEGER NOT NULL",
+						"MW_ANGLE_PAN INTEGER NOT NULL",
+						"MW_DELAY_BTWN_TRIPS INTEGER NOT NULL",
+						"MW_SPEED_THRES_CYCLES_PER_SEC INTEGER NOT NULL",
+						"PIR_DELAY_BTWN_TRIPS INTEGER NOT NULL",
+						"SONAR_DELAY_BTWN_TRIPS INTEGER NOT NULL",
+						"SONAR_DISTANCE_THRES_FEET INTEGER NOT NULL",
+						"SONAR_DISTANCE_THRES_INCHES INTEGER NOT NULL",
+						"SONAR_PIR_ANGLE_PAN INTEGER NOT NULL",
+						"SONAR_PIR_ANGLE_TILT INTEGER NOT NULL",
+						"UNIVERSAL_REMOTE_ACCESS_CODE_1 INTEGER NOT NULL",
+						"UNIVERSAL_REMOTE_ACCESS_CODE_2 INTEGER NOT NULL",
+						"UNIVERSAL_REMOTE_ACCESS_CODE_3 INTEGER NOT NULL",
+						"UNIVERSAL_REMOTE_ACCESS_ON INTEGER NOT NULL",
+						"WORKING_DIR VARCHAR(100) NOT NULL",
+						"ALARMS_ON INTEGER NOT NULL",
+						"REPORT_READINGS INTEGER NOT NULL",
+						"DEVICE_AUTO_SYNCHRONIZE INTEGER",
+						"DEVICE_SYNCHRONIZED BOOLEAN",
+						"READING_RETENTION_DAYS INTEGER",
+						"ROLLUP_RETENTION_DAYS INTEGER",
+						"HOST_ID INTEGER NOT NULL" }, "PRIMARY KEY (ID)",
+						"UNIQUE (ADDRESS)",
+						"FOREIGN KEY (HOST_ID) REFERENCES HOST (ID)");
+				ensureTable(con, "REMOTE_NODE_READING", new String[] {
+						"ID INTEGER NOT NULL", "FROM_MULTI_STATE INTEGER",
+						"GATE_STATE INTEGER",
+						"LASER_CALIBRATED_ANGLE_PAN INTEGER",
+						"LASER_CALIBRATED_ANGLE_TILT INTEGER",
+						"LASER_FEET INTEGER", "LASER_INCHES INTEGER",
+						"MICROWAVE_CYCLE_COUNT INTEGER", "PIR_INTENSITY INTEGER",
+						"READ_DATE TIMESTAMP NOT NULL", "SONAR_FEET INTEGER",
+						"SONAR_INCHES INTEGER", "SIGNAL_STRENGTH INTEGER",
+						"REMOTE_NODE_ID INTEGER" }, "PRIMARY KEY (ID)",
+						"FOREIGN KEY (REMOTE_NODE_ID) REFERENCES REMOTE_NODE (ID)");
+				ensureTable(con, "REMOTE_NODE_READING_ROLLUP", new String[] {
+						"ID INTEGER NOT NULL", "REMOTE_NODE_ID INTEGER NOT NULL",
+						"RESOLUTION VARCHAR(10) NOT NULL",
+						"BUCKET_START TIMESTAMP NOT NULL",
+						"READING_COUNT INTEGER", "READ_COUNT INTEGER",
+						"SONAR_TRIP_COUNT INTEGER", "PIR_TRIP_COUNT INTEGER",
+						"MICROWAVE_TRIP_COUNT INTEGER",
+						"LASER_TRIP_COUNT INTEGER", "SONAR_MIN INTEGER",
+						"SONAR_MAX INTEGER", "SONAR_SUM BIGINT",
+						"LASER_MIN INTEGER", "LASER_MAX INTEGER",
+						"LASER_SUM BIGINT", "MICROWAVE_MIN INTEGER",
+						"MICROWAVE_MAX INTEGER", "MICROWAVE_SUM BIGINT",
+						"PIR_MIN INTEGER", "PIR_MAX INTEGER", "PIR_SUM BIGINT" },
+						"PRIMARY KEY (ID)",
+						"UNIQUE (REMOTE_NODE_ID, RESOLUTION, BUCKET_START)",
+						"FOREIGN KEY (REMOTE_NODE_ID) REFERENCES REMOTE_NODE (ID)");
+			}
+		},
+		new Migration(2, "Reading history indexes") {
+			@Override
+			protected void apply(final Connection con) throws SQLException {
+				// keyset paging, date range, retention and latest reading queries
+				execute(con, "CREATE INDEX IF NOT EXISTS IX_RNR_NODE_DATE ON REMOTE_NODE_READING (REMOTE_NODE_ID, READ_DATE, ID)");
+				// rollup retention (range queries use the unique constraint)
+				execute(con, "CREATE INDEX IF NOT EXISTS IX_RNRU_NODE_BUCKET ON REMOTE_NODE_READING_ROLLUP (REMOTE_NODE_ID, BUCKET_START, ID)");
+			}
+		},
+		new Migration(3, "Backfill reading rollups") {
+			@Override
+			protected void apply(final Connection con) throws SQLException {
+				// readings saved before rollups existed are only charted once rolled up
+				final int days = backfillRollups(con);
+				log.info(String.format("Rolled up %1$s day(s) of %2$s(s)", days,
+						RemoteNodeReading.class.getSimpleName()));
+			}
+		}
+	};
+	/**
+	 * The version of the schema after all of the {@linkplain Migration}s have
+	 * been applied
+	 */
+	public static final int VERSION = MIGRATIONS[MIGRATIONS.length - 1].version;
+	private final String url;
+	private final String username;
+	private final String password;
+
+	/**
+	 * Constructor
+	 *
+	 * @param driverName
+	 *            the JDBC driver class name
+	 * @param url
+	 *            the JDBC connection URL
+	 * @param username
+	 *            the database user name
+	 * @param password
+	 *            the database password
+	 * @throws ClassNotFoundException
+	 *             when the JDBC driver cannot be loaded
+	 */
+	public SchemaMigrator(final String driverName, final String url,
+			final String username, final String password)
+			throws ClassNotFoundException {
+		Class.forName(driverName);
+		this.url = url;
+		this.username = username;
+		this.password = password;
+	}
+
+	/**
+	 * Applies each {@linkplain Migration} that has a version greater than the
+	 * current schema version (only the version is checked when the schema is
+	 * current)
+	 *
+	 * @return the number of {@linkplain Migration}s applied
+	 * @throws SQLException
+	 *             when the version cannot be checked or a
+	 *             {@linkplain Migration} fails
+	 */
+	public int migrate() throws SQLException {
+		final long start = System.currentTimeMillis();
+		final Connection con = DriverManager.getConnection(url, username, password);
+		try {
+			final int current = getVersion(con);
+			if (current > VERSION) {
+				log.warn(String.format(
+						"Schema version %1$s is newer than the supported version %2$s",
+						current, VERSION));
+				return 0;
+			}
+			int applied = 0;
+			for (final Migration m : MIGRATIONS) {
+				if (m.version <= current) {
+					continue;
+				}
+				final long ms = System.currentTimeMillis();
+				con.setAutoCommit(false);
+				try {
+					m.apply(con);
+					setVersion(con, m.version);
+					con.commit();
+				} catch (final SQLException e) {
+					con.rollback();
+					throw new SQLException(String.format(
+							"Unable to apply schema migration %1$s: %2$s",
+							m.version, m.description), e);
+				} finally {
+					con.setAutoCommit(true);
+				}
+				applied++;
+				log.info(String.format("Applied schema migration %1$s: %2$s in %3$s ms",
+						m.version, m.description, System.currentTimeMillis() - ms));
+			}
+			log.info(String.format("Schema at version %1$s (%2$s migration(s) applied in %3$s ms)",
+					Math.max(current, VERSION), applied,
+					System.currentTimeMillis() - start));
+			return applied;
+		} finally {
+			con.close();
+		}
+	}
+
+	/**
+	 * Gets the current schema version from the {@linkplain AppInfo} table
+	 *
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @return the schema version (zero when the version has never been
+	 *         recorded)
+	 * @throws SQLException
+	 *             when the version cannot be read
+	 */
+	private static int getVersion(final Connection con) throws SQLException {
+		if (!hasColumn(con, VERSION_TABLE, VERSION_COLUMN)) {
+			return 0;
+		}
+		final Statement stmt = con.createStatement();
+		try {
+			final ResultSet rs = stmt.executeQuery(String.format(
+					"SELECT MAX(%1$s) FROM %2$s", VERSION_COLUMN, VERSION_TABLE));
+			return rs.next() ? rs.getInt(1) : 0;
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Records the schema version on every {@linkplain AppInfo} (new
+	 * {@linkplain AppInfo}s are created with the {@linkplain #VERSION})
+	 *
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @param version
+	 *            the schema version
+	 * @throws SQLException
+	 *             when the version cannot be written
+	 */
+	private static void setVersion(final Connection con, final int version)
+			throws SQLException {
+		final PreparedStatement ps = con.prepareStatement(String.format(
+				"UPDATE %1$s SET %2$s = ?", VERSION_TABLE, VERSION_COLUMN));
+		try {
+			ps.setInt(1, version);
+			ps.executeUpdate();
+		} finally {
+			ps.close();
+		}
+	}
+
+	/**
+	 * Executes a DDL statement
+	 *
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @param sql
+	 *            the SQL to execute
+	 * @throws SQLException
+	 *             when the statement fails
+	 */
+	protected static void execute(final Connection con, final String sql)
+			throws SQLException {
+		final Statement stmt = con.createStatement();
+		try {
+			if (log.isDebugEnabled()) {
+				log.debug(sql);
+			}
+			stmt.execute(sql);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Rolls up the {@linkplain RemoteNodeReading}s of each
+	 * {@linkplain RemoteNode} day that has no
+	 * {@linkplain RemoteNodeReadingRollup.Resolution#DAY}
+	 * {@linkplain RemoteNodeReadingRollup} or whose rollup accounts for fewer
+	 * {@linkplain RemoteNodeReading}s than the day has (i.e. the day rollups
+	 * were introduced). The {@linkplain RemoteNodeReading}s are streamed in
+	 * node and read date order so only a single day is held in memory. Days
+	 * whose rollups account for more {@linkplain RemoteNodeReading}s than
+	 * remain (removed by retention) are left as they are.
+	 *
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @return the number of days rolled up
+	 * @throws SQLException
+	 *             when the readings/rollups cannot be read or written
+	 */
+	protected static int backfillRollups(final Connection con)
+			throws SQLException {
+		final Map<String, Integer> dayCounts = new HashMap<>();
+		final Statement stmt = con.createStatement();
+		try {
+			final ResultSet rs = stmt.executeQuery(String.format(
+					"SELECT REMOTE_NODE_ID, BUCKET_START, READING_COUNT FROM REMOTE_NODE_READING_ROLLUP WHERE RESOLUTION = '%1$s'",
+					RemoteNodeReadingRollup.Resolution.DAY.name()));
+			while (rs.next()) {
+				dayCounts.put(rs.getInt(1) + ":" + rs.getTimestamp(2).getTime(),
+						rs.getInt(3));
+			}
+		} finally {
+			stmt.close();
+		}
+		final PreparedStatement del = con.prepareStatement(
+				"DELETE FROM REMOTE_NODE_READING_ROLLUP WHERE REMOTE_NODE_ID = ? AND BUCKET_START >= ? AND BUCKET_START < ?");
+		final PreparedStatement ins = con.prepareStatement(
+				"INSERT INTO REMOTE_NODE_READING_ROLLUP (ID, REMOTE_NODE_ID, RESOLUTION, BUCKET_START, "
+						+ "READING_COUNT, READ_COUNT, SONAR_TRIP_COUNT, PIR_TRIP_COUNT, MICROWAVE_TRIP_COUNT, LASER_TRIP_COUNT, "
+						+ "SONAR_MIN, SONAR_MAX, SONAR_SUM, LASER_MIN, LASER_MAX, LASER_SUM, "
+						+ "MICROWAVE_MIN, MICROWAVE_MAX, MICROWAVE_SUM, PIR_MIN, PIR_MAX, PIR_SUM) "
+						+ "VALUES (NEXT VALUE FOR SQ_REMOTE_NODE_RU_ID, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+		final Statement rstmt = con.createStatement();
+		try {
+			rstmt.setFetchSize(1000);
+			// same column order as RemoteNodeReadingColumns.SELECT
+			final ResultSet rs = rstmt.executeQuery(
+					"SELECT REMOTE_NODE_ID, ID, READ_DATE, FROM_MULTI_STATE, SONAR_FEET, SONAR_INCHES, "
+							+ "PIR_INTENSITY, MICROWAVE_CYCLE_COUNT, LASER_FEET, LASER_INCHES, "
+							+ "LASER_CALIBRATED_ANGLE_PAN, LASER_CALIBRATED_ANGLE_TILT, GATE_STATE, SIGNAL_STRENGTH "
+							+ "FROM REMOTE_NODE_READING WHERE REMOTE_NODE_ID IS NOT NULL ORDER BY REMOTE_NODE_ID, READ_DATE, ID");
+			final int[] ints = new int[RemoteNodeReadingColumns.INT_COLUMNS];
+			RemoteNodeReadingColumns cols = null;
+			int nodeId = 0;
+			long day = 0;
+			long nextDay = 0;
+			int days = 0;
+			while (rs.next()) {
+				final int rnId = rs.getInt(1);
+				final long rd = rs.getTimestamp(3).getTime();
+				if (cols == null || rnId != nodeId || rd >= nextDay) {
+					if (cols != null
+							&& backfillRollupDay(nodeId, day, nextDay, cols,
+									dayCounts, del, ins)) {
+						days++;
+					}
+					nodeId = rnId;
+					day = RemoteNodeReadingRollup.Resolution.DAY.bucketStart(
+							new Date(rd)).getTime();
+					nextDay = RemoteNodeReadingRollup.Resolution.DAY
+							.nextBucketStart(new Date(rd)).getTime();
+					cols = new RemoteNodeReadingColumns(1024);
+				}
+				for (int c = 0; c < ints.length; c++) {
+					ints[c] = rs.getInt(4 + c);
+				}
+				cols.add(rs.getInt(2), rd, ints);
+			}
+			if (cols != null
+					&& backfillRollupDay(nodeId, day, nextDay, cols, dayCounts,
+							del, ins)) {
+				days++;
+			}
+			return days;
+		} finally {
+			rstmt.close();
+			ins.close();
+			del.close();
+		}
+	}
+
+	/**
+	 * Replaces the {@linkplain RemoteNodeReadingRollup}s of a single
+	 * {@linkplain RemoteNode} day when its existing
+	 * {@linkplain RemoteNodeReadingRollup.Resolution#DAY} rollup (if any)
+	 * accounts for fewer {@linkplain RemoteNodeReading}s than the day has
+	 *
+	 * @param remoteNodeId
+	 *            the {@linkplain RemoteNode#getId()}
+	 * @param day
+	 *            the start of the day
+	 * @param nextDay
+	 *            the start of the next day
+	 * @param cols
+	 *            the {@linkplain RemoteNodeReadingColumns} of the day
+	 * @param dayCounts
+	 *            the {@linkplain RemoteNodeReadingRollup#getReadingCount()}
+	 *            of the existing day rollups by node and day
+	 * @param del
+	 *            the rollup delete statement
+	 * @param ins
+	 *            the rollup insert statement
+	 * @return true when the day has been rolled up
+	 * @throws SQLException
+	 *             when the rollups cannot be written
+	 */
+	private static boolean backfillRollupDay(final int remoteNodeId,
+			final long day, final long nextDay,
+			final RemoteNodeReadingColumns cols,
+			final Map<String, Integer> dayCounts, final PreparedStatement del,
+			final PreparedStatement ins) throws SQLException {
+		final Integer rolledUp = dayCounts.get(remoteNodeId + ":" + day);
+		if (rolledUp != null && rolledUp >= cols.size()) {
+			return false;
+		}
+		final Map<String, RemoteNodeReadingRollup> buckets = new LinkedHashMap<>();
+		for (int i = 0; i < cols.size(); i++) {
+			final Date rd = new Date(cols.getReadDate(i));
+			for (final RemoteNodeReadingRollup.Resolution res : RemoteNodeReadingRollup.Resolution
+					.values()) {
+				final Date bs = res.bucketStart(rd);
+				final String key = res.name() + ':' + bs.getTime();
+				RemoteNodeReadingRollup rnru = buckets.get(key);
+				if (rnru == null) {
+					rnru = new RemoteNodeReadingRollup(null, res, bs);
+					buckets.put(key, rnru);
+				}
+				rnru.add(cols, i);
+			}
+		}
+		del.setInt(1, remoteNodeId);
+		del.setTimestamp(2, new Timestamp(day));
+		del.setTimestamp(3, new Timestamp(nextDay));
+		del.executeUpdate();
+		for (final RemoteNodeReadingRollup rnru : buckets.values()) {
+			int p = 1;
+			ins.setInt(p++, remoteNodeId);
+			ins.setString(p++, rnru.getResolution().name());
+			ins.setTimestamp(p++, new Timestamp(rnru.getBucketStart().getTime()));
+			ins.setInt(p++, rnru.getReadingCount());
+			ins.setInt(p++, rnru.getReadCount());
+			ins.setInt(p++, rnru.getSonarTripCount());
+			ins.setInt(p++, rnru.getPirTripCount());
+			ins.setInt(p++, rnru.getMicrowaveTripCount());
+			ins.setInt(p++, rnru.getLaserTripCount());
+			ins.setInt(p++, rnru.getSonarMin());
+			ins.setInt(p++, rnru.getSonarMax());
+			ins.setLong(p++, rnru.getSonarSum());
+			ins.setInt(p++, rnru.getLaserMin());
+			ins.setInt(p++, rnru.getLaserMax());
+			ins.setLong(p++, rnru.getLaserSum());
+			ins.setInt(p++, rnru.getMicrowaveMin());
+			ins.setInt(p++, rnru.getMicrowaveMax());
+			ins.setLong(p++, rnru.getMicrowaveSum());
+			ins.setInt(p++, rnru.getPirMin());
+			ins.setInt(p++, rnru.getPirMax());
+			ins.setLong(p++, rnru.getPirSum());
+			ins.addBatch();
+		}
+		ins.executeBatch();
+		return true;
+	}
+
+	/**
+	 * Creates a sequence when it does not exist
+	 *
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @param name
+	 *            the sequence name
+	 * @param increment
+	 *            the sequence increment (the allocation size of the
+	 *            sequence generator)
+	 * @throws SQLException
+	 *             when the sequence cannot be created
+	 */
+	protected static void createSequence(final Connection con,
+			final String name, final int increment) throws SQLException {
+		execute(con, String.format(
+				"CREATE SEQUENCE IF NOT EXISTS %1$s START WITH 1 INCREMENT BY %2$s",
+				name, increment));
+	}
+
+	/**
+	 * Creates a table when it does not exist or adds any of the columns that
+	 * do not exist (constraints are only added when the table is created and
+	 * added columns without a default value are nullable so that existing
+	 * rows remain valid)
+	 *
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @param table
+	 *            the table name
+	 * @param columns
+	 *            the column definitions (each starting with the column name)
+	 * @param constraints
+	 *            the table constraint definitions
+	 * @throws SQLException
+	 *             when the table cannot be created/altered
+	 */
+	protected static void ensureTable(final Connection con, final String table,
+			final String[] columns, final String... constraints)
+			throws SQLException {
+		if (!hasTable(con, table)) {
+			final StringBuilder sql = new StringBuilder("CREATE TABLE ");
+			sql.append(table).append(" (");
+			for (int i = 0; i < columns.length; i++) {
+				sql.append(i > 0 ? ", " : "").append(columns[i]);
+			}
+			for (final String constraint : constraints) {
+				sql.append(", ").append(constraint);
+			}
+			execute(con, sql.append(')').toString());
+			return;
+		}
+		for (final String column : columns) {
+			if (!hasColumn(con, table, column.substring(0, column.indexOf(' ')))) {
+				execute(con, String.format("ALTER TABLE %1$s ADD COLUMN %2$s",
+						table, column.contains(" DEFAULT ") ? column : column
+								.replace(" NOT NULL", "")));
+			}
+		}
+	}
+
+	/**
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @param table
+	 *            the table name
+	 * @return true when the table exists
+	 * @throws SQLException
+	 *             when the database meta data cannot be read
+	 */
+	protected static boolean hasTable(final Connection con, final String table)
+			throws SQLException {
+		final ResultSet rs = con.getMetaData().getTables(null, null, table,
+				new String[] { "TABLE" });
+		try {
+			return rs.next();
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * @param con
+	 *            the {@linkplain Connection}
+	 * @param table
+	 *            the table name
+	 * @param column
+	 *            the column name
+	 * @return true when the column exists
+	 * @throws SQLException
+	 *             when the database meta data cannot be read
+	 */
+	protected static boolean hasColumn(final Connection con, final String table,
+			final String column) throws SQLException {
+		final DatabaseMetaData md = con.getMetaData();
+		final ResultSet rs = md.getColumns(null, null, table, column);
+		try {
+			return rs.next();
+		} finally {
+			rs.close();
+		}
+	}
+
+	/**
+	 * Versioned schema change
+	 */
+	protected static abstract class Migration {
+
+		private final int version;
+		private final String description;
+
+		/**
+		 * Constructor
+		 *
+		 * @param version
+		 *            the schema version after the {@linkplain Migration} is
+		 *            applied
+		 * @param description
+		 *            the description of the {@linkplain Migration}
+		 */
+		protected Migration(final int version, final String description) {
+			this.version = version;
+			this.description = description;
+		}
+
+		/**
+		 * Applies the {@linkplain Migration} (only creates/alters what does
+		 * not already exist)
+		 *
+		 * @param con
+		 *            the {@linkplain Connection} to apply the
+		 *            {@linkplain Migration} with
+		 * @throws SQLException
+		 *             when the {@linkplain Migration} fails
+		 */
+		protected abstract void apply(Connection con) throws SQLException;
+	}
+}
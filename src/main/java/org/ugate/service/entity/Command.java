@@ -12,6 +12,7 @@ public enum Command {
 	IR_REMOTE_SESSION_RESET(20, 1, 0),
 	SENSOR_ALARM_TOGGLE(21, 1, 0),
 	CAM_TAKE_PIC(29, 1, 0),
+	CAM_RESEND_PIC_CHUNKS(30, 5, 0),
 	ACCESS_PIN_CHANGE(37, 1, 0),
 	SERVO_TOGGLE_CAM_SONARIR_MICROWAVE(58, 1, 0),
 	GATE_TOGGLE_OPEN_CLOSE(59, 1, 8),
@@ -24,6 +25,21 @@ public enum Command {
 	SENSOR_GET_SETTINGS(106, 1, 37),
 	SENSOR_SEND_SETTINGS(107, 37, 0);
 
+	/**
+	 * {@link Command}s indexed by {@link #getKey()} for constant time
+	 * {@link #lookup(int)}
+	 */
+	private static final Command[] KEYS;
+	static {
+		int max = 0;
+		for (final Command command : values()) {
+			max = Math.max(max, command.key);
+		}
+		KEYS = new Command[max + 1];
+		for (final Command command : values()) {
+			KEYS[command.key] = command;
+		}
+	}
 	private final int key;
 	private final int txBytes;
 	private final int rxBytes;
@@ -62,12 +78,7 @@ public enum Command {
 	 * @return the command (null if no command ID matches the supplied ID
 	 */
 	public static Command lookup(final int id) {
-		for (final Command command : Command.values()) {
-			if (id == command.key) {
-				return command;
-			}
-		}
-		return null;
+		return id >= 0 && id < KEYS.length ? KEYS[id] : null;
 	}
 
 	/**
@@ -11,6 +11,8 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * {@linkplain Model} type descriptor
@@ -111,6 +113,17 @@ public interface IModelType<T extends Model> {
 			DFLTS.put(BigInteger.class, BigInteger.valueOf(0L));
 			DFLTS.put(BigDecimal.class, BigDecimal.valueOf(0D));
 		}
+		/**
+		 * Unbound accessor {@linkplain MethodHandle}s by {@linkplain Model}
+		 * class and {@linkplain IModelType} (resolved once per field instead
+		 * of on every {@linkplain #getValue(Model, IModelType)})
+		 */
+		private static final ConcurrentMap<Class<?>, ConcurrentMap<IModelType<?>, MethodHandle>> ACCESSORS = new ConcurrentHashMap<>();
+		/**
+		 * Unbound mutator {@linkplain MethodHandle}s by {@linkplain Model}
+		 * class and {@linkplain IModelType}
+		 */
+		private static final ConcurrentMap<Class<?>, ConcurrentMap<IModelType<?>, MethodHandle>> MUTATORS = new ConcurrentHashMap<>();
 
 		/**
 		 * Gets a {@linkplain Model} value for a {@linkplain IModelType}
@@ -123,7 +136,7 @@ public interface IModelType<T extends Model> {
 		 */
 		public static <T extends Model> Object getValue(final T model,
 				final IModelType<T> type) throws Throwable {
-			return buildAccessor(model, type, ACCESSOR_PREFIXES).invoke();
+			return accessor(model, type).invoke(model);
 		}
 
 		/**
@@ -141,18 +154,72 @@ public interface IModelType<T extends Model> {
 		 */
 		public static <T extends Model> void setValue(final T model,
 				final IModelType<T> type, final Object value) throws Throwable {
-			final MethodHandle gmh = buildAccessor(model, type,
-					ACCESSOR_PREFIXES);
-			final String setMethodName = buildMethodName("set", type.getKey());
-			final MethodHandle smh = MethodHandles
-					.lookup()
-					.findVirtual(
-							model.getClass(),
-							setMethodName,
-							MethodType.methodType(void.class, gmh.type()
-									.returnType())).bindTo(model);
+			final MethodHandle gmh = accessor(model, type);
+			final Map<IModelType<?>, MethodHandle> mutators = handles(MUTATORS,
+					model.getClass());
+			MethodHandle smh = mutators.get(type);
+			if (smh == null) {
+				smh = MethodHandles.lookup().findVirtual(
+						model.getClass(),
+						buildMethodName("set", type.getKey()),
+						MethodType.methodType(void.class, gmh.type()
+								.returnType()));
+				mutators.put(type, smh);
+			}
 			final Object objVal = coerce(value, gmh.type().returnType());
-			smh.invoke(objVal);
+			smh.invoke(model, objVal);
+		}
+
+		/**
+		 * Gets the cached unbound accessor {@linkplain MethodHandle} of a
+		 * {@linkplain Model} field
+		 * 
+		 * @param model
+		 *            the {@linkplain Model} that the accessor is for
+		 * @param type
+		 *            the {@linkplain IModelType} of the field
+		 * @return the accessor {@linkplain MethodHandle} (null when the model
+		 *         is null or no accessor exists)
+		 */
+		private static <T extends Model> MethodHandle accessor(final T model,
+				final IModelType<T> type) {
+			if (model == null) {
+				return null;
+			}
+			final Map<IModelType<?>, MethodHandle> accessors = handles(
+					ACCESSORS, model.getClass());
+			MethodHandle mh = accessors.get(type);
+			if (mh == null) {
+				mh = buildAccessor(model, type, ACCESSOR_PREFIXES);
+				if (mh != null) {
+					accessors.put(type, mh);
+				}
+			}
+			return mh;
+		}
+
+		/**
+		 * @param handles
+		 *            the {@linkplain MethodHandle}s by {@linkplain Model}
+		 *            class
+		 * @param modelClass
+		 *            the {@linkplain Model} class
+		 * @return the {@linkplain MethodHandle}s of the {@linkplain Model}
+		 *         class by {@linkplain IModelType}
+		 */
+		private static Map<IModelType<?>, MethodHandle> handles(
+				final ConcurrentMap<Class<?>, ConcurrentMap<IModelType<?>, MethodHandle>> handles,
+				final Class<?> modelClass) {
+			ConcurrentMap<IModelType<?>, MethodHandle> mhs = handles
+					.get(modelClass);
+			if (mhs == null) {
+				final ConcurrentMap<IModelType<?>, MethodHandle> newMhs = new ConcurrentHashMap<>();
+				mhs = handles.putIfAbsent(modelClass, newMhs);
+				if (mhs == null) {
+					mhs = newMhs;
+				}
+			}
+			return mhs;
 		}
 
 		/**
@@ -182,7 +249,7 @@ public interface IModelType<T extends Model> {
 		 * @return the accessor {@linkplain MethodHandle}
 		 * @param fieldNamePrefix
 		 *            the prefix of the method for the field name
-		 * @return the accessor {@linkplain MethodHandle}
+		 * @return the unbound accessor {@linkplain MethodHandle}
 		 */
 		private static <T extends Model> MethodHandle buildAccessor(
 				final T model, final IModelType<T> type,
@@ -200,7 +267,7 @@ public interface IModelType<T extends Model> {
 								accessorName,
 								MethodType.methodType(model.getClass()
 										.getMethod(accessorName)
-										.getReturnType())).bindTo(model);
+										.getReturnType()));
 			} catch (final NoSuchMethodException e) {
 				return fieldNamePrefix.length <= 1 ? null : buildAccessor(
 						model, type, Arrays.copyOfRange(fieldNamePrefix, 1,
@@ -232,6 +299,10 @@ public interface IModelType<T extends Model> {
 			} else if (isStringType
 					|| (v != null && targetClass.isAssignableFrom(v.getClass()))) {
 				val = (VT) targetClass.cast(v);
+			} else if (targetClass.isPrimitive()
+					&& v.getClass() == PRIMS.get(targetClass)) {
+				// already the wrapper of the primitive (unboxed on invocation)
+				val = (VT) v;
 			} else if (v != null && Date.class.isAssignableFrom(targetClass)) {
 				if (Calendar.class.isAssignableFrom(v.getClass())) {
 					val = (VT) ((Calendar) v).getTime();
@@ -0,0 +1,245 @@
+package org.ugate.service.entity;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Read only column batch of {@linkplain RemoteNodeReading} values for a single
+ * {@linkplain RemoteNode} held in parallel primitive arrays (one element per
+ * {@linkplain RemoteNodeReading} in the order they were added). Used for
+ * history queries that only need the reading values so that no
+ * {@linkplain RemoteNodeReading} (or related {@linkplain RemoteNode}) entities
+ * are created or managed.
+ */
+public class RemoteNodeReadingColumns {
+
+	public static final int FROM_MULTI_STATE = 0;
+	public static final int SONAR_FEET = 1;
+	public static final int SONAR_INCHES = 2;
+	public static final int PIR_INTENSITY = 3;
+	public static final int MICROWAVE_CYCLE_COUNT = 4;
+	public static final int LASER_FEET = 5;
+	public static final int LASER_INCHES = 6;
+	public static final int LASER_CALIBRATED_ANGLE_PAN = 7;
+	public static final int LASER_CALIBRATED_ANGLE_TILT = 8;
+	public static final int GATE_STATE = 9;
+	public static final int SIGNAL_STRENGTH = 10;
+	/**
+	 * The number of <code>int</code> value columns (excludes the ID and read
+	 * date)
+	 */
+	public static final int INT_COLUMNS = 11;
+	/**
+	 * JPQL select list (for a {@linkplain RemoteNodeReading} alias of
+	 * <code>rnr</code>) in the order expected by {@linkplain #add(Object[])}:
+	 * the ID, the read date and each of the <code>int</code> value columns
+	 */
+	public static final String SELECT = "rnr.id, rnr.readDate, rnr.fromMultiState, rnr.sonarFeet, rnr.sonarInches, rnr.pirIntensity, rnr.microwaveCycleCount, rnr.laserFeet, rnr.laserInches, rnr.laserCalibratedAnglePan, rnr.laserCalibratedAngleTilt, rnr.gateState, rnr.signalStrength";
+	private int size;
+	private int[] ids;
+	private long[] readDates;
+	private final int[][] values = new int[INT_COLUMNS][];
+
+	/**
+	 * Constructor
+	 *
+	 * @param initialCapacity
+	 *            the initial number of {@linkplain RemoteNodeReading}s that
+	 *            can be added before the arrays grow
+	 */
+	public RemoteNodeReadingColumns(final int initialCapacity) {
+		final int cap = Math.max(16, initialCapacity);
+		ids = new int[cap];
+		readDates = new long[cap];
+		for (int c = 0; c < INT_COLUMNS; c++) {
+			values[c] = new int[cap];
+		}
+	}
+
+	/**
+	 * Adds a row selected using {@linkplain #SELECT}
+	 *
+	 * @param row
+	 *            the selected row
+	 */
+	public void add(final Object[] row) {
+		final int i = next(intValue(row[0]),
+				row[1] != null ? ((Date) row[1]).getTime() : 0);
+		for (int c = 0; c < INT_COLUMNS; c++) {
+			values[c][i] = intValue(row[c + 2]);
+		}
+	}
+
+	/**
+	 * Adds a value from another {@linkplain RemoteNodeReadingColumns}
+	 *
+	 * @param columns
+	 *            the {@linkplain RemoteNodeReadingColumns} to add from
+	 * @param index
+	 *            the index of the value to add
+	 */
+	public void add(final RemoteNodeReadingColumns columns, final int index) {
+		final int i = next(columns.ids[index], columns.readDates[index]);
+		for (int c = 0; c < INT_COLUMNS; c++) {
+			values[c][i] = columns.values[c][index];
+		}
+	}
+
+	/**
+	 * Adds a value
+	 *
+	 * @param id
+	 *            the {@linkplain RemoteNodeReading#getId()}
+	 * @param readDate
+	 *            the {@linkplain RemoteNodeReading#getReadDate()} in
+	 *            milliseconds
+	 * @param ints
+	 *            the value of each <code>int</code> column (indexed by the
+	 *            column constants)
+	 */
+	public void add(final int id, final long readDate, final int[] ints) {
+		final int i = next(id, readDate);
+		for (int c = 0; c < INT_COLUMNS; c++) {
+			values[c][i] = ints[c];
+		}
+	}
+
+	/**
+	 * Adds the ID and read date of the next value (growing each of the arrays
+	 * by half of their current length when full)
+	 *
+	 * @param id
+	 *            the {@linkplain RemoteNodeReading#getId()}
+	 * @param readDate
+	 *            the {@linkplain RemoteNodeReading#getReadDate()} in
+	 *            milliseconds
+	 * @return the index of the value
+	 */
+	private int next(final int id, final long readDate) {
+		if (size == ids.length) {
+			final int cap = ids.length + (ids.length >> 1);
+			ids = Arrays.copyOf(ids, cap);
+			readDates = Arrays.copyOf(readDates, cap);
+			for (int c = 0; c < INT_COLUMNS; c++) {
+				values[c] = Arrays.copyOf(values[c], cap);
+			}
+		}
+		ids[size] = id;
+		readDates[size] = readDate;
+		return size++;
+	}
+
+	/**
+	 * @param value
+	 *            the selected value
+	 * @return the <code>int</code> value (zero when null)
+	 */
+	private static int intValue(final Object value) {
+		return value != null ? ((Number) value).intValue() : 0;
+	}
+
+	/**
+	 * Creates a new (unmanaged) {@linkplain RemoteNodeReading} from a value
+	 *
+	 * @param index
+	 *            the index of the value
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNodeReading#getRemoteNode()}
+	 * @return the {@linkplain RemoteNodeReading}
+	 */
+	public RemoteNodeReading newRemoteNodeReading(final int index,
+			final RemoteNode remoteNode) {
+		final RemoteNodeReading rnr = new RemoteNodeReading();
+		rnr.setRemoteNode(remoteNode);
+		rnr.setId(ids[index]);
+		rnr.setReadDate(new Date(readDates[index]));
+		rnr.setFromMultiState(values[FROM_MULTI_STATE][index]);
+		rnr.setSonarFeet(values[SONAR_FEET][index]);
+		rnr.setSonarInches(values[SONAR_INCHES][index]);
+		rnr.setPirIntensity(values[PIR_INTENSITY][index]);
+		rnr.setMicrowaveCycleCount(values[MICROWAVE_CYCLE_COUNT][index]);
+		rnr.setLaserFeet(values[LASER_FEET][index]);
+		rnr.setLaserInches(values[LASER_INCHES][index]);
+		rnr.setLaserCalibratedAnglePan(values[LASER_CALIBRATED_ANGLE_PAN][index]);
+		rnr.setLaserCalibratedAngleTilt(values[LASER_CALIBRATED_ANGLE_TILT][index]);
+		rnr.setGateState(values[GATE_STATE][index]);
+		rnr.setSignalStrength(values[SIGNAL_STRENGTH][index]);
+		return rnr;
+	}
+
+	/**
+	 * @return the number of {@linkplain RemoteNodeReading}s
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the {@linkplain RemoteNodeReading}
+	 * @return the {@linkplain RemoteNodeReading#getId()}
+	 */
+	public int getId(final int index) {
+		return ids[index];
+	}
+
+	/**
+	 * @param index
+	 *            the index of the {@linkplain RemoteNodeReading}
+	 * @return the {@linkplain RemoteNodeReading#getReadDate()} in
+	 *         milliseconds
+	 */
+	public long getReadDate(final int index) {
+		return readDates[index];
+	}
+
+	/**
+	 * @param column
+	 *            the <code>int</code> column constant
+	 * @param index
+	 *            the index of the {@linkplain RemoteNodeReading}
+	 * @return the column value
+	 */
+	public int getInt(final int column, final int index) {
+		return values[column][index];
+	}
+
+	public int getFromMultiState(final int index) {
+		return values[FROM_MULTI_STATE][index];
+	}
+
+	public int getSonarFeet(final int index) {
+		return values[SONAR_FEET][index];
+	}
+
+	public int getSonarInches(final int index) {
+		return values[SONAR_INCHES][index];
+	}
+
+	public int getPirIntensity(final int index) {
+		return values[PIR_INTENSITY][index];
+	}
+
+	public int getMicrowaveCycleCount(final int index) {
+		return values[MICROWAVE_CYCLE_COUNT][index];
+	}
+
+	public int getLaserFeet(final int index) {
+		return values[LASER_FEET][index];
+	}
+
+	public int getLaserInches(final int index) {
+		return values[LASER_INCHES][index];
+	}
+
+	public int getGateState(final int index) {
+		return values[GATE_STATE][index];
+	}
+
+	public int getSignalStrength(final int index) {
+		return values[SIGNAL_STRENGTH][index];
+	}
+}
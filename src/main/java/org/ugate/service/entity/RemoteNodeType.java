@@ -23,7 +23,10 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 			false),
 	DEVICE_SYNCHRONIZED("deviceSynchronized", null, false),
 	CAM_IMG_CAPTURE_RETRY_CNT("camImgCaptureRetryCnt", null, false),
+	CAM_IMG_CAPTURE_TIMEOUT("camImgCaptureTimeout", null, false),
 	REPORT_READINGS("reportReadings", null, false),
+	READING_RETENTION_DAYS("readingRetentionDays", null, false),
+	ROLLUP_RETENTION_DAYS("rollupRetentionDays", null, false),
 	WIRELESS_ADDRESS("address", null, false),
 	WIRELESS_WORKING_DIR_PATH("workingDir", null, false),
 	MAIL_ALERT_ON("mailAlertOn", Type.ALARM_NOTIFY_TOGGLE, false),
@@ -141,6 +144,7 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 			rn.setCamAnglePan(90);
 			rn.setCamAngleTilt(90);
 			rn.setCamImgCaptureRetryCnt(3);
+			rn.setCamImgCaptureTimeout(120);
 			rn.setCamLaserTripAnglePan(181);
 			rn.setCamLaserTripAnglePriority(1);
 			rn.setCamLaserTripAngleTilt(181);
@@ -162,6 +166,8 @@ public enum RemoteNodeType implements IModelType<RemoteNode> {
 			rn.setUniversalRemoteAccessCode1(1);
 			rn.setUniversalRemoteAccessCode2(2);
 			rn.setUniversalRemoteAccessCode3(3);
+			rn.setReadingRetentionDays(90);
+			rn.setRollupRetentionDays(730);
 		}
 		rn.setHost(host);
 		rn.setId(0);
@@ -2,6 +2,7 @@ package org.ugate.service.entity.jpa;
 
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -37,6 +38,7 @@ import org.ugate.service.entity.Model;
  * 
  */
 @Entity
+@Cacheable
 @Table(name="ACTOR")
 public class Actor implements Model {
 	private static final long serialVersionUID = 1L;
@@ -30,6 +30,9 @@ public class AppInfo implements Model {
 	@Column(name = "CREATED_DATE", nullable=false)
 	private Date createdDate;
 
+	@Column(name = "SCHEMA_VERSION", nullable=false)
+	private int schemaVersion;
+
 	//bi-directional many-to-one association to Actor
     @ManyToOne(fetch=FetchType.EAGER)
 	@JoinColumn(name="DEFAULT_ACTOR_ID", nullable=true)
@@ -51,6 +54,14 @@ public class AppInfo implements Model {
 		this.version = version;
 	}
 
+	public int getSchemaVersion() {
+		return schemaVersion;
+	}
+
+	public void setSchemaVersion(int schemaVersion) {
+		this.schemaVersion = schemaVersion;
+	}
+
 	public Actor getDefaultActor() {
 		return defaultActor;
 	}
@@ -4,6 +4,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -42,6 +43,7 @@ import org.ugate.service.entity.Model;
  * 
  */
 @Entity
+@Cacheable
 @Table(name="HOST")
 public class Host implements Model {
 	private static final long serialVersionUID = 1L;
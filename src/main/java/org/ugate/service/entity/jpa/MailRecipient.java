@@ -2,6 +2,7 @@ package org.ugate.service.entity.jpa;
 
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -19,6 +20,7 @@ import org.ugate.service.entity.Model;
  * 
  */
 @Entity
+@Cacheable
 @Table(name="MAIL_RECIPIENT")
 public class MailRecipient implements Model {
 	private static final long serialVersionUID = 1L;
@@ -4,6 +4,7 @@ import java.util.Date;
 import java.util.Set;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -36,6 +37,7 @@ import org.ugate.service.entity.Model;
  * 
  */
 @Entity
+@Cacheable
 @Table(name = "REMOTE_NODE")
 public class RemoteNode implements Model {
 	private static final long serialVersionUID = 1L;
@@ -136,6 +138,11 @@ public class RemoteNode implements Model {
 	@Column(name = "CAM_IMG_CAPTURE_RETRY_CNT", nullable = false)
 	private int camImgCaptureRetryCnt;
 
+	@Min(0)
+	@Max(3600)
+	@Column(name = "CAM_IMG_CAPTURE_TIMEOUT")
+	private int camImgCaptureTimeout;
+
 	@Min(0)
 	@Max(1)
 	@Column(name = "DEVICE_SOUNDS_ON", nullable = false)
@@ -267,6 +274,16 @@ public class RemoteNode implements Model {
 	@Column(name = "DEVICE_SYNCHRONIZED")
 	private boolean deviceSynchronized;
 
+	@Min(0)
+	@Max(3650)
+	@Column(name = "READING_RETENTION_DAYS")
+	private int readingRetentionDays;
+
+	@Min(0)
+	@Max(3650)
+	@Column(name = "ROLLUP_RETENTION_DAYS")
+	private int rollupRetentionDays;
+
 	// bi-directional many-to-one association to Host
 	@ManyToOne
 	@JoinColumn(name = "HOST_ID", nullable = false)
@@ -510,6 +527,14 @@ public class RemoteNode implements Model {
 		this.camImgCaptureRetryCnt = camImgCaptureRetryCnt;
 	}
 
+	public int getCamImgCaptureTimeout() {
+		return camImgCaptureTimeout;
+	}
+
+	public void setCamImgCaptureTimeout(int camImgCaptureTimeout) {
+		this.camImgCaptureTimeout = camImgCaptureTimeout;
+	}
+
 	public int getDeviceSoundsOn() {
 		return this.deviceSoundsOn;
 	}
@@ -726,6 +751,30 @@ public class RemoteNode implements Model {
 		this.deviceSynchronized = deviceSynchronized;
 	}
 
+	/**
+	 * @return the number of days that {@linkplain RemoteNodeReading}s are
+	 *         retained (zero to retain indefinitely)
+	 */
+	public int getReadingRetentionDays() {
+		return readingRetentionDays;
+	}
+
+	public void setReadingRetentionDays(int readingRetentionDays) {
+		this.readingRetentionDays = readingRetentionDays;
+	}
+
+	/**
+	 * @return the number of days that {@linkplain RemoteNodeReadingRollup}s
+	 *         are retained (zero to retain indefinitely)
+	 */
+	public int getRollupRetentionDays() {
+		return rollupRetentionDays;
+	}
+
+	public void setRollupRetentionDays(int rollupRetentionDays) {
+		this.rollupRetentionDays = rollupRetentionDays;
+	}
+
 	public Host getHost() {
 		return this.host;
 	}
@@ -27,7 +27,7 @@ public class RemoteNodeReading implements Model {
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@SequenceGenerator(name="REMOTE_NODE_RD_ID_GENERATOR", sequenceName="SQ_REMOTE_NODE_RD_ID", allocationSize=1)
+	@SequenceGenerator(name="REMOTE_NODE_RD_ID_GENERATOR", sequenceName="SQ_REMOTE_NODE_RD_ID", allocationSize=50)
 	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="REMOTE_NODE_RD_ID_GENERATOR")
 	@Column(unique=true, nullable=false)
 	private int id;
@@ -0,0 +1,460 @@
+package org.ugate.service.entity.jpa;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import org.ugate.service.entity.Model;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+
+/**
+ * The persistent class for the REMOTE_NODE_READING_ROLLUP database table.
+ * Each row summarizes the {@linkplain RemoteNodeReading}s of a
+ * {@linkplain RemoteNode} that were read within a {@linkplain Resolution}
+ * bucket (trip counts decoded from
+ * {@linkplain RemoteNodeReading#getFromMultiState()} and min/avg/max of the
+ * sensor values). Distances are in inches.
+ */
+@Entity
+@Table(name = "REMOTE_NODE_READING_ROLLUP", uniqueConstraints = { @UniqueConstraint(columnNames = {
+		"REMOTE_NODE_ID", "RESOLUTION", "BUCKET_START" }) })
+public class RemoteNodeReadingRollup implements Model {
+	private static final long serialVersionUID = 1L;
+	/** {@linkplain RemoteNodeReading#getFromMultiState()} laser trip bit */
+	public static final int TRIP_LASER = 1;
+	/** {@linkplain RemoteNodeReading#getFromMultiState()} microwave trip bit */
+	public static final int TRIP_MICROWAVE = 2;
+	/** {@linkplain RemoteNodeReading#getFromMultiState()} PIR trip bit */
+	public static final int TRIP_PIR = 4;
+	/** {@linkplain RemoteNodeReading#getFromMultiState()} sonar trip bit */
+	public static final int TRIP_SONAR = 8;
+	/** {@linkplain RemoteNodeReading#getFromMultiState()} read (no trip) */
+	public static final int TRIP_READ = 16;
+
+	@Id
+	@SequenceGenerator(name="REMOTE_NODE_RU_ID_GENERATOR", sequenceName="SQ_REMOTE_NODE_RU_ID", allocationSize=50)
+	@GeneratedValue(strategy=GenerationType.SEQUENCE, generator="REMOTE_NODE_RU_ID_GENERATOR")
+	@Column(unique=true, nullable=false)
+	private int id;
+
+	@ManyToOne
+	@JoinColumn(name="REMOTE_NODE_ID", nullable=false)
+	private RemoteNode remoteNode;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name="RESOLUTION", nullable=false, length=10)
+	private Resolution resolution;
+
+	@Column(name="BUCKET_START", nullable=false)
+	private Date bucketStart;
+
+	@Column(name="READING_COUNT")
+	private int readingCount;
+
+	@Column(name="READ_COUNT")
+	private int readCount;
+
+	@Column(name="SONAR_TRIP_COUNT")
+	private int sonarTripCount;
+
+	@Column(name="PIR_TRIP_COUNT")
+	private int pirTripCount;
+
+	@Column(name="MICROWAVE_TRIP_COUNT")
+	private int microwaveTripCount;
+
+	@Column(name="LASER_TRIP_COUNT")
+	private int laserTripCount;
+
+	@Column(name="SONAR_MIN")
+	private int sonarMin;
+
+	@Column(name="SONAR_MAX")
+	private int sonarMax;
+
+	@Column(name="SONAR_SUM")
+	private long sonarSum;
+
+	@Column(name="LASER_MIN")
+	private int laserMin;
+
+	@Column(name="LASER_MAX")
+	private int laserMax;
+
+	@Column(name="LASER_SUM")
+	private long laserSum;
+
+	@Column(name="MICROWAVE_MIN")
+	private int microwaveMin;
+
+	@Column(name="MICROWAVE_MAX")
+	private int microwaveMax;
+
+	@Column(name="MICROWAVE_SUM")
+	private long microwaveSum;
+
+	@Column(name="PIR_MIN")
+	private int pirMin;
+
+	@Column(name="PIR_MAX")
+	private int pirMax;
+
+	@Column(name="PIR_SUM")
+	private long pirSum;
+
+	public RemoteNodeReadingRollup() {
+	}
+
+	/**
+	 * Constructor for an empty bucket
+	 *
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode}
+	 * @param resolution
+	 *            the {@linkplain Resolution}
+	 * @param bucketStart
+	 *            the start of the bucket
+	 */
+	public RemoteNodeReadingRollup(final RemoteNode remoteNode,
+			final Resolution resolution, final Date bucketStart) {
+		this.remoteNode = remoteNode;
+		this.resolution = resolution;
+		this.bucketStart = bucketStart;
+	}
+
+	/**
+	 * Adds a {@linkplain RemoteNodeReading} to the bucket
+	 *
+	 * @param rnr
+	 *            the {@linkplain RemoteNodeReading}
+	 */
+	public void add(final RemoteNodeReading rnr) {
+		add(rnr.getFromMultiState(),
+				rnr.getSonarFeet() * 12 + rnr.getSonarInches(),
+				rnr.getLaserFeet() * 12 + rnr.getLaserInches(),
+				rnr.getMicrowaveCycleCount(), rnr.getPirIntensity());
+	}
+
+	/**
+	 * Adds a {@linkplain RemoteNodeReading} from a
+	 * {@linkplain RemoteNodeReadingColumns} batch to the bucket
+	 *
+	 * @param columns
+	 *            the {@linkplain RemoteNodeReadingColumns}
+	 * @param index
+	 *            the index of the {@linkplain RemoteNodeReading} to add
+	 */
+	public void add(final RemoteNodeReadingColumns columns, final int index) {
+		add(columns.getFromMultiState(index),
+				columns.getSonarFeet(index) * 12 + columns.getSonarInches(index),
+				columns.getLaserFeet(index) * 12 + columns.getLaserInches(index),
+				columns.getMicrowaveCycleCount(index),
+				columns.getPirIntensity(index));
+	}
+
+	/**
+	 * Adds the values of a single reading to the bucket
+	 *
+	 * @param state
+	 *            the {@linkplain RemoteNodeReading#getFromMultiState()}
+	 * @param sonar
+	 *            the sonar distance in inches
+	 * @param laser
+	 *            the laser distance in inches
+	 * @param microwave
+	 *            the {@linkplain RemoteNodeReading#getMicrowaveCycleCount()}
+	 * @param pir
+	 *            the {@linkplain RemoteNodeReading#getPirIntensity()}
+	 */
+	private void add(final int state, final int sonar, final int laser,
+			final int microwave, final int pir) {
+		final boolean first = readingCount == 0;
+		readingCount++;
+		if ((state & TRIP_READ) != 0) {
+			readCount++;
+		}
+		if ((state & TRIP_SONAR) != 0) {
+			sonarTripCount++;
+		}
+		if ((state & TRIP_PIR) != 0) {
+			pirTripCount++;
+		}
+		if ((state & TRIP_MICROWAVE) != 0) {
+			microwaveTripCount++;
+		}
+		if ((state & TRIP_LASER) != 0) {
+			laserTripCount++;
+		}
+		sonarMin = first ? sonar : Math.min(sonarMin, sonar);
+		sonarMax = first ? sonar : Math.max(sonarMax, sonar);
+		sonarSum += sonar;
+		laserMin = first ? laser : Math.min(laserMin, laser);
+		laserMax = first ? laser : Math.max(laserMax, laser);
+		laserSum += laser;
+		microwaveMin = first ? microwave : Math.min(microwaveMin, microwave);
+		microwaveMax = first ? microwave : Math.max(microwaveMax, microwave);
+		microwaveSum += microwave;
+		pirMin = first ? pir : Math.min(pirMin, pir);
+		pirMax = first ? pir : Math.max(pirMax, pir);
+		pirSum += pir;
+	}
+
+	/**
+	 * Adds the values of another bucket for the same time period to this
+	 * bucket
+	 *
+	 * @param rollup
+	 *            the {@linkplain RemoteNodeReadingRollup} to add
+	 */
+	public void add(final RemoteNodeReadingRollup rollup) {
+		if (rollup.readingCount == 0) {
+			return;
+		}
+		final boolean first = readingCount == 0;
+		readingCount += rollup.readingCount;
+		readCount += rollup.readCount;
+		sonarTripCount += rollup.sonarTripCount;
+		pirTripCount += rollup.pirTripCount;
+		microwaveTripCount += rollup.microwaveTripCount;
+		laserTripCount += rollup.laserTripCount;
+		sonarMin = first ? rollup.sonarMin : Math.min(sonarMin, rollup.sonarMin);
+		sonarMax = first ? rollup.sonarMax : Math.max(sonarMax, rollup.sonarMax);
+		sonarSum += rollup.sonarSum;
+		laserMin = first ? rollup.laserMin : Math.min(laserMin, rollup.laserMin);
+		laserMax = first ? rollup.laserMax : Math.max(laserMax, rollup.laserMax);
+		laserSum += rollup.laserSum;
+		microwaveMin = first ? rollup.microwaveMin : Math.min(microwaveMin, rollup.microwaveMin);
+		microwaveMax = first ? rollup.microwaveMax : Math.max(microwaveMax, rollup.microwaveMax);
+		microwaveSum += rollup.microwaveSum;
+		pirMin = first ? rollup.pirMin : Math.min(pirMin, rollup.pirMin);
+		pirMax = first ? rollup.pirMax : Math.max(pirMax, rollup.pirMax);
+		pirSum += rollup.pirSum;
+	}
+
+	@Override
+	public int getId() {
+		return this.id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public RemoteNode getRemoteNode() {
+		return remoteNode;
+	}
+
+	public void setRemoteNode(RemoteNode remoteNode) {
+		this.remoteNode = remoteNode;
+	}
+
+	public Resolution getResolution() {
+		return resolution;
+	}
+
+	public void setResolution(Resolution resolution) {
+		this.resolution = resolution;
+	}
+
+	public Date getBucketStart() {
+		return bucketStart;
+	}
+
+	public void setBucketStart(Date bucketStart) {
+		this.bucketStart = bucketStart;
+	}
+
+	public int getReadingCount() {
+		return readingCount;
+	}
+
+	public int getReadCount() {
+		return readCount;
+	}
+
+	public int getSonarTripCount() {
+		return sonarTripCount;
+	}
+
+	public int getPirTripCount() {
+		return pirTripCount;
+	}
+
+	public int getMicrowaveTripCount() {
+		return microwaveTripCount;
+	}
+
+	public int getLaserTripCount() {
+		return laserTripCount;
+	}
+
+	public int getSonarMin() {
+		return sonarMin;
+	}
+
+	public int getSonarMax() {
+		return sonarMax;
+	}
+
+	public long getSonarSum() {
+		return sonarSum;
+	}
+
+	public double getSonarAvg() {
+		return readingCount > 0 ? (double) sonarSum / readingCount : 0;
+	}
+
+	public int getLaserMin() {
+		return laserMin;
+	}
+
+	public int getLaserMax() {
+		return laserMax;
+	}
+
+	public long getLaserSum() {
+		return laserSum;
+	}
+
+	public double getLaserAvg() {
+		return readingCount > 0 ? (double) laserSum / readingCount : 0;
+	}
+
+	public int getMicrowaveMin() {
+		return microwaveMin;
+	}
+
+	public int getMicrowaveMax() {
+		return microwaveMax;
+	}
+
+	public long getMicrowaveSum() {
+		return microwaveSum;
+	}
+
+	public double getMicrowaveAvg() {
+		return readingCount > 0 ? (double) microwaveSum / readingCount : 0;
+	}
+
+	public int getPirMin() {
+		return pirMin;
+	}
+
+	public int getPirMax() {
+		return pirMax;
+	}
+
+	public long getPirSum() {
+		return pirSum;
+	}
+
+	public double getPirAvg() {
+		return readingCount > 0 ? (double) pirSum / readingCount : 0;
+	}
+
+	/**
+	 * Time span of a {@linkplain RemoteNodeReadingRollup} bucket
+	 */
+	public enum Resolution {
+		MINUTE(60000L, Calendar.MINUTE),
+		HOUR(3600000L, Calendar.HOUR_OF_DAY),
+		DAY(86400000L, Calendar.DAY_OF_MONTH);
+
+		/**
+		 * The maximum number of buckets {@linkplain #forRange(Date, Date)}
+		 * will allow before choosing a coarser {@linkplain Resolution}
+		 */
+		public static final int MAX_BUCKETS = 200;
+		private final long millis;
+		private final int calendarField;
+
+		/**
+		 * Constructor
+		 *
+		 * @param millis
+		 *            the nominal span of the bucket in milliseconds
+		 * @param calendarField
+		 *            the {@linkplain Calendar} field of the bucket
+		 */
+		private Resolution(final long millis, final int calendarField) {
+			this.millis = millis;
+			this.calendarField = calendarField;
+		}
+
+		/**
+		 * Gets the start of the bucket that a {@linkplain Date} belongs to
+		 *
+		 * @param date
+		 *            the {@linkplain Date}
+		 * @return the start of the bucket
+		 */
+		public Date bucketStart(final Date date) {
+			final Calendar cal = Calendar.getInstance();
+			cal.setTime(date);
+			cal.set(Calendar.MILLISECOND, 0);
+			cal.set(Calendar.SECOND, 0);
+			if (this != MINUTE) {
+				cal.set(Calendar.MINUTE, 0);
+			}
+			if (this == DAY) {
+				cal.set(Calendar.HOUR_OF_DAY, 0);
+			}
+			return cal.getTime();
+		}
+
+		/**
+		 * Gets the start of the bucket that follows the bucket a
+		 * {@linkplain Date} belongs to
+		 *
+		 * @param date
+		 *            the {@linkplain Date}
+		 * @return the start of the next bucket
+		 */
+		public Date nextBucketStart(final Date date) {
+			final Calendar cal = Calendar.getInstance();
+			cal.setTime(bucketStart(date));
+			cal.add(calendarField, 1);
+			return cal.getTime();
+		}
+
+		/**
+		 * Gets the finest {@linkplain Resolution} that covers a time range
+		 * with no more than {@linkplain #MAX_BUCKETS}
+		 *
+		 * @param startInclusive
+		 *            the start of the range
+		 * @param endExclusive
+		 *            the end of the range
+		 * @return the {@linkplain Resolution}
+		 */
+		public static Resolution forRange(final Date startInclusive,
+				final Date endExclusive) {
+			final long range = endExclusive.getTime() - startInclusive.getTime();
+			for (final Resolution res : values()) {
+				if (range / res.millis <= MAX_BUCKETS) {
+					return res;
+				}
+			}
+			return DAY;
+		}
+
+		/**
+		 * @return the nominal span of the bucket in milliseconds
+		 */
+		public long getMillis() {
+			return millis;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package org.ugate.service.entity.jpa;
 
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -20,6 +21,7 @@ import org.ugate.service.entity.Model;
  * 
  */
 @Entity
+@Cacheable
 @Table(name="ROLE")
 public class Role implements Model {
 	private static final long serialVersionUID = 1L;
@@ -0,0 +1,109 @@
+package org.ugate.service.web;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.RemoteNodeReadingExporter;
+import org.ugate.service.ServiceProvider;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * {@link HttpServlet} that streams the {@link RemoteNodeReading}s of a
+ * {@link RemoteNode} using a {@link RemoteNodeReadingExporter}. The
+ * {@link RemoteNode} is identified by the {@link RemoteNodeType#ID} request
+ * parameter, the {@link RemoteNodeReadingExporter.Format} by the
+ * {@link #VAR_FORMAT_NAME} request parameter (defaults to CSV) and the
+ * optional time range by the {@link #VAR_START_NAME} (inclusive) and
+ * {@link #VAR_END_NAME} (exclusive) request parameters in
+ * {@link #DATE_FORMAT} format.
+ */
+public class RemoteNodeReadingExportServlet extends HttpServlet {
+
+	private static final long serialVersionUID = -2739418660146213715L;
+	private static final Logger log = LoggerFactory
+			.getLogger(RemoteNodeReadingExportServlet.class);
+	public static final String VAR_FORMAT_NAME = "format";
+	public static final String VAR_START_NAME = "start";
+	public static final String VAR_END_NAME = "end";
+	public static final String DATE_FORMAT = "yyyy-MM-dd";
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void doGet(final HttpServletRequest request,
+			final HttpServletResponse response) throws ServletException,
+			IOException {
+		if (request.getRemoteUser() == null
+				|| request.getRemoteUser().isEmpty()) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return;
+		}
+		final RemoteNode rn;
+		final RemoteNodeReadingExporter.Format format;
+		final Date start, end;
+		try {
+			rn = ServiceProvider.IMPL.getRemoteNodeIndex().findById(
+					Integer.valueOf(request.getParameter(RemoteNodeType.ID
+							.getKey())));
+			final String f = request.getParameter(VAR_FORMAT_NAME);
+			format = f == null || f.isEmpty() ? RemoteNodeReadingExporter.Format.CSV
+					: RemoteNodeReadingExporter.Format.find(f);
+			start = parseDate(request.getParameter(VAR_START_NAME));
+			end = parseDate(request.getParameter(VAR_END_NAME));
+		} catch (final NumberFormatException | ParseException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+					e.getMessage());
+			return;
+		}
+		if (rn == null || format == null) {
+			response.sendError(rn == null ? HttpServletResponse.SC_NOT_FOUND
+					: HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(format.getContentType() + ";charset=UTF-8");
+		response.setHeader("Content-Disposition", String.format(
+				"attachment; filename=\"readings-%1$s.%2$s\"", rn.getAddress(),
+				format.getExtension()));
+		try {
+			new RemoteNodeReadingExporter(ServiceProvider.IMPL
+					.getRemoteNodeService()).export(rn, start, end, format,
+					response.getOutputStream());
+		} catch (final Throwable t) {
+			// the response has likely been committed at this point
+			log.error(String.format("Unable to export %1$s(s) for %2$s at address %3$s",
+					RemoteNodeReading.class.getSimpleName(),
+					RemoteNode.class.getSimpleName(), rn.getAddress()), t);
+			if (!response.isCommitted()) {
+				response.reset();
+				response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+		}
+	}
+
+	/**
+	 * Parses a request {@linkplain Date}
+	 *
+	 * @param value
+	 *            the value in {@linkplain #DATE_FORMAT} format
+	 * @return the {@linkplain Date} (null when the value is empty)
+	 * @throws ParseException
+	 *             when the value is invalid
+	 */
+	private static Date parseDate(final String value) throws ParseException {
+		return value == null || value.isEmpty() ? null : new SimpleDateFormat(
+				DATE_FORMAT).parse(value);
+	}
+}
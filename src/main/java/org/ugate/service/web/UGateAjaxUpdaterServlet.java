@@ -15,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.ugate.resources.RS;
 import org.ugate.resources.RS.KEY;
+import org.ugate.service.RemoteNodeIndex;
 import org.ugate.service.ServiceProvider;
 import org.ugate.service.entity.Command;
 import org.ugate.service.entity.RemoteNodeType;
@@ -101,12 +102,36 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 	protected RemoteNode getRemoteNode(final HttpServletRequest request,
 			final HttpServletResponse response) throws ServletException,
 			IOException {
+		return getRemoteNode(request, response, false);
+	}
+
+	/**
+	 * Gets the {@link RemoteNode} from an {@link HttpServletRequest}
+	 * 
+	 * @param request
+	 *            the {@link HttpServletRequest}
+	 * @param response
+	 *            the {@link HttpServletResponse}
+	 * @param forUpdate
+	 *            true to load a private copy of the {@link RemoteNode} from
+	 *            the database that can be modified without affecting the
+	 *            shared {@link RemoteNode} in the {@link RemoteNodeIndex}
+	 * @return the {@link RemoteNode}
+	 * @throws ServletException
+	 *             the {@link ServletException}
+	 * @throws IOException
+	 *             the {@link IOException}
+	 */
+	protected RemoteNode getRemoteNode(final HttpServletRequest request,
+			final HttpServletResponse response, final boolean forUpdate)
+			throws ServletException, IOException {
 		int id;
 		final String idStr = request.getParameter(RemoteNodeType.ID.getKey());
 		if (idStr != null && !idStr.isEmpty()
 				&& (id = Integer.valueOf(idStr)) >= 0) {
-			final RemoteNode rn = ServiceProvider.IMPL.getRemoteNodeService()
-					.findById(id);
+			final RemoteNode rn = forUpdate ? ServiceProvider.IMPL
+					.getRemoteNodeService().findById(id) : ServiceProvider.IMPL
+					.getRemoteNodeIndex().findById(id);
 			if (rn == null) {
 				log.warn(String.format("Unable to find %1$s with %2$s = %3$s",
 						RemoteNode.class.getSimpleName(),
@@ -188,10 +213,10 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 	protected void doPut(final HttpServletRequest request,
 			final HttpServletResponse response) throws ServletException,
 			IOException {
+		RemoteNode rn = null;
 		try {
-			RemoteNode rn;
 			if (validate(request, response)
-					&& (rn = getRemoteNode(request, response)) != null) {
+					&& (rn = getRemoteNode(request, response, true)) != null) {
 				boolean hasParams = false;
 				String p;
 				Object v;
@@ -216,9 +241,16 @@ public class UGateAjaxUpdaterServlet extends DefaultServlet {
 				}
 				if (hasParams) {
 					ServiceProvider.IMPL.getRemoteNodeService().merge(rn);
+					// committed- publish the changes to the index
+					ServiceProvider.IMPL.getRemoteNodeIndex().put(rn);
 				}
 			}
 		} catch (final Throwable t) {
+			if (rn != null) {
+				// the index may have been given uncommitted changes during
+				// the merge (reloaded from the database on the next lookup)
+				ServiceProvider.IMPL.getRemoteNodeIndex().remove(rn);
+			}
 			log.error("PUT Error: ", t);
 			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
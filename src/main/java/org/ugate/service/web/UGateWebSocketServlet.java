@@ -98,7 +98,10 @@ public class UGateWebSocketServlet extends WebSocketServlet {
 				}
 			}
 		};
-		UGateKeeper.DEFAULT.addListener(uiListener);
+		UGateKeeper.DEFAULT.addListener(uiListener,
+				UGateKeeper.Delivery.WORKER,
+				UGateEvent.Type.WIRELESS_REMOTE_NODE_COMMITTED,
+				UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS);
 	}
 
 	/**
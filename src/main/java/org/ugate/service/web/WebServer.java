@@ -247,6 +247,10 @@ public class WebServer {
 					UGateWebSocketServlet.class);
 			context.addServlet(sh,
 					"/" + UGateWebSocketServlet.class.getSimpleName());
+			final ServletHolder sh3 = new ServletHolder(
+					RemoteNodeReadingExportServlet.class);
+			context.addServlet(sh3,
+					"/" + RemoteNodeReadingExportServlet.class.getSimpleName());
 			final ServletHolder sh2 = new ServletHolder(
 					UGateAjaxUpdaterServlet.class);
 			context.addServlet(sh2, "/*");
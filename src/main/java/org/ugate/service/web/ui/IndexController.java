@@ -79,7 +79,7 @@ public class IndexController extends BaseController {
 	protected void addRemoteNodeReadingVars(final RemoteNode rn,
 			final WebContext ctx) {
 		RemoteNodeReading rnr = ServiceProvider.IMPL
-				.getRemoteNodeService().findReadingLatest(rn);
+				.getRemoteNodeLatestReadings().get(rn);
 		if (rnr == null) {
 			rnr = new RemoteNodeReading();
 		}
@@ -22,6 +22,7 @@ import org.thymeleaf.TemplateEngine;
 import org.ugate.service.ServiceProvider;
 import org.ugate.service.entity.ActorType;
 import org.ugate.service.entity.jpa.Actor;
+import org.ugate.service.web.RemoteNodeReadingExportServlet;
 import org.ugate.service.web.UGateAjaxUpdaterServlet;
 import org.ugate.service.web.UGateWebSocketServlet;
 import org.ugate.service.web.ui.WebApplication.ControllerResource;
@@ -82,7 +83,9 @@ public class WebFilter implements Filter {
 				// authentication required
 				if (hasOrigURI(req, UGateWebSocketServlet.class.getSimpleName())
 						|| hasOrigURI(req,
-								UGateAjaxUpdaterServlet.class.getSimpleName())) {
+								UGateAjaxUpdaterServlet.class.getSimpleName())
+						|| hasOrigURI(req,
+								RemoteNodeReadingExportServlet.class.getSimpleName())) {
 					res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
 				} else {
 					ControllerResource.LOGIN.getController().process(req,
@@ -97,7 +100,9 @@ public class WebFilter implements Filter {
 			} else if (!(processed = process(req, res))
 					&& (hasOrigURI(req,
 							UGateWebSocketServlet.class.getSimpleName()) || hasOrigURI(
-							req, UGateAjaxUpdaterServlet.class.getSimpleName()))) {
+							req, UGateAjaxUpdaterServlet.class.getSimpleName())
+							|| hasOrigURI(req,
+									RemoteNodeReadingExportServlet.class.getSimpleName()))) {
 				// other servlet process
 				chain.doFilter(req, res);
 			} else if (!processed) {
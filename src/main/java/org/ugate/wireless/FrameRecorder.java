@@ -0,0 +1,502 @@
+package org.ugate.wireless;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rapplogic.xbee.api.IXBee;
+import com.rapplogic.xbee.api.PacketListener;
+import com.rapplogic.xbee.api.XBeeException;
+import com.rapplogic.xbee.api.XBeePacket;
+import com.rapplogic.xbee.api.XBeeRequest;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.XBeeTimeoutException;
+
+/**
+ * Records every raw XBee frame that is received ({@linkplain XBeeResponse})
+ * or sent ({@linkplain XBeeRequest}) to an append-only binary log that can be
+ * replayed using {@linkplain FrameReplay}. The log is written to memory
+ * mapped segment files of a fixed size in a directory. When a segment is full
+ * the next segment is started and the oldest segments are deleted once the
+ * maximum number of segments has been reached.
+ * <p>
+ * Each segment starts with a header of {@linkplain #MAGIC},
+ * {@linkplain #VERSION} and the segment index followed by records of:
+ * <code>int length, long timestamp, byte direction, byte[length] packet</code>.
+ * The timestamp is in nanoseconds since the epoch (derived from
+ * {@linkplain System#nanoTime()} so it is monotonic within a recording). The
+ * packet is the complete escaped API frame including the start delimiter. A
+ * length of zero marks the end of a segment.
+ * </p>
+ */
+public class FrameRecorder implements PacketListener, Closeable, Flushable {
+
+	private static final Logger log = LoggerFactory.getLogger(FrameRecorder.class);
+	/**
+	 * System property that enables recording of the wireless transport to
+	 * the directory that it is set to
+	 */
+	public static final String PROPERTY_DIRECTORY = "ugate.wireless.record";
+	/**
+	 * Magic number at the start of each segment ("UGFR")
+	 */
+	public static final int MAGIC = 0x55474652;
+	/**
+	 * The format version of the segments
+	 */
+	public static final short VERSION = 1;
+	/**
+	 * Size of the segment header (magic, version, reserved, segment index)
+	 */
+	public static final int HEADER_SIZE = 4 + 2 + 2 + 8;
+	/**
+	 * Size of a record header (length, timestamp, direction)
+	 */
+	public static final int RECORD_HEADER_SIZE = 4 + 8 + 1;
+	/**
+	 * Direction of a received frame
+	 */
+	public static final byte RX = 0;
+	/**
+	 * Direction of a sent frame
+	 */
+	public static final byte TX = 1;
+	/**
+	 * The prefix of segment file names
+	 */
+	public static final String FILE_PREFIX = "frames-";
+	/**
+	 * The extension of segment file names
+	 */
+	public static final String FILE_EXT = ".ufr";
+	/**
+	 * The default size of each segment
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+	/**
+	 * The default maximum number of segments retained
+	 */
+	public static final int DEFAULT_MAX_SEGMENTS = 8;
+	private final Path directory;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final LinkedList<Path> segments = new LinkedList<>();
+	private final long baseEpochNanos;
+	private final long baseNanoTime;
+	private long segmentIndex;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long frameCount;
+	private long byteCount;
+	private long droppedCount;
+	private boolean closed;
+
+	/**
+	 * Constructor using {@linkplain #DEFAULT_SEGMENT_SIZE} and
+	 * {@linkplain #DEFAULT_MAX_SEGMENTS}
+	 *
+	 * @param directory
+	 *            the directory the segments will be written to
+	 * @throws IOException
+	 *             when the directory cannot be created/read
+	 */
+	public FrameRecorder(final Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            the directory the segments will be written to
+	 * @param segmentSize
+	 *            the size of each segment
+	 * @param maxSegments
+	 *            the maximum number of segments retained (oldest segments are
+	 *            deleted first)
+	 * @throws IOException
+	 *             when the directory cannot be created/read
+	 */
+	public FrameRecorder(final Path directory, final int segmentSize,
+			final int maxSegments) throws IOException {
+		if (segmentSize <= HEADER_SIZE + RECORD_HEADER_SIZE || maxSegments <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid segment size (%1$s) or maximum segments (%2$s)",
+					segmentSize, maxSegments));
+		}
+		this.directory = Files.createDirectories(directory);
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		this.baseNanoTime = System.nanoTime();
+		this.baseEpochNanos = System.currentTimeMillis() * 1000000L;
+		segments.addAll(listSegments(directory));
+		segmentIndex = segments.isEmpty() ? 0 : segmentIndex(segments.getLast()) + 1;
+	}
+
+	/**
+	 * Records a received {@linkplain XBeeResponse}
+	 *
+	 * @param response
+	 *            the {@linkplain XBeeResponse}
+	 */
+	@Override
+	public void processResponse(final XBeeResponse response) {
+		final int[] raw = response.getRawPacketBytes();
+		if (raw == null) {
+			return;
+		}
+		// the raw bytes do not include the start delimiter
+		final int[] packet = new int[raw.length + 1];
+		packet[0] = XBeePacket.SpecialByte.START_BYTE.getValue();
+		System.arraycopy(raw, 0, packet, 1, raw.length);
+		record(RX, packet);
+	}
+
+	/**
+	 * Records a sent {@linkplain XBeeRequest}
+	 *
+	 * @param request
+	 *            the {@linkplain XBeeRequest}
+	 */
+	public void processRequest(final XBeeRequest request) {
+		record(TX, request.getXBeePacket().getByteArray());
+	}
+
+	/**
+	 * Appends a frame to the current segment (rotating segments as needed)
+	 *
+	 * @param direction
+	 *            the {@linkplain #RX} or {@linkplain #TX} direction
+	 * @param packet
+	 *            the packet bytes
+	 */
+	protected synchronized void record(final byte direction, final int[] packet) {
+		final long timestamp = baseEpochNanos + (System.nanoTime() - baseNanoTime);
+		final int size = RECORD_HEADER_SIZE + packet.length;
+		if (closed || HEADER_SIZE + size + 4 > segmentSize) {
+			droppedCount++;
+			return;
+		}
+		try {
+			// leave room for the end of segment marker
+			if (buffer == null || buffer.remaining() < size + 4) {
+				rotate();
+			}
+			buffer.putInt(packet.length);
+			buffer.putLong(timestamp);
+			buffer.put(direction);
+			for (final int b : packet) {
+				buffer.put((byte) b);
+			}
+			frameCount++;
+			byteCount += size;
+		} catch (final IOException e) {
+			droppedCount++;
+			log.error(String.format("Unable to record frame in %1$s", directory), e);
+		}
+	}
+
+	/**
+	 * Finishes the current segment (if any) and starts the next one
+	 *
+	 * @throws IOException
+	 *             when the segment cannot be created
+	 */
+	private void rotate() throws IOException {
+		finish();
+		final Path segment = directory.resolve(String.format("%1$s%2$020d%3$s",
+				FILE_PREFIX, segmentIndex, FILE_EXT));
+		channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) 0);
+		buffer.putLong(segmentIndex++);
+		segments.add(segment);
+		while (segments.size() > maxSegments) {
+			final Path oldest = segments.removeFirst();
+			try {
+				Files.deleteIfExists(oldest);
+			} catch (final IOException e) {
+				log.warn(String.format("Unable to delete segment %1$s", oldest), e);
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("Recording frames to %1$s", segment));
+		}
+	}
+
+	/**
+	 * Writes the end of segment marker and forces the current segment to
+	 * storage
+	 *
+	 * @throws IOException
+	 *             when the segment cannot be closed
+	 */
+	private void finish() throws IOException {
+		if (buffer == null) {
+			return;
+		}
+		try {
+			if (buffer.remaining() >= 4) {
+				buffer.putInt(0);
+			}
+			buffer.force();
+		} finally {
+			buffer = null;
+			channel.close();
+			channel = null;
+		}
+	}
+
+	/**
+	 * Finishes the current segment (if any) so that it is forced to storage
+	 * and its channel is released. Recording continues in a new segment when
+	 * the next frame is recorded.
+	 *
+	 * @throws IOException
+	 *             when the segment cannot be closed
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		finish();
+	}
+
+	/**
+	 * Finishes the current segment and stops recording
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		finish();
+		log.info(String.format("Closed %1$s", this));
+	}
+
+	/**
+	 * @return the directory the segments are written to
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the number of frames recorded
+	 */
+	public synchronized long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the number of bytes recorded (including record headers)
+	 */
+	public synchronized long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * @return the number of frames that could not be recorded
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("%1$s [directory: %2$s, segments: %3$s, frames: %4$s, bytes: %5$s, dropped: %6$s]",
+				getClass().getSimpleName(), directory, segments.size(), frameCount,
+				byteCount, droppedCount);
+	}
+
+	/**
+	 * Wraps an {@linkplain IXBee} so that all frames sent and received through
+	 * it are recorded
+	 *
+	 * @param transport
+	 *            the {@linkplain IXBee} to record
+	 * @return the recording {@linkplain IXBee}
+	 */
+	public IXBee wrap(final IXBee transport) {
+		return new RecordingXBee(transport);
+	}
+
+	/**
+	 * Lists the segments in a directory in the order they were written
+	 *
+	 * @param directory
+	 *            the directory to list
+	 * @return the segments
+	 * @throws IOException
+	 *             when the directory cannot be read
+	 */
+	public static List<Path> listSegments(final Path directory) throws IOException {
+		final List<Path> segments = new ArrayList<>();
+		final DirectoryStream<Path> ds = Files.newDirectoryStream(directory,
+				FILE_PREFIX + "*" + FILE_EXT);
+		try {
+			for (final Path segment : ds) {
+				segments.add(segment);
+			}
+		} finally {
+			ds.close();
+		}
+		Collections.sort(segments, new Comparator<Path>() {
+			@Override
+			public int compare(final Path p1, final Path p2) {
+				final long i1 = segmentIndex(p1);
+				final long i2 = segmentIndex(p2);
+				return i1 < i2 ? -1 : i1 == i2 ? 0 : 1;
+			}
+		});
+		return segments;
+	}
+
+	/**
+	 * @param segment
+	 *            the segment
+	 * @return the index of the segment from its file name
+	 */
+	private static long segmentIndex(final Path segment) {
+		final String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(FILE_PREFIX.length(),
+				name.length() - FILE_EXT.length()));
+	}
+
+	/**
+	 * {@linkplain IXBee} that records all frames sent and received through
+	 * another {@linkplain IXBee}. The recorder is registered as a
+	 * {@linkplain PacketListener} each time the transport is opened (a serial
+	 * {@linkplain com.rapplogic.xbee.api.XBee} only accepts listeners while it
+	 * is connected and starts each connection without any) and the current
+	 * segment is finished when the transport is closed.
+	 */
+	private class RecordingXBee implements IXBee {
+
+		private final IXBee transport;
+
+		RecordingXBee(final IXBee transport) {
+			this.transport = transport;
+		}
+
+		@Override
+		public void open(final String port, final int baudRate) throws XBeeException {
+			transport.open(port, baudRate);
+			// registered before any other listener so frames are recorded
+			// before they are processed (removed first for transports that
+			// retain their listeners between connections)
+			transport.removePacketListener(FrameRecorder.this);
+			transport.addPacketListener(FrameRecorder.this);
+		}
+
+		@Override
+		public void addPacketListener(final PacketListener packetListener) {
+			transport.addPacketListener(packetListener);
+		}
+
+		@Override
+		public void removePacketListener(final PacketListener packetListener) {
+			transport.removePacketListener(packetListener);
+		}
+
+		@Override
+		public void sendPacket(final XBeePacket packet) throws IOException {
+			record(TX, packet.getByteArray());
+			transport.sendPacket(packet);
+		}
+
+		@Override
+		public void sendPacket(final int[] packet) throws IOException {
+			record(TX, packet);
+			transport.sendPacket(packet);
+		}
+
+		@Override
+		public void sendAsynchronous(final XBeeRequest request) throws XBeeException {
+			processRequest(request);
+			transport.sendAsynchronous(request);
+		}
+
+		@Override
+		public XBeeResponse sendSynchronous(final XBeeRequest request, final int timeout)
+				throws XBeeTimeoutException, XBeeException {
+			processRequest(request);
+			return transport.sendSynchronous(request, timeout);
+		}
+
+		@Override
+		public XBeeResponse getResponse() throws XBeeException {
+			return transport.getResponse();
+		}
+
+		@Override
+		public XBeeResponse getResponse(final int timeout) throws XBeeException,
+				XBeeTimeoutException {
+			return transport.getResponse(timeout);
+		}
+
+		@Override
+		public void close() {
+			try {
+				transport.close();
+			} finally {
+				try {
+					flush();
+				} catch (final IOException e) {
+					log.warn(String.format("Unable to finish the current segment in %1$s",
+							directory), e);
+				}
+			}
+		}
+
+		@Override
+		public int getCurrentFrameId() {
+			return transport.getCurrentFrameId();
+		}
+
+		@Override
+		public int getNextFrameId() {
+			return transport.getNextFrameId();
+		}
+
+		@Override
+		public void updateFrameId(final int val) {
+			transport.updateFrameId(val);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return transport.isConnected();
+		}
+
+		@Override
+		public void clearResponseQueue() {
+			transport.clearResponseQueue();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%1$s [%2$s, %3$s]", getClass().getSimpleName(),
+					transport, FrameRecorder.this);
+		}
+	}
+}
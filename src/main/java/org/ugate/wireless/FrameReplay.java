@@ -0,0 +1,214 @@
+package org.ugate.wireless;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.wireless.data.UGateXBeePacketListener;
+
+import com.rapplogic.xbee.api.PacketListener;
+import com.rapplogic.xbee.api.PacketParser;
+import com.rapplogic.xbee.api.XBeeResponse;
+
+/**
+ * Replays frames recorded by a {@linkplain FrameRecorder} into a
+ * {@linkplain PacketListener} (typically a {@linkplain UGateXBeePacketListener})
+ * so that changes to packet parsing, image assembly and persistence can be
+ * measured against recorded traffic. Received frames are parsed with the same
+ * {@linkplain PacketParser} used for the serial connection and delivered on
+ * the calling thread either at the recorded pace (scaled by a speed factor)
+ * or as fast as possible. Sent frames are only counted.
+ */
+public class FrameReplay {
+
+	private static final Logger log = LoggerFactory.getLogger(FrameReplay.class);
+	/**
+	 * Speed used to replay frames as fast as possible
+	 */
+	public static final double MAX_SPEED = 0;
+	private final Path directory;
+	private long rxCount;
+	private long txCount;
+	private long errorCount;
+	private long elapsedNanos;
+	private long recordedNanos;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            the directory of the {@linkplain FrameRecorder} segments
+	 */
+	public FrameReplay(final Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Replays all of the recorded segments in the order they were written
+	 *
+	 * @param listener
+	 *            the {@linkplain PacketListener} that will process the
+	 *            received frames
+	 * @param speed
+	 *            the speed factor relative to the recorded pace (i.e. 1 for
+	 *            the recorded pace, 10 for ten times faster) or
+	 *            {@linkplain #MAX_SPEED} to replay without delays
+	 * @return this {@linkplain FrameReplay} with the replay statistics
+	 * @throws IOException
+	 *             when a segment cannot be read
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for the next frame
+	 */
+	public FrameReplay replay(final PacketListener listener, final double speed)
+			throws IOException, InterruptedException {
+		rxCount = txCount = errorCount = recordedNanos = 0;
+		final List<Path> segments = FrameRecorder.listSegments(directory);
+		final long start = System.nanoTime();
+		long firstTimestamp = -1;
+		long lastTimestamp = -1;
+		for (final Path segment : segments) {
+			final FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+			try {
+				final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+				if (buffer.remaining() < FrameRecorder.HEADER_SIZE
+						|| buffer.getInt() != FrameRecorder.MAGIC
+						|| buffer.getShort() != FrameRecorder.VERSION) {
+					log.warn(String.format("Skipping invalid segment %1$s", segment));
+					continue;
+				}
+				buffer.getShort();
+				buffer.getLong();
+				byte[] packet = new byte[128];
+				int length;
+				while (buffer.remaining() >= FrameRecorder.RECORD_HEADER_SIZE
+						&& (length = buffer.getInt()) > 0) {
+					final long timestamp = buffer.getLong();
+					final byte direction = buffer.get();
+					if (packet.length < length) {
+						packet = new byte[length];
+					}
+					try {
+						buffer.get(packet, 0, length);
+					} catch (final BufferUnderflowException e) {
+						log.warn(String.format("Truncated frame at the end of %1$s", segment));
+						break;
+					}
+					if (firstTimestamp < 0) {
+						firstTimestamp = timestamp;
+					}
+					lastTimestamp = timestamp;
+					if (direction != FrameRecorder.RX) {
+						txCount++;
+						continue;
+					}
+					if (speed > 0) {
+						final long due = start + (long) ((timestamp - firstTimestamp) / speed);
+						final long wait = due - System.nanoTime();
+						if (wait > 0) {
+							TimeUnit.NANOSECONDS.sleep(wait);
+						}
+					}
+					final XBeeResponse response = parse(packet, length);
+					if (response == null || response.isError()) {
+						errorCount++;
+						continue;
+					}
+					rxCount++;
+					listener.processResponse(response);
+				}
+			} finally {
+				channel.close();
+			}
+		}
+		elapsedNanos = System.nanoTime() - start;
+		recordedNanos = firstTimestamp < 0 ? 0 : lastTimestamp - firstTimestamp;
+		log.info(String.format("Replayed %1$s", this));
+		return this;
+	}
+
+	/**
+	 * Parses a recorded packet
+	 *
+	 * @param packet
+	 *            the packet bytes (including the start delimiter)
+	 * @param length
+	 *            the number of packet bytes
+	 * @return the parsed {@linkplain XBeeResponse} (null when the packet is
+	 *         invalid)
+	 */
+	private XBeeResponse parse(final byte[] packet, final int length) {
+		try {
+			// the parser expects the start delimiter to have been consumed
+			return new PacketParser(new ByteArrayInputStream(packet, 1, length - 1))
+					.parsePacket();
+		} catch (final RuntimeException e) {
+			log.warn("Unable to parse recorded frame", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of received frames replayed during the last
+	 *         {@linkplain #replay(PacketListener, double)}
+	 */
+	public long getRxCount() {
+		return rxCount;
+	}
+
+	/**
+	 * @return the number of sent frames skipped during the last
+	 *         {@linkplain #replay(PacketListener, double)}
+	 */
+	public long getTxCount() {
+		return txCount;
+	}
+
+	/**
+	 * @return the number of frames that could not be parsed during the last
+	 *         {@linkplain #replay(PacketListener, double)}
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @param unit
+	 *            the {@linkplain TimeUnit} of the returned value
+	 * @return the time the last {@linkplain #replay(PacketListener, double)}
+	 *         took
+	 */
+	public long getElapsed(final TimeUnit unit) {
+		return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit
+	 *            the {@linkplain TimeUnit} of the returned value
+	 * @return the time between the first and last frame of the recording
+	 */
+	public long getRecorded(final TimeUnit unit) {
+		return unit.convert(recordedNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		final double seconds = elapsedNanos / 1000000000d;
+		return String.format(
+				"%1$s [directory: %2$s, rx: %3$s, tx: %4$s, errors: %5$s, recorded: %6$s ms, elapsed: %7$s ms, rx/sec: %8$.1f]",
+				getClass().getSimpleName(), directory, rxCount, txCount, errorCount,
+				getRecorded(TimeUnit.MILLISECONDS), getElapsed(TimeUnit.MILLISECONDS),
+				seconds > 0 ? rxCount / seconds : 0d);
+	}
+}
@@ -0,0 +1,805 @@
+package org.ugate.wireless;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.wireless.data.RxTxRemoteNodeDTO;
+import org.ugate.wireless.data.UGateXBeePacketListener;
+
+import com.rapplogic.xbee.api.ApiId;
+import com.rapplogic.xbee.api.AtCommand;
+import com.rapplogic.xbee.api.AtCommandResponse;
+import com.rapplogic.xbee.api.IXBee;
+import com.rapplogic.xbee.api.PacketListener;
+import com.rapplogic.xbee.api.RemoteAtRequest;
+import com.rapplogic.xbee.api.RemoteAtResponse;
+import com.rapplogic.xbee.api.XBeeAddress16;
+import com.rapplogic.xbee.api.XBeeException;
+import com.rapplogic.xbee.api.XBeePacket;
+import com.rapplogic.xbee.api.XBeePacketLength;
+import com.rapplogic.xbee.api.XBeeRequest;
+import com.rapplogic.xbee.api.XBeeResponse;
+import com.rapplogic.xbee.api.XBeeTimeoutException;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+import com.rapplogic.xbee.api.wpan.TxRequest16;
+import com.rapplogic.xbee.api.wpan.TxStatusResponse;
+
+/**
+ * In-process simulated XBee coordinator that can be used in place of a serial
+ * {@linkplain com.rapplogic.xbee.api.XBee} to exercise the receive/transmit
+ * pipeline without any radios. Each {@linkplain TxRequest16} addressed to a
+ * {@linkplain RemoteNode#getAddress()} is answered by a simulated remote node:
+ * <ul>
+ * <li>{@linkplain Command#SENSOR_GET_READINGS} and
+ * {@linkplain Command#GATE_TOGGLE_OPEN_CLOSE} reply with random sensor
+ * readings</li>
+ * <li>{@linkplain Command#SENSOR_GET_SETTINGS} replies with the last settings
+ * received via {@linkplain Command#SENSOR_SEND_SETTINGS} (or the defaults)</li>
+ * <li>{@linkplain Command#CAM_TAKE_PIC} replies with a generated JPEG in
+ * sequenced chunks and {@linkplain Command#CAM_RESEND_PIC_CHUNKS} resends the
+ * requested chunks of the last image</li>
+ * </ul>
+ * Frames are delivered to the {@linkplain PacketListener}s from a single
+ * thread (as the serial input thread would) with a configurable latency, loss
+ * rate and maximum frame rate. Frames for the same remote node are always
+ * delivered in the order they were produced.
+ */
+public class LoopbackXBee implements IXBee {
+
+	private static final Logger log = LoggerFactory.getLogger(LoopbackXBee.class);
+	/**
+	 * System property that enables the loopback transport when set to
+	 * <code>true</code> (also the prefix of the properties used in
+	 * {@linkplain #configure(Properties)})
+	 */
+	public static final String PROPERTY_PREFIX = "ugate.wireless.loopback";
+	/**
+	 * The maximum number of payload bytes in a simulated frame
+	 */
+	public static final int MAX_PAYLOAD_SIZE = 100;
+	/**
+	 * The default size of generated images
+	 */
+	public static final int DEFAULT_IMAGE_SIZE = 20 * 1024;
+	private static final int IMAGE_CHUNK_SIZE = MAX_PAYLOAD_SIZE
+			- UGateXBeePacketListener.IMAGE_START_INDEX;
+	private final List<PacketListener> listeners = new CopyOnWriteArrayList<>();
+	private final ConcurrentMap<Integer, SimulatedNode> nodes = new ConcurrentHashMap<>();
+	private final Random random = new Random();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong deliveredCount = new AtomicLong();
+	private final AtomicLong lostCount = new AtomicLong();
+	private ScheduledThreadPoolExecutor input;
+	private ScheduledFuture<?> readingsTask;
+	private volatile boolean connected;
+	private int frameId;
+	private volatile long minLatencyMillis = 5;
+	private volatile long maxLatencyMillis = 20;
+	private volatile double lossRate;
+	private volatile int framesPerSecond = 200;
+	private volatile int imageSize = DEFAULT_IMAGE_SIZE;
+	private volatile long readingsIntervalMillis;
+	private long lastDeliveryNanos;
+
+	/**
+	 * Configures the simulator from properties that start with
+	 * {@linkplain #PROPERTY_PREFIX} (missing properties retain their current
+	 * values):
+	 * <ul>
+	 * <li><code>.latency.min</code>/<code>.latency.max</code>: the range of
+	 * milliseconds a frame takes to be delivered</li>
+	 * <li><code>.loss</code>: the probability (0.0 - 1.0) that a frame is lost</li>
+	 * <li><code>.fps</code>: the maximum number of frames delivered per second</li>
+	 * <li><code>.image.size</code>: the number of bytes in generated images</li>
+	 * <li><code>.readings.interval</code>: milliseconds between unsolicited
+	 * readings sent by each node added via <code>.nodes</code> (zero disables)</li>
+	 * <li><code>.nodes</code>: comma separated {@linkplain RemoteNode#getAddress()}es</li>
+	 * </ul>
+	 *
+	 * @param properties
+	 *            the {@linkplain Properties}
+	 * @return this {@linkplain LoopbackXBee}
+	 */
+	public LoopbackXBee configure(final Properties properties) {
+		String value = properties.getProperty(PROPERTY_PREFIX + ".latency.min");
+		if (value != null) {
+			setLatency(Long.parseLong(value), Math.max(Long.parseLong(value), maxLatencyMillis));
+		}
+		value = properties.getProperty(PROPERTY_PREFIX + ".latency.max");
+		if (value != null) {
+			setLatency(minLatencyMillis, Long.parseLong(value));
+		}
+		value = properties.getProperty(PROPERTY_PREFIX + ".loss");
+		if (value != null) {
+			setLossRate(Double.parseDouble(value));
+		}
+		value = properties.getProperty(PROPERTY_PREFIX + ".fps");
+		if (value != null) {
+			setFramesPerSecond(Integer.parseInt(value));
+		}
+		value = properties.getProperty(PROPERTY_PREFIX + ".image.size");
+		if (value != null) {
+			setImageSize(Integer.parseInt(value));
+		}
+		value = properties.getProperty(PROPERTY_PREFIX + ".readings.interval");
+		if (value != null) {
+			setReadingsInterval(Long.parseLong(value));
+		}
+		value = properties.getProperty(PROPERTY_PREFIX + ".nodes");
+		if (value != null) {
+			for (final String address : value.split(",")) {
+				if (!address.trim().isEmpty()) {
+					addNode(address.trim());
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a simulated remote node that sends unsolicited readings every
+	 * {@linkplain #getReadingsInterval()} (nodes that are sent requests are
+	 * added automatically)
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 */
+	public void addNode(final String address) {
+		node(toXBeeAddress(address));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void open(final String port, final int baudRate)
+			throws XBeeException {
+		if (connected) {
+			throw new IllegalStateException("Cannot open new connection -- existing connection is still open.  Please close first");
+		}
+		input = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, LoopbackXBee.class.getSimpleName() + "-input");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		lastDeliveryNanos = 0;
+		connected = true;
+		scheduleReadings();
+		log.info(String.format("Opened %1$s (ignoring port %2$s and baud rate %3$s)",
+				this, port, baudRate));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() {
+		if (!connected) {
+			throw new IllegalStateException("XBee is not connected");
+		}
+		connected = false;
+		input.shutdownNow();
+		input = null;
+		readingsTask = null;
+		log.info(String.format("Closed %1$s", this));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addPacketListener(final PacketListener packetListener) {
+		listeners.add(packetListener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removePacketListener(final PacketListener packetListener) {
+		listeners.remove(packetListener);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendAsynchronous(final XBeeRequest request) throws XBeeException {
+		if (!connected) {
+			throw new XBeeException("XBee is not connected");
+		}
+		requestCount.incrementAndGet();
+		if (!(request instanceof TxRequest16)) {
+			throw new XBeeException(String.format("%1$s only supports %2$s asynchronous requests (not %3$s)",
+					getClass().getSimpleName(), TxRequest16.class.getSimpleName(), request.getApiId()));
+		}
+		final TxRequest16 txRequest = (TxRequest16) request;
+		final SimulatedNode node = node(txRequest.getRemoteAddr16());
+		final boolean lost = isLost();
+		if (request.getFrameId() != XBeeRequest.NO_RESPONSE_FRAME_ID) {
+			final TxStatusResponse txStatus = new TxStatusResponse();
+			txStatus.setApiId(ApiId.TX_STATUS_RESPONSE);
+			txStatus.setFrameId(request.getFrameId());
+			txStatus.setStatus(lost ? TxStatusResponse.Status.NO_ACK : TxStatusResponse.Status.SUCCESS);
+			txStatus.setRawPacketBytes(rawPacketBytes(ApiId.TX_STATUS_RESPONSE.getValue(),
+					request.getFrameId(), txStatus.getStatus().getValue()));
+			deliver(node, txStatus, false);
+		}
+		if (!lost) {
+			node.reply(txRequest.getPayload());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public XBeeResponse sendSynchronous(final XBeeRequest request, final int timeout)
+			throws XBeeTimeoutException, XBeeException {
+		if (!connected) {
+			throw new XBeeException("XBee is not connected");
+		}
+		requestCount.incrementAndGet();
+		if (!(request instanceof AtCommand)) {
+			throw new XBeeException(String.format("%1$s only supports %2$s synchronous requests (not %3$s)",
+					getClass().getSimpleName(), AtCommand.class.getSimpleName(), request.getApiId()));
+		}
+		final long latency = nextLatency();
+		if (isLost() || (timeout > 0 && latency > timeout)) {
+			throw new XBeeTimeoutException();
+		}
+		try {
+			Thread.sleep(latency);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new XBeeException(e);
+		}
+		final AtCommand atCommand = (AtCommand) request;
+		final AtCommandResponse response;
+		final XBeeAddress16 address;
+		if (request instanceof RemoteAtRequest) {
+			address = ((RemoteAtRequest) request).getRemoteAddr16();
+			final RemoteAtResponse remoteResponse = new RemoteAtResponse();
+			remoteResponse.setApiId(ApiId.REMOTE_AT_RESPONSE);
+			remoteResponse.setRemoteAddress16(address);
+			response = remoteResponse;
+		} else {
+			address = new XBeeAddress16(0, 0);
+			response = new AtCommandResponse();
+			response.setApiId(ApiId.AT_RESPONSE);
+		}
+		response.setFrameId(request.getFrameId());
+		response.setChar1(atCommand.getCommand().charAt(0));
+		response.setChar2(atCommand.getCommand().charAt(1));
+		if ("MY".equals(atCommand.getCommand())) {
+			response.setStatus(AtCommandResponse.Status.OK);
+			response.setValue(address.getAddress());
+		} else {
+			response.setStatus(AtCommandResponse.Status.INVALID_COMMAND);
+			response.setValue(new int[0]);
+		}
+		return response;
+	}
+
+	/**
+	 * Not supported (responses are only delivered to
+	 * {@linkplain PacketListener}s)
+	 */
+	@Override
+	public XBeeResponse getResponse() throws XBeeException {
+		throw new XBeeException(getClass().getSimpleName() + " does not queue responses");
+	}
+
+	/**
+	 * Not supported (responses are only delivered to
+	 * {@linkplain PacketListener}s)
+	 */
+	@Override
+	public XBeeResponse getResponse(final int timeout) throws XBeeException,
+			XBeeTimeoutException {
+		throw new XBeeException(getClass().getSimpleName() + " does not queue responses");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clearResponseQueue() {
+		// responses are not queued
+	}
+
+	/**
+	 * Not supported (there is no serial connection to write raw packets to)
+	 */
+	@Override
+	public void sendPacket(final XBeePacket packet) throws IOException {
+		throw new IOException(getClass().getSimpleName() + " does not support raw packets");
+	}
+
+	/**
+	 * Not supported (there is no serial connection to write raw packets to)
+	 */
+	@Override
+	public void sendPacket(final int[] packet) throws IOException {
+		throw new IOException(getClass().getSimpleName() + " does not support raw packets");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getCurrentFrameId() {
+		return frameId;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int getNextFrameId() {
+		frameId = frameId == 0xFF ? 1 : frameId + 1;
+		return frameId;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void updateFrameId(final int val) {
+		if (val <= 0 || val > 0xFF) {
+			throw new IllegalArgumentException("invalid frame id");
+		}
+		frameId = val;
+	}
+
+	/**
+	 * Sets the range of milliseconds it takes for a frame to be delivered
+	 *
+	 * @param minLatencyMillis
+	 *            the minimum latency
+	 * @param maxLatencyMillis
+	 *            the maximum latency
+	 */
+	public void setLatency(final long minLatencyMillis, final long maxLatencyMillis) {
+		if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid latency range %1$s - %2$s", minLatencyMillis, maxLatencyMillis));
+		}
+		this.minLatencyMillis = minLatencyMillis;
+		this.maxLatencyMillis = maxLatencyMillis;
+	}
+
+	/**
+	 * @return the minimum number of milliseconds it takes for a frame to be
+	 *         delivered
+	 */
+	public long getMinLatency() {
+		return minLatencyMillis;
+	}
+
+	/**
+	 * @return the maximum number of milliseconds it takes for a frame to be
+	 *         delivered
+	 */
+	public long getMaxLatency() {
+		return maxLatencyMillis;
+	}
+
+	/**
+	 * @return the probability (0.0 - 1.0) that a frame will be lost
+	 */
+	public double getLossRate() {
+		return lossRate;
+	}
+
+	/**
+	 * @param lossRate
+	 *            the probability (0.0 - 1.0) that a frame will be lost
+	 */
+	public void setLossRate(final double lossRate) {
+		if (lossRate < 0 || lossRate > 1) {
+			throw new IllegalArgumentException(String.format(
+					"Loss rate (%1$s) must be between 0.0 and 1.0", lossRate));
+		}
+		this.lossRate = lossRate;
+	}
+
+	/**
+	 * @return the maximum number of frames delivered per second (zero or less
+	 *         when unlimited)
+	 */
+	public int getFramesPerSecond() {
+		return framesPerSecond;
+	}
+
+	/**
+	 * @param framesPerSecond
+	 *            the maximum number of frames delivered per second (zero or
+	 *            less when unlimited)
+	 */
+	public void setFramesPerSecond(final int framesPerSecond) {
+		this.framesPerSecond = framesPerSecond;
+	}
+
+	/**
+	 * @return the number of bytes in generated images
+	 */
+	public int getImageSize() {
+		return imageSize;
+	}
+
+	/**
+	 * @param imageSize
+	 *            the number of bytes in generated images
+	 */
+	public void setImageSize(final int imageSize) {
+		if (imageSize < 4) {
+			throw new IllegalArgumentException(String.format(
+					"Image size (%1$s) must be at least 4 bytes", imageSize));
+		}
+		this.imageSize = imageSize;
+	}
+
+	/**
+	 * @return the number of milliseconds between unsolicited readings sent by
+	 *         each simulated node (zero when disabled)
+	 */
+	public long getReadingsInterval() {
+		return readingsIntervalMillis;
+	}
+
+	/**
+	 * @param readingsIntervalMillis
+	 *            the number of milliseconds between unsolicited readings sent
+	 *            by each simulated node (zero to disable)
+	 */
+	public synchronized void setReadingsInterval(final long readingsIntervalMillis) {
+		this.readingsIntervalMillis = readingsIntervalMillis;
+		if (readingsTask != null) {
+			readingsTask.cancel(false);
+			readingsTask = null;
+		}
+		scheduleReadings();
+	}
+
+	/**
+	 * @return the number of requests that have been sent to the simulator
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of frames that have been delivered to the
+	 *         {@linkplain PacketListener}s
+	 */
+	public long getDeliveredCount() {
+		return deliveredCount.get();
+	}
+
+	/**
+	 * @return the number of frames that have been lost (in either direction)
+	 */
+	public long getLostCount() {
+		return lostCount.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"%1$s [nodes: %2$s, latency: %3$s-%4$s ms, loss: %5$s, fps: %6$s, requests: %7$s, delivered: %8$s, lost: %9$s]",
+				getClass().getSimpleName(), nodes.size(), minLatencyMillis,
+				maxLatencyMillis, lossRate, framesPerSecond, getRequestCount(),
+				getDeliveredCount(), getLostCount());
+	}
+
+	/**
+	 * Schedules unsolicited readings for all simulated nodes (when enabled and
+	 * connected)
+	 */
+	private synchronized void scheduleReadings() {
+		final long interval = readingsIntervalMillis;
+		if (!connected || interval <= 0 || readingsTask != null) {
+			return;
+		}
+		readingsTask = input.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				for (final SimulatedNode node : nodes.values()) {
+					node.reply(Command.SENSOR_GET_READINGS.getKey());
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Schedules a frame for delivery to the {@linkplain PacketListener}s
+	 *
+	 * @param node
+	 *            the {@linkplain SimulatedNode} the frame is from
+	 * @param response
+	 *            the {@linkplain XBeeResponse} to deliver
+	 * @param lossy
+	 *            true when the frame is subject to the
+	 *            {@linkplain #getLossRate()}
+	 */
+	private void deliver(final SimulatedNode node, final XBeeResponse response,
+			final boolean lossy) {
+		if (lossy && isLost()) {
+			return;
+		}
+		final long delayNanos;
+		synchronized (this) {
+			if (!connected) {
+				return;
+			}
+			final long now = System.nanoTime();
+			final int fps = framesPerSecond;
+			// frames from the same node must not overtake each other
+			long due = Math.max(now + TimeUnit.MILLISECONDS.toNanos(nextLatency()), node.lastDueNanos);
+			if (fps > 0) {
+				due = Math.max(due, lastDeliveryNanos + TimeUnit.SECONDS.toNanos(1) / fps);
+				lastDeliveryNanos = due;
+			}
+			node.lastDueNanos = due;
+			delayNanos = due - now;
+			input.schedule(new Runnable() {
+				@Override
+				public void run() {
+					deliveredCount.incrementAndGet();
+					for (final PacketListener listener : listeners) {
+						try {
+							listener.processResponse(response);
+						} catch (final Throwable t) {
+							log.error(String.format("%1$s failed to process %2$s", listener, response), t);
+						}
+					}
+				}
+			}, delayNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * @return true when a frame should be lost based upon the
+	 *         {@linkplain #getLossRate()}
+	 */
+	private boolean isLost() {
+		final double loss = lossRate;
+		if (loss > 0 && random.nextDouble() < loss) {
+			lostCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return a random latency between {@linkplain #getMinLatency()} and
+	 *         {@linkplain #getMaxLatency()}
+	 */
+	private long nextLatency() {
+		final long min = minLatencyMillis;
+		final long max = maxLatencyMillis;
+		return max > min ? min + (long) (random.nextDouble() * (max - min + 1)) : min;
+	}
+
+	/**
+	 * Gets/Creates the {@linkplain SimulatedNode} for an address
+	 *
+	 * @param address
+	 *            the {@linkplain XBeeAddress16}
+	 * @return the {@linkplain SimulatedNode}
+	 */
+	private SimulatedNode node(final XBeeAddress16 address) {
+		final Integer key = address.get16BitValue();
+		SimulatedNode node = nodes.get(key);
+		if (node == null) {
+			final SimulatedNode newNode = new SimulatedNode(address);
+			node = nodes.putIfAbsent(key, newNode);
+			if (node == null) {
+				node = newNode;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Converts a {@linkplain RemoteNode#getAddress()} into an
+	 * {@linkplain XBeeAddress16}
+	 *
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()}
+	 * @return the {@linkplain XBeeAddress16}
+	 */
+	private static XBeeAddress16 toXBeeAddress(final String address) {
+		if (address.length() > RemoteNodeType.WIRELESS_ADDRESS_MAX_DIGITS) {
+			throw new IllegalArgumentException("Wireless address cannot be more than "
+					+ RemoteNodeType.WIRELESS_ADDRESS_MAX_DIGITS + " hex digits long");
+		}
+		return new XBeeAddress16(Integer.parseInt(address.substring(0, 2), 16),
+				Integer.parseInt(address.substring(2, 4), 16));
+	}
+
+	/**
+	 * Simulated remote node that replies to requests
+	 */
+	private class SimulatedNode {
+		final XBeeAddress16 address;
+		int[] settings;
+		int[] image;
+		int gateState;
+		long lastDueNanos;
+
+		SimulatedNode(final XBeeAddress16 address) {
+			this.address = address;
+			this.settings = new RxTxRemoteNodeDTO(RemoteNodeType.newDefaultRemoteNode(
+					new Host())).getData();
+		}
+
+		/**
+		 * Replies to a request payload
+		 *
+		 * @param payload
+		 *            the request payload (command, status, data...)
+		 */
+		synchronized void reply(final int... payload) {
+			final Command command = payload.length > 0 ? Command.lookup(payload[0]) : null;
+			if (command == null) {
+				log.warn(String.format("Simulated node %1$s ignoring unrecognized request %2$s",
+						address, payload.length > 0 ? payload[0] : "N/A"));
+				return;
+			}
+			switch (command) {
+			case GATE_TOGGLE_OPEN_CLOSE:
+				gateState = gateState == 0 ? 1 : 0;
+				// fall through (replies with readings)
+			case SENSOR_GET_READINGS:
+				send(command.getKey(), 0, random.nextInt(31), random.nextInt(12),
+						random.nextInt(61), random.nextInt(256), random.nextInt(61),
+						random.nextInt(12), gateState);
+				break;
+			case SENSOR_GET_SETTINGS:
+				final int[] sd = new int[settings.length + 2];
+				sd[0] = command.getKey();
+				System.arraycopy(settings, 0, sd, 2, settings.length);
+				send(sd);
+				break;
+			case SENSOR_SEND_SETTINGS:
+				if (payload.length - 2 >= settings.length) {
+					settings = new int[settings.length];
+					System.arraycopy(payload, 2, settings, 0, settings.length);
+				}
+				break;
+			case CAM_TAKE_PIC:
+				image = newImage(imageSize);
+				final int chunks = (image.length + IMAGE_CHUNK_SIZE - 1) / IMAGE_CHUNK_SIZE;
+				sendImageChunks(0, chunks);
+				break;
+			case CAM_RESEND_PIC_CHUNKS:
+				if (image != null && payload.length >= 6) {
+					sendImageChunks((payload[2] << 8) | payload[3], (payload[4] << 8) | payload[5]);
+				}
+				break;
+			default:
+				// commands that do not have a reply are only acknowledged
+				break;
+			}
+		}
+
+		/**
+		 * Sends sequenced {@linkplain Command#CAM_TAKE_PIC} chunks of the last
+		 * generated image
+		 *
+		 * @param start
+		 *            the first chunk sequence
+		 * @param count
+		 *            the number of chunks
+		 */
+		void sendImageChunks(final int start, final int count) {
+			for (int seq = start; seq < start + count; seq++) {
+				final int from = seq * IMAGE_CHUNK_SIZE;
+				if (from >= image.length) {
+					break;
+				}
+				final int len = Math.min(IMAGE_CHUNK_SIZE, image.length - from);
+				final int[] data = new int[UGateXBeePacketListener.IMAGE_START_INDEX + len];
+				data[0] = Command.CAM_TAKE_PIC.getKey();
+				data[1] = UGateXBeePacketListener.IMAGE_SEQUENCED_FLAG;
+				data[UGateXBeePacketListener.IMAGE_SEQUENCE_INDEX] = (seq >> 8) & 0xFF;
+				data[UGateXBeePacketListener.IMAGE_SEQUENCE_INDEX + 1] = seq & 0xFF;
+				System.arraycopy(image, from, data, UGateXBeePacketListener.IMAGE_START_INDEX, len);
+				send(data);
+			}
+		}
+
+		/**
+		 * Sends a {@linkplain RxResponse16} from the node
+		 *
+		 * @param data
+		 *            the frame data
+		 */
+		void send(final int... data) {
+			final int rssi = 40 + random.nextInt(40);
+			final int[] frame = new int[data.length + 5];
+			frame[0] = ApiId.RX_16_RESPONSE.getValue();
+			frame[1] = address.getMsb();
+			frame[2] = address.getLsb();
+			frame[3] = rssi;
+			System.arraycopy(data, 0, frame, 5, data.length);
+			final RxResponse16 rx = new RxResponse16();
+			rx.setApiId(ApiId.RX_16_RESPONSE);
+			rx.setSourceAddress(address);
+			rx.setRssi(-rssi);
+			rx.setData(data);
+			rx.setLength(new XBeePacketLength(frame.length));
+			rx.setRawPacketBytes(rawPacketBytes(frame));
+			deliver(this, rx, true);
+		}
+	}
+
+	/**
+	 * Creates the raw bytes of a packet as they would have been read from the
+	 * serial connection (escaped length, frame data and checksum without the
+	 * start delimiter) so that recorded frames can be parsed again
+	 *
+	 * @param frameData
+	 *            the API identifier followed by the frame data
+	 * @return the raw packet bytes
+	 */
+	private static int[] rawPacketBytes(final int... frameData) {
+		final int[] packet = new XBeePacket(frameData).getByteArray();
+		return Arrays.copyOfRange(packet, 1, packet.length);
+	}
+
+	/**
+	 * Generates JPEG bytes that start with a JFIF header and end with the
+	 * end of image marker
+	 *
+	 * @param size
+	 *            the total number of bytes
+	 * @return the generated image bytes
+	 */
+	private int[] newImage(final int size) {
+		final int[] header = { 0xFF, 0xD8, 0xFF, 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F',
+				0x00, 0x01, 0x01, 0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00 };
+		final int[] image = new int[Math.max(size, header.length + 2)];
+		System.arraycopy(header, 0, image, 0, header.length);
+		for (int i = header.length; i < image.length - 2; i++) {
+			// avoid markers in the entropy coded data
+			image[i] = random.nextInt(0xFF);
+		}
+		image[image.length - 2] = 0xFF;
+		image[image.length - 1] = 0xD9;
+		return image;
+	}
+}
@@ -1,7 +1,5 @@
 package org.ugate.wireless.data;
 
-import java.util.Calendar;
-
 import org.ugate.service.entity.jpa.RemoteNode;
 
 /**
@@ -13,6 +11,11 @@ import org.ugate.service.entity.jpa.RemoteNode;
  */
 public abstract class MultiRxData<T> extends RxRawData<T> {
 
+	/**
+	 * The timeout used when the {@linkplain RemoteNode} does not define one
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 120000;
+
 	/**
 	 * Constructor
 	 * 
@@ -31,10 +34,31 @@ public abstract class MultiRxData<T> extends RxRawData<T> {
 	}
 
 	/**
-	 * @return true when the transmission of data has timed out
+	 * @return true when the transmission of data has exceeded the
+	 *         {@linkplain #getTimeoutMillis()}
 	 */
 	public boolean hasTimedOut() {
-		return Calendar.getInstance().getTimeInMillis()
-				- getCreatedTime().getTimeInMillis() > 120000;
+		return hasTimedOut(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @return true when the transmission of data has exceeded the
+	 *         {@linkplain #getTimeoutMillis()}
+	 */
+	public boolean hasTimedOut(final long nowMillis) {
+		return nowMillis - getCreatedTimeMillis() > getTimeoutMillis();
+	}
+
+	/**
+	 * @return the number of milliseconds the transmission of data has to
+	 *         complete (from the {@linkplain RemoteNode} or
+	 *         {@linkplain #DEFAULT_TIMEOUT_MILLIS} when not defined)
+	 */
+	public long getTimeoutMillis() {
+		final RemoteNode rn = getRemoteNode();
+		return rn != null && rn.getCamImgCaptureTimeout() > 0 ? rn
+				.getCamImgCaptureTimeout() * 1000L : DEFAULT_TIMEOUT_MILLIS;
 	}
 }
@@ -11,7 +11,8 @@ import org.ugate.service.entity.jpa.RemoteNode;
 public abstract class RxData {
 
 	private final RemoteNode remoteNode;
-	private final Calendar createdTime;
+	private final long createdTimeMillis;
+	private Calendar createdTime;
 	private final int signalStrength;
 	private Status status = Status.NORMAL;
 
@@ -30,7 +31,7 @@ public abstract class RxData {
 		this.remoteNode = remoteNode;
 		setStatus(status);
 		this.signalStrength = signalStrength;
-		this.createdTime = Calendar.getInstance();
+		this.createdTimeMillis = System.currentTimeMillis();
 	}
 
 	/**
@@ -79,9 +80,22 @@ public abstract class RxData {
 	 * @return date/time the data was created
 	 */
 	public Calendar getCreatedTime() {
+		// created on demand since most received data never needs it
+		if (createdTime == null) {
+			final Calendar cal = Calendar.getInstance();
+			cal.setTimeInMillis(createdTimeMillis);
+			createdTime = cal;
+		}
 		return createdTime;
 	}
 
+	/**
+	 * @return date/time the data was created in milliseconds
+	 */
+	public long getCreatedTimeMillis() {
+		return createdTimeMillis;
+	}
+
 	/**
 	 * @return date/time the data was created in a human readable format
 	 */
@@ -0,0 +1,443 @@
+package org.ugate.wireless.data;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * Dispatcher that executes received data tasks using a fixed number of worker
+ * threads. Each {@linkplain RemoteNode#getAddress()} is assigned a serial lane
+ * so that tasks for the same {@linkplain RemoteNode} are executed in the order
+ * they were received while tasks for different {@linkplain RemoteNode}s are
+ * executed in parallel.
+ */
+public class RxEventDispatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(RxEventDispatcher.class);
+	/**
+	 * The default number of worker threads
+	 */
+	public static final int DEFAULT_WORKER_COUNT = Math.max(2, Runtime
+			.getRuntime().availableProcessors());
+	/**
+	 * The default maximum number of pending tasks per lane
+	 */
+	public static final int DEFAULT_LANE_CAPACITY = 512;
+	/**
+	 * The maximum number of tasks a lane will execute before yielding its
+	 * worker to other lanes
+	 */
+	private static final int LANE_BATCH_SIZE = 32;
+	/**
+	 * The minimum number of nanoseconds between warnings for tasks that have
+	 * been discarded from (or queued beyond the capacity of) the same lane
+	 */
+	private static final long DROP_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+	private final ThreadPoolExecutor workers;
+	private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+	private final int laneCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+	private final AtomicLong dispatchedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong overflowCount = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	/**
+	 * Constructor using {@link #DEFAULT_WORKER_COUNT},
+	 * {@link #DEFAULT_LANE_CAPACITY} and {@link OverflowPolicy#OVERFLOW}
+	 * (received data is never discarded and the receiving thread is never
+	 * blocked- it also delivers the transmit status of sent packets)
+	 *
+	 * @param name
+	 *            the name prefix used for the worker threads
+	 */
+	public RxEventDispatcher(final String name) {
+		this(name, DEFAULT_WORKER_COUNT, DEFAULT_LANE_CAPACITY,
+				OverflowPolicy.OVERFLOW);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            the name prefix used for the worker threads
+	 * @param workerCount
+	 *            the maximum number of worker threads
+	 * @param laneCapacity
+	 *            the maximum number of pending tasks per lane
+	 * @param overflowPolicy
+	 *            the {@link OverflowPolicy} used when a lane is full (null
+	 *            for {@link OverflowPolicy#OVERFLOW})
+	 */
+	public RxEventDispatcher(final String name, final int workerCount,
+			final int laneCapacity, final OverflowPolicy overflowPolicy) {
+		if (workerCount <= 0 || laneCapacity <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Worker count (%1$s) and lane capacity (%2$s) must be greater than zero",
+					workerCount, laneCapacity));
+		}
+		this.laneCapacity = laneCapacity;
+		this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.OVERFLOW
+				: overflowPolicy;
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60L,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable r) {
+						final Thread thread = new Thread(r, name + '-'
+								+ threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		// idle workers are released so an unused dispatcher does not hold threads
+		this.workers.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues a task on the lane for the specified key
+	 *
+	 * @param laneKey
+	 *            the key of the lane (typically the
+	 *            {@linkplain RemoteNode#getAddress()})
+	 * @param task
+	 *            the task to execute
+	 * @return true when the task has been queued, false when it was discarded
+	 */
+	public boolean dispatch(final String laneKey, final Runnable task) {
+		if (workers.isShutdown()) {
+			log.warn(String.format("Unable to dispatch task for %1$s (%2$s has been shutdown)",
+					laneKey, RxEventDispatcher.class.getSimpleName()));
+			droppedCount.incrementAndGet();
+			return false;
+		}
+		Lane lane = lanes.get(laneKey);
+		if (lane == null) {
+			final Lane newLane = new Lane(laneKey);
+			lane = lanes.putIfAbsent(laneKey, newLane);
+			if (lane == null) {
+				lane = newLane;
+			}
+		}
+		return lane.offer(new Task(task));
+	}
+
+	/**
+	 * Stops accepting new tasks. Tasks that have already been queued will
+	 * still be executed.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+
+	/**
+	 * @return the total number of tasks waiting to be executed across all
+	 *         lanes
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * @param laneKey
+	 *            the key of the lane
+	 * @return the number of tasks waiting to be executed in the lane
+	 */
+	public int getQueueDepth(final String laneKey) {
+		final Lane lane = lanes.get(laneKey);
+		return lane == null ? 0 : lane.queue.size();
+	}
+
+	/**
+	 * @return the highest {@link #getQueueDepth()} that has been reached
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	/**
+	 * @return the number of tasks that have been executed
+	 */
+	public long getDispatchedCount() {
+		return dispatchedCount.get();
+	}
+
+	/**
+	 * @return the number of tasks that have been discarded due to the
+	 *         {@link OverflowPolicy} or a shutdown
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return the number of tasks that have been queued beyond the lane
+	 *         capacity using {@link OverflowPolicy#OVERFLOW}
+	 */
+	public long getOverflowCount() {
+		return overflowCount.get();
+	}
+
+	/**
+	 * @param unit
+	 *            the {@link TimeUnit} of the returned value
+	 * @return the average time between when a task is queued and when it
+	 *         starts executing
+	 */
+	public long getAverageLatency(final TimeUnit unit) {
+		final long cnt = dispatchedCount.get();
+		return cnt == 0 ? 0 : unit.convert(totalLatencyNanos.get() / cnt,
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit
+	 *            the {@link TimeUnit} of the returned value
+	 * @return the maximum time between when a task is queued and when it
+	 *         starts executing
+	 */
+	public long getMaxLatency(final TimeUnit unit) {
+		return unit.convert(maxLatencyNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return the {@link OverflowPolicy} used when a lane is full
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"%1$s [lanes: %2$s, queued: %3$s, max queued: %4$s, dispatched: %5$s, dropped: %6$s, overflowed: %7$s, avg latency: %8$s ms, max latency: %9$s ms]",
+				getClass().getSimpleName(), lanes.size(), getQueueDepth(),
+				getMaxQueueDepth(), getDispatchedCount(), getDroppedCount(),
+				getOverflowCount(), getAverageLatency(TimeUnit.MILLISECONDS),
+				getMaxLatency(TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Updates the depth counters after a task has been added to a lane
+	 */
+	private void queued() {
+		final int depth = queueDepth.incrementAndGet();
+		int max;
+		while (depth > (max = maxQueueDepth.get())) {
+			if (maxQueueDepth.compareAndSet(max, depth)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Updates the latency counters before a task is executed
+	 *
+	 * @param latencyNanos
+	 *            the time the task waited in its lane
+	 */
+	private void dispatched(final long latencyNanos) {
+		queueDepth.decrementAndGet();
+		dispatchedCount.incrementAndGet();
+		totalLatencyNanos.addAndGet(latencyNanos);
+		long max;
+		while (latencyNanos > (max = maxLatencyNanos.get())) {
+			if (maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Policies used when a task is dispatched to a lane that is full
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Blocks the dispatching thread until the lane has room (not
+		 * suitable for a serial reader thread that must keep reading)
+		 */
+		BLOCK,
+		/** Discards the task being dispatched */
+		DISCARD_NEWEST,
+		/** Discards the oldest task waiting in the lane */
+		DISCARD_OLDEST,
+		/**
+		 * Queues the task beyond the lane capacity (never blocks the
+		 * dispatching thread or discards tasks) and logs a warning
+		 */
+		OVERFLOW;
+	}
+
+	/**
+	 * Task wrapper that captures the time it was queued
+	 */
+	private static class Task {
+		final Runnable runnable;
+		final long queuedNanos = System.nanoTime();
+
+		Task(final Runnable runnable) {
+			this.runnable = runnable;
+		}
+	}
+
+	/**
+	 * Serial lane of {@link Task}s that is executed by at most one worker at
+	 * any given time
+	 */
+	private class Lane implements Runnable {
+		final String key;
+		// the capacity of an overflow lane is only used to determine when to warn
+		final BlockingQueue<Task> queue = overflowPolicy == OverflowPolicy.OVERFLOW ? new LinkedBlockingQueue<Task>()
+				: new LinkedBlockingQueue<Task>(laneCapacity);
+		final AtomicBoolean scheduled = new AtomicBoolean();
+		final AtomicLong dropped = new AtomicLong();
+		final AtomicLong overflowed = new AtomicLong();
+		final AtomicLong warnedNanos = new AtomicLong(System.nanoTime()
+				- DROP_LOG_INTERVAL_NANOS);
+
+		Lane(final String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Adds a {@link Task} to the lane using the {@link OverflowPolicy}
+		 *
+		 * @param task
+		 *            the {@link Task}
+		 * @return true when the {@link Task} has been queued
+		 */
+		boolean offer(final Task task) {
+			// count before the task is visible to a worker so the depth never goes negative
+			queued();
+			if (overflowPolicy == OverflowPolicy.OVERFLOW && queue.size() >= laneCapacity) {
+				overflowed();
+			}
+			boolean added = queue.offer(task);
+			if (!added) {
+				if (overflowPolicy == OverflowPolicy.BLOCK) {
+					try {
+						queue.put(task);
+						added = true;
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				} else if (overflowPolicy == OverflowPolicy.DISCARD_OLDEST) {
+					while (!added) {
+						if (queue.poll() != null) {
+							queueDepth.decrementAndGet();
+							dropped();
+						}
+						added = queue.offer(task);
+					}
+				}
+				if (!added) {
+					queueDepth.decrementAndGet();
+					dropped();
+				}
+			}
+			if (added) {
+				schedule();
+			}
+			return added;
+		}
+
+		/**
+		 * Counts a discarded {@link Task} and logs a warning with the number of
+		 * {@link Task}s discarded from the lane so far (at most once every
+		 * {@link RxEventDispatcher#DROP_LOG_INTERVAL_NANOS})
+		 */
+		void dropped() {
+			droppedCount.incrementAndGet();
+			final long cnt = dropped.incrementAndGet();
+			if (shouldWarn()) {
+				log.warn(String.format(
+						"Lane %1$s is full (capacity: %2$s)... %3$s has discarded %4$s task(s) from the lane",
+						key, laneCapacity, overflowPolicy, cnt));
+			}
+		}
+
+		/**
+		 * Counts a {@link Task} queued beyond the lane capacity and logs a
+		 * warning with the number of {@link Task}s that have been queued beyond
+		 * the capacity so far (at most once every
+		 * {@link RxEventDispatcher#DROP_LOG_INTERVAL_NANOS})
+		 */
+		void overflowed() {
+			overflowCount.incrementAndGet();
+			final long cnt = overflowed.incrementAndGet();
+			if (shouldWarn()) {
+				log.warn(String.format(
+						"Lane %1$s is full (capacity: %2$s, queued: %3$s)... %4$s has queued %5$s task(s) beyond the capacity of the lane",
+						key, laneCapacity, queue.size(), overflowPolicy, cnt));
+			}
+		}
+
+		/**
+		 * @return true when a warning has not been logged for the lane within
+		 *         the last {@link RxEventDispatcher#DROP_LOG_INTERVAL_NANOS}
+		 */
+		private boolean shouldWarn() {
+			final long last = warnedNanos.get();
+			final long now = System.nanoTime();
+			return now - last >= DROP_LOG_INTERVAL_NANOS
+					&& warnedNanos.compareAndSet(last, now);
+		}
+
+		/**
+		 * Submits the lane to a worker when it is not already scheduled
+		 */
+		void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					workers.execute(this);
+				} catch (final RejectedExecutionException e) {
+					scheduled.set(false);
+					log.warn(String.format("Unable to schedule lane %1$s", key), e);
+				}
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			try {
+				Task task;
+				for (int i = 0; i < LANE_BATCH_SIZE
+						&& (task = queue.poll()) != null; i++) {
+					dispatched(System.nanoTime() - task.queuedNanos);
+					try {
+						task.runnable.run();
+					} catch (final Throwable t) {
+						log.error(String.format("Unable to execute task for lane %1$s", key), t);
+					}
+				}
+			} finally {
+				scheduled.set(false);
+				if (!queue.isEmpty()) {
+					schedule();
+				}
+			}
+		}
+	}
+}
@@ -1,14 +1,19 @@
 package org.ugate.wireless.data;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -19,17 +24,39 @@ import org.ugate.service.entity.jpa.RemoteNode;
 
 /**
  * Image response that requires multiple received image transmissions chunks
- * before an image can be assembled/written
+ * before an image can be assembled/written. Image chunks are appended to a
+ * temporary file as they are received so that assembling the image is linear
+ * in the number of chunks and only the chunk positions are retained in memory.
+ * When chunks carry a sequence number, gaps in the sequence are tracked so that
+ * only the missing chunks need to be retransmitted (in recovery rounds that
+ * end when all of the requested chunks have been received or the round has
+ * timed out).
  */
 public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>> {
 
 	private static final Logger log = LoggerFactory.getLogger(RxTxImage.class);
+	public static final String TEMP_EXT = "part";
 	private Calendar endTime = null;
 	private int rxTxAttempts = 0;
+	private Path tempPath;
+	private FileChannel channel;
+	private ByteBuffer chunkBuffer;
+	private long size;
+	private int lastByte = -1;
+	private int secondToLastByte = -1;
+	private final BitSet sequences = new BitSet();
+	private int maxSequence = -1;
+	private boolean sequenced = true;
+	private boolean outOfOrder;
+	private boolean eofReceived;
+	private int recoveryPending;
+	private long recoveryDeadline;
+	private int resendRequests;
+	private long retransmittedBytes;
 
 	/**
 	 * Constructor
-	 * 
+	 *
 	 * @param remoteNode
 	 *            the {@linkplain RemoteNode}
 	 * @param status
@@ -72,7 +99,7 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 */
 	public void setRxTxAttempts(final int rxTxAttempts) {
 		if (rxTxAttempts == 0 || rxTxAttempts > this.rxTxAttempts) {
-			getData().clear();
+			clearImageSegments();
 			this.rxTxAttempts = rxTxAttempts;
 		} else if (rxTxAttempts < this.rxTxAttempts) {
 			throw new IllegalArgumentException(
@@ -93,36 +120,152 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 * the {@link RxTxImage}
 	 */
 	public void incRxTxAttempts() {
+		// the entire image will be sent again
+		retransmittedBytes += size;
 		setRxTxAttempts(getRxTxAttempts() + 1);
 	}
 
 	/**
-	 * @return the current bytes of for the image chunks
+	 * @return true when the last received image segments contain an end of
+	 *         file termination character(s) (remains true while missing
+	 *         chunks are being recovered)
+	 */
+	public boolean hasReceivedEof() {
+		if (!eofReceived) {
+			eofReceived = isEof();
+		}
+		return eofReceived;
+	}
+
+	/**
+	 * @return true when every image chunk is sequenced and there are gaps in
+	 *         the received sequence
+	 */
+	public boolean hasMissingChunks() {
+		return sequenced && maxSequence >= 0
+				&& sequences.nextClearBit(0) <= maxSequence;
+	}
+
+	/**
+	 * @return true when retransmission of missing chunks has been requested
+	 *         and not all of the requested chunks have been received (until
+	 *         {@linkplain #endRecovery()})
+	 */
+	public boolean isRecovering() {
+		return recoveryPending > 0;
+	}
+
+	/**
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return true when {@linkplain #isRecovering()} and the time allowed
+	 *         for the current recovery round has elapsed
+	 */
+	public boolean hasRecoveryTimedOut(final long now) {
+		return recoveryPending > 0 && now >= recoveryDeadline;
+	}
+
+	/**
+	 * Ends the current recovery round (if any) so that any chunks that are
+	 * still missing can be requested again
+	 */
+	public void endRecovery() {
+		recoveryPending = 0;
+	}
+
+	/**
+	 * Gets the ranges of missing chunk sequences and marks them as requested
+	 * for retransmission (starts a new recovery round)
+	 * 
+	 * @param timeoutMillis
+	 *            the number of milliseconds allowed for the requested chunks
+	 *            to be received before the round
+	 *            {@linkplain #hasRecoveryTimedOut(long)}
+	 * @return the missing ranges where each element is the starting sequence
+	 *         and the number of chunks
+	 */
+	public List<int[]> requestMissingChunks(final long timeoutMillis) {
+		final List<int[]> ranges = new ArrayList<>();
+		if (!hasMissingChunks()) {
+			return ranges;
+		}
+		int missing = 0;
+		int start = sequences.nextClearBit(0);
+		while (start <= maxSequence) {
+			final int end = Math.min(sequences.nextSetBit(start), maxSequence + 1);
+			ranges.add(new int[] { start, end - start });
+			missing += end - start;
+			start = sequences.nextClearBit(end);
+		}
+		recoveryPending = missing;
+		recoveryDeadline = System.currentTimeMillis() + timeoutMillis;
+		resendRequests++;
+		return ranges;
+	}
+
+	/**
+	 * @return the number of times missing chunks have been requested
+	 */
+	public int getResendRequests() {
+		return resendRequests;
+	}
+
+	/**
+	 * @return the number of image bytes that have been received more than
+	 *         once (or requested to be sent again)
+	 */
+	public long getRetransmittedBytes() {
+		return retransmittedBytes;
+	}
+
+	/**
+	 * @return the number of image bytes that have been received
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the current bytes of for the image chunks (read from the
+	 *         temporary image file)
 	 */
 	public ByteBuffer getBytes() {
-		if (getData() == null) {
+		if (channel == null || size == 0) {
 			return null;
 		}
-		int[] imageData = null;
-		for (final ImageChunk imageChunk : getData()) {
-			if (imageData == null) {
-				imageData = imageChunk.data;
-			} else {
-				imageData = UGateUtil
-						.arrayConcatInt(imageData, imageChunk.data);
+		try {
+			final ByteBuffer byteBuffer = ByteBuffer.allocate((int) size);
+			long pos = 0;
+			int cnt;
+			while (byteBuffer.hasRemaining()
+					&& (cnt = channel.read(byteBuffer, pos)) >= 0) {
+				pos += cnt;
 			}
-		}
-		if (imageData == null) {
+			byteBuffer.flip();
+			return byteBuffer;
+		} catch (final IOException e) {
+			log.error(String.format("Unable to read image bytes from %1$s",
+					tempPath), e);
 			return null;
 		}
-		final ByteBuffer byteBuffer = ByteBuffer.allocate(imageData.length);
-		for (final int value : imageData) {
-			// convert uint8_t to java integer
-			// int byteValue = value & 0xFF;
-			// byteBuffer.putInt(value);
-			byteBuffer.put((byte) value);
+	}
+
+	/**
+	 * Gets one of the last received image bytes
+	 *
+	 * @param offsetFromEnd
+	 *            0 for the last byte, 1 for the second to last byte
+	 * @return the unsigned byte value (or -1 when not enough bytes have been
+	 *         received)
+	 */
+	protected int getTrailingByte(final int offsetFromEnd) {
+		if (offsetFromEnd == 0) {
+			return lastByte;
+		} else if (offsetFromEnd == 1) {
+			return secondToLastByte;
 		}
-		return byteBuffer;
+		throw new IllegalArgumentException(
+				"Only the last two trailing bytes are retained");
 	}
 
 	/**
@@ -142,7 +285,7 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 
 	/**
 	 * Adds a segment of image data to the image
-	 * 
+	 *
 	 * @param data
 	 *            the segment of image data
 	 * @param startIndex
@@ -152,20 +295,96 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 *             when the image has already been assembled/written
 	 * @return the new image segment added
 	 */
-	public int[] addImageSegment(int[] data, int startIndex)
+	public ImageChunk addImageSegment(final int[] data, final int startIndex)
 			throws IllegalStateException {
+		return addImageSegment(data, startIndex, -1);
+	}
+
+	/**
+	 * Adds a segment of image data to the image
+	 * 
+	 * @param data
+	 *            the segment of image data
+	 * @param startIndex
+	 *            the start index to use for the data (in case data has
+	 *            unrelated preceding bytes)
+	 * @param sequence
+	 *            the sequence of the segment within the image (negative when
+	 *            the remote node does not sequence segments)
+	 * @throws IllegalStateException
+	 *             when the image has already been assembled/written
+	 * @return the new image segment added (null when the segment has
+	 *         already been received)
+	 */
+	public ImageChunk addImageSegment(final int[] data, final int startIndex,
+			final int sequence) throws IllegalStateException {
 		if (endTime != null) {
 			throw new IllegalStateException("Image has already been written to");
 		}
-		final ImageChunk imageChunk = new ImageChunk(data, startIndex,
-				data.length - startIndex);
+		final int length = Math.max(data.length - startIndex, 0);
+		boolean fill = false;
+		if (sequenced) {
+			if (sequence < 0) {
+				// the remote node does not sequence chunks
+				sequenced = false;
+			} else if (sequence <= maxSequence) {
+				if (sequences.get(sequence)) {
+					log.debug(String.format("Ignoring duplicate image chunk %1$s", sequence));
+					return null;
+				}
+				// fills a gap (requested or received late)
+				fill = true;
+			}
+		}
+		final ImageChunk imageChunk = new ImageChunk(size, length, sequenced ? sequence : -1);
+		if (sequenced) {
+			sequences.set(sequence);
+			maxSequence = Math.max(maxSequence, sequence);
+		}
+		if (fill) {
+			outOfOrder = true;
+			retransmittedBytes += length;
+			if (recoveryPending > 0) {
+				recoveryPending--;
+			}
+		}
+		if (chunkBuffer == null || chunkBuffer.capacity() < length) {
+			chunkBuffer = ByteBuffer.allocate(length);
+		}
+		chunkBuffer.clear();
+		for (int i = startIndex; i < data.length; i++) {
+			// convert uint8_t to java integer
+			chunkBuffer.put((byte) data[i]);
+			secondToLastByte = lastByte;
+			lastByte = data[i] & 0xFF;
+		}
+		chunkBuffer.flip();
+		try {
+			if (channel == null) {
+				final Path imgPath = getImagePath();
+				tempPath = imgPath.resolveSibling(imgPath.getFileName() + "."
+						+ TEMP_EXT);
+				channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.READ,
+						StandardOpenOption.TRUNCATE_EXISTING);
+			}
+			long pos = size;
+			while (chunkBuffer.hasRemaining()) {
+				pos += channel.write(chunkBuffer, pos);
+			}
+		} catch (final IOException e) {
+			log.error(String.format("Unable to write %1$s image bytes to %2$s",
+					length, tempPath), e);
+			setStatus(Status.GENERAL_FAILURE);
+		}
+		size += length;
 		getData().add(imageChunk);
-		return imageChunk.data;
+		return imageChunk;
 	}
 
 	/**
-	 * Writes all the previously added image chunk data to an image file
-	 * 
+	 * Moves all the previously added image chunk data to an image file
+	 *
 	 * @return the newly written image capture
 	 * @throws IOException
 	 *             thrown if an error occurs when writing the image to disk
@@ -176,22 +395,93 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 					"Image has already been written to path %1$s at %2$s",
 					getImagePath(), UGateUtil.calFormat(endTime)));
 		}
+		if (channel == null) {
+			throw new IOException(String.format(
+					"No image segments have been received for %1$s",
+					getImagePath()));
+		}
 		try {
-			final ByteBuffer byteBuffer = getBytes();
 			final Path filePath = getImagePath();
-			writeImage(byteBuffer.array(), filePath);
+			final int byteCount = (int) size;
+			final int chunkCount = getData().size();
+			final Path srcPath = outOfOrder ? writeOrderedImageSegments() : tempPath;
+			boolean moved = false;
+			try {
+				channel.force(false);
+				channel.close();
+				try {
+					Files.move(srcPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+				} catch (final AtomicMoveNotSupportedException e) {
+					Files.move(srcPath, filePath,
+							StandardCopyOption.REPLACE_EXISTING);
+				}
+				moved = true;
+			} finally {
+				// the ordered file is not removed by discard()
+				if (!moved && srcPath != tempPath) {
+					try {
+						Files.deleteIfExists(srcPath);
+					} catch (final IOException e) {
+						log.warn(String.format("Unable to remove temporary image file %1$s",
+								srcPath), e);
+					}
+				}
+			}
 			endTime = Calendar.getInstance();
 			if (log.isInfoEnabled()) {
 				log.info(String
 						.format("Wrote (%1$s) bytes from (%2$s) image chunks to \"%3$s\" (took: %4$s)",
-								byteBuffer.array().length, getData().size(),
-								filePath, getCreatedTimeDiffernce(endTime)));
+								byteCount, chunkCount, filePath,
+								getCreatedTimeDiffernce(endTime)));
 			}
 			return new ImageCapture(getRemoteNode(), getStatus(),
-					getSignalStrength(), filePath, byteBuffer.array().length);
+					getSignalStrength(), filePath, byteCount);
+		} finally {
+			discard();
+		}
+	}
+
+	/**
+	 * Writes the image chunks in sequence order when retransmitted chunks
+	 * were received out of order
+	 * 
+	 * @return the {@linkplain Path} of the ordered image file
+	 * @throws IOException
+	 *             thrown if an error occurs when writing the image to disk
+	 */
+	private Path writeOrderedImageSegments() throws IOException {
+		final List<ImageChunk> chunks = new ArrayList<>(getData());
+		Collections.sort(chunks, new Comparator<ImageChunk>() {
+			@Override
+			public int compare(final ImageChunk ic1, final ImageChunk ic2) {
+				return Integer.compare(ic1.getSequence(), ic2.getSequence());
+			}
+		});
+		final Path orderedPath = tempPath.resolveSibling(tempPath.getFileName()
+				+ ".ordered");
+		final FileChannel out = FileChannel.open(orderedPath,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		boolean written = false;
+		try {
+			for (final ImageChunk chunk : chunks) {
+				long pos = chunk.getPosition();
+				long remaining = chunk.getLength();
+				while (remaining > 0) {
+					final long cnt = channel.transferTo(pos, remaining, out);
+					pos += cnt;
+					remaining -= cnt;
+				}
+			}
+			out.force(false);
+			written = true;
 		} finally {
-			setData(new ArrayList<RxTxJPEG.ImageChunk>());
+			out.close();
+			if (!written) {
+				Files.deleteIfExists(orderedPath);
+			}
 		}
+		return orderedPath;
 	}
 
 	/**
@@ -200,46 +490,102 @@ public abstract class RxTxImage extends MultiRxData<List<RxTxImage.ImageChunk>>
 	 *         until {@linkplain #writeImageSegments()} is called
 	 */
 	public ImageCapture createImageSegmentsSnapshot() {
-		final ByteBuffer byteBuffer = getBytes();
 		return new ImageCapture(getRemoteNode(), getStatus(),
-				getSignalStrength(), null,
-				byteBuffer != null ? byteBuffer.array().length : 0);
+				getSignalStrength(), null, (int) size);
 	}
 
 	/**
-	 * Writes the image to file
-	 * 
-	 * @param bytes
-	 *            the image bytes
-	 * @param filePath
-	 *            the file {@linkplain Path}
-	 * @throws IOException
-	 *             any {@linkplain IOException} that may occur
+	 * Removes any image chunk data that has been received and deletes the
+	 * temporary image file (if any)
 	 */
-	protected void writeImage(final byte[] bytes, final Path filePath)
-			throws IOException {
-		final File imageFile = filePath.toFile();
-		if (!imageFile.exists()) {
-			imageFile.createNewFile();
-		}
-		final FileOutputStream fos = new FileOutputStream(imageFile);
+	public void discard() {
 		try {
-			fos.write(bytes);
+			if (channel != null) {
+				channel.close();
+			}
+			if (tempPath != null) {
+				Files.deleteIfExists(tempPath);
+			}
+		} catch (final IOException e) {
+			log.warn(String.format("Unable to remove temporary image file %1$s",
+					tempPath), e);
 		} finally {
-			fos.close();
+			channel = null;
+			tempPath = null;
+			chunkBuffer = null;
+			resetSegmentState();
+			setData(new ArrayList<RxTxImage.ImageChunk>());
+		}
+	}
+
+	/**
+	 * Removes any image chunk data that has been received while retaining the
+	 * temporary image file for subsequent image chunks
+	 */
+	protected void clearImageSegments() {
+		if (channel != null) {
+			try {
+				channel.truncate(0);
+			} catch (final IOException e) {
+				log.warn(String.format("Unable to truncate temporary image file %1$s",
+						tempPath), e);
+				discard();
+				return;
+			}
 		}
+		resetSegmentState();
+		getData().clear();
+	}
+
+	/**
+	 * Resets the size and trailing byte state
+	 */
+	private void resetSegmentState() {
+		size = 0;
+		lastByte = -1;
+		secondToLastByte = -1;
+		sequences.clear();
+		maxSequence = -1;
+		sequenced = true;
+		outOfOrder = false;
+		eofReceived = false;
+		recoveryPending = 0;
 	}
 
 	/**
 	 * Image chunk that represents a portion of an overall image
 	 */
-	public class ImageChunk {
-		public int[] data;
+	public static class ImageChunk {
+		private final long position;
+		private final int length;
+		private final int sequence;
+
+		public ImageChunk(final long position, final int length, final int sequence) {
+			this.position = position;
+			this.length = length;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * @return the sequence of the chunk within the image (negative when
+		 *         not sequenced)
+		 */
+		public int getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return the position of the chunk within the image
+		 */
+		public long getPosition() {
+			return position;
+		}
 
-		public ImageChunk(int[] data, int startIndex, int length) {
-			this.data = Arrays.copyOfRange(data, startIndex, length
-					+ startIndex);
-			// log.debug("####### Image Chunk: " + this.data.length + " bytes");
+		/**
+		 * @return the number of image bytes in the chunk
+		 */
+		public int getLength() {
+			return length;
 		}
 	}
 }
@@ -41,23 +41,12 @@ public class RxTxJPEG extends RxTxImage {
 	 */
 	@Override
 	public boolean isEof() {
-		try {
-			final ImageChunk last = getData().get(getData().size() - 1);
-			int lastByte = last.data[last.data.length - 1];
-			int secondToLastByte;
-			if (last.data.length < 2) {
-				// in the rare case that the last data added has only one byte
-				final ImageChunk last2 = getData().get(getData().size() - 2);
-				secondToLastByte = last2.data[last2.data.length - 1];
-			} else {
-				secondToLastByte = last.data[last.data.length - 2];
-			}
+		if (getSize() >= 2) {
 			final String eofHex = ByteUtils.toBase16(new int[] {
-					secondToLastByte, lastByte });
+					getTrailingByte(1), getTrailingByte(0) });
 			return eofHex.toLowerCase().equals(JPEG_EOF);
-		} catch (Exception e) {
-			log.error("Unable to get EOF sequence", e);
 		}
+		log.error(String.format("Unable to get EOF sequence from %1$s byte(s)", getSize()));
 		setStatus(Status.GENERAL_FAILURE);
 		return true;
 	}
@@ -1,9 +1,16 @@
 package org.ugate.wireless.data;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +43,81 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 	 * The index of the image start byte
 	 */
 	public static final int IMAGE_START_INDEX = 7;
+	/**
+	 * Index of the most significant byte of the image chunk sequence (least
+	 * significant byte follows) when the chunk status has the
+	 * {@linkplain #IMAGE_SEQUENCED_FLAG}
+	 */
+	public static final int IMAGE_SEQUENCE_INDEX = 5;
+	/**
+	 * Flag set in the status byte (index 1) of an image chunk by remote nodes
+	 * that send the chunk sequence at {@linkplain #IMAGE_SEQUENCE_INDEX} and
+	 * support {@linkplain Command#CAM_RESEND_PIC_CHUNKS} (images from remote
+	 * nodes that do not set the flag are always retried in full)
+	 */
+	public static final int IMAGE_SEQUENCED_FLAG = 0x80;
+	/**
+	 * The default number of milliseconds to wait for the chunks requested in
+	 * a single missing image chunk recovery round
+	 */
+	public static final long DEFAULT_IMAGE_RECOVERY_MILLIS = 10000;
+	/**
+	 * The default number of milliseconds between sweeps for stale images
+	 */
+	public static final long DEFAULT_IMAGE_SWEEP_MILLIS = 5000;
+	/**
+	 * The default maximum number of bytes for all images in progress
+	 */
+	public static final long DEFAULT_IMAGE_BYTE_BUDGET = 16L * 1024L * 1024L;
 	private final Map<String, RxTxImage> imgMap = new ConcurrentHashMap<>();
+	private final Object imgLock = new Object();
+	private final RxEventDispatcher dispatcher;
+	private final ScheduledThreadPoolExecutor imageReaper;
+	private ScheduledFuture<?> imageSweep;
+	private volatile long imageSweepMillis = DEFAULT_IMAGE_SWEEP_MILLIS;
+	private volatile long imageByteBudget = DEFAULT_IMAGE_BYTE_BUDGET;
+	private volatile long imageRecoveryMillis = DEFAULT_IMAGE_RECOVERY_MILLIS;
+	private final AtomicLong imageRetransmittedBytes = new AtomicLong();
+	private final AtomicLong imagesExpired = new AtomicLong();
+	private final AtomicLong imagesEvicted = new AtomicLong();
+
+	/**
+	 * Constructor using an {@linkplain RxEventDispatcher} that never blocks
+	 * the XBee input thread ({@linkplain RxEventDispatcher.OverflowPolicy#OVERFLOW})
+	 * so that transmit status responses continue to be delivered while a
+	 * {@linkplain RemoteNode} lane is backed up
+	 */
+	public UGateXBeePacketListener() {
+		this(new RxEventDispatcher(UGateXBeePacketListener.class.getSimpleName() + "-event",
+				RxEventDispatcher.DEFAULT_WORKER_COUNT,
+				RxEventDispatcher.DEFAULT_LANE_CAPACITY,
+				RxEventDispatcher.OverflowPolicy.OVERFLOW));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dispatcher
+	 *            the {@linkplain RxEventDispatcher} used to call
+	 *            {@linkplain #handleEvent(UGateEvent)} in
+	 *            {@linkplain RemoteNode} order
+	 */
+	public UGateXBeePacketListener(final RxEventDispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+		this.imageReaper = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, UGateXBeePacketListener.class
+						.getSimpleName() + "-image-reaper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// the reaper thread is only kept alive while images are in progress
+		this.imageReaper.setRemoveOnCancelPolicy(true);
+		this.imageReaper.setKeepAliveTime(60L, TimeUnit.SECONDS);
+		this.imageReaper.allowCoreThreadTimeOut(true);
+	}
 
 	/**
 	 * Process responses as they are received
@@ -62,18 +143,23 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 			if (response instanceof RxResponse16) {
 				handleRxResponse16((RxResponse16) response);
 			} else if (response instanceof TxStatusResponse) {
+				final TxStatusResponse txResponse = (TxStatusResponse) response;
+				final boolean success = txResponse.getStatus() == TxStatusResponse.Status.SUCCESS;
+				// TX status responses are not associated with a remote node so they are only logged
+				if (success ? !log.isInfoEnabled() : !log.isWarnEnabled()) {
+					return;
+				}
 				final Command command = extractCommand(response);
 				final String rawBytes = ByteUtils.toBase16(response.getRawPacketBytes());
-				final TxStatusResponse txResponse = (TxStatusResponse) response;
 				RxData rd;
-				if (txResponse.getStatus() == TxStatusResponse.Status.SUCCESS) {
+				if (success) {
 					rd = new RxRawData<String>(null, Status.NORMAL, 0, rawBytes);
 					processData(null, UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_SUCCESS, command, rd, 
-							RS.rbLabel(KEY.SERVICE_TX_RESPONSE_SUCCESS, rd, txResponse.getStatus()));
+							KEY.SERVICE_TX_RESPONSE_SUCCESS, rd, txResponse.getStatus());
 				} else {
 					rd = new RxRawData<String>(null, Status.GENERAL_FAILURE, 0, rawBytes);
 					processData(null, UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_FAILED, command, rd, 
-							RS.rbLabel(KEY.SERVICE_TX_RESPONSE_ERROR, rd, txResponse.getStatus()));
+							KEY.SERVICE_TX_RESPONSE_ERROR, rd, txResponse.getStatus());
 				}
 			} else if (response instanceof ErrorResponse) {
 				final Command command = extractCommand(response);
@@ -89,7 +175,7 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 					rd = new RxRawData<String>(null, Status.GENERAL_FAILURE, 0, rawBytes);
 //				}
 				processData(null, UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_FAILED, command, rd, 
-						RS.rbLabel(KEY.SERVICE_TX_RESPONSE_ERROR, rd, errorResponse.getErrorMsg()));
+						KEY.SERVICE_TX_RESPONSE_ERROR, rd, errorResponse.getErrorMsg());
 				log.error("", errorResponse.getException());
 			} else {
 				final String rawBytes = ByteUtils.toBase16(response.getRawPacketBytes());
@@ -102,7 +188,7 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 							response, ByteUtils.toBase16(processedPacketBytes)));
 					final RxData rd = new RxRawData<String>(null, Status.GENERAL_FAILURE, 0, rawBytes);
 					processData(null, UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_UNRECOGNIZED, null, rd, 
-							RS.rbLabel(KEY.SERVICE_TX_RESPONSE_INVALID, rd, rawBytes));
+							KEY.SERVICE_TX_RESPONSE_INVALID, rd, rawBytes);
 				}
 			}
 		} catch (final Exception e) {
@@ -126,8 +212,7 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 					"NONE"));
 			return null;
 		}
-		// TODO : RemoteNode should not be queried every time a response is received when multi-chunking data (like image) 
-		final RemoteNode rn = ServiceProvider.IMPL.getRemoteNodeService().findByAddress(remoteAddress);
+		final RemoteNode rn = ServiceProvider.IMPL.getRemoteNodeIndex().findByAddress(remoteAddress);
 		if (rn == null) {
 			log.error(String .format("Received data from an unknown address %1$s... Discarding response...", 
 					remoteAddress));
@@ -153,60 +238,61 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 					rxResponse.getData()[0], rn.getAddress()));
 			return;
 		}
-		final int failures = rxResponse.getData()[1]; // TODO : Handle cases where failures exist
+		// image chunks use the high bit of the status to indicate that they are sequenced
+		final int failures = command == Command.CAM_TAKE_PIC ? rxResponse.getData()[1] & ~IMAGE_SEQUENCED_FLAG
+				: rxResponse.getData()[1]; // TODO : Handle cases where failures exist
 		final RxData.Status status = failures == 0 ? RxData.Status.NORMAL : RxData.Status.GENERAL_FAILURE;
-		log.info(String.format("======= Recieved %1$s command from wireless address %2$s (signal strength: %3$s) with (%4$s) failures =======", 
-				command, rn.getAddress(), rxResponse.getRssi(), failures));
+		if (log.isInfoEnabled()) {
+			log.info(String.format("======= Recieved %1$s command from wireless address %2$s (signal strength: %3$s) with (%4$s) failures =======", 
+					command, rn.getAddress(), rxResponse.getRssi(), failures));
+		}
 		if (command == Command.CAM_TAKE_PIC) {
-			ImageCapture ic;
-			RxTxImage rxTxImage = imgMap.containsKey(rn.getAddress()) ? imgMap.get(rn.getAddress()) : null;
-			if (rxTxImage == null || rxTxImage.hasTimedOut()) {
-				if (rxTxImage != null) {
-					rxTxImage.resetRxTxAttempts();
+			// the image reaper expires/evicts images from a different thread
+			synchronized (imgLock) {
+				ImageCapture ic;
+				RxTxImage rxTxImage = imgMap.get(rn.getAddress());
+				if (rxTxImage == null || rxTxImage.hasTimedOut()) {
+					if (rxTxImage != null) {
+						rxTxImage.resetRxTxAttempts();
+						ic = rxTxImage.createImageSegmentsSnapshot();
+						rxTxImage.discard();
+						processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, command, ic, 
+								KEY.SERVICE_RX_IMAGE_TIMEOUT, ic);
+					}
+					// TODO : add check for what sensor tripped the image and image format detection (instead of using just JPEG)
+					rxTxImage = new RxTxJPEG(rn, status, rxResponse.getRssi(), null);
+					imgMap.put(rn.getAddress(), rxTxImage);
+					scheduleImageSweep();
 					ic = rxTxImage.createImageSegmentsSnapshot();
-					processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, command, ic, 
-							RS.rbLabel(KEY.SERVICE_RX_IMAGE_TIMEOUT, ic));
+					log.info(String.format("======= Receiving chunked image data (%1$s) =======", rxTxImage));
+					processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_MULTIPART, command, ic, 
+							KEY.SERVICE_RX_IMAGE_MULTPART, ic);
 				}
-				// TODO : add check for what sensor tripped the image and image format detection (instead of using just JPEG)
-				rxTxImage = new RxTxJPEG(rn, status, rxResponse.getRssi(), null);
-				imgMap.put(rn.getAddress(), rxTxImage);
-				ic = rxTxImage.createImageSegmentsSnapshot();
-				log.info(String.format("======= Receiving chunked image data (%1$s) =======", rxTxImage));
-				processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_MULTIPART, command, ic, 
-						RS.rbLabel(KEY.SERVICE_RX_IMAGE_MULTPART, ic));
-			}
-			int[] imageChunk = rxTxImage.addImageSegment(rxResponse.getData(), IMAGE_START_INDEX);
-			if (log.isDebugEnabled()) {
-				log.debug(String.format("Sensor Tripped (%1$s, LENGTH: %2$s, RAW LENGTH: %3$s) DATA: %4$s", 
-						rxTxImage, imageChunk.length, rxResponse.getLength().getLength(), ByteUtils.toBase16(imageChunk)));
-			}
-			if (rxTxImage.isEof()) {
-				if (rxTxImage.getStatus() != RxData.Status.NORMAL) {
-					final int retries = rn.getCamImgCaptureRetryCnt();
-					ic = rxTxImage.createImageSegmentsSnapshot();
-					if (retries != 0 && rxTxImage.getRxTxAttempts() <= retries) {
-						rxTxImage.incRxTxAttempts();
-						processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING, command, ic, 
-								RS.rbLabel(KEY.SERVICE_RX_IMAGE_LOST_PACKETS_RETRY, ic, rxTxImage.getRxTxAttempts(), retries));
-						ServiceProvider.IMPL.getWirelessService().sendData(rn, command, 0, false);
-					} else {
-						try {
-							processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, command, ic, 
-									RS.rbLabel(KEY.SERVICE_RX_IMAGE_LOST_PACKETS, ic, rxTxImage.getRxTxAttempts()));
-						} finally {
-							imgMap.remove(rn.getAddress());
-						}
-					}
-				} else {
-					try {
-						ic = rxTxImage.writeImageSegments();
-						processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, ic, 
-								RS.rbLabel(KEY.SERVICE_RX_IMAGE_SUCCESS, ic));
-					} catch (IOException e) {
-						log.info("Cannot save image ID: " + UGateUtil.calFormat(rxTxImage.getCreatedTime()), e);
-					} finally {
-						imgMap.remove(rn.getAddress());
-					}
+				final int[] data = rxResponse.getData();
+				final int sequence = (data[1] & IMAGE_SEQUENCED_FLAG) != 0 ? 
+						(data[IMAGE_SEQUENCE_INDEX] << 8) | data[IMAGE_SEQUENCE_INDEX + 1] : -1;
+				final RxTxImage.ImageChunk imageChunk = rxTxImage.addImageSegment(data, IMAGE_START_INDEX, 
+						sequence);
+				if (imageChunk == null) {
+					return;
+				}
+				if (enforceImageByteBudget() && imgMap.get(rn.getAddress()) != rxTxImage) {
+					// the image was the oldest in progress and has been evicted
+					return;
+				}
+				if (log.isDebugEnabled()) {
+					log.debug(String.format("Sensor Tripped (%1$s, LENGTH: %2$s, RAW LENGTH: %3$s) DATA: %4$s", 
+							rxTxImage, imageChunk.getLength(), rxResponse.getLength().getLength(), 
+							ByteUtils.toBase16(Arrays.copyOfRange(rxResponse.getData(), IMAGE_START_INDEX, 
+									IMAGE_START_INDEX + imageChunk.getLength()))));
+				}
+				if (rxTxImage.isRecovering() && !rxTxImage.hasRecoveryTimedOut(System.currentTimeMillis())) {
+					// wait for the remaining missing chunks that have been requested
+					return;
+				}
+				if (rxTxImage.hasReceivedEof()) {
+					rxTxImage.endRecovery();
+					completeImage(rn, command, rxTxImage);
 				}
 			}
 		} else if (command == Command.ACCESS_PIN_CHANGE) {
@@ -214,45 +300,112 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 			final KeyCodes kc = new KeyCodes(rn, status, rxResponse.getRssi(), rxResponse.getData()[1], 
 					rxResponse.getData()[2], rxResponse.getData()[3]);
 			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, kc, 
-					RS.rbLabel(KEY.SERVICE_RX_KEYCODES, kc));
+					KEY.SERVICE_RX_KEYCODES, kc);
 		} else if (command == Command.SERVO_LASER_CALIBRATE) {
 			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command,  
 					new RxRawData<Void>(rn, status, rxResponse.getRssi(), null), 
-					failures > 0 ? RS.rbLabel(KEY.LASER_CALIBRATION_FAILED) : RS.rbLabel(KEY.LASER_CALIBRATION_SUCCESS));
+					failures > 0 ? KEY.LASER_CALIBRATION_FAILED : KEY.LASER_CALIBRATION_SUCCESS);
 		} else if (command == Command.SENSOR_GET_READINGS || command == Command.GATE_TOGGLE_OPEN_CLOSE) {
 			int i = 1;
+			final int[] data = rxResponse.getData();
 			final RemoteNodeReading rnr = new RemoteNodeReading();
 			rnr.setRemoteNode(rn);
 			rnr.setReadDate(new Date());
 			rnr.setSignalStrength(rxResponse.getRssi());
-			rnr.setSonarFeet(rxResponse.getData()[++i]);
-			rnr.setSonarInches(rxResponse.getData()[++i]);
-			rnr.setMicrowaveCycleCount(rxResponse.getData()[++i]);
-			rnr.setPirIntensity(rxResponse.getData()[++i]);
-			rnr.setLaserFeet(rxResponse.getData()[++i]);
-			rnr.setLaserInches(rxResponse.getData()[++i]);
-			rnr.setGateState(rxResponse.getData()[++i]);
+			rnr.setSonarFeet(data[++i]);
+			rnr.setSonarInches(data[++i]);
+			rnr.setMicrowaveCycleCount(data[++i]);
+			rnr.setPirIntensity(data[++i]);
+			rnr.setLaserFeet(data[++i]);
+			rnr.setLaserInches(data[++i]);
+			rnr.setGateState(data[++i]);
 			final RxTxRemoteNodeReadingDTO sr = new RxTxRemoteNodeReadingDTO(rnr, status);
 			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, sr, 
-					RS.rbLabel(KEY.SERVICE_RX_READINGS, sr));
+					KEY.SERVICE_RX_READINGS, sr);
 		} else if (command == Command.SENSOR_GET_SETTINGS) {
 			// the number of response data and their order is important!!!
 			int i = 1;
+			final int[] data = rxResponse.getData();
 			final int[] sd = new int[RemoteNodeType.canRemoteCount()];
-			for (int j = 0; j<RemoteNodeType.canRemoteCount(); j++) {
-				sd[j] = rxResponse.getData()[++i];
+			for (int j = 0; j < sd.length; j++) {
+				sd[j] = data[++i];
 			}
 			// create a detached state remote node w/o modifying the existing local instance
 			final RemoteNode rnFromRemote = RemoteNodeType.newDefaultRemoteNode(rn.getHost());
 			final RxTxRemoteNodeDTO dto = new RxTxRemoteNodeDTO(rnFromRemote, status,
 					rxResponse.getRssi(), sd);
 			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, dto, 
-					RS.rbLabel(KEY.SERVICE_RX_SETTINGS, dto));
+					KEY.SERVICE_RX_SETTINGS, dto);
 		} else {
 			log.error("Unrecognized command: " + command);
 		}
 	}
 	
+	/**
+	 * Completes an image after the end of the image has been received. When
+	 * chunks are missing (and {@linkplain RemoteNode#getCamImgCaptureRetryCnt()}
+	 * recovery rounds have not been exhausted) only the missing chunks are
+	 * requested, otherwise the entire image is requested again when it is
+	 * incomplete or the image is written when it is complete (caller must hold
+	 * the image lock)
+	 * 
+	 * @param rn
+	 *            the {@linkplain RemoteNode} that sent the image
+	 * @param command
+	 *            the {@linkplain Command} of the image chunks
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 */
+	private void completeImage(final RemoteNode rn, final Command command, final RxTxImage rxTxImage) {
+		ImageCapture ic;
+		final int retries = rn.getCamImgCaptureRetryCnt();
+		if (rxTxImage.hasMissingChunks() && rxTxImage.getResendRequests() < retries) {
+			// only request the chunks that are missing
+			final List<int[]> ranges = rxTxImage.requestMissingChunks(imageRecoveryMillis);
+			int missing = 0;
+			for (final int[] range : ranges) {
+				missing += range[1];
+			}
+			ic = rxTxImage.createImageSegmentsSnapshot();
+			processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING, command, ic, 
+					KEY.SERVICE_RX_IMAGE_MISSING_CHUNKS_RETRY, ic, missing, ranges.size(), 
+							rxTxImage.getResendRequests(), retries);
+			for (final int[] range : ranges) {
+				sendImageRequest(rn, Command.CAM_RESEND_PIC_CHUNKS, (range[0] >> 8) & 0xFF, range[0] & 0xFF, 
+						(range[1] >> 8) & 0xFF, range[1] & 0xFF);
+			}
+		} else if (rxTxImage.getStatus() != RxData.Status.NORMAL || rxTxImage.hasMissingChunks()) {
+			ic = rxTxImage.createImageSegmentsSnapshot();
+			if (retries != 0 && rxTxImage.getRxTxAttempts() <= retries) {
+				// fall back on sending the entire image again
+				rxTxImage.incRxTxAttempts();
+				processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED_RETRYING, command, ic, 
+						KEY.SERVICE_RX_IMAGE_LOST_PACKETS_RETRY, ic, rxTxImage.getRxTxAttempts(), retries);
+				sendImageRequest(rn, command);
+			} else {
+				try {
+					processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_FAILED, command, ic, 
+							KEY.SERVICE_RX_IMAGE_LOST_PACKETS, ic, rxTxImage.getRxTxAttempts());
+				} finally {
+					imageRetransmittedBytes.addAndGet(rxTxImage.getRetransmittedBytes());
+					rxTxImage.discard();
+					imgMap.remove(rn.getAddress());
+				}
+			}
+		} else {
+			try {
+				ic = rxTxImage.writeImageSegments();
+				processData(rn, UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, command, ic, 
+						KEY.SERVICE_RX_IMAGE_SUCCESS, ic);
+			} catch (IOException e) {
+				log.info("Cannot save image ID: " + UGateUtil.calFormat(rxTxImage.getCreatedTime()), e);
+			} finally {
+				imageRetransmittedBytes.addAndGet(rxTxImage.getRetransmittedBytes());
+				imgMap.remove(rn.getAddress());
+			}
+		}
+	}
+
 	/**
 	 * Processes data from a response and calls
 	 * {@linkplain #handleEvent(UGateEvent)}
@@ -267,30 +420,289 @@ public abstract class UGateXBeePacketListener implements PacketListener {
 	 *            the {@linkplain Command}
 	 * @param data
 	 *            the received data
-	 * @param messages
-	 *            any messages that may have occurred
+	 * @param messageKey
+	 *            the {@linkplain KEY} of the message that describes the data
+	 *            (only rendered when logged or requested from the event)
+	 * @param messageArgs
+	 *            the message format arguments
 	 */
 	protected <V extends RxData> void processData(final RemoteNode remoteNode,
 			final UGateEvent.Type type, final Command command,
-			final V data, final String... messages) {
-		if (messages != null && type == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS || 
-				type == UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_SUCCESS) {
-			log.info(UGateUtil.toString(messages));
-		} else if (messages != null) {
-			log.warn(UGateUtil.toString(messages));
+			final V data, final KEY messageKey, final Object... messageArgs) {
+		final boolean isInfo = type == UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS || 
+				type == UGateEvent.Type.WIRELESS_DATA_TX_STATUS_RESPONSE_SUCCESS;
+		final boolean isLogged = isInfo ? log.isInfoEnabled() : log.isWarnEnabled();
+		if (remoteNode == null) {
+			if (isLogged) {
+				logData(isInfo, RS.rbLabel(messageKey, messageArgs));
+			}
+			return;
+		}
+		final UGateEvent<RemoteNode, V> event = new UGateEvent<RemoteNode, V>(remoteNode, type,
+				true, null, command, null, data, messageKey, messageArgs);
+		if (isLogged) {
+			// rendered message is cached by the event for any consumers
+			logData(isInfo, event.getMessageString());
 		}
-		final Thread eventThread = new Thread(new Runnable() {
+		// events for the same remote node are handled in the order they were received
+		if (!dispatcher.dispatch(remoteNode.getAddress(), new Runnable() {
 			@Override
 			public void run() {
-				if (remoteNode != null) {
-					handleEvent(new UGateEvent<RemoteNode, V>(
-							remoteNode, type, true, null,
-							command, null, data, messages));
+				handleEvent(event);
+			}
+		})) {
+			log.warn(String.format("Discarded %1$s event for %2$s (%3$s)", 
+					type, remoteNode.getAddress(), dispatcher));
+		}
+	}
+
+	/**
+	 * Logs a processed data message
+	 * 
+	 * @param isInfo
+	 *            true to log at info level, false to log at warn level
+	 * @param message
+	 *            the message
+	 */
+	private void logData(final boolean isInfo, final String message) {
+		if (isInfo) {
+			log.info(message);
+		} else {
+			log.warn(message);
+		}
+	}
+
+	/**
+	 * Sends an image request to a {@linkplain RemoteNode} without waiting for
+	 * the transmit status (the packet listener thread must not block on the
+	 * transmit status it is responsible for receiving)
+	 * 
+	 * @param remoteNode
+	 *            the {@linkplain RemoteNode} to send the request to
+	 * @param command
+	 *            the {@linkplain Command}
+	 * @param data
+	 *            the data to send
+	 */
+	protected void sendImageRequest(final RemoteNode remoteNode,
+			final Command command, final int... data) {
+		try {
+			ServiceProvider.IMPL.getWirelessService().sendDataAsync(remoteNode,
+					command, 0, null, data);
+		} catch (final RuntimeException e) {
+			log.error(String.format("Unable to send %1$s to %2$s", command,
+					remoteNode.getAddress()), e);
+		}
+	}
+
+	/**
+	 * Expires images in progress that have exceeded
+	 * {@linkplain MultiRxData#getTimeoutMillis()} and evicts the oldest images
+	 * when the {@linkplain #getImageByteBudget()} has been exceeded. Each
+	 * discarded image results in a
+	 * {@linkplain UGateEvent.Type#WIRELESS_DATA_RX_FAILED} with a snapshot of
+	 * the partial image. Called periodically while images are in progress so
+	 * that a {@linkplain RemoteNode} that stops transmitting in the middle of
+	 * an image does not hold on to the image data. Missing chunk recovery
+	 * rounds that have not received all of the requested chunks within
+	 * {@linkplain #getImageRecoveryMillis()} are ended so that the next round
+	 * (or a full retry) is requested.
+	 */
+	public void sweepImages() {
+		synchronized (imgLock) {
+			final long now = System.currentTimeMillis();
+			for (final Map.Entry<String, RxTxImage> entry : imgMap.entrySet()) {
+				final RxTxImage rxTxImage = entry.getValue();
+				if (rxTxImage.hasTimedOut(now)) {
+					final ImageCapture ic = discardImage(entry.getKey(), rxTxImage);
+					imagesExpired.incrementAndGet();
+					processData(rxTxImage.getRemoteNode(), UGateEvent.Type.WIRELESS_DATA_RX_FAILED, 
+							Command.CAM_TAKE_PIC, ic, KEY.SERVICE_RX_IMAGE_EXPIRED, ic, 
+									rxTxImage.getTimeoutMillis() / 1000);
+				} else if (rxTxImage.hasRecoveryTimedOut(now)) {
+					rxTxImage.endRecovery();
+					completeImage(rxTxImage.getRemoteNode(), Command.CAM_TAKE_PIC, rxTxImage);
 				}
 			}
-		}, UGateXBeePacketListener.class.getSimpleName() + "-event");
-		eventThread.setDaemon(true);
-		eventThread.start();
+			enforceImageByteBudget();
+			if (imgMap.isEmpty() && imageSweep != null) {
+				imageSweep.cancel(false);
+				imageSweep = null;
+			}
+		}
+	}
+
+	/**
+	 * Schedules {@linkplain #sweepImages()} when it is not already scheduled
+	 * (caller must hold the image lock)
+	 */
+	private void scheduleImageSweep() {
+		if (imageSweep != null) {
+			return;
+		}
+		final long delay = imageSweepMillis;
+		imageSweep = imageReaper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sweepImages();
+				} catch (final Throwable t) {
+					// an exception would suppress subsequent sweeps
+					log.error("Unable to sweep images in progress", t);
+				}
+			}
+		}, delay, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Evicts the oldest images in progress until the total
+	 * {@linkplain RxTxImage#getSize()} of the remaining images is within the
+	 * {@linkplain #getImageByteBudget()} (caller must hold the image lock)
+	 * 
+	 * @return true when at least one image has been evicted
+	 */
+	private boolean enforceImageByteBudget() {
+		final long budget = imageByteBudget;
+		if (budget <= 0) {
+			return false;
+		}
+		long total = 0;
+		for (final RxTxImage rxTxImage : imgMap.values()) {
+			total += rxTxImage.getSize();
+		}
+		boolean evicted = false;
+		while (total > budget) {
+			Map.Entry<String, RxTxImage> oldest = null;
+			for (final Map.Entry<String, RxTxImage> entry : imgMap.entrySet()) {
+				if (oldest == null || entry.getValue().getCreatedTimeMillis() < 
+						oldest.getValue().getCreatedTimeMillis()) {
+					oldest = entry;
+				}
+			}
+			if (oldest == null) {
+				break;
+			}
+			final RxTxImage rxTxImage = oldest.getValue();
+			final long size = rxTxImage.getSize();
+			final ImageCapture ic = discardImage(oldest.getKey(), rxTxImage);
+			imagesEvicted.incrementAndGet();
+			evicted = true;
+			processData(rxTxImage.getRemoteNode(), UGateEvent.Type.WIRELESS_DATA_RX_FAILED, 
+					Command.CAM_TAKE_PIC, ic, KEY.SERVICE_RX_IMAGE_EVICTED, ic, total, budget);
+			total -= size;
+		}
+		return evicted;
+	}
+
+	/**
+	 * Removes an image in progress and discards its data (caller must hold
+	 * the image lock)
+	 * 
+	 * @param address
+	 *            the {@linkplain RemoteNode#getAddress()} the image is mapped to
+	 * @param rxTxImage
+	 *            the {@linkplain RxTxImage}
+	 * @return the {@linkplain ImageCapture} snapshot taken before the image
+	 *         data was discarded
+	 */
+	private ImageCapture discardImage(final String address, final RxTxImage rxTxImage) {
+		imgMap.remove(address);
+		final ImageCapture ic = rxTxImage.createImageSegmentsSnapshot();
+		imageRetransmittedBytes.addAndGet(rxTxImage.getRetransmittedBytes());
+		rxTxImage.discard();
+		return ic;
+	}
+
+	/**
+	 * @return the total number of image bytes that have been retransmitted
+	 *         due to lost chunks
+	 */
+	public long getImageRetransmittedBytes() {
+		return imageRetransmittedBytes.get();
+	}
+
+	/**
+	 * @return the number of images that have been discarded because they
+	 *         did not complete in time
+	 */
+	public long getImagesExpired() {
+		return imagesExpired.get();
+	}
+
+	/**
+	 * @return the number of images that have been discarded to stay within
+	 *         the {@linkplain #getImageByteBudget()}
+	 */
+	public long getImagesEvicted() {
+		return imagesEvicted.get();
+	}
+
+	/**
+	 * @return the maximum number of bytes for all images in progress (zero
+	 *         or less when unlimited)
+	 */
+	public long getImageByteBudget() {
+		return imageByteBudget;
+	}
+
+	/**
+	 * @param imageByteBudget
+	 *            the maximum number of bytes for all images in progress (zero
+	 *            or less when unlimited)
+	 */
+	public void setImageByteBudget(final long imageByteBudget) {
+		this.imageByteBudget = imageByteBudget;
+	}
+
+	/**
+	 * @return the number of milliseconds to wait for the chunks requested in
+	 *         a single missing image chunk recovery round
+	 */
+	public long getImageRecoveryMillis() {
+		return imageRecoveryMillis;
+	}
+
+	/**
+	 * @param imageRecoveryMillis
+	 *            the number of milliseconds to wait for the chunks requested
+	 *            in a single missing image chunk recovery round (takes effect
+	 *            on the next round)
+	 */
+	public void setImageRecoveryMillis(final long imageRecoveryMillis) {
+		if (imageRecoveryMillis <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Image recovery time (%1$s) must be greater than zero", imageRecoveryMillis));
+		}
+		this.imageRecoveryMillis = imageRecoveryMillis;
+	}
+
+	/**
+	 * @return the number of milliseconds between sweeps for stale images
+	 */
+	public long getImageSweepMillis() {
+		return imageSweepMillis;
+	}
+
+	/**
+	 * @param imageSweepMillis
+	 *            the number of milliseconds between sweeps for stale images
+	 *            (takes effect the next time a sweep is scheduled)
+	 */
+	public void setImageSweepMillis(final long imageSweepMillis) {
+		if (imageSweepMillis <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Image sweep interval (%1$s) must be greater than zero", imageSweepMillis));
+		}
+		this.imageSweepMillis = imageSweepMillis;
+	}
+
+	/**
+	 * @return the {@linkplain RxEventDispatcher} used to call
+	 *         {@linkplain #handleEvent(UGateEvent)} (exposes queue depth and
+	 *         dispatch latency counters)
+	 */
+	public RxEventDispatcher getDispatcher() {
+		return dispatcher;
 	}
 	
 	/**
@@ -0,0 +1,183 @@
+package org.ugate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.resources.RS;
+import org.ugate.resources.RS.KEY;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+import org.ugate.wireless.data.RxData;
+import org.ugate.wireless.data.RxTxRemoteNodeReadingDTO;
+
+/**
+ * {@link Test}s for rendering, cloning and copying {@linkplain UGateEvent}
+ * messages along with a comparison of the bytes allocated per RX event when
+ * the message is formatted eagerly and when it is only rendered on request
+ */
+public class UGateEventTest {
+
+	private static final Logger log = LoggerFactory.getLogger(UGateEventTest.class);
+	private static final int WARM_UP_EVENTS = 20000;
+	private static final int EVENTS = 100000;
+	private RemoteNode remoteNode;
+	private RxTxRemoteNodeReadingDTO reading;
+
+	/**
+	 * Creates a {@linkplain RemoteNode} and a decoded
+	 * {@linkplain RxTxRemoteNodeReadingDTO}
+	 */
+	@Before
+	public void createReading() {
+		remoteNode = new RemoteNode();
+		remoteNode.setAddress("33AF");
+		final RemoteNodeReading rnr = new RemoteNodeReading();
+		rnr.setRemoteNode(remoteNode);
+		rnr.setReadDate(new Date());
+		rnr.setSignalStrength(40);
+		rnr.setSonarFeet(7);
+		rnr.setSonarInches(8);
+		rnr.setMicrowaveCycleCount(9);
+		rnr.setPirIntensity(10);
+		rnr.setLaserFeet(11);
+		rnr.setLaserInches(12);
+		reading = new RxTxRemoteNodeReadingDTO(rnr, RxData.Status.NORMAL);
+	}
+
+	/**
+	 * A message added by {@linkplain KEY} is rendered the same as an eagerly
+	 * formatted message and only once
+	 */
+	@Test
+	public void lazyMessage() {
+		final UGateEvent<RemoteNode, RxData> eager = rxEvent(true);
+		final UGateEvent<RemoteNode, RxData> lazy = rxEvent(false);
+		assertEquals(eager.getMessageString(), lazy.getMessageString());
+		assertEquals(eager.getMessages(), lazy.getMessages());
+		assertSame(lazy.getMessageString(), lazy.getMessageString());
+		assertTrue(lazy.toString().contains(
+				UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS.toString()));
+	}
+
+	/**
+	 * A clone shares the messages of the original event without adding its
+	 * own messages to the original and is consumed independently
+	 */
+	@Test
+	public void cloneMessages() {
+		final UGateEvent<RemoteNode, RxData> event = rxEvent(false);
+		final String original = event.getMessageString();
+		final String message = event.getMessages().get(0);
+		final UGateEvent<RemoteNode, RxData> clone = event.clone(
+				UGateEvent.Type.WIRELESS_DATA_TX, 0,
+				KEY.SERVICE_WIRELESS_SENDING, "[1, 2]", remoteNode.getAddress());
+		final UGateEvent<RemoteNode, RxData> stringClone = event.clone(
+				UGateEvent.Type.WIRELESS_DATA_TX_ACK_FAILED, 0, "failed");
+		assertEquals(UGateEvent.Type.WIRELESS_DATA_TX, clone.getType());
+		assertEquals(Arrays.asList(message, RS.rbLabel(
+				KEY.SERVICE_WIRELESS_SENDING, "[1, 2]", remoteNode.getAddress())),
+				clone.getMessages());
+		assertEquals(Arrays.asList(message, "failed"),
+				stringClone.getMessages());
+		assertEquals(original, event.getMessageString());
+		assertEquals(1, event.getMessages().size());
+		clone.setConsumed(true);
+		assertTrue(clone.isConsumed());
+		assertFalse(event.isConsumed());
+		assertFalse(stringClone.isConsumed());
+	}
+
+	/**
+	 * Creates {@linkplain #EVENTS} RX reading events with an eagerly
+	 * formatted message and then with a message rendered on request (as a
+	 * listener that never displays the message would receive them). The bytes
+	 * allocated and the time per event are logged.
+	 */
+	@Test
+	public void rxEventBenchmark() {
+		final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		final boolean allocation = mx instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported();
+		createEvents(true, WARM_UP_EVENTS);
+		createEvents(false, WARM_UP_EVENTS);
+		long bytes = allocatedBytes(mx, allocation);
+		long start = System.nanoTime();
+		createEvents(true, EVENTS);
+		final long eagerNanos = System.nanoTime() - start;
+		final long eagerBytes = allocatedBytes(mx, allocation) - bytes;
+		bytes = allocatedBytes(mx, allocation);
+		start = System.nanoTime();
+		createEvents(false, EVENTS);
+		final long lazyNanos = System.nanoTime() - start;
+		final long lazyBytes = allocatedBytes(mx, allocation) - bytes;
+		log.info(String.format(
+				"Created %1$s RX events: eager message %2$.0f ns/event (%3$s bytes/event), lazy message %4$.0f ns/event (%5$s bytes/event)",
+				EVENTS, (double) eagerNanos / EVENTS,
+				allocation ? eagerBytes / EVENTS : "n/a",
+				(double) lazyNanos / EVENTS,
+				allocation ? lazyBytes / EVENTS : "n/a"));
+	}
+
+	/**
+	 * Creates RX events and a copy of each (as delivered to a separate group
+	 * of listeners)
+	 *
+	 * @param eager
+	 *            true to format the message when the event is created
+	 * @param count
+	 *            the number of events to create
+	 * @return the number of events that were not consumed
+	 */
+	private int createEvents(final boolean eager, final int count) {
+		int notConsumed = 0;
+		for (int i = 0; i < count; i++) {
+			final UGateEvent<RemoteNode, RxData> event = rxEvent(eager);
+			if (!event.copy().isConsumed()) {
+				notConsumed++;
+			}
+		}
+		return notConsumed;
+	}
+
+	/**
+	 * @param eager
+	 *            true to format the message when the event is created (as
+	 *            the RX path did before messages were rendered on request)
+	 * @return a {@linkplain UGateEvent} for the reading as created by the RX
+	 *         path
+	 */
+	private UGateEvent<RemoteNode, RxData> rxEvent(final boolean eager) {
+		if (eager) {
+			return new UGateEvent<RemoteNode, RxData>(remoteNode,
+					UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, true, null,
+					Command.SENSOR_GET_READINGS, null, reading, RS.rbLabel(
+							KEY.SERVICE_RX_READINGS, reading));
+		}
+		return new UGateEvent<RemoteNode, RxData>(remoteNode,
+				UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, true, null,
+				Command.SENSOR_GET_READINGS, null, reading,
+				KEY.SERVICE_RX_READINGS, reading);
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread (zero when not
+	 *         supported)
+	 */
+	private static long allocatedBytes(final ThreadMXBean mx,
+			final boolean supported) {
+		return supported ? ((com.sun.management.ThreadMXBean) mx)
+				.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+}
@@ -0,0 +1,223 @@
+package org.ugate.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.resources.RS.KEY;
+
+/**
+ * {@link Test}s for the cached labels and {@linkplain KEY} lookups of
+ * {@linkplain RS} along with a comparison of the cached labels with resolving
+ * the locale, bundle and format on every call
+ */
+public class RSTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RSTest.class);
+	private static final int WARM_UP_CALLS = 50000;
+	private static final int CALLS = 200000;
+
+	/**
+	 * Every cached label is the same as the label resolved from the bundle
+	 * and every {@linkplain KEY} is found by its key
+	 */
+	@Test
+	public void labels() {
+		for (final KEY key : KEY.values()) {
+			assertEquals(uncachedLabel(key), RS.rbLabel(key));
+			assertSame(key, KEY.keyValueOf(key.getKey()));
+		}
+		assertEquals(uncachedLabel(KEY.SERVICE_WIRELESS_SENDING, "[1, 2]", "33AF"),
+				RS.rbLabel(KEY.SERVICE_WIRELESS_SENDING, "[1, 2]", "33AF"));
+		assertNull(KEY.keyValueOf(null));
+		assertNull(KEY.keyValueOf(""));
+		assertNull(KEY.keyValueOf("no.such.key"));
+	}
+
+	/**
+	 * Changing the {@linkplain Locale} reloads the labels
+	 */
+	@Test
+	public void setLocale() {
+		final Locale locale = RS.getLocale();
+		try {
+			RS.setLocale(Locale.US);
+			assertEquals(Locale.US, RS.getLocale());
+			assertEquals(ResourceBundle.getBundle("LabelsBundle", Locale.US)
+					.getString(KEY.APP_TITLE.getKey()), RS.rbLabel(KEY.APP_TITLE));
+			RS.reloadLabels();
+			assertEquals(Locale.US, RS.getLocale());
+		} finally {
+			RS.setLocale(locale);
+		}
+		assertEquals(locale, RS.getLocale());
+	}
+
+	/**
+	 * Gets {@linkplain #CALLS} labels without and with format arguments and
+	 * looks up {@linkplain #CALLS} {@linkplain KEY}s using the cached
+	 * {@linkplain RS} and then resolving the locale, bundle and
+	 * {@linkplain KEY} on every call (as {@linkplain RS} did before the
+	 * labels were cached). The time and bytes allocated per call are logged.
+	 */
+	@Test
+	public void labelBenchmark() {
+		final KEY[] keys = KEY.values();
+		final String[] keyNames = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			keyNames[i] = keys[i].getKey();
+		}
+		for (int p = 0; p < 2; p++) {
+			final boolean warmUp = p == 0;
+			final int calls = warmUp ? WARM_UP_CALLS : CALLS;
+			final long[] plain = measure(calls, new Call() {
+				@Override
+				public Object call(final int i) {
+					return RS.rbLabel(KEY.APP_TITLE);
+				}
+			});
+			final long[] plainUncached = measure(calls, new Call() {
+				@Override
+				public Object call(final int i) {
+					return uncachedLabel(KEY.APP_TITLE);
+				}
+			});
+			final long[] formatted = measure(calls, new Call() {
+				@Override
+				public Object call(final int i) {
+					return RS.rbLabel(KEY.SERVICE_WIRELESS_SENDING, "[1, 2]", "33AF");
+				}
+			});
+			final long[] formattedUncached = measure(calls, new Call() {
+				@Override
+				public Object call(final int i) {
+					return uncachedLabel(KEY.SERVICE_WIRELESS_SENDING, "[1, 2]", "33AF");
+				}
+			});
+			final long[] lookup = measure(calls, new Call() {
+				@Override
+				public Object call(final int i) {
+					return KEY.keyValueOf(keyNames[i % keyNames.length]);
+				}
+			});
+			final long[] lookupUncached = measure(calls, new Call() {
+				@Override
+				public Object call(final int i) {
+					return scanKeyValueOf(keyNames[i % keyNames.length]);
+				}
+			});
+			if (!warmUp) {
+				log.info(String.format(
+						"%1$s calls (cached vs uncached): label %2$s vs %3$s, formatted label %4$s vs %5$s, key lookup %6$s vs %7$s",
+						calls, format(plain, calls), format(plainUncached, calls),
+						format(formatted, calls), format(formattedUncached, calls),
+						format(lookup, calls), format(lookupUncached, calls)));
+			}
+		}
+	}
+
+	/**
+	 * Resolves a label the way {@linkplain RS} did before the labels were
+	 * cached
+	 *
+	 * @param key
+	 *            the {@linkplain KEY}
+	 * @param formatArguments
+	 *            the format arguments
+	 * @return the label
+	 */
+	private static String uncachedLabel(final KEY key,
+			final Object... formatArguments) {
+		final Locale locale = Locale.getAvailableLocales()[0];
+		final String rbStr = ResourceBundle.getBundle("LabelsBundle", locale)
+				.getString(key.getKey());
+		return formatArguments != null && formatArguments.length > 0 ? String
+				.format(locale, rbStr, formatArguments) : rbStr;
+	}
+
+	/**
+	 * Finds a {@linkplain KEY} the way {@linkplain KEY#keyValueOf(String)}
+	 * did before it used a map
+	 *
+	 * @param key
+	 *            the key
+	 * @return the {@linkplain KEY} (null when not found)
+	 */
+	private static KEY scanKeyValueOf(final String key) {
+		if (key != null && !key.isEmpty()) {
+			for (final KEY ke : KEY.values()) {
+				if (key.equals(ke.getKey())) {
+					return ke;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Measures a {@linkplain Call}
+	 *
+	 * @param calls
+	 *            the number of calls
+	 * @param call
+	 *            the {@linkplain Call}
+	 * @return the nanoseconds and the bytes allocated (-1 when not
+	 *         supported) for all of the calls
+	 */
+	private static long[] measure(final int calls, final Call call) {
+		final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		final boolean allocation = mx instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported();
+		final long bytes = allocatedBytes(mx, allocation);
+		final long start = System.nanoTime();
+		int nulls = 0;
+		for (int i = 0; i < calls; i++) {
+			if (call.call(i) == null) {
+				nulls++;
+			}
+		}
+		final long nanos = System.nanoTime() - start;
+		assertEquals(0, nulls);
+		return new long[] { nanos,
+				allocation ? allocatedBytes(mx, allocation) - bytes : -1 };
+	}
+
+	/**
+	 * @return the time and bytes allocated per call
+	 */
+	private static String format(final long[] result, final int calls) {
+		return String.format("[%1$.0f ns, %2$s bytes]", (double) result[0] / calls,
+				result[1] < 0 ? "n/a" : result[1] / calls);
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread (zero when not
+	 *         supported)
+	 */
+	private static long allocatedBytes(final ThreadMXBean mx,
+			final boolean supported) {
+		return supported ? ((com.sun.management.ThreadMXBean) mx)
+				.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	/**
+	 * Measured call
+	 */
+	private interface Call {
+
+		/**
+		 * @param i
+		 *            the call index
+		 * @return the result of the call (not null)
+		 */
+		Object call(int i);
+	}
+}
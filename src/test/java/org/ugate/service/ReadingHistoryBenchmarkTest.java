@@ -0,0 +1,140 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Compares the latency, allocated bytes and retained heap of reading a day of
+ * {@linkplain RemoteNodeReading}(s) as a {@linkplain RemoteNodeReadingColumns}
+ * projection with reading the same day as managed
+ * {@linkplain RemoteNodeReading} entities using an embedded H2 database. The
+ * results are logged.
+ */
+public class ReadingHistoryBenchmarkTest {
+
+	private static final Logger log = LoggerFactory.getLogger(ReadingHistoryBenchmarkTest.class);
+	private static final int READING_COUNT = 100000;
+	private static final int BATCH_SIZE = 5000;
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Reads a day of {@linkplain #READING_COUNT} readings using
+	 * {@linkplain RemoteNodeService#findReadingColumns(RemoteNode, Date, Date, boolean)}
+	 * and then using
+	 * {@linkplain RemoteNodeService#findReadingsByDate(RemoteNode, Calendar, boolean)}
+	 * (backed by the entity query
+	 * {@linkplain org.ugate.service.dao.RemoteNodeDao#findReadingsByIdAndDate(RemoteNode, Calendar, Calendar, boolean)})
+	 *
+	 * @throws IOException
+	 *             when the test directory cannot be created
+	 */
+	@Test
+	public void dayHistory() throws IOException {
+		final ServiceTestContext ctx = new ServiceTestContext(folder.getRoot()
+				.toPath(), ServiceProvider.TX_PROFILE_LOCAL);
+		try {
+			final RemoteNode rn = ctx.addRemoteNode("history@example.com");
+			final RemoteNodeService rns = ctx.getRemoteNodeService();
+			final Calendar day = Calendar.getInstance();
+			day.set(2013, Calendar.APRIL, 2, 0, 0, 0);
+			day.set(Calendar.MILLISECOND, 0);
+			final Calendar nextDay = (Calendar) day.clone();
+			nextDay.add(Calendar.DAY_OF_MONTH, 1);
+			final long interval = (nextDay.getTimeInMillis() - day.getTimeInMillis())
+					/ READING_COUNT;
+			final List<RemoteNodeReading> batch = new ArrayList<>(BATCH_SIZE);
+			for (int i = 0; i < READING_COUNT; i++) {
+				final RemoteNodeReading rnr = new RemoteNodeReading();
+				rnr.setRemoteNode(rn);
+				rnr.setReadDate(new Date(day.getTimeInMillis() + i * interval));
+				rnr.setSonarFeet(i % 26);
+				rnr.setLaserFeet(i % 39);
+				rnr.setMicrowaveCycleCount(i % 100);
+				rnr.setPirIntensity(i % 1024);
+				batch.add(rnr);
+				if (batch.size() == BATCH_SIZE) {
+					rns.saveReadings(batch);
+					batch.clear();
+				}
+			}
+			// warm up the queries and the database cache with the whole day
+			final Calendar previousDay = (Calendar) day.clone();
+			previousDay.add(Calendar.DAY_OF_MONTH, -1);
+			rns.findReadingsByDate(rn, previousDay, true);
+			rns.findReadingColumns(rn, day.getTime(), nextDay.getTime(), false);
+
+			final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+			final boolean allocation = mx instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported();
+
+			long heap = usedHeap();
+			long bytes = allocatedBytes(mx, allocation);
+			long start = System.nanoTime();
+			final RemoteNodeReadingColumns cols = rns.findReadingColumns(rn,
+					day.getTime(), nextDay.getTime(), false);
+			final long colsNanos = System.nanoTime() - start;
+			final long colsBytes = allocatedBytes(mx, allocation) - bytes;
+			final long colsHeap = usedHeap() - heap;
+			assertEquals(READING_COUNT, cols.size());
+
+			heap = usedHeap();
+			bytes = allocatedBytes(mx, allocation);
+			start = System.nanoTime();
+			final List<RemoteNodeReading> rnrs = rns.findReadingsByDate(rn, day, true);
+			final long entityNanos = System.nanoTime() - start;
+			final long entityBytes = allocatedBytes(mx, allocation) - bytes;
+			final long entityHeap = usedHeap() - heap;
+			assertEquals(READING_COUNT, rnrs.size());
+			for (int i = 0; i < READING_COUNT; i += READING_COUNT / 100) {
+				assertEquals(rnrs.get(i).getReadDate().getTime(), cols.getReadDate(i));
+				assertEquals(rnrs.get(i).getPirIntensity(),
+						cols.getPirIntensity(i));
+			}
+			log.info(String.format(
+					"Read a day of %1$s readings: columns %2$.0f ms (%3$s bytes allocated, %4$s bytes retained), entities %5$.0f ms (%6$s bytes allocated, %7$s bytes retained)",
+					READING_COUNT, colsNanos / 1e6, allocation ? colsBytes : "n/a",
+					colsHeap, entityNanos / 1e6, allocation ? entityBytes : "n/a",
+					entityHeap));
+		} finally {
+			ctx.close();
+		}
+	}
+
+	/**
+	 * @return the used heap after a garbage collection
+	 */
+	private static long usedHeap() {
+		final Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread (zero when not
+	 *         supported)
+	 */
+	private static long allocatedBytes(final ThreadMXBean mx,
+			final boolean supported) {
+		return supported ? ((com.sun.management.ThreadMXBean) mx)
+				.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+}
@@ -0,0 +1,314 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup.Resolution;
+
+/**
+ * {@link Test}s for writing, reading and merging
+ * {@linkplain RemoteNodeReadingArchive} segments along with a comparison of a
+ * day scan from a segment with the same scan from an indexed H2 table
+ */
+public class RemoteNodeReadingArchiveTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RemoteNodeReadingArchiveTest.class);
+	private static final int REMOTE_NODE_ID = 7;
+	private static final long SECOND = 1000L;
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	private RemoteNodeReadingArchive archive;
+	private Date day;
+
+	/**
+	 * Creates a {@linkplain RemoteNodeReadingArchive} in a temporary
+	 * directory
+	 *
+	 * @throws IOException
+	 *             when the directory cannot be created
+	 */
+	@Before
+	public void createArchive() throws IOException {
+		archive = new RemoteNodeReadingArchive(folder.newFolder("archive").toPath());
+		final Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(2013, Calendar.MAY, 14);
+		day = cal.getTime();
+	}
+
+	/**
+	 * Every column is restored exactly, including negative values, the
+	 * <code>int</code> extremes and constant columns
+	 *
+	 * @throws IOException
+	 *             when a segment cannot be read/written
+	 */
+	@Test
+	public void roundTrip() throws IOException {
+		final RemoteNodeReadingColumns cols = readings(day.getTime(), 5000,
+				1000, 17, new Random(1));
+		final int[] extremes = new int[RemoteNodeReadingColumns.INT_COLUMNS];
+		Arrays.fill(extremes, Integer.MIN_VALUE);
+		extremes[RemoteNodeReadingColumns.SIGNAL_STRENGTH] = Integer.MAX_VALUE;
+		cols.add(Integer.MAX_VALUE, day.getTime() + 86399999L, extremes);
+		assertEquals(cols.size(), archive.write(REMOTE_NODE_ID, day, cols));
+		assertColumns(cols, archive.read(REMOTE_NODE_ID, day));
+		assertNull(archive.read(REMOTE_NODE_ID + 1, day));
+		assertNull(archive.read(REMOTE_NODE_ID, Resolution.DAY.nextBucketStart(day)));
+		final RemoteNodeReadingColumns empty = new RemoteNodeReadingColumns(0);
+		final Date next = Resolution.DAY.nextBucketStart(day);
+		assertEquals(0, archive.write(REMOTE_NODE_ID, next, empty));
+		assertEquals(0, archive.read(REMOTE_NODE_ID, next).size());
+	}
+
+	/**
+	 * Writing a day that has already been archived merges the readings in
+	 * read date order, stores duplicate IDs once and ignores readings outside
+	 * of the day
+	 *
+	 * @throws IOException
+	 *             when a segment cannot be read/written
+	 */
+	@Test
+	public void merge() throws IOException {
+		final RemoteNodeReadingColumns all = readings(day.getTime(), 3000,
+				1, 3 * SECOND, new Random(2));
+		final RemoteNodeReadingColumns even = new RemoteNodeReadingColumns(0);
+		final RemoteNodeReadingColumns odd = new RemoteNodeReadingColumns(0);
+		for (int i = 0; i < all.size(); i++) {
+			(i % 2 == 0 ? even : odd).add(all, i);
+		}
+		// overlaps the first write and spills into the surrounding days
+		for (int i = 0; i < all.size(); i += 10) {
+			odd.add(all, i);
+		}
+		odd.add(Integer.MAX_VALUE - 1, day.getTime() - 1, new int[RemoteNodeReadingColumns.INT_COLUMNS]);
+		odd.add(Integer.MAX_VALUE, Resolution.DAY.nextBucketStart(day).getTime(),
+				new int[RemoteNodeReadingColumns.INT_COLUMNS]);
+		assertEquals(even.size(), archive.write(REMOTE_NODE_ID, day, even));
+		assertEquals(all.size(), archive.write(REMOTE_NODE_ID, day, odd));
+		assertColumns(all, archive.read(REMOTE_NODE_ID, day));
+		assertEquals(all.size(), archive.getReadingsWrittenCount());
+	}
+
+	/**
+	 * Ranges spanning several days only return the readings within the range
+	 * and expired days are deleted
+	 *
+	 * @throws IOException
+	 *             when a segment cannot be read/written
+	 */
+	@Test
+	public void range() throws IOException {
+		final Random random = new Random(3);
+		Date d = day;
+		for (int i = 0; i < 3; i++) {
+			archive.write(REMOTE_NODE_ID, d, readings(d.getTime(), 1440,
+					i * 1440 + 1, 60 * SECOND, random));
+			d = Resolution.DAY.nextBucketStart(d);
+		}
+		assertEquals(3, archive.days(REMOTE_NODE_ID, null, null).size());
+		final Date start = new Date(day.getTime() + 12 * 3600 * SECOND);
+		final Date end = new Date(day.getTime() + 36 * 3600 * SECOND);
+		final RemoteNodeReadingColumns cols = new RemoteNodeReadingColumns(0);
+		assertEquals(1440, archive.read(REMOTE_NODE_ID, start, end, cols));
+		assertEquals(start.getTime(), cols.getReadDate(0));
+		assertEquals(end.getTime() - 60 * SECOND, cols.getReadDate(cols.size() - 1));
+		assertEquals(2, archive.delete(REMOTE_NODE_ID, end));
+		assertEquals(Arrays.asList(Resolution.DAY.nextBucketStart(end)),
+				archive.days(REMOTE_NODE_ID, null, null));
+	}
+
+	/**
+	 * Compares scanning a day of readings (one per second) from a segment with
+	 * scanning the same day from an H2 table using the
+	 * <code>REMOTE_NODE_ID, READ_DATE, ID</code> index of the reading table.
+	 * The times and sizes are logged.
+	 *
+	 * @throws Exception
+	 *             when the scan fails
+	 */
+	@Test
+	public void scanBenchmark() throws Exception {
+		final int count = 86400;
+		final RemoteNodeReadingColumns cols = readings(day.getTime(), count,
+				1, SECOND, new Random(4));
+		archive.write(REMOTE_NODE_ID, day, cols);
+		final Path db = folder.newFolder("db").toPath();
+		final Connection con = DriverManager.getConnection("jdbc:h2:"
+				+ db.resolve("readings").toAbsolutePath(), "sa", "sa");
+		try {
+			insert(con, cols);
+			final Date end = Resolution.DAY.nextBucketStart(day);
+			long archiveNanos = Long.MAX_VALUE, tableNanos = Long.MAX_VALUE;
+			for (int i = 0; i < 5; i++) {
+				long start = System.nanoTime();
+				final RemoteNodeReadingColumns archived = new RemoteNodeReadingColumns(0);
+				archive.read(REMOTE_NODE_ID, day, end, archived);
+				archiveNanos = Math.min(archiveNanos, System.nanoTime() - start);
+				start = System.nanoTime();
+				final RemoteNodeReadingColumns selected = select(con, day, end);
+				tableNanos = Math.min(tableNanos, System.nanoTime() - start);
+				assertColumns(cols, archived);
+				assertColumns(cols, selected);
+			}
+			long segmentBytes = 0;
+			for (final Path p : Files.newDirectoryStream(archive.getDirectory()
+					.resolve(String.valueOf(REMOTE_NODE_ID)))) {
+				segmentBytes += Files.size(p);
+			}
+			log.info(String.format(
+					"Scanned %1$s readings: segment %2$s ms (%3$s bytes), H2 table %4$s ms (%5$.1fx)",
+					count, archiveNanos / 1000000.0, segmentBytes,
+					tableNanos / 1000000.0, (double) tableNanos / archiveNanos));
+		} finally {
+			con.close();
+		}
+	}
+
+	/**
+	 * Inserts readings into an indexed table with the reading columns
+	 */
+	private static void insert(final Connection con,
+			final RemoteNodeReadingColumns cols) throws SQLException {
+		final Statement st = con.createStatement();
+		try {
+			st.execute("CREATE TABLE REMOTE_NODE_READING (ID INTEGER NOT NULL, FROM_MULTI_STATE INTEGER, "
+					+ "SONAR_FEET INTEGER, SONAR_INCHES INTEGER, PIR_INTENSITY INTEGER, MICROWAVE_CYCLE_COUNT INTEGER, "
+					+ "LASER_FEET INTEGER, LASER_INCHES INTEGER, LASER_CALIBRATED_ANGLE_PAN INTEGER, "
+					+ "LASER_CALIBRATED_ANGLE_TILT INTEGER, GATE_STATE INTEGER, SIGNAL_STRENGTH INTEGER, "
+					+ "READ_DATE TIMESTAMP NOT NULL, REMOTE_NODE_ID INTEGER, PRIMARY KEY (ID))");
+			st.execute("CREATE INDEX IX_RNR_NODE_DATE ON REMOTE_NODE_READING (REMOTE_NODE_ID, READ_DATE, ID)");
+		} finally {
+			st.close();
+		}
+		con.setAutoCommit(false);
+		final PreparedStatement ps = con.prepareStatement("INSERT INTO REMOTE_NODE_READING VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+		try {
+			for (int i = 0; i < cols.size(); i++) {
+				ps.setInt(1, cols.getId(i));
+				for (int c = 0; c < RemoteNodeReadingColumns.INT_COLUMNS; c++) {
+					ps.setInt(c + 2, cols.getInt(c, i));
+				}
+				ps.setTimestamp(13, new Timestamp(cols.getReadDate(i)));
+				ps.setInt(14, REMOTE_NODE_ID);
+				ps.addBatch();
+				if (i % 1000 == 999) {
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+			con.commit();
+		} finally {
+			ps.close();
+			con.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Selects readings from the table created by
+	 * {@linkplain #insert(Connection, RemoteNodeReadingColumns)}
+	 */
+	private static RemoteNodeReadingColumns select(final Connection con,
+			final Date startInclusive, final Date endExclusive)
+			throws SQLException {
+		final RemoteNodeReadingColumns cols = new RemoteNodeReadingColumns(0);
+		final PreparedStatement ps = con.prepareStatement("SELECT ID, READ_DATE, FROM_MULTI_STATE, "
+				+ "SONAR_FEET, SONAR_INCHES, PIR_INTENSITY, MICROWAVE_CYCLE_COUNT, LASER_FEET, LASER_INCHES, "
+				+ "LASER_CALIBRATED_ANGLE_PAN, LASER_CALIBRATED_ANGLE_TILT, GATE_STATE, SIGNAL_STRENGTH "
+				+ "FROM REMOTE_NODE_READING WHERE REMOTE_NODE_ID = ? AND READ_DATE >= ? AND READ_DATE < ? "
+				+ "ORDER BY READ_DATE, ID");
+		try {
+			ps.setInt(1, REMOTE_NODE_ID);
+			ps.setTimestamp(2, new Timestamp(startInclusive.getTime()));
+			ps.setTimestamp(3, new Timestamp(endExclusive.getTime()));
+			final ResultSet rs = ps.executeQuery();
+			final Object[] row = new Object[2 + RemoteNodeReadingColumns.INT_COLUMNS];
+			while (rs.next()) {
+				for (int c = 0; c < row.length; c++) {
+					row[c] = rs.getObject(c + 1);
+				}
+				cols.add(row);
+			}
+			rs.close();
+		} finally {
+			ps.close();
+		}
+		return cols;
+	}
+
+	/**
+	 * Creates readings with realistic sensor values at a fixed interval
+	 *
+	 * @param start
+	 *            the read date of the first reading
+	 * @param count
+	 *            the number of readings
+	 * @param firstId
+	 *            the ID of the first reading (IDs are consecutive)
+	 * @param interval
+	 *            the milliseconds between readings
+	 * @param random
+	 *            the {@linkplain Random} used for the values
+	 * @return the {@linkplain RemoteNodeReadingColumns}
+	 */
+	private static RemoteNodeReadingColumns readings(final long start,
+			final int count, final int firstId, final long interval,
+			final Random random) {
+		final RemoteNodeReadingColumns cols = new RemoteNodeReadingColumns(count);
+		final int[] ints = new int[RemoteNodeReadingColumns.INT_COLUMNS];
+		for (int i = 0; i < count; i++) {
+			ints[RemoteNodeReadingColumns.FROM_MULTI_STATE] = random.nextInt(32);
+			ints[RemoteNodeReadingColumns.SONAR_FEET] = random.nextInt(26);
+			ints[RemoteNodeReadingColumns.SONAR_INCHES] = random.nextInt(12);
+			ints[RemoteNodeReadingColumns.PIR_INTENSITY] = random.nextInt(1024);
+			ints[RemoteNodeReadingColumns.MICROWAVE_CYCLE_COUNT] = random.nextInt(1000);
+			ints[RemoteNodeReadingColumns.LASER_FEET] = random.nextInt(100);
+			ints[RemoteNodeReadingColumns.LASER_INCHES] = random.nextInt(12);
+			ints[RemoteNodeReadingColumns.LASER_CALIBRATED_ANGLE_PAN] = 90;
+			ints[RemoteNodeReadingColumns.LASER_CALIBRATED_ANGLE_TILT] = random.nextInt(181);
+			ints[RemoteNodeReadingColumns.GATE_STATE] = random.nextInt(2);
+			ints[RemoteNodeReadingColumns.SIGNAL_STRENGTH] = -40 - random.nextInt(60);
+			cols.add(firstId + i, start + i * interval, ints);
+		}
+		return cols;
+	}
+
+	/**
+	 * Asserts that every value of the {@linkplain RemoteNodeReadingColumns}
+	 * is the same
+	 */
+	private static void assertColumns(final RemoteNodeReadingColumns expected,
+			final RemoteNodeReadingColumns actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getId(i), actual.getId(i));
+			assertEquals(expected.getReadDate(i), actual.getReadDate(i));
+			for (int c = 0; c < RemoteNodeReadingColumns.INT_COLUMNS; c++) {
+				assertEquals(expected.getInt(c, i), actual.getInt(c, i));
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.ugate.service;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.ugate.service.entity.ActorType;
+import org.ugate.service.entity.RoleType;
+import org.ugate.service.entity.jpa.Actor;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * Application context of the services used by tests. Uses the same
+ * <code>spring-all.xml</code> as the {@linkplain ServiceProvider} with an
+ * embedded H2 database in a test directory instead of the user home
+ * directory.
+ */
+public class ServiceTestContext {
+
+	/**
+	 * The property of the test database URL used by
+	 * <code>spring-test.xml</code>
+	 */
+	public static final String PROPERTY_DB_URL = "ugate.test.db.url";
+	/**
+	 * The property of the test directory used by <code>spring-test.xml</code>
+	 */
+	public static final String PROPERTY_DIR = "ugate.test.dir";
+	private final Path directory;
+	private final GenericXmlApplicationContext appContext;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            the directory of the database and transaction logs
+	 * @param txProfile
+	 *            the transaction profile ({@linkplain ServiceProvider#TX_PROFILE_JTA}
+	 *            or {@linkplain ServiceProvider#TX_PROFILE_LOCAL})
+	 */
+	public ServiceTestContext(final Path directory, final String txProfile) {
+		this.directory = directory;
+		final Map<String, Object> props = new HashMap<>();
+		props.put(PROPERTY_DB_URL, "jdbc:h2:"
+				+ directory.resolve("ugate").toAbsolutePath()
+				+ ";TRACE_LEVEL_FILE=0;TRACE_LEVEL_SYSTEM_OUT=0");
+		props.put(PROPERTY_DIR, directory.toAbsolutePath().toString());
+		appContext = new GenericXmlApplicationContext();
+		appContext.getEnvironment().setActiveProfiles(txProfile);
+		appContext.getEnvironment().getPropertySources()
+				.addFirst(new MapPropertySource(PROPERTY_DIR, props));
+		appContext.load("classpath:spring-all.xml", "classpath:spring-test.xml");
+		appContext.refresh();
+	}
+
+	/**
+	 * Adds an {@linkplain Actor} with the default
+	 * {@linkplain org.ugate.service.entity.jpa.Host} and
+	 * {@linkplain RemoteNode} working in the test directory
+	 *
+	 * @param username
+	 *            the {@linkplain Actor#getUsername()} (an email address)
+	 * @return the persisted {@linkplain RemoteNode} of the
+	 *         {@linkplain Actor}
+	 */
+	public RemoteNode addRemoteNode(final String username) {
+		final Actor actor = ActorType.newActor(username, "password",
+				"test pass phrase of at least 32 characters", null, RoleType.ADMIN.newRole());
+		final RemoteNode rn = actor.getHost().getRemoteNodes().iterator().next();
+		rn.setWorkingDir(directory.toAbsolutePath().toString());
+		getCredentialService().addUser(actor, null);
+		return getRemoteNodeService().findByAddress(rn.getAddress());
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeService}
+	 */
+	public RemoteNodeService getRemoteNodeService() {
+		return appContext.getBean(RemoteNodeService.class);
+	}
+
+	/**
+	 * @return the {@linkplain CredentialService}
+	 */
+	public CredentialService getCredentialService() {
+		return appContext.getBean(CredentialService.class);
+	}
+
+	/**
+	 * Closes the application context (and the database)
+	 */
+	public void close() {
+		appContext.close();
+	}
+}
@@ -0,0 +1,113 @@
+package org.ugate.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+/**
+ * Compares the commit latency of
+ * {@linkplain RemoteNodeService#saveReading(RemoteNodeReading)} using the
+ * {@linkplain ServiceProvider#TX_PROFILE_JTA} and
+ * {@linkplain ServiceProvider#TX_PROFILE_LOCAL} transaction profiles with an
+ * embedded H2 database. The startup time and latencies are logged.
+ */
+public class TransactionProfileTest {
+
+	private static final Logger log = LoggerFactory.getLogger(TransactionProfileTest.class);
+	private static final int WARM_UP_COUNT = 200;
+	private static final int SAVE_COUNT = 1000;
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Saves readings one transaction at a time under each transaction profile
+	 *
+	 * @throws IOException
+	 *             when the test directory cannot be created
+	 */
+	@Test
+	public void saveReadingCommitLatency() throws IOException {
+		final long[] jta = saveReadings(ServiceProvider.TX_PROFILE_JTA);
+		final long[] local = saveReadings(ServiceProvider.TX_PROFILE_LOCAL);
+		log.info(String.format(
+				"saveReading commit latency over %1$s commits: %2$s %3$s, %4$s %5$s (local mean is %6$.1fx faster)",
+				SAVE_COUNT, ServiceProvider.TX_PROFILE_JTA, format(jta),
+				ServiceProvider.TX_PROFILE_LOCAL, format(local),
+				(double) mean(jta) / mean(local)));
+	}
+
+	/**
+	 * Starts the services with a new database and times each
+	 * {@linkplain RemoteNodeService#saveReading(RemoteNodeReading)}
+	 *
+	 * @param txProfile
+	 *            the transaction profile
+	 * @return the startup time followed by the latency of each commit in
+	 *         nanoseconds
+	 * @throws IOException
+	 *             when the test directory cannot be created
+	 */
+	private long[] saveReadings(final String txProfile) throws IOException {
+		final long[] nanos = new long[SAVE_COUNT + 1];
+		long start = System.nanoTime();
+		final ServiceTestContext ctx = new ServiceTestContext(
+				folder.newFolder(txProfile).toPath(), txProfile);
+		nanos[0] = System.nanoTime() - start;
+		try {
+			final RemoteNode rn = ctx.addRemoteNode(txProfile + "@example.com");
+			final RemoteNodeService rns = ctx.getRemoteNodeService();
+			final long first = System.currentTimeMillis();
+			for (int i = 0; i < WARM_UP_COUNT + SAVE_COUNT; i++) {
+				final RemoteNodeReading rnr = new RemoteNodeReading();
+				rnr.setRemoteNode(rn);
+				rnr.setReadDate(new Date(first + i * 1000L));
+				rnr.setSonarFeet(i % 26);
+				rnr.setPirIntensity(i % 1024);
+				start = System.nanoTime();
+				rns.saveReading(rnr);
+				if (i >= WARM_UP_COUNT) {
+					nanos[i - WARM_UP_COUNT + 1] = System.nanoTime() - start;
+				}
+			}
+			assertEquals(WARM_UP_COUNT + SAVE_COUNT, rns.findReadingColumns(rn,
+					new Date(first), new Date(first + (WARM_UP_COUNT + SAVE_COUNT) * 1000L),
+					false).size());
+		} finally {
+			ctx.close();
+		}
+		return nanos;
+	}
+
+	/**
+	 * @return the mean commit latency in nanoseconds
+	 */
+	private static long mean(final long[] nanos) {
+		long total = 0;
+		for (int i = 1; i < nanos.length; i++) {
+			total += nanos[i];
+		}
+		return total / (nanos.length - 1);
+	}
+
+	/**
+	 * @return the startup time, mean, median and 99th percentile
+	 */
+	private static String format(final long[] nanos) {
+		final long[] sorted = Arrays.copyOfRange(nanos, 1, nanos.length);
+		Arrays.sort(sorted);
+		return String.format(
+				"[startup: %1$.0f ms, mean: %2$.3f ms, median: %3$.3f ms, p99: %4$.3f ms]",
+				nanos[0] / 1e6, mean(nanos) / 1e6, sorted[sorted.length / 2] / 1e6,
+				sorted[sorted.length * 99 / 100] / 1e6);
+	}
+}
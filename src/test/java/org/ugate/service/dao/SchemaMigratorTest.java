@@ -0,0 +1,238 @@
+package org.ugate.service.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup.Resolution;
+
+/**
+ * {@link Test}s for the {@linkplain SchemaMigrator} using an in-memory H2
+ * database
+ */
+public class SchemaMigratorTest {
+
+	private static final String DRIVER = "org.h2.Driver";
+	private static final String USER = "sa";
+	private static final String PASSWORD = "sa";
+	private String url;
+	private Connection con;
+
+	/**
+	 * Opens a connection to a new in-memory database (kept open so the
+	 * database remains until the test completes)
+	 *
+	 * @throws SQLException
+	 *             when the connection cannot be opened
+	 */
+	@Before
+	public void open() throws SQLException {
+		url = "jdbc:h2:mem:migrator" + System.nanoTime();
+		con = DriverManager.getConnection(url, USER, PASSWORD);
+	}
+
+	/**
+	 * Closes the connection (removing the in-memory database)
+	 *
+	 * @throws SQLException
+	 *             when the connection cannot be closed
+	 */
+	@After
+	public void close() throws SQLException {
+		con.close();
+	}
+
+	/**
+	 * An empty database gets the complete schema and every migration is
+	 * skipped once the version has been recorded
+	 *
+	 * @throws Exception
+	 *             when the migration fails
+	 */
+	@Test
+	public void emptySchema() throws Exception {
+		final SchemaMigrator migrator = new SchemaMigrator(DRIVER, url, USER, PASSWORD);
+		assertEquals(SchemaMigrator.VERSION, migrator.migrate());
+		for (final String table : new String[] { "HOST", "ACTOR", "ROLE",
+				"ACTOR_ROLE", "MAIL_RECIPIENT", "HOST_MAIL_RECIPIENT",
+				"APP_INFO", "REMOTE_NODE", "REMOTE_NODE_READING",
+				"REMOTE_NODE_READING_ROLLUP" }) {
+			assertTrue(table, SchemaMigrator.hasTable(con, table));
+		}
+		assertTrue(SchemaMigrator.hasColumn(con, "APP_INFO", "SCHEMA_VERSION"));
+		assertIndexes();
+		// migrations are repeatable until an application version is recorded
+		assertEquals(SchemaMigrator.VERSION, migrator.migrate());
+		update("INSERT INTO APP_INFO (VERSION, CREATED_DATE, SCHEMA_VERSION) VALUES ('1.0', CURRENT_TIMESTAMP, "
+				+ SchemaMigrator.VERSION + ")");
+		assertEquals(0, migrator.migrate());
+	}
+
+	/**
+	 * A database created before migrations existed gets the missing columns,
+	 * indexes and rollups while its existing rows are retained
+	 *
+	 * @throws Exception
+	 *             when the migration fails
+	 */
+	@Test
+	public void legacySchema() throws Exception {
+		createLegacySchema();
+		final Date day = day(2013, Calendar.MAY, 14);
+		// node 1: two days (three readings in one hour, one reading the next day), node 2: one reading
+		insertReading(1, 1, new Date(day.getTime() + 60000), 2, 10);
+		insertReading(2, 1, new Date(day.getTime() + 120000), 4, 20);
+		insertReading(3, 1, new Date(day.getTime() + 180000), 6, 30);
+		insertReading(4, 1, Resolution.DAY.nextBucketStart(day), 8, 40);
+		insertReading(5, 2, day, 10, 50);
+
+		final SchemaMigrator migrator = new SchemaMigrator(DRIVER, url, USER, PASSWORD);
+		assertEquals(SchemaMigrator.VERSION, migrator.migrate());
+		assertEquals(SchemaMigrator.VERSION, queryInt("SELECT SCHEMA_VERSION FROM APP_INFO"));
+		for (final String column : new String[] { "LASER_CALIBRATED_ANGLE_PAN",
+				"LASER_CALIBRATED_ANGLE_TILT" }) {
+			assertTrue(column, SchemaMigrator.hasColumn(con, "REMOTE_NODE_READING", column));
+		}
+		for (final String column : new String[] { "READING_RETENTION_DAYS",
+				"ROLLUP_RETENTION_DAYS", "CAM_RESOLUTION" }) {
+			assertTrue(column, SchemaMigrator.hasColumn(con, "REMOTE_NODE", column));
+		}
+		assertEquals(5, queryInt("SELECT COUNT(*) FROM REMOTE_NODE_READING"));
+		assertEquals(2, queryInt("SELECT COUNT(*) FROM REMOTE_NODE"));
+		assertIndexes();
+		// every reading is counted once per resolution
+		for (final Resolution res : Resolution.values()) {
+			assertEquals(5, queryInt("SELECT SUM(READING_COUNT) FROM REMOTE_NODE_READING_ROLLUP WHERE RESOLUTION = '"
+					+ res.name() + "'"));
+		}
+		assertEquals(3, queryInt("SELECT COUNT(*) FROM REMOTE_NODE_READING_ROLLUP WHERE RESOLUTION = 'DAY'"));
+		assertEquals(3, queryInt("SELECT READING_COUNT FROM REMOTE_NODE_READING_ROLLUP WHERE REMOTE_NODE_ID = 1 "
+				+ "AND RESOLUTION = 'HOUR' AND BUCKET_START = '" + new Timestamp(day.getTime()) + "'"));
+		assertEquals(10 + 20 + 30, queryInt("SELECT PIR_SUM FROM REMOTE_NODE_READING_ROLLUP WHERE REMOTE_NODE_ID = 1 "
+				+ "AND RESOLUTION = 'DAY' AND BUCKET_START = '" + new Timestamp(day.getTime()) + "'"));
+		assertEquals(0, migrator.migrate());
+	}
+
+	/**
+	 * Days whose rollups do not account for every reading are rolled up again
+	 * while complete days are left as they are
+	 *
+	 * @throws Exception
+	 *             when the migration fails
+	 */
+	@Test
+	public void backfillPartialDays() throws Exception {
+		createLegacySchema();
+		new SchemaMigrator(DRIVER, url, USER, PASSWORD).migrate();
+		final Date day = day(2013, Calendar.MAY, 14);
+		final Date nextDay = Resolution.DAY.nextBucketStart(day);
+		insertReading(1, 1, day, 2, 10);
+		insertReading(2, 1, new Date(day.getTime() + 3600000), 4, 20);
+		insertReading(3, 1, nextDay, 6, 30);
+		con.setAutoCommit(false);
+		assertEquals(2, SchemaMigrator.backfillRollups(con));
+		assertEquals(0, SchemaMigrator.backfillRollups(con));
+		// a rollup saved for only some of the readings of the day
+		update("DELETE FROM REMOTE_NODE_READING_ROLLUP WHERE BUCKET_START < '" + new Timestamp(nextDay.getTime()) + "'");
+		update("INSERT INTO REMOTE_NODE_READING_ROLLUP (ID, REMOTE_NODE_ID, RESOLUTION, BUCKET_START, READING_COUNT) "
+				+ "VALUES (NEXT VALUE FOR SQ_REMOTE_NODE_RU_ID, 1, 'DAY', '" + new Timestamp(day.getTime()) + "', 1)");
+		assertEquals(1, SchemaMigrator.backfillRollups(con));
+		con.commit();
+		assertEquals(2, queryInt("SELECT READING_COUNT FROM REMOTE_NODE_READING_ROLLUP WHERE RESOLUTION = 'DAY' "
+				+ "AND BUCKET_START = '" + new Timestamp(day.getTime()) + "'"));
+		assertEquals(2, queryInt("SELECT COUNT(*) FROM REMOTE_NODE_READING_ROLLUP WHERE RESOLUTION = 'HOUR' "
+				+ "AND BUCKET_START < '" + new Timestamp(nextDay.getTime()) + "'"));
+		assertEquals(3, queryInt("SELECT SUM(READING_COUNT) FROM REMOTE_NODE_READING_ROLLUP WHERE RESOLUTION = 'MINUTE'"));
+	}
+
+	/**
+	 * Creates the tables (with only some of the current columns and without
+	 * the rollup table or schema version) that existed before migrations
+	 * along with a {@linkplain org.ugate.service.entity.jpa.Host} and two
+	 * {@linkplain org.ugate.service.entity.jpa.RemoteNode}s
+	 */
+	private void createLegacySchema() throws SQLException {
+		update("CREATE SEQUENCE SQ_REMOTE_NODE_RD_ID START WITH 1 INCREMENT BY 50");
+		update("CREATE TABLE HOST (ID INTEGER NOT NULL, COM_ON_AT_APP_STARTUP INTEGER NOT NULL, "
+				+ "MAIL_ON_AT_COM_STARTUP INTEGER NOT NULL, USE_METRIC BOOLEAN NOT NULL, "
+				+ "WEB_ON_AT_COM_STARTUP INTEGER NOT NULL, PRIMARY KEY (ID))");
+		update("CREATE TABLE APP_INFO (VERSION VARCHAR(20) NOT NULL, CREATED_DATE TIMESTAMP NOT NULL, "
+				+ "DEFAULT_ACTOR_ID INTEGER, PRIMARY KEY (VERSION))");
+		update("CREATE TABLE REMOTE_NODE (ID INTEGER NOT NULL, CREATED_DATE TIMESTAMP NOT NULL, "
+				+ "ADDRESS VARCHAR(100) NOT NULL, WORKING_DIR VARCHAR(100) NOT NULL, HOST_ID INTEGER NOT NULL, "
+				+ "PRIMARY KEY (ID), FOREIGN KEY (HOST_ID) REFERENCES HOST (ID))");
+		update("CREATE TABLE REMOTE_NODE_READING (ID INTEGER NOT NULL, FROM_MULTI_STATE INTEGER, "
+				+ "GATE_STATE INTEGER, LASER_FEET INTEGER, LASER_INCHES INTEGER, MICROWAVE_CYCLE_COUNT INTEGER, "
+				+ "PIR_INTENSITY INTEGER, READ_DATE TIMESTAMP NOT NULL, SONAR_FEET INTEGER, SONAR_INCHES INTEGER, "
+				+ "SIGNAL_STRENGTH INTEGER, REMOTE_NODE_ID INTEGER, PRIMARY KEY (ID), "
+				+ "FOREIGN KEY (REMOTE_NODE_ID) REFERENCES REMOTE_NODE (ID))");
+		update("INSERT INTO HOST VALUES (1, 0, 0, FALSE, 0)");
+		update("INSERT INTO APP_INFO VALUES ('1.0', CURRENT_TIMESTAMP, NULL)");
+		update("INSERT INTO REMOTE_NODE VALUES (1, CURRENT_TIMESTAMP, '33AF', 'ugate', 1)");
+		update("INSERT INTO REMOTE_NODE VALUES (2, CURRENT_TIMESTAMP, '33B0', 'ugate', 1)");
+	}
+
+	/**
+	 * Asserts that the reading history indexes exist
+	 */
+	private void assertIndexes() throws SQLException {
+		assertEquals(2, queryInt("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN "
+				+ "('IX_RNR_NODE_DATE', 'IX_RNRU_NODE_BUCKET') AND ORDINAL_POSITION = 1"));
+	}
+
+	private void insertReading(final int id, final int remoteNodeId,
+			final Date readDate, final int sonarFeet, final int pirIntensity)
+			throws SQLException {
+		final PreparedStatement ps = con.prepareStatement("INSERT INTO REMOTE_NODE_READING "
+				+ "(ID, REMOTE_NODE_ID, READ_DATE, FROM_MULTI_STATE, SONAR_FEET, SONAR_INCHES, PIR_INTENSITY) VALUES (?, ?, ?, 16, ?, 0, ?)");
+		try {
+			ps.setInt(1, id);
+			ps.setInt(2, remoteNodeId);
+			ps.setTimestamp(3, new Timestamp(readDate.getTime()));
+			ps.setInt(4, sonarFeet);
+			ps.setInt(5, pirIntensity);
+			ps.executeUpdate();
+		} finally {
+			ps.close();
+		}
+	}
+
+	private void update(final String sql) throws SQLException {
+		final Statement stmt = con.createStatement();
+		try {
+			stmt.executeUpdate(sql);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private int queryInt(final String sql) throws SQLException {
+		final Statement stmt = con.createStatement();
+		try {
+			final ResultSet rs = stmt.executeQuery(sql);
+			assertTrue(sql, rs.next());
+			return rs.getInt(1);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private static Date day(final int year, final int month, final int day) {
+		final Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(year, month, day);
+		return cal.getTime();
+	}
+}
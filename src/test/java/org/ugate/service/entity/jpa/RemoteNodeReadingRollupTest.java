@@ -0,0 +1,179 @@
+package org.ugate.service.entity.jpa;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ugate.service.entity.RemoteNodeReadingColumns;
+import org.ugate.service.entity.jpa.RemoteNodeReadingRollup.Resolution;
+
+/**
+ * {@link Test}s for the {@linkplain Resolution} buckets and the aggregation
+ * of {@linkplain RemoteNodeReadingRollup}s
+ */
+public class RemoteNodeReadingRollupTest {
+
+	private TimeZone defaultTimeZone;
+
+	/**
+	 * Uses a time zone with daylight saving time so that bucket boundaries
+	 * are not simply multiples of the {@linkplain Resolution#getMillis()}
+	 */
+	@Before
+	public void setTimeZone() {
+		defaultTimeZone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("America/Chicago"));
+	}
+
+	/**
+	 * Restores the default time zone
+	 */
+	@After
+	public void restoreTimeZone() {
+		TimeZone.setDefault(defaultTimeZone);
+	}
+
+	/**
+	 * {@linkplain Resolution#bucketStart(Date)} truncates to the start of
+	 * the minute, hour or day
+	 */
+	@Test
+	public void bucketStart() {
+		final Date date = date(2013, Calendar.MAY, 14, 17, 42, 37, 512);
+		assertEquals(date(2013, Calendar.MAY, 14, 17, 42, 0, 0),
+				Resolution.MINUTE.bucketStart(date));
+		assertEquals(date(2013, Calendar.MAY, 14, 17, 0, 0, 0),
+				Resolution.HOUR.bucketStart(date));
+		assertEquals(date(2013, Calendar.MAY, 14, 0, 0, 0, 0),
+				Resolution.DAY.bucketStart(date));
+		final Date start = Resolution.HOUR.bucketStart(date);
+		assertEquals(start, Resolution.HOUR.bucketStart(start));
+	}
+
+	/**
+	 * {@linkplain Resolution#nextBucketStart(Date)} follows the calendar
+	 * (a day bucket is 23 hours long when daylight saving time starts)
+	 */
+	@Test
+	public void nextBucketStart() {
+		final Date date = date(2013, Calendar.MAY, 14, 23, 59, 59, 999);
+		assertEquals(date(2013, Calendar.MAY, 15, 0, 0, 0, 0),
+				Resolution.MINUTE.nextBucketStart(date));
+		assertEquals(date(2013, Calendar.MAY, 15, 0, 0, 0, 0),
+				Resolution.HOUR.nextBucketStart(date));
+		assertEquals(date(2013, Calendar.MAY, 15, 0, 0, 0, 0),
+				Resolution.DAY.nextBucketStart(date));
+		final Date dst = date(2013, Calendar.MARCH, 10, 12, 0, 0, 0);
+		final Date dstStart = Resolution.DAY.bucketStart(dst);
+		assertEquals(23 * Resolution.HOUR.getMillis(), Resolution.DAY
+				.nextBucketStart(dst).getTime() - dstStart.getTime());
+	}
+
+	/**
+	 * {@linkplain Resolution#forRange(Date, Date)} picks the finest
+	 * {@linkplain Resolution} with no more than
+	 * {@linkplain Resolution#MAX_BUCKETS}
+	 */
+	@Test
+	public void forRange() {
+		final Date start = date(2013, Calendar.MAY, 14, 0, 0, 0, 0);
+		final int max = Resolution.MAX_BUCKETS;
+		assertEquals(Resolution.MINUTE, Resolution.forRange(start, start));
+		assertEquals(Resolution.MINUTE, Resolution.forRange(start,
+				plus(start, max * Resolution.MINUTE.getMillis())));
+		assertEquals(Resolution.HOUR, Resolution.forRange(start,
+				plus(start, (max + 1) * Resolution.MINUTE.getMillis())));
+		assertEquals(Resolution.HOUR, Resolution.forRange(start,
+				plus(start, max * Resolution.HOUR.getMillis())));
+		assertEquals(Resolution.DAY, Resolution.forRange(start,
+				plus(start, (max + 1) * Resolution.HOUR.getMillis())));
+		assertEquals(Resolution.DAY, Resolution.forRange(start,
+				plus(start, 10 * max * Resolution.DAY.getMillis())));
+	}
+
+	/**
+	 * Readings added individually and buckets merged together produce the
+	 * same counts, minimums, maximums and sums
+	 */
+	@Test
+	public void aggregate() {
+		final Date bucket = date(2013, Calendar.MAY, 14, 17, 0, 0, 0);
+		final RemoteNodeReadingColumns cols = new RemoteNodeReadingColumns(4);
+		cols.add(1, bucket.getTime(), ints(RemoteNodeReadingRollup.TRIP_READ, 10, 6, 40, 100, 20, 0));
+		cols.add(2, bucket.getTime() + 1000, ints(RemoteNodeReadingRollup.TRIP_SONAR
+				| RemoteNodeReadingRollup.TRIP_PIR, 2, 0, 90, 300, 30, 3));
+		cols.add(3, bucket.getTime() + 2000, ints(RemoteNodeReadingRollup.TRIP_LASER
+				| RemoteNodeReadingRollup.TRIP_MICROWAVE, 5, 11, 10, 200, 25, 6));
+		final RemoteNodeReadingRollup all = new RemoteNodeReadingRollup(null,
+				Resolution.HOUR, bucket);
+		final RemoteNodeReadingRollup first = new RemoteNodeReadingRollup(null,
+				Resolution.HOUR, bucket);
+		final RemoteNodeReadingRollup rest = new RemoteNodeReadingRollup(null,
+				Resolution.HOUR, bucket);
+		for (int i = 0; i < cols.size(); i++) {
+			all.add(cols, i);
+			(i == 0 ? first : rest).add(cols, i);
+		}
+		final RemoteNodeReadingRollup merged = new RemoteNodeReadingRollup(
+				null, Resolution.HOUR, bucket);
+		merged.add(new RemoteNodeReadingRollup(null, Resolution.HOUR, bucket));
+		merged.add(rest);
+		merged.add(first);
+		for (final RemoteNodeReadingRollup r : new RemoteNodeReadingRollup[] { all, merged }) {
+			assertEquals(3, r.getReadingCount());
+			assertEquals(1, r.getReadCount());
+			assertEquals(1, r.getSonarTripCount());
+			assertEquals(1, r.getPirTripCount());
+			assertEquals(1, r.getMicrowaveTripCount());
+			assertEquals(1, r.getLaserTripCount());
+			assertEquals(24, r.getSonarMin());
+			assertEquals(126, r.getSonarMax());
+			assertEquals(126 + 24 + 71, r.getSonarSum());
+			assertEquals(240, r.getLaserMin());
+			assertEquals(363, r.getLaserMax());
+			assertEquals(240 + 363 + 306, r.getLaserSum());
+			assertEquals(100, r.getMicrowaveMin());
+			assertEquals(300, r.getMicrowaveMax());
+			assertEquals(600, r.getMicrowaveSum());
+			assertEquals(10, r.getPirMin());
+			assertEquals(90, r.getPirMax());
+			assertEquals(140, r.getPirSum());
+		}
+	}
+
+	/**
+	 * @return the {@linkplain RemoteNodeReadingColumns} <code>int</code>
+	 *         values of a reading
+	 */
+	private static int[] ints(final int state, final int sonarFeet,
+			final int sonarInches, final int pir, final int microwave,
+			final int laserFeet, final int laserInches) {
+		final int[] ints = new int[RemoteNodeReadingColumns.INT_COLUMNS];
+		ints[RemoteNodeReadingColumns.FROM_MULTI_STATE] = state;
+		ints[RemoteNodeReadingColumns.SONAR_FEET] = sonarFeet;
+		ints[RemoteNodeReadingColumns.SONAR_INCHES] = sonarInches;
+		ints[RemoteNodeReadingColumns.PIR_INTENSITY] = pir;
+		ints[RemoteNodeReadingColumns.MICROWAVE_CYCLE_COUNT] = microwave;
+		ints[RemoteNodeReadingColumns.LASER_FEET] = laserFeet;
+		ints[RemoteNodeReadingColumns.LASER_INCHES] = laserInches;
+		return ints;
+	}
+
+	private static Date plus(final Date date, final long millis) {
+		return new Date(date.getTime() + millis);
+	}
+
+	private static Date date(final int year, final int month, final int day,
+			final int hour, final int minute, final int second, final int millis) {
+		final Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(year, month, day, hour, minute, second);
+		cal.set(Calendar.MILLISECOND, millis);
+		return cal.getTime();
+	}
+}
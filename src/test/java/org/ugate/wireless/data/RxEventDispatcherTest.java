@@ -0,0 +1,254 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.ugate.wireless.data.RxEventDispatcher.OverflowPolicy;
+
+/**
+ * {@link Test}s for the lane ordering and {@link OverflowPolicy}s of the
+ * {@linkplain RxEventDispatcher}
+ */
+public class RxEventDispatcherTest {
+
+	private static final String LANE = "0013A200";
+	private RxEventDispatcher dispatcher;
+
+	/**
+	 * Shuts down the {@linkplain RxEventDispatcher} used by the test
+	 */
+	@After
+	public void shutdown() {
+		if (dispatcher != null) {
+			dispatcher.shutdown();
+		}
+	}
+
+	/**
+	 * Tasks for the same lane must be executed in the order they were
+	 * dispatched while multiple lanes are executed in parallel
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted
+	 */
+	@Test
+	public void laneOrdering() throws InterruptedException {
+		final int laneCount = 4;
+		final int taskCount = 5000;
+		dispatcher = new RxEventDispatcher("test-rx", laneCount, 64,
+				OverflowPolicy.OVERFLOW);
+		final List<List<Integer>> executed = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(laneCount * taskCount);
+		for (int l = 0; l < laneCount; l++) {
+			executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+		}
+		for (int i = 0; i < taskCount; i++) {
+			for (int l = 0; l < laneCount; l++) {
+				assertTrue(dispatcher.dispatch(LANE + l,
+						new Record(executed.get(l), i, done)));
+			}
+		}
+		assertTrue("Tasks were not executed",
+				done.await(30, TimeUnit.SECONDS));
+		for (int l = 0; l < laneCount; l++) {
+			assertSequence(executed.get(l), 0, taskCount);
+		}
+		assertEquals(laneCount * taskCount, dispatcher.getDispatchedCount());
+		assertEquals(0, dispatcher.getDroppedCount());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	/**
+	 * {@link OverflowPolicy#DISCARD_NEWEST} rejects the task dispatched to a
+	 * full lane and keeps the queued ones
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted
+	 */
+	@Test
+	public void discardNewest() throws InterruptedException {
+		dispatcher = new RxEventDispatcher("test-rx", 1, 2,
+				OverflowPolicy.DISCARD_NEWEST);
+		final Gate gate = gate();
+		final List<Integer> executed = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(2);
+		assertTrue(dispatcher.dispatch(LANE, new Record(executed, 1, done)));
+		assertTrue(dispatcher.dispatch(LANE, new Record(executed, 2, done)));
+		assertFalse(dispatcher.dispatch(LANE, new Record(executed, 3, done)));
+		assertEquals(1, dispatcher.getDroppedCount());
+		gate.release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertSequence(executed, 1, 2);
+	}
+
+	/**
+	 * {@link OverflowPolicy#DISCARD_OLDEST} discards the oldest queued task to
+	 * make room for the task dispatched to a full lane
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted
+	 */
+	@Test
+	public void discardOldest() throws InterruptedException {
+		dispatcher = new RxEventDispatcher("test-rx", 1, 2,
+				OverflowPolicy.DISCARD_OLDEST);
+		final Gate gate = gate();
+		final List<Integer> executed = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(2);
+		assertTrue(dispatcher.dispatch(LANE, new Record(executed, 1, null)));
+		assertTrue(dispatcher.dispatch(LANE, new Record(executed, 2, done)));
+		assertTrue(dispatcher.dispatch(LANE, new Record(executed, 3, done)));
+		assertEquals(1, dispatcher.getDroppedCount());
+		assertEquals(2, dispatcher.getQueueDepth(LANE));
+		gate.release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertSequence(executed, 2, 2);
+	}
+
+	/**
+	 * {@link OverflowPolicy#OVERFLOW} queues tasks beyond the lane capacity
+	 * without discarding any of them
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted
+	 */
+	@Test
+	public void overflow() throws InterruptedException {
+		dispatcher = new RxEventDispatcher("test-rx", 1, 2,
+				OverflowPolicy.OVERFLOW);
+		final Gate gate = gate();
+		final List<Integer> executed = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(5);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(dispatcher.dispatch(LANE, new Record(executed, i, done)));
+		}
+		assertEquals(3, dispatcher.getOverflowCount());
+		assertEquals(0, dispatcher.getDroppedCount());
+		assertEquals(5, dispatcher.getQueueDepth(LANE));
+		gate.release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertSequence(executed, 0, 5);
+	}
+
+	/**
+	 * {@link OverflowPolicy#BLOCK} blocks the dispatching thread until the
+	 * full lane has room
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted
+	 */
+	@Test
+	public void block() throws InterruptedException {
+		dispatcher = new RxEventDispatcher("test-rx", 1, 1,
+				OverflowPolicy.BLOCK);
+		final Gate gate = gate();
+		final List<Integer> executed = Collections
+				.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(2);
+		assertTrue(dispatcher.dispatch(LANE, new Record(executed, 1, done)));
+		final Thread blocked = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				dispatcher.dispatch(LANE, new Record(executed, 2, done));
+			}
+		});
+		blocked.start();
+		blocked.join(300);
+		assertTrue("Dispatch to a full lane did not block", blocked.isAlive());
+		gate.release.countDown();
+		blocked.join(10000);
+		assertFalse(blocked.isAlive());
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertSequence(executed, 1, 2);
+		assertEquals(0, dispatcher.getDroppedCount());
+	}
+
+	/**
+	 * Dispatches a task that occupies the only worker of the
+	 * {@linkplain RxEventDispatcher} lane until it is released so that
+	 * subsequent tasks stay queued
+	 *
+	 * @return the {@link Gate}
+	 * @throws InterruptedException
+	 *             when interrupted
+	 */
+	private Gate gate() throws InterruptedException {
+		final Gate gate = new Gate();
+		assertTrue(dispatcher.dispatch(LANE, gate));
+		assertTrue(gate.started.await(10, TimeUnit.SECONDS));
+		return gate;
+	}
+
+	/**
+	 * Asserts that the executed values are consecutive
+	 *
+	 * @param executed
+	 *            the executed values
+	 * @param first
+	 *            the expected first value
+	 * @param count
+	 *            the expected number of values
+	 */
+	private static void assertSequence(final List<Integer> executed,
+			final int first, final int count) {
+		assertEquals(count, executed.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals("Out of order execution", Integer.valueOf(first + i),
+					executed.get(i));
+		}
+	}
+
+	/**
+	 * Task that blocks its worker until released
+	 */
+	private static class Gate implements Runnable {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void run() {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Task that records its value when executed
+	 */
+	private static class Record implements Runnable {
+		final List<Integer> executed;
+		final int value;
+		final CountDownLatch done;
+
+		Record(final List<Integer> executed, final int value,
+				final CountDownLatch done) {
+			this.executed = executed;
+			this.value = value;
+			this.done = done;
+		}
+
+		@Override
+		public void run() {
+			executed.add(value);
+			if (done != null) {
+				done.countDown();
+			}
+		}
+	}
+}
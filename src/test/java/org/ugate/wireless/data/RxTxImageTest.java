@@ -0,0 +1,312 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateUtil;
+import org.ugate.service.entity.jpa.RemoteNode;
+
+/**
+ * {@link Test}s for assembling {@linkplain RxTxImage}s from in order, out of
+ * order and retransmitted chunks along with a comparison of assembling a VGA
+ * capture with the previous <code>int[]</code> concatenation
+ */
+public class RxTxImageTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RxTxImageTest.class);
+	/**
+	 * The number of image bytes in each chunk (the rest of the RX packet is
+	 * the command, status and sequence)
+	 */
+	private static final int CHUNK_SIZE = 96;
+	/**
+	 * The size of a typical VGA JPEG capture (417 chunks)
+	 */
+	private static final int VGA_SIZE = 40000;
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	private RemoteNode remoteNode;
+
+	/**
+	 * Creates a {@linkplain RemoteNode} with a temporary working directory
+	 *
+	 * @throws IOException
+	 *             when the directory cannot be created
+	 */
+	@Before
+	public void createRemoteNode() throws IOException {
+		remoteNode = new RemoteNode();
+		remoteNode.setAddress("33AF");
+		remoteNode.setWorkingDir(folder.newFolder("images").getAbsolutePath());
+	}
+
+	/**
+	 * Chunks received in order are written as is
+	 *
+	 * @throws IOException
+	 *             when the image cannot be written
+	 */
+	@Test
+	public void inOrder() throws IOException {
+		final byte[] image = jpeg(VGA_SIZE, new Random(1));
+		final List<int[]> packets = packets(image, true);
+		final RxTxJPEG rxTxImage = new RxTxJPEG(remoteNode, RxData.Status.NORMAL, 0, null);
+		for (int i = 0; i < packets.size(); i++) {
+			assertNotNull(rxTxImage.addImageSegment(packets.get(i),
+					UGateXBeePacketListener.IMAGE_START_INDEX, i));
+			assertEquals(i == packets.size() - 1, rxTxImage.isEof());
+		}
+		assertTrue(rxTxImage.hasReceivedEof());
+		assertFalse(rxTxImage.hasMissingChunks());
+		assertEquals(image.length, rxTxImage.getSize());
+		assertArrayEquals(image, rxTxImage.getBytes().array());
+		assertWritten(image, rxTxImage);
+		assertEquals(0, rxTxImage.getRetransmittedBytes());
+	}
+
+	/**
+	 * Chunks from a remote node that does not sequence them are written in the
+	 * order they were received
+	 *
+	 * @throws IOException
+	 *             when the image cannot be written
+	 */
+	@Test
+	public void unsequenced() throws IOException {
+		final byte[] image = jpeg(VGA_SIZE, new Random(2));
+		final RxTxJPEG rxTxImage = new RxTxJPEG(remoteNode, RxData.Status.NORMAL, 0, null);
+		for (final int[] packet : packets(image, false)) {
+			assertNotNull(rxTxImage.addImageSegment(packet,
+					UGateXBeePacketListener.IMAGE_START_INDEX));
+		}
+		assertFalse(rxTxImage.hasMissingChunks());
+		assertTrue(rxTxImage.requestMissingChunks(1000).isEmpty());
+		assertWritten(image, rxTxImage);
+	}
+
+	/**
+	 * Lost chunks are requested in ranges, retransmitted chunks (received in
+	 * any order) fill the gaps, duplicates are ignored and the image is
+	 * written in sequence order
+	 *
+	 * @throws IOException
+	 *             when the image cannot be written
+	 */
+	@Test
+	public void outOfOrderResend() throws IOException {
+		final byte[] image = jpeg(VGA_SIZE, new Random(3));
+		final List<int[]> packets = packets(image, true);
+		final int last = packets.size() - 1;
+		final List<Integer> lost = Arrays.asList(0, 1, 2, 50, 51, 200, last - 1);
+		final RxTxJPEG rxTxImage = new RxTxJPEG(remoteNode, RxData.Status.NORMAL, 0, null);
+		for (int i = 0; i < packets.size(); i++) {
+			if (!lost.contains(i)) {
+				rxTxImage.addImageSegment(packets.get(i),
+						UGateXBeePacketListener.IMAGE_START_INDEX, i);
+			}
+		}
+		assertTrue(rxTxImage.hasReceivedEof());
+		assertTrue(rxTxImage.hasMissingChunks());
+		final List<int[]> ranges = rxTxImage.requestMissingChunks(60000);
+		assertEquals(4, ranges.size());
+		assertArrayEquals(new int[] { 0, 3 }, ranges.get(0));
+		assertArrayEquals(new int[] { 50, 2 }, ranges.get(1));
+		assertArrayEquals(new int[] { 200, 1 }, ranges.get(2));
+		assertArrayEquals(new int[] { last - 1, 1 }, ranges.get(3));
+		assertTrue(rxTxImage.isRecovering());
+		assertFalse(rxTxImage.hasRecoveryTimedOut(System.currentTimeMillis()));
+		assertTrue(rxTxImage.hasRecoveryTimedOut(System.currentTimeMillis() + 60000));
+		// the retransmitted chunks arrive in reverse order along with a duplicate
+		int retransmitted = 0;
+		for (int i = lost.size() - 1; i >= 0; i--) {
+			final int seq = lost.get(i);
+			assertNotNull(rxTxImage.addImageSegment(packets.get(seq),
+					UGateXBeePacketListener.IMAGE_START_INDEX, seq));
+			retransmitted += packets.get(seq).length - UGateXBeePacketListener.IMAGE_START_INDEX;
+		}
+		assertNull(rxTxImage.addImageSegment(packets.get(10),
+				UGateXBeePacketListener.IMAGE_START_INDEX, 10));
+		assertFalse(rxTxImage.hasMissingChunks());
+		assertFalse(rxTxImage.isRecovering());
+		assertEquals(1, rxTxImage.getResendRequests());
+		assertEquals(retransmitted, rxTxImage.getRetransmittedBytes());
+		assertEquals(image.length, rxTxImage.getSize());
+		assertWritten(image, rxTxImage);
+	}
+
+	/**
+	 * Compares assembling VGA captures from chunks using the temporary image
+	 * file with the previous assembly that retained every chunk as an
+	 * <code>int[]</code> and concatenated them when the image was written.
+	 * The time and the bytes allocated per capture are logged.
+	 *
+	 * @throws IOException
+	 *             when an image cannot be written
+	 */
+	@Test
+	public void assemblyBenchmark() throws IOException {
+		final int captures = 30;
+		final byte[] image = jpeg(VGA_SIZE, new Random(4));
+		final List<int[]> packets = packets(image, true);
+		final Path concatPath = folder.newFile("concat.jpg").toPath();
+		final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		final boolean allocation = mx instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported();
+		long concatNanos = Long.MAX_VALUE, fileNanos = Long.MAX_VALUE;
+		long concatBytes = Long.MAX_VALUE, fileBytes = Long.MAX_VALUE;
+		for (int c = 0; c < captures; c++) {
+			long bytes = allocatedBytes(mx, allocation);
+			long start = System.nanoTime();
+			final List<int[]> chunks = new ArrayList<>();
+			for (final int[] packet : packets) {
+				chunks.add(Arrays.copyOfRange(packet,
+						UGateXBeePacketListener.IMAGE_START_INDEX, packet.length));
+			}
+			writeConcatenated(chunks, concatPath);
+			concatNanos = Math.min(concatNanos, System.nanoTime() - start);
+			concatBytes = Math.min(concatBytes, allocatedBytes(mx, allocation) - bytes);
+
+			bytes = allocatedBytes(mx, allocation);
+			start = System.nanoTime();
+			final RxTxJPEG rxTxImage = new RxTxJPEG(remoteNode, RxData.Status.NORMAL, 0, null);
+			for (int i = 0; i < packets.size(); i++) {
+				rxTxImage.addImageSegment(packets.get(i),
+						UGateXBeePacketListener.IMAGE_START_INDEX, i);
+				rxTxImage.hasReceivedEof();
+			}
+			final ImageCapture ic = rxTxImage.writeImageSegments();
+			fileNanos = Math.min(fileNanos, System.nanoTime() - start);
+			fileBytes = Math.min(fileBytes, allocatedBytes(mx, allocation) - bytes);
+			assertArrayEquals(image, Files.readAllBytes(ic.getFilePath()));
+			Files.delete(ic.getFilePath());
+		}
+		assertArrayEquals(image, Files.readAllBytes(concatPath));
+		log.info(String.format(
+				"Assembled %1$s bytes from %2$s chunks: int[] concatenation %3$s ms (%4$s bytes allocated), temporary file %5$s ms (%6$s bytes allocated)",
+				image.length, packets.size(), concatNanos / 1000000.0,
+				allocation ? concatBytes : "n/a", fileNanos / 1000000.0,
+				allocation ? fileBytes : "n/a"));
+	}
+
+	/**
+	 * Writes an {@linkplain RxTxImage} and asserts that only the image file
+	 * remains in the working directory
+	 */
+	private void assertWritten(final byte[] image, final RxTxImage rxTxImage)
+			throws IOException {
+		final ImageCapture ic = rxTxImage.writeImageSegments();
+		assertEquals(image.length, ic.getFileSize());
+		assertArrayEquals(image, Files.readAllBytes(ic.getFilePath()));
+		final List<Path> files = new ArrayList<>();
+		final DirectoryStream<Path> ds = Files.newDirectoryStream(ic
+				.getFilePath().getParent());
+		try {
+			for (final Path p : ds) {
+				files.add(p.getFileName());
+			}
+		} finally {
+			ds.close();
+		}
+		assertEquals(Arrays.asList(ic.getFilePath().getFileName()), files);
+	}
+
+	/**
+	 * The assembly used before image chunks were written to a temporary file
+	 * (every chunk is concatenated to the previous ones and the bytes are
+	 * written at once)
+	 */
+	private static void writeConcatenated(final List<int[]> chunks,
+			final Path filePath) throws IOException {
+		int[] imageData = null;
+		for (final int[] chunk : chunks) {
+			imageData = imageData == null ? chunk : UGateUtil.arrayConcatInt(
+					imageData, chunk);
+		}
+		final ByteBuffer byteBuffer = ByteBuffer.allocate(imageData.length);
+		for (final int value : imageData) {
+			byteBuffer.put((byte) value);
+		}
+		final File imageFile = filePath.toFile();
+		final FileOutputStream fos = new FileOutputStream(imageFile);
+		try {
+			fos.write(byteBuffer.array());
+		} finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread (zero when not
+	 *         supported)
+	 */
+	private static long allocatedBytes(final ThreadMXBean mx,
+			final boolean supported) {
+		return supported ? ((com.sun.management.ThreadMXBean) mx)
+				.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	/**
+	 * Splits image bytes into RX packets of unsigned values with the image
+	 * bytes starting at {@linkplain UGateXBeePacketListener#IMAGE_START_INDEX}
+	 */
+	private static List<int[]> packets(final byte[] image, final boolean sequenced) {
+		final List<int[]> packets = new ArrayList<>();
+		for (int pos = 0, seq = 0; pos < image.length; pos += CHUNK_SIZE, seq++) {
+			final int len = Math.min(CHUNK_SIZE, image.length - pos);
+			final int[] packet = new int[UGateXBeePacketListener.IMAGE_START_INDEX + len];
+			if (sequenced) {
+				packet[1] = UGateXBeePacketListener.IMAGE_SEQUENCED_FLAG;
+				packet[UGateXBeePacketListener.IMAGE_SEQUENCE_INDEX] = seq >> 8;
+				packet[UGateXBeePacketListener.IMAGE_SEQUENCE_INDEX + 1] = seq & 0xFF;
+			}
+			for (int i = 0; i < len; i++) {
+				packet[UGateXBeePacketListener.IMAGE_START_INDEX + i] = image[pos + i] & 0xFF;
+			}
+			packets.add(packet);
+		}
+		return packets;
+	}
+
+	/**
+	 * @return random image bytes that only end with the JPEG end of image
+	 *         marker
+	 */
+	private static byte[] jpeg(final int size, final Random random) {
+		final byte[] image = new byte[size];
+		random.nextBytes(image);
+		for (int i = 0; i < size - 2; i++) {
+			if (image[i] == (byte) 0xFF) {
+				image[i] = 0;
+			}
+		}
+		image[0] = (byte) 0xFF;
+		image[1] = (byte) 0xD8;
+		image[size - 2] = (byte) 0xFF;
+		image[size - 1] = (byte) 0xD9;
+		return image;
+	}
+}
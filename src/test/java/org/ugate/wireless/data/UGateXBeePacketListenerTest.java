@@ -0,0 +1,294 @@
+package org.ugate.wireless.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ugate.UGateEvent;
+import org.ugate.service.entity.Command;
+import org.ugate.service.entity.RemoteNodeType;
+import org.ugate.service.entity.jpa.Host;
+import org.ugate.service.entity.jpa.RemoteNode;
+import org.ugate.service.entity.jpa.RemoteNodeReading;
+
+import ch.qos.logback.classic.Level;
+
+import com.rapplogic.xbee.api.XBeeAddress16;
+import com.rapplogic.xbee.api.wpan.RxResponse16;
+
+/**
+ * {@link Test}s for decoding {@linkplain RxResponse16} frames along with the
+ * frames per second and bytes allocated per frame on the receiving thread for
+ * {@linkplain Command#SENSOR_GET_READINGS} and
+ * {@linkplain Command#SENSOR_GET_SETTINGS} frames
+ */
+public class UGateXBeePacketListenerTest {
+
+	private static final Logger log = LoggerFactory.getLogger(UGateXBeePacketListenerTest.class);
+	private static final int WARM_UP_FRAMES = 50000;
+	private static final int FRAMES = 200000;
+	private RemoteNode remoteNode;
+	private CountingListener listener;
+
+	/**
+	 * Creates a {@linkplain RemoteNode} (with a {@linkplain Host}) and a
+	 * {@linkplain CountingListener}
+	 */
+	@Before
+	public void createListener() {
+		remoteNode = new RemoteNode();
+		remoteNode.setHost(new Host());
+		remoteNode.setAddress("33AF");
+		listener = new CountingListener(remoteNode);
+	}
+
+	/**
+	 * Shuts down the {@linkplain RxEventDispatcher} of the listener
+	 */
+	@After
+	public void shutdownListener() {
+		listener.getDispatcher().shutdown();
+	}
+
+	/**
+	 * Every {@linkplain Command} is found by its key and unknown keys are
+	 * ignored
+	 */
+	@Test
+	public void commandLookup() {
+		for (final Command command : Command.values()) {
+			assertSame(command, Command.lookup(command.getKey()));
+		}
+		assertNull(Command.lookup(-1));
+		assertNull(Command.lookup(0));
+		assertNull(Command.lookup(255));
+	}
+
+	/**
+	 * A {@linkplain Command#SENSOR_GET_READINGS} frame is decoded into a
+	 * {@linkplain RemoteNodeReading}
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for the event
+	 */
+	@Test
+	public void readingsFrame() throws InterruptedException {
+		listener.expect(1);
+		listener.processResponse(newReadingsFrame(7));
+		final UGateEvent<RemoteNode, ?> event = listener.await();
+		assertSame(Command.SENSOR_GET_READINGS, event.getCommand());
+		assertEquals(UGateEvent.Type.WIRELESS_DATA_RX_SUCCESS, event.getType());
+		final RemoteNodeReading rnr = ((RxTxRemoteNodeReadingDTO) event
+				.getNewValue()).getRemoteNodeReading();
+		assertSame(remoteNode, rnr.getRemoteNode());
+		assertEquals(7, rnr.getSonarFeet());
+		assertEquals(8, rnr.getSonarInches());
+		assertEquals(9, rnr.getMicrowaveCycleCount());
+		assertEquals(10, rnr.getPirIntensity());
+		assertEquals(11, rnr.getLaserFeet());
+		assertEquals(12, rnr.getLaserInches());
+		assertEquals(1, rnr.getGateState());
+		assertEquals(40, rnr.getSignalStrength());
+	}
+
+	/**
+	 * A {@linkplain Command#SENSOR_GET_SETTINGS} frame is decoded into the
+	 * remote values of a {@linkplain RxTxRemoteNodeDTO}
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for the event
+	 */
+	@Test
+	public void settingsFrame() throws InterruptedException {
+		listener.expect(1);
+		listener.processResponse(newSettingsFrame());
+		final UGateEvent<RemoteNode, ?> event = listener.await();
+		assertSame(Command.SENSOR_GET_SETTINGS, event.getCommand());
+		final int[] sd = ((RxTxRemoteNodeDTO) event.getNewValue()).getData();
+		assertEquals(RemoteNodeType.canRemoteCount(), sd.length);
+		for (int i = 0; i < sd.length; i++) {
+			assertEquals(i % 2, sd[i]);
+		}
+	}
+
+	/**
+	 * Decodes {@linkplain #FRAMES} readings and settings frames with the
+	 * listener logging at warn level (as deployed). The frames per second and
+	 * the bytes allocated per frame on the receiving thread are logged.
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for the events
+	 */
+	@Test
+	public void decodeBenchmark() throws InterruptedException {
+		final ch.qos.logback.classic.Logger listenerLog = (ch.qos.logback.classic.Logger) LoggerFactory
+				.getLogger(UGateXBeePacketListener.class);
+		final Level level = listenerLog.getLevel();
+		listenerLog.setLevel(Level.WARN);
+		try {
+			final RxResponse16 readings = newReadingsFrame(7);
+			final RxResponse16 settings = newSettingsFrame();
+			decode(readings, WARM_UP_FRAMES);
+			decode(settings, WARM_UP_FRAMES);
+			final long[] readingsResult = decode(readings, FRAMES);
+			final long[] settingsResult = decode(settings, FRAMES);
+			log.info(String.format(
+					"Decoded %1$s frames: %2$s %3$.0f frames/sec (%4$s bytes/frame), %5$s %6$.0f frames/sec (%7$s bytes/frame)",
+					FRAMES, Command.SENSOR_GET_READINGS.name(),
+					FRAMES * 1e9 / readingsResult[0], readingsResult[1] < 0 ? "n/a"
+							: readingsResult[1] / FRAMES,
+					Command.SENSOR_GET_SETTINGS.name(), FRAMES * 1e9 / settingsResult[0],
+					settingsResult[1] < 0 ? "n/a" : settingsResult[1] / FRAMES));
+		} finally {
+			listenerLog.setLevel(level);
+		}
+	}
+
+	/**
+	 * Passes the same frame to the listener and waits for all of the events
+	 * to be handled
+	 *
+	 * @param frame
+	 *            the frame
+	 * @param count
+	 *            the number of times the frame is received
+	 * @return the nanoseconds spent receiving the frames and the bytes
+	 *         allocated by the receiving thread (-1 when not supported)
+	 * @throws InterruptedException
+	 *             when interrupted while waiting for the events
+	 */
+	private long[] decode(final RxResponse16 frame, final int count)
+			throws InterruptedException {
+		final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		final boolean allocation = mx instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported();
+		listener.expect(count);
+		final long bytes = allocatedBytes(mx, allocation);
+		final long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			listener.processResponse(frame);
+		}
+		final long nanos = System.nanoTime() - start;
+		final long allocated = allocation ? allocatedBytes(mx, allocation) - bytes : -1;
+		listener.await();
+		return new long[] { nanos, allocated };
+	}
+
+	/**
+	 * @return a {@linkplain Command#SENSOR_GET_READINGS} frame starting with
+	 *         the supplied sonar feet
+	 */
+	private static RxResponse16 newReadingsFrame(final int sonarFeet) {
+		return newFrame(new int[] { Command.SENSOR_GET_READINGS.getKey(), 0,
+				sonarFeet, sonarFeet + 1, sonarFeet + 2, sonarFeet + 3,
+				sonarFeet + 4, sonarFeet + 5, 1 });
+	}
+
+	/**
+	 * @return a {@linkplain Command#SENSOR_GET_SETTINGS} frame with
+	 *         alternating zero/one settings values
+	 */
+	private static RxResponse16 newSettingsFrame() {
+		final int[] data = new int[2 + RemoteNodeType.canRemoteCount()];
+		data[0] = Command.SENSOR_GET_SETTINGS.getKey();
+		for (int i = 2; i < data.length; i++) {
+			data[i] = (i - 2) % 2;
+		}
+		return newFrame(data);
+	}
+
+	/**
+	 * @return a {@linkplain RxResponse16} from the <code>33AF</code> address
+	 */
+	private static RxResponse16 newFrame(final int[] data) {
+		final RxResponse16 frame = new RxResponse16();
+		frame.setSourceAddress(new XBeeAddress16(0x33, 0xAF));
+		frame.setRssi(40);
+		frame.setData(data);
+		return frame;
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread (zero when not
+	 *         supported)
+	 */
+	private static long allocatedBytes(final ThreadMXBean mx,
+			final boolean supported) {
+		return supported ? ((com.sun.management.ThreadMXBean) mx)
+				.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	/**
+	 * {@linkplain UGateXBeePacketListener} that receives all frames from a
+	 * single {@linkplain RemoteNode} and counts down the handled events
+	 */
+	private static class CountingListener extends UGateXBeePacketListener {
+
+		private final RemoteNode remoteNode;
+		private final AtomicReference<UGateEvent<RemoteNode, ?>> lastEvent = new AtomicReference<>();
+		private volatile CountDownLatch latch;
+
+		/**
+		 * Constructor
+		 *
+		 * @param remoteNode
+		 *            the {@linkplain RemoteNode} of every frame
+		 */
+		CountingListener(final RemoteNode remoteNode) {
+			this.remoteNode = remoteNode;
+		}
+
+		/**
+		 * Sets the number of events that {@linkplain #await()} waits for
+		 *
+		 * @param count
+		 *            the number of events
+		 */
+		void expect(final int count) {
+			latch = new CountDownLatch(count);
+		}
+
+		/**
+		 * Waits for the expected number of events
+		 *
+		 * @return the last event handled
+		 * @throws InterruptedException
+		 *             when interrupted while waiting
+		 */
+		UGateEvent<RemoteNode, ?> await() throws InterruptedException {
+			assertTrue("Events were not handled in time",
+					latch.await(1, TimeUnit.MINUTES));
+			return lastEvent.get();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected RemoteNode findRemoteNode(final RxResponse16 rxResponse) {
+			return remoteNode;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected <V extends RxData> void handleEvent(
+				final UGateEvent<RemoteNode, V> event) {
+			lastEvent.set(event);
+			latch.countDown();
+		}
+	}
+}